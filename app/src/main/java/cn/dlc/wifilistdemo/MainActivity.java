@@ -11,8 +11,14 @@ import android.support.v7.widget.RecyclerView;
 import android.view.ViewGroup;
 import cn.dlc.commonlibrary.ui.adapter.BaseRecyclerAdapter;
 import cn.dlc.commonlibrary.ui.base.BaseCommonActivity;
+import cn.dlc.dlcwificonnect.ConnectionAttempt;
+import cn.dlc.dlcwificonnect.ConnectionMetrics;
+import cn.dlc.dlcwificonnect.ScanDelta;
+import cn.dlc.dlcwificonnect.ScanResultFilterBuilder;
+import cn.dlc.dlcwificonnect.ScanSnapshot;
 import cn.dlc.dlcwificonnect.WifiConnManager;
 import cn.dlc.dlcwificonnect.WifiEncrypt;
+import cn.dlc.dlcwificonnect.WifiExecutors;
 import cn.dlc.dlcwificonnect.WifiHelper;
 import cn.dlc.dlcwificonnect.WifiScanner;
 import com.licheedev.myutils.LogPlus;
@@ -109,28 +115,48 @@ public class MainActivity extends BaseCommonActivity {
         });
 
         // 自定义扫描结果过滤器
-        WifiScanner.ScanResultFilter resultFilter = new WifiScanner.ScanResultFilter() {
-            @Override
-            public boolean letItGo(ScanResult scanResult) {
-                // 只要包含"usr"的
-                return scanResult.SSID.toUpperCase().contains("USR");
-            }
-        };
+        // 只要包含"usr"的
+        WifiScanner.ScanResultFilter resultFilter =
+            new ScanResultFilterBuilder().ignoreCase(true).ssidContains("USR").build();
 
         // todo 设置顾虑器，可选
         //mWifiHelper.setScanResultFilter(resultFilter);
 
+        // 输出每次连接各阶段的耗时，实际项目里可以上报
+        mWifiConnManager.getConnectionMetrics().setSink(new ConnectionMetrics.Sink() {
+            @Override
+            public void onAttempt(ConnectionAttempt attempt) {
+                LogPlus.e("连接耗时：" + attempt);
+            }
+        });
+
+        // 保存扫描结果快照，下次启动时先显示
+        mWifiHelper.setScanSnapshotEnabled(true);
+
         if (mWifiHelper.isWifiEnabled()) {
-            mWifiAdapter.setNewData(mWifiHelper.getScanResults(true));
+            mWifiAdapter.setScanResults(mWifiHelper.getScanResults(true), false);
             mWifiAdapter.setConnected(mWifiHelper.getConnectionInfo());
         } else {
-            // 先设定监听器，开启wifi之后会扫描列表，回调后会取消监听
+            // wifi还没开，先显示上次的列表并标记为过期
+            List<ScanResult> baseline = null;
+            ScanSnapshot snapshot = mWifiHelper.loadScanSnapshot();
+            if (snapshot != null) {
+                LogPlus.e("显示缓存的列表(已过期):" + snapshot);
+                baseline = snapshot.getScanResults();
+                mWifiAdapter.setScanResults(baseline, true);
+            }
+            // 以显示的列表为基准，开启wifi扫描到结果后只更新变化的条目
+            mWifiHelper.setScanDeltaListener(new WifiScanner.ScanDeltaListener() {
+                @Override
+                public void onScanDelta(WifiScanner wifiScanner, List<ScanDelta> deltas) {
+                    mWifiAdapter.applyDeltas(deltas);
+                }
+            }, WifiExecutors.mainThread(), baseline);
+            // 收到新的扫描结果后不再是过期的，结果和快照一样时不会有差分回调
             mWifiHelper.setScanListener(new WifiScanner.ScanListener() {
                 @Override
                 public void onScanResults(WifiScanner wifiScanner) {
-                    List<ScanResult> scanResults = wifiScanner.getScanResults(true);
-
-                    mWifiAdapter.setNewData(scanResults);
+                    mWifiAdapter.setStale(false);
                 }
             });
             mWifiConnManager.enableWifi();
@@ -226,4 +252,11 @@ public class MainActivity extends BaseCommonActivity {
         initRecyclerView();
         initWifiTools();
     }
+
+    @Override
+    protected void onDestroy() {
+        mWifiHelper.removeScanListener();
+        mWifiHelper.removeScanDeltaListener();
+        super.onDestroy();
+    }
 }
@@ -5,8 +5,11 @@ import android.net.wifi.WifiInfo;
 import android.view.View;
 import android.widget.TextView;
 import cn.dlc.commonlibrary.ui.adapter.BaseRecyclerAdapter;
+import cn.dlc.dlcwificonnect.ScanDelta;
 import cn.dlc.dlcwificonnect.WifiEncrypt;
 import cn.dlc.dlcwificonnect.WifiHelper;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by liuwenzhuo on 2017/11/6.
@@ -16,16 +19,35 @@ public class WifiAdapter extends BaseRecyclerAdapter<ScanResult> {
 
     private String connectedSSID = "";
 
+    private final List<ScanResult> mItems = new ArrayList<>();
+    /**
+     * 显示的是上次保存的列表，还没收到新的扫描结果
+     */
+    private boolean mStale;
+
     @Override
     public int getItemLayoutId(int viewType) {
         return R.layout.item_wifi;
     }
 
+    @Override
+    public int getItemCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public ScanResult getItem(int position) {
+        return mItems.get(position);
+    }
+
     @Override
     public void onBindViewHolder(CommonHolder holder, int position) {
 
         ScanResult item = getItem(position);
 
+        // 过期的列表显示成半透明
+        holder.itemView.setAlpha(mStale ? 0.5f : 1f);
+
         TextView mTvWifiName = holder.getView(R.id.tv_wifi_name);
         mTvWifiName.setText(item.SSID);
 
@@ -42,6 +64,67 @@ public class WifiAdapter extends BaseRecyclerAdapter<ScanResult> {
         }
     }
 
+    /**
+     * 显示扫描结果
+     *
+     * @param scanResults
+     * @param stale 是否是上次保存的过期列表
+     */
+    public void setScanResults(List<ScanResult> scanResults, boolean stale) {
+        mItems.clear();
+        if (scanResults != null) {
+            mItems.addAll(scanResults);
+        }
+        mStale = stale;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 按差分更新列表，只刷新变化的条目
+     *
+     * @param deltas 按SSID差分的变化
+     */
+    public void applyDeltas(List<ScanDelta> deltas) {
+
+        for (ScanDelta delta : deltas) {
+            ScanResult scanResult = delta.getScanResult();
+            int index = indexOf(scanResult.SSID);
+            if (delta.getType() == ScanDelta.Type.REMOVED) {
+                if (index >= 0) {
+                    mItems.remove(index);
+                    notifyItemRemoved(index);
+                }
+            } else if (index >= 0) {
+                mItems.set(index, scanResult);
+                notifyItemChanged(index);
+            } else {
+                mItems.add(scanResult);
+                notifyItemInserted(mItems.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * 标记列表是否过期
+     *
+     * @param stale
+     */
+    public void setStale(boolean stale) {
+        if (mStale != stale) {
+            mStale = stale;
+            notifyItemRangeChanged(0, mItems.size());
+        }
+    }
+
+    private int indexOf(String SSID) {
+        for (int i = 0, size = mItems.size(); i < size; i++) {
+            if (mItems.get(i).SSID.equals(SSID)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public void setConnectedSSID(String connectedSSID) {
 
         if (connectedSSID == null) {
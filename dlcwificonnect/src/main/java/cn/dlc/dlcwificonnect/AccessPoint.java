@@ -0,0 +1,122 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR1;
+import static android.os.Build.VERSION_CODES.M;
+
+/**
+ * 单个接入点(BSSID)，由{@link NetworkGroups}在每次扫描后原地更新
+ */
+public final class AccessPoint {
+
+    private final String mBSSID;
+    private final NetworkGroup mGroup;
+
+    private ScanResult mScanResult;
+    private int mLevel;
+    private int mFrequency;
+    private int mChannelWidth;
+    private long mLastSeen;
+
+    AccessPoint(String BSSID, NetworkGroup group) {
+        mBSSID = BSSID;
+        mGroup = group;
+    }
+
+    /**
+     * 更新
+     *
+     * @param scanResult
+     * @param now 当前时间
+     * @param useTimestamp 是否用扫描结果自带的时间戳作为最后扫描到的时间
+     */
+    void update(ScanResult scanResult, long now, boolean useTimestamp) {
+        mScanResult = scanResult;
+        mLevel = scanResult.level;
+        mFrequency = scanResult.frequency;
+        mChannelWidth = SDK_INT >= M ? scanResult.channelWidth : ScanResult.CHANNEL_WIDTH_20MHZ;
+        if (useTimestamp && SDK_INT >= JELLY_BEAN_MR1 && scanResult.timestamp > 0) {
+            // timestamp是开机后的微秒数
+            mLastSeen = Math.min(now, scanResult.timestamp / 1000);
+        } else {
+            mLastSeen = now;
+        }
+    }
+
+    @NonNull
+    public String getBSSID() {
+        return mBSSID;
+    }
+
+    public String getSSID() {
+        return mGroup.getSSID();
+    }
+
+    /**
+     * 所属的网络
+     *
+     * @return
+     */
+    @NonNull
+    public NetworkGroup getGroup() {
+        return mGroup;
+    }
+
+    /**
+     * 最近一次的扫描结果
+     *
+     * @return
+     */
+    @NonNull
+    public ScanResult getScanResult() {
+        return mScanResult;
+    }
+
+    /**
+     * 信号强度(dBm)
+     *
+     * @return
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * 频率(MHz)
+     *
+     * @return
+     */
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    public WifiBand getBand() {
+        return WifiBand.of(mFrequency);
+    }
+
+    /**
+     * 信道宽度，对应{@link ScanResult#channelWidth}，Android 6.0以下固定为20MHz
+     *
+     * @return
+     */
+    public int getChannelWidth() {
+        return mChannelWidth;
+    }
+
+    /**
+     * 最后一次扫描到的时间，基于{@link android.os.SystemClock#elapsedRealtime()}
+     *
+     * @return
+     */
+    public long getLastSeen() {
+        return mLastSeen;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessPoint{" + mBSSID + ", level=" + mLevel + ", frequency=" + mFrequency + "}";
+    }
+}
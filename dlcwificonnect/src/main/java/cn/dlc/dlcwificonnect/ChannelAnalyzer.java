@@ -0,0 +1,478 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.M;
+
+/**
+ * 信道分析，统计2.4GHz、5GHz和6GHz每个信道的接入点数量和干扰强度
+ * <p>
+ * 每个接入点按实际占用的频宽把信号功率分摊到重叠的20MHz信道上（按重叠比例加权），
+ * 扫描结果到达时只把变化的接入点的贡献减掉再加上，不会整体重算。
+ * 需要未去重的扫描结果，可直接订阅扫描结果流：
+ * <pre>
+ * ChannelAnalyzer analyzer = new ChannelAnalyzer();
+ * wifiHelper.getScanResultStream()
+ *     .subscribeRaw(analyzer, ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+ * </pre>
+ */
+public class ChannelAnalyzer implements ScanResultStream.Subscriber {
+
+    /**
+     * 没有干扰
+     */
+    public static final double NO_INTERFERENCE = Double.NEGATIVE_INFINITY;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * 估算信噪比时用的底噪(dBm)
+     */
+    public static final int NOISE_FLOOR = -95;
+
+    private static final int[] PREFERRED_2_4 = { 1, 6, 11 };
+    /**
+     * 5GHz不需要DFS的信道
+     */
+    private static final int[] PREFERRED_5 = { 36, 40, 44, 48, 149, 153, 157, 161, 165 };
+    /**
+     * 6GHz的PSC信道
+     */
+    private static final int[] PREFERRED_6;
+
+    static {
+        PREFERRED_6 = new int[15];
+        for (int i = 0; i < PREFERRED_6.length; i++) {
+            PREFERRED_6[i] = 5 + 16 * i;
+        }
+    }
+
+    private static final int BAND_2_4 = 0;
+    private static final int BAND_5 = 1;
+    private static final int BAND_6 = 2;
+
+    private static final int[] MIN_CHANNEL = { 1, 32, 1 };
+    private static final int[] MAX_CHANNEL = { 14, 177, 233 };
+
+    private final Clock mClock;
+    private final long mMaxAgeMillis;
+    private final int mCapacity;
+
+    // 每个信道的干扰功率(mW)和主信道在这里的接入点数量
+    private final double[][] mPower = new double[3][];
+    private final int[][] mApCount = new int[3][];
+
+    // 每个接入点当前的贡献
+    private final LongIntMap mIndex;
+    private final long[] mKeys;
+    private final int[] mBand;
+    private final int[] mChannel;
+    private final int[] mLow;
+    private final int[] mHigh;
+    private final int[] mLevel;
+    private final long[] mLastSeen;
+    private int mSize;
+
+    public ChannelAnalyzer() {
+        this(DEFAULT_CAPACITY, Clock.SYSTEM, NetworkGroups.DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * 信道分析
+     *
+     * @param capacity 最多统计的接入点数量
+     * @param clock 时钟
+     * @param maxAgeMillis 接入点过期时间，超过该时间没扫描到就不再计入
+     */
+    public ChannelAnalyzer(int capacity, @NonNull Clock clock, long maxAgeMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        mCapacity = capacity;
+        mClock = clock;
+        mMaxAgeMillis = maxAgeMillis;
+        for (int band = 0; band < 3; band++) {
+            mPower[band] = new double[MAX_CHANNEL[band] + 1];
+            mApCount[band] = new int[MAX_CHANNEL[band] + 1];
+        }
+        mIndex = new LongIntMap(capacity);
+        mKeys = new long[capacity];
+        mBand = new int[capacity];
+        mChannel = new int[capacity];
+        mLow = new int[capacity];
+        mHigh = new int[capacity];
+        mLevel = new int[capacity];
+        mLastSeen = new long[capacity];
+    }
+
+    @Override
+    public void onScanResults(List<ScanResult> scanResults) {
+        update(scanResults);
+    }
+
+    /**
+     * 用新的扫描结果增量更新
+     *
+     * @param scanResults 未去重的扫描结果
+     */
+    public synchronized void update(@Nullable List<ScanResult> scanResults) {
+
+        long now = mClock.elapsedRealtime();
+
+        if (scanResults != null) {
+            for (int i = 0, size = scanResults.size(); i < size; i++) {
+                update(scanResults.get(i), now);
+            }
+        }
+
+        // 移除过期的接入点
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (now - mLastSeen[i] > mMaxAgeMillis) {
+                removeAt(i);
+            }
+        }
+    }
+
+    private void update(ScanResult scanResult, long now) {
+
+        long key = MacAddresses.toLong(scanResult.BSSID);
+        int band = bandIndex(WifiBand.of(scanResult.frequency));
+        if (key == MacAddresses.INVALID || band < 0) {
+            return;
+        }
+
+        int channel = toChannel(scanResult.frequency);
+        int width = widthOf(scanResult);
+        int center = width > 20 && SDK_INT >= M && scanResult.centerFreq0 > 0
+            ? scanResult.centerFreq0 : scanResult.frequency;
+        int low = center - width / 2;
+        int high = center + width / 2;
+
+        int index = mIndex.get(key, -1);
+        if (index >= 0) {
+            mLastSeen[index] = now;
+            if (mBand[index] == band && mChannel[index] == channel && mLow[index] == low
+                && mHigh[index] == high && mLevel[index] == scanResult.level) {
+                // 没变化
+                return;
+            }
+            apply(index, -1);
+        } else {
+            index = allocate(key);
+            mLastSeen[index] = now;
+        }
+
+        mBand[index] = band;
+        mChannel[index] = channel;
+        mLow[index] = low;
+        mHigh[index] = high;
+        mLevel[index] = scanResult.level;
+        apply(index, 1);
+    }
+
+    /**
+     * 把接入点的贡献加到信道上或从信道上减掉
+     *
+     * @param index
+     * @param sign 1表示加，-1表示减
+     */
+    private void apply(int index, int sign) {
+
+        int band = mBand[index];
+        int low = mLow[index];
+        int high = mHigh[index];
+        double power = Math.pow(10, mLevel[index] / 10.0) * sign;
+
+        int channel = mChannel[index];
+        if (channel >= MIN_CHANNEL[band] && channel <= MAX_CHANNEL[band]) {
+            mApCount[band][channel] += sign;
+        }
+
+        double[] channelPower = mPower[band];
+        int from = Math.max(MIN_CHANNEL[band], toChannel(band, low - 10) - 1);
+        int to = Math.min(MAX_CHANNEL[band], toChannel(band, high + 10) + 1);
+        for (int ch = from; ch <= to; ch++) {
+            int overlap = overlap(low, high, toFrequency(band, ch));
+            if (overlap > 0) {
+                double value = channelPower[ch] + power * overlap / (high - low);
+                // 浮点误差
+                channelPower[ch] = value < 1e-15 ? 0 : value;
+            }
+        }
+    }
+
+    /**
+     * 接入点占用的频段和某个20MHz信道重叠的宽度
+     *
+     * @param low
+     * @param high
+     * @param center 信道中心频率
+     * @return MHz
+     */
+    private static int overlap(int low, int high, int center) {
+        return Math.max(0, Math.min(high, center + 10) - Math.max(low, center - 10));
+    }
+
+    /**
+     * 分配位置，满了就淘汰最久没扫描到的
+     *
+     * @param key
+     * @return
+     */
+    private int allocate(long key) {
+        if (mSize == mCapacity) {
+            int oldest = 0;
+            for (int i = 1; i < mSize; i++) {
+                if (mLastSeen[i] < mLastSeen[oldest]) {
+                    oldest = i;
+                }
+            }
+            removeAt(oldest);
+        }
+        int index = mSize++;
+        mKeys[index] = key;
+        mIndex.put(key, index);
+        return index;
+    }
+
+    /**
+     * 移除接入点，用最后一个填补空位
+     *
+     * @param index
+     */
+    private void removeAt(int index) {
+        apply(index, -1);
+        mIndex.remove(mKeys[index]);
+        int last = --mSize;
+        if (index != last) {
+            mKeys[index] = mKeys[last];
+            mBand[index] = mBand[last];
+            mChannel[index] = mChannel[last];
+            mLow[index] = mLow[last];
+            mHigh[index] = mHigh[last];
+            mLevel[index] = mLevel[last];
+            mLastSeen[index] = mLastSeen[last];
+            mIndex.put(mKeys[index], index);
+        }
+    }
+
+    /**
+     * 主信道是指定信道的接入点数量
+     *
+     * @param band
+     * @param channel
+     * @return
+     */
+    public synchronized int getApCount(@NonNull WifiBand band, int channel) {
+        int b = bandIndex(band);
+        if (b < 0 || channel < MIN_CHANNEL[b] || channel > MAX_CHANNEL[b]) {
+            return 0;
+        }
+        return mApCount[b][channel];
+    }
+
+    /**
+     * 指定信道上按重叠比例加权后的干扰强度
+     *
+     * @param band
+     * @param channel
+     * @return dBm，没有干扰时返回{@link #NO_INTERFERENCE}
+     */
+    public synchronized double getInterference(@NonNull WifiBand band, int channel) {
+        int b = bandIndex(band);
+        if (b < 0 || channel < MIN_CHANNEL[b] || channel > MAX_CHANNEL[b]) {
+            return NO_INTERFERENCE;
+        }
+        return toDbm(mPower[b][channel]);
+    }
+
+    /**
+     * 某个网络所在信道上来自其他接入点的干扰
+     *
+     * @param scanResult
+     * @return dBm，没有干扰时返回{@link #NO_INTERFERENCE}
+     */
+    public synchronized double getCongestion(@NonNull ScanResult scanResult) {
+        return toDbm(otherPower(scanResult));
+    }
+
+    /**
+     * 估算的信噪比，信号强度相对底噪加其他接入点的干扰，用于给候选网络排序
+     *
+     * @param scanResult
+     * @return dB
+     */
+    public synchronized double getSinr(@NonNull ScanResult scanResult) {
+        double noise = Math.pow(10, NOISE_FLOOR / 10.0) + otherPower(scanResult);
+        return scanResult.level - 10 * Math.log10(noise);
+    }
+
+    /**
+     * 扫描结果所在主信道上其他接入点的干扰功率
+     *
+     * @param scanResult
+     * @return mW
+     */
+    private double otherPower(ScanResult scanResult) {
+        int band = bandIndex(WifiBand.of(scanResult.frequency));
+        int channel = toChannel(scanResult.frequency);
+        if (band < 0 || channel < MIN_CHANNEL[band] || channel > MAX_CHANNEL[band]) {
+            return 0;
+        }
+        double power = mPower[band][channel];
+
+        // 减掉自己的贡献
+        long key = MacAddresses.toLong(scanResult.BSSID);
+        int index = key == MacAddresses.INVALID ? -1 : mIndex.get(key, -1);
+        if (index >= 0 && mBand[index] == band) {
+            int overlap = overlap(mLow[index], mHigh[index], toFrequency(band, channel));
+            power -= Math.pow(10, mLevel[index] / 10.0) * overlap / (mHigh[index] - mLow[index]);
+        }
+        return Math.max(0, power);
+    }
+
+    /**
+     * 推荐信道：2.4GHz在1、6、11中选，5GHz在不需要DFS的信道中选，6GHz在PSC信道中选，
+     * 选干扰最小的，干扰相同时选接入点少的
+     *
+     * @param band
+     * @return 信道号，不支持的频段返回-1
+     */
+    public synchronized int recommendChannel(@NonNull WifiBand band) {
+        int b = bandIndex(band);
+        if (b < 0) {
+            return -1;
+        }
+        int[] candidates = b == BAND_2_4 ? PREFERRED_2_4 : b == BAND_5 ? PREFERRED_5 : PREFERRED_6;
+        int best = candidates[0];
+        for (int i = 1; i < candidates.length; i++) {
+            int channel = candidates[i];
+            double power = mPower[b][channel];
+            double bestPower = mPower[b][best];
+            if (power < bestPower || (power == bestPower
+                && mApCount[b][channel] < mApCount[b][best])) {
+                best = channel;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 统计的接入点数量
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mIndex.clear();
+        mSize = 0;
+        for (int band = 0; band < 3; band++) {
+            Arrays.fill(mPower[band], 0);
+            Arrays.fill(mApCount[band], 0);
+        }
+    }
+
+    /**
+     * 频率转信道号
+     *
+     * @param frequency 频率(MHz)
+     * @return 不认识的频率返回-1
+     */
+    public static int toChannel(int frequency) {
+        switch (WifiBand.of(frequency)) {
+            case GHZ_2_4:
+                return frequency == 2484 ? 14 : (frequency - 2407) / 5;
+            case GHZ_5:
+                return (frequency - 5000) / 5;
+            case GHZ_6:
+                return frequency == 5935 ? 2 : (frequency - 5950) / 5;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * 信道号转中心频率
+     *
+     * @param band
+     * @param channel
+     * @return MHz，不支持的频段返回-1
+     */
+    public static int toFrequency(@NonNull WifiBand band, int channel) {
+        int b = bandIndex(band);
+        return b < 0 ? -1 : toFrequency(b, channel);
+    }
+
+    private static int toFrequency(int band, int channel) {
+        switch (band) {
+            case BAND_2_4:
+                return channel == 14 ? 2484 : 2407 + 5 * channel;
+            case BAND_5:
+                return 5000 + 5 * channel;
+            default:
+                return channel == 2 ? 5935 : 5950 + 5 * channel;
+        }
+    }
+
+    /**
+     * 频率对应的信道号，不检查范围，用于计算循环边界
+     */
+    private static int toChannel(int band, int frequency) {
+        switch (band) {
+            case BAND_2_4:
+                return (frequency - 2407) / 5;
+            case BAND_5:
+                return (frequency - 5000) / 5;
+            default:
+                return (frequency - 5950) / 5;
+        }
+    }
+
+    private static int bandIndex(WifiBand band) {
+        switch (band) {
+            case GHZ_2_4:
+                return BAND_2_4;
+            case GHZ_5:
+                return BAND_5;
+            case GHZ_6:
+                return BAND_6;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * 接入点的频宽
+     *
+     * @param scanResult
+     * @return MHz
+     */
+    private static int widthOf(ScanResult scanResult) {
+        if (SDK_INT < M) {
+            return 20;
+        }
+        switch (scanResult.channelWidth) {
+            case ScanResult.CHANNEL_WIDTH_40MHZ:
+                return 40;
+            case ScanResult.CHANNEL_WIDTH_80MHZ:
+            case ScanResult.CHANNEL_WIDTH_80MHZ_PLUS_MHZ:
+                return 80;
+            case ScanResult.CHANNEL_WIDTH_160MHZ:
+                return 160;
+            default:
+                return 20;
+        }
+    }
+
+    private static double toDbm(double milliwatts) {
+        return milliwatts <= 0 ? NO_INTERFERENCE : 10 * Math.log10(milliwatts);
+    }
+}
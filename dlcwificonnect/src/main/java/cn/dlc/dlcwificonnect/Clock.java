@@ -0,0 +1,26 @@
+package cn.dlc.dlcwificonnect;
+
+import android.os.SystemClock;
+
+/**
+ * 时钟，方便在单元测试里替换
+ */
+public interface Clock {
+
+    /**
+     * 系统时钟，使用{@link SystemClock#elapsedRealtime()}
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    /**
+     * 开机到现在的毫秒数（包括休眠时间）
+     *
+     * @return
+     */
+    long elapsedRealtime();
+}
@@ -0,0 +1,152 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.security.SecureRandom;
+
+/**
+ * 本库写入的网络配置的摘要，按SSID保存在SharedPreferences里
+ * <p>
+ * 系统不会返回已保存的密码，连接前用摘要判断已保存的配置和这次要写的是否一致，
+ * 一致时直接启用，不再重新添加配置。
+ * <p>
+ * 摘要是密码的HMAC-SHA256，密钥每个安装随机生成，和摘要存在同一个文件里。
+ * 拿到这个文件(root、备份)的人仍然可以离线逐个猜密码，只是不能用现成的彩虹表，
+ * 也不能跨设备比对。开启了自动备份的应用建议把{@value #PREFS_NAME}.xml排除在备份外：
+ * <pre>
+ * &lt;exclude domain="sharedpref" path="dlc_wifi_config.xml"/&gt;
+ * </pre>
+ * 文件丢失或不一致只会让已保存的网络被重新添加一次。
+ */
+final class ConfigFingerprints {
+
+    private static final String PREFS_NAME = "dlc_wifi_config";
+    /**
+     * 保存密钥的键，SSID的键都带双引号或是十六进制，不会冲突
+     */
+    private static final String KEY_HMAC_KEY = "#hmac_key";
+    private static final int HMAC_KEY_BYTES = 32;
+
+    private final SharedPreferences mPreferences;
+    private byte[] mKey;
+
+    ConfigFingerprints(@NonNull Context context) {
+        mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 按本安装的密钥计算摘要
+     *
+     * @param template
+     * @param password
+     * @return
+     */
+    @NonNull
+    String fingerprint(@NonNull WifiConfigTemplate template, @Nullable String password) {
+        return template.fingerprint(getKey(), password);
+    }
+
+    /**
+     * 第一次使用时生成密钥并保存
+     *
+     * @return
+     */
+    private synchronized byte[] getKey() {
+        if (mKey != null) {
+            return mKey;
+        }
+        byte[] key = fromHex(mPreferences.getString(KEY_HMAC_KEY, null));
+        if (key == null) {
+            key = new byte[HMAC_KEY_BYTES];
+            new SecureRandom().nextBytes(key);
+            // 只在第一次使用时写一次，同步写入，保证之后按这个密钥记录的摘要不会丢
+            mPreferences.edit().putString(KEY_HMAC_KEY, toHex(key)).commit();
+        }
+        mKey = key;
+        return key;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    @Nullable
+    private static byte[] fromHex(@Nullable String hex) {
+        if (hex == null || hex.length() != HMAC_KEY_BYTES * 2) {
+            return null;
+        }
+        byte[] bytes = new byte[HMAC_KEY_BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * 记录写入的配置
+     *
+     * @param key
+     * @param networkId
+     * @param fingerprint
+     */
+    void put(@NonNull SsidKey key, int networkId, @NonNull String fingerprint) {
+        edit().put(key, networkId, fingerprint).apply();
+    }
+
+    /**
+     * 批量记录，{@link Editor#apply()}时只写一次文件
+     *
+     * @return
+     */
+    @NonNull
+    Editor edit() {
+        return new Editor(mPreferences.edit());
+    }
+
+    /**
+     * 已保存的配置是否是本库按相同的摘要写入的
+     *
+     * @param key
+     * @param networkId 已保存配置的id，配置被删除后重新添加时id会变
+     * @param fingerprint
+     * @return
+     */
+    boolean matches(@NonNull SsidKey key, int networkId, @NonNull String fingerprint) {
+        String value = mPreferences.getString(key.toWifiSsid(), null);
+        return value != null && value.equals(networkId + ":" + fingerprint);
+    }
+
+    /**
+     * 批量记录
+     */
+    static final class Editor {
+
+        private final SharedPreferences.Editor mEditor;
+
+        private Editor(SharedPreferences.Editor editor) {
+            mEditor = editor;
+        }
+
+        @NonNull
+        Editor put(@NonNull SsidKey key, int networkId, @NonNull String fingerprint) {
+            mEditor.putString(key.toWifiSsid(), networkId + ":" + fingerprint);
+            return this;
+        }
+
+        void apply() {
+            mEditor.apply();
+        }
+    }
+}
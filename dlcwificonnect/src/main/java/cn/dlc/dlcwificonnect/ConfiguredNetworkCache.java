@@ -0,0 +1,249 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 已保存网络的缓存，按{@link SsidKey}建索引，同时缓存最高优先级
+ * <p>
+ * {@link WifiManager#getConfiguredNetworks()}是一次跨进程调用，每次都会复制所有已保存的网络，
+ * 这里只在系统广播已保存网络变化、wifi开关变化或本地修改后才重新获取。
+ * 返回的配置是共享的，修改后调用{@link WifiManager#updateNetwork(WifiConfiguration)}
+ * 等方法写回时要调用{@link #invalidate()}。
+ */
+public class ConfiguredNetworkCache {
+
+    /**
+     * 系统隐藏的广播，已保存的网络发生变化
+     */
+    public static final String CONFIGURED_NETWORKS_CHANGED_ACTION =
+        "android.net.wifi.CONFIGURED_NETWORKS_CHANGE";
+
+    /**
+     * 默认的最长缓存时间，部分系统不发广播，超过该时间也重新获取
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 60 * 1000;
+
+    private final Context mContext;
+    private final WifiManager mWifiManager;
+    private final Clock mClock;
+    private long mMaxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+    private BroadcastReceiver mReceiver;
+
+    private final HashMap<SsidKey, WifiConfiguration> mIndex = new HashMap<>();
+    private List<WifiConfiguration> mConfigs = Collections.emptyList();
+    private int mMaxPriority;
+    private boolean mValid;
+    private long mLoadTime;
+
+    private int mLoadCount;
+    private int mHitCount;
+    private int mInvalidateCount;
+
+    public ConfiguredNetworkCache(@NonNull Context context, @NonNull WifiManager wifiManager) {
+        this(context, wifiManager, Clock.SYSTEM);
+    }
+
+    /**
+     * 已保存网络的缓存
+     *
+     * @param context
+     * @param wifiManager
+     * @param clock 时钟，用于判断缓存是否超时
+     */
+    public ConfiguredNetworkCache(@NonNull Context context, @NonNull WifiManager wifiManager,
+        @NonNull Clock clock) {
+        mContext = context;
+        mWifiManager = wifiManager;
+        mClock = clock;
+    }
+
+    /**
+     * 设置最长缓存时间
+     *
+     * @param maxAgeMillis 小于等于0表示只靠广播和本地修改失效
+     */
+    public synchronized void setMaxAge(long maxAgeMillis) {
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * 按SSID获取已保存的网络
+     *
+     * @param SSID 带不带引号都可以
+     * @return 没有时返回null
+     */
+    @Nullable
+    public synchronized WifiConfiguration get(String SSID) {
+        return get(SsidKey.of(SSID));
+    }
+
+    /**
+     * 按SSID获取已保存的网络
+     *
+     * @param key
+     * @return 没有时返回null
+     */
+    @Nullable
+    public synchronized WifiConfiguration get(@NonNull SsidKey key) {
+        ensureLoaded();
+        return mIndex.get(key);
+    }
+
+    /**
+     * 按SSID获取已保存网络的id
+     *
+     * @param SSID 带不带引号都可以
+     * @return 没有时返回-1
+     */
+    public synchronized int getNetworkId(String SSID) {
+        WifiConfiguration config = get(SSID);
+        return config == null ? -1 : config.networkId;
+    }
+
+    /**
+     * 已保存网络中的最高优先级
+     *
+     * @return 没有已保存的网络时返回0
+     */
+    public synchronized int getMaxPriority() {
+        ensureLoaded();
+        return mMaxPriority;
+    }
+
+    /**
+     * 所有已保存的网络
+     *
+     * @return 不可修改
+     */
+    @NonNull
+    public synchronized List<WifiConfiguration> getAll() {
+        ensureLoaded();
+        return mConfigs;
+    }
+
+    /**
+     * 标记缓存失效，下次查询时重新获取，本地添加、修改、删除网络后调用
+     */
+    public synchronized void invalidate() {
+        mValid = false;
+        mInvalidateCount++;
+    }
+
+    /**
+     * 注销广播并清空缓存，不再使用时调用，之后再查询会重新注册
+     */
+    public synchronized void release() {
+        if (mReceiver != null) {
+            try {
+                mContext.unregisterReceiver(mReceiver);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            mReceiver = null;
+        }
+        mValid = false;
+    }
+
+    /**
+     * 跨进程获取已保存网络的次数
+     *
+     * @return
+     */
+    public synchronized int getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * 直接用缓存回答的查询次数，即省下的跨进程调用次数
+     *
+     * @return
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * 缓存失效的次数
+     *
+     * @return
+     */
+    public synchronized int getInvalidateCount() {
+        return mInvalidateCount;
+    }
+
+    private void ensureLoaded() {
+
+        if (mReceiver == null) {
+            registerReceiver();
+        }
+
+        long now = mClock.elapsedRealtime();
+        if (mValid && (mMaxAgeMillis <= 0 || now - mLoadTime < mMaxAgeMillis)) {
+            mHitCount++;
+            return;
+        }
+
+        List<WifiConfiguration> configs = null;
+        try {
+            configs = mWifiManager.getConfiguredNetworks();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        mLoadCount++;
+
+        mIndex.clear();
+        int maxPriority = 0;
+        if (configs != null) {
+            for (int i = 0, size = configs.size(); i < size; i++) {
+                WifiConfiguration config = configs.get(i);
+                SsidKey key = SsidKey.ofWifiSsid(config.SSID);
+                // 同名的保留第一个，和原来的线性查找一致
+                if (!key.isEmpty() && !mIndex.containsKey(key)) {
+                    mIndex.put(key, config);
+                }
+                maxPriority = Math.max(maxPriority, config.priority);
+            }
+            mConfigs = Collections.unmodifiableList(new ArrayList<>(configs));
+        } else {
+            mConfigs = Collections.emptyList();
+        }
+        mMaxPriority = maxPriority;
+        mLoadTime = now;
+        // wifi关闭时可能拿不到列表，下次再试
+        mValid = configs != null;
+    }
+
+    private void registerReceiver() {
+
+        IntentFilter intentFilter = new IntentFilter(CONFIGURED_NETWORKS_CHANGED_ACTION);
+        intentFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+
+        mReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // 注册时收到的wifi状态粘性广播不代表有变化
+                if (!isInitialStickyBroadcast()) {
+                    invalidate();
+                }
+            }
+        };
+
+        try {
+            mContext.registerReceiver(mReceiver, intentFilter, null, WifiExecutors.worker());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
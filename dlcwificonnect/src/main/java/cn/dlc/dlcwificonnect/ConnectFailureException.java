@@ -0,0 +1,42 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+
+/**
+ * 连接失败，{@link WifiConnManager#connectAsync}的结果失败时收到
+ */
+public class ConnectFailureException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Phase mPhase;
+    private final Failure mFailure;
+
+    public ConnectFailureException(@NonNull Phase phase, @NonNull Failure failure) {
+        super(failure + " while " + phase);
+        mPhase = phase;
+        mFailure = failure;
+    }
+
+    /**
+     * 失败时所在的阶段
+     *
+     * @return
+     */
+    @NonNull
+    public Phase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * 失败原因
+     *
+     * @return
+     */
+    @NonNull
+    public Failure getFailure() {
+        return mFailure;
+    }
+}
@@ -0,0 +1,27 @@
+package cn.dlc.dlcwificonnect;
+
+/**
+ * 连接走的路径，越靠前越快
+ */
+public enum ConnectPath {
+
+    /**
+     * 已经连着要连的网络（和接入点），什么都不用做
+     */
+    ALREADY_CONNECTED,
+
+    /**
+     * 已经连着同一个网络，只切换到指定的接入点，不断开重连
+     */
+    ROAM,
+
+    /**
+     * 已保存的配置和要写的一致，直接启用，不重新添加也不先断开
+     */
+    REUSE_SAVED,
+
+    /**
+     * 添加新配置或改写已保存的配置，然后断开重连
+     */
+    NEW_CONFIG
+}
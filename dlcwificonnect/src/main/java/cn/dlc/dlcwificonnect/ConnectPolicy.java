@@ -0,0 +1,204 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * 多个候选网络自动连接的策略，不可修改
+ * <pre>
+ * ConnectPolicy policy = new ConnectPolicy.Builder()
+ *     .deadline(20000)
+ *     .backoff(500, 8000)
+ *     .build();
+ * </pre>
+ *
+ * @see WifiConnManager#ensureConnected(java.util.List, ConnectPolicy, WifiConnManager.EnsureConnectedListener)
+ */
+public final class ConnectPolicy {
+
+    /**
+     * 默认策略
+     */
+    public static final ConnectPolicy DEFAULT = new Builder().build();
+
+    private final long mDeadlineMillis;
+    private final long mInitialBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final float mJitter;
+    private final long mMaxScanAgeMillis;
+    private final int mHistoryWeight;
+    private final RssiSmoother mRssiSmoother;
+
+    private ConnectPolicy(Builder builder) {
+        mDeadlineMillis = builder.mDeadlineMillis;
+        mInitialBackoffMillis = builder.mInitialBackoffMillis;
+        mMaxBackoffMillis = builder.mMaxBackoffMillis;
+        mJitter = builder.mJitter;
+        mMaxScanAgeMillis = builder.mMaxScanAgeMillis;
+        mHistoryWeight = builder.mHistoryWeight;
+        mRssiSmoother = builder.mRssiSmoother;
+    }
+
+    /**
+     * 整个过程的时间预算
+     *
+     * @return 毫秒
+     */
+    public long getDeadlineMillis() {
+        return mDeadlineMillis;
+    }
+
+    public long getInitialBackoffMillis() {
+        return mInitialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return mMaxBackoffMillis;
+    }
+
+    public float getJitter() {
+        return mJitter;
+    }
+
+    public long getMaxScanAgeMillis() {
+        return mMaxScanAgeMillis;
+    }
+
+    public int getHistoryWeight() {
+        return mHistoryWeight;
+    }
+
+    @Nullable
+    public RssiSmoother getRssiSmoother() {
+        return mRssiSmoother;
+    }
+
+    /**
+     * 第几次失败后的等待时间，指数增长，带随机抖动
+     *
+     * @param failures 连续失败次数，从1开始
+     * @param random 0到1之间的随机数
+     * @return 毫秒
+     */
+    long backoff(int failures, double random) {
+        long delay = mInitialBackoffMillis;
+        for (int i = 1; i < failures && delay < mMaxBackoffMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, mMaxBackoffMillis);
+        return Math.max(0, Math.round(delay * (1 + mJitter * (2 * random - 1))));
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /**
+     * 策略构建器
+     */
+    public static class Builder {
+
+        private long mDeadlineMillis = 30 * 1000;
+        private long mInitialBackoffMillis = 500;
+        private long mMaxBackoffMillis = 8 * 1000;
+        private float mJitter = 0.5f;
+        private long mMaxScanAgeMillis = 30 * 1000;
+        private int mHistoryWeight = 10;
+        private RssiSmoother mRssiSmoother;
+
+        public Builder() {
+        }
+
+        private Builder(ConnectPolicy policy) {
+            mDeadlineMillis = policy.mDeadlineMillis;
+            mInitialBackoffMillis = policy.mInitialBackoffMillis;
+            mMaxBackoffMillis = policy.mMaxBackoffMillis;
+            mJitter = policy.mJitter;
+            mMaxScanAgeMillis = policy.mMaxScanAgeMillis;
+            mHistoryWeight = policy.mHistoryWeight;
+            mRssiSmoother = policy.mRssiSmoother;
+        }
+
+        /**
+         * 整个过程的时间预算，用完后停止并回调失败
+         *
+         * @param deadlineMillis
+         * @return
+         */
+        public Builder deadline(long deadlineMillis) {
+            if (deadlineMillis <= 0) {
+                throw new IllegalArgumentException("deadline must be positive");
+            }
+            mDeadlineMillis = deadlineMillis;
+            return this;
+        }
+
+        /**
+         * 失败后等待多久再试下一个，每次失败翻倍
+         *
+         * @param initialMillis 第一次失败后的等待时间
+         * @param maxMillis 最长等待时间
+         * @return
+         */
+        public Builder backoff(long initialMillis, long maxMillis) {
+            if (initialMillis < 0 || maxMillis < initialMillis) {
+                throw new IllegalArgumentException("Invalid backoff");
+            }
+            mInitialBackoffMillis = initialMillis;
+            mMaxBackoffMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * 等待时间的随机抖动，避免多台设备同时重试
+         *
+         * @param jitter 0到1，0.5表示在等待时间的±50%内随机
+         * @return
+         */
+        public Builder jitter(float jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be in [0, 1]");
+            }
+            mJitter = jitter;
+            return this;
+        }
+
+        /**
+         * 扫描结果超过这个时间就不算数，这种候选网络会跳过，等下一次扫描
+         *
+         * @param maxScanAgeMillis
+         * @return
+         */
+        public Builder maxScanAge(long maxScanAgeMillis) {
+            mMaxScanAgeMillis = maxScanAgeMillis;
+            return this;
+        }
+
+        /**
+         * 历史连接情况的权重，连接记录很好的网络最多相当于强这么多dB的信号
+         *
+         * @param dB 0表示只按信号排序
+         * @return
+         */
+        public Builder historyWeight(int dB) {
+            mHistoryWeight = dB;
+            return this;
+        }
+
+        /**
+         * 用应用里已有的信号平滑器排序，不设置时只用这次过程中的扫描结果平滑
+         *
+         * @param rssiSmoother
+         * @return
+         */
+        public Builder rssiSmoother(@Nullable RssiSmoother rssiSmoother) {
+            mRssiSmoother = rssiSmoother;
+            return this;
+        }
+
+        @NonNull
+        public ConnectPolicy build() {
+            return new ConnectPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+
+/**
+ * 连接各阶段的超时时间，不可修改
+ * <pre>
+ * ConnectTimeouts timeouts = new ConnectTimeouts.Builder()
+ *     .timeout(Phase.SCANNING, 8000)
+ *     .timeout(Phase.OBTAINING_IP, 20000)
+ *     .build();
+ * </pre>
+ */
+public final class ConnectTimeouts {
+
+    /**
+     * 默认超时时间
+     */
+    public static final ConnectTimeouts DEFAULT = new Builder().build();
+
+    private final long[] mTimeouts;
+
+    private ConnectTimeouts(long[] timeouts) {
+        mTimeouts = timeouts;
+    }
+
+    /**
+     * 获取某个阶段的超时时间
+     *
+     * @param phase
+     * @return 毫秒，小于等于0表示不限时
+     */
+    public long get(@NonNull Phase phase) {
+        return mTimeouts[phase.ordinal()];
+    }
+
+    public Builder buildUpon() {
+        return new Builder(mTimeouts);
+    }
+
+    /**
+     * 超时时间构建器
+     */
+    public static class Builder {
+
+        private final long[] mTimeouts;
+
+        public Builder() {
+            mTimeouts = new long[Phase.values().length];
+            mTimeouts[Phase.ENABLING.ordinal()] = 10 * 1000;
+            mTimeouts[Phase.SCANNING.ordinal()] = 15 * 1000;
+            mTimeouts[Phase.ASSOCIATING.ordinal()] = 10 * 1000;
+            mTimeouts[Phase.AUTHENTICATING.ordinal()] = 15 * 1000;
+            mTimeouts[Phase.OBTAINING_IP.ordinal()] = 15 * 1000;
+            mTimeouts[Phase.VALIDATING.ordinal()] = 10 * 1000;
+            mTimeouts[Phase.BINDING.ordinal()] = 10 * 1000;
+        }
+
+        private Builder(long[] timeouts) {
+            mTimeouts = timeouts.clone();
+        }
+
+        /**
+         * 设置某个阶段的超时时间
+         *
+         * @param phase 进行中的阶段，不能是{@link Phase#IDLE}、{@link Phase#DONE}和{@link Phase#FAILED}
+         * @param timeoutMillis 小于等于0表示不限时
+         * @return
+         */
+        public Builder timeout(@NonNull Phase phase, long timeoutMillis) {
+            if (!phase.isActive()) {
+                throw new IllegalArgumentException("No timeout for phase: " + phase);
+            }
+            mTimeouts[phase.ordinal()] = timeoutMillis;
+            return this;
+        }
+
+        public ConnectTimeouts build() {
+            return new ConnectTimeouts(mTimeouts.clone());
+        }
+    }
+}
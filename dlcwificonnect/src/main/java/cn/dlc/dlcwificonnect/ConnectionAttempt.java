@@ -0,0 +1,169 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+
+/**
+ * 一次连接的记录，包括进入每个阶段的时间，结束后不再修改
+ */
+public final class ConnectionAttempt {
+
+    private final SsidKey mSsid;
+    private final String mBssid;
+    private final long[] mTimestamps;
+    private final Failure mFailure;
+    private final Phase mFailedPhase;
+    private final ConnectPath mPath;
+    private final long mBaselineMillis;
+
+    ConnectionAttempt(SsidKey ssid, String bssid, long[] timestamps, Phase failedPhase,
+        Failure failure, ConnectPath path, long baselineMillis) {
+        mSsid = ssid;
+        mBssid = bssid;
+        mTimestamps = timestamps;
+        mFailedPhase = failedPhase;
+        mFailure = failure;
+        mPath = path;
+        mBaselineMillis = baselineMillis;
+    }
+
+    @NonNull
+    public SsidKey getSsid() {
+        return mSsid;
+    }
+
+    /**
+     * 连上的接入点
+     *
+     * @return 失败或拿不到时返回null
+     */
+    @Nullable
+    public String getBssid() {
+        return mBssid;
+    }
+
+    public boolean isSuccessful() {
+        return mFailure == null;
+    }
+
+    /**
+     * 失败时所在的阶段
+     *
+     * @return 成功时返回null
+     */
+    @Nullable
+    public Phase getFailedPhase() {
+        return mFailedPhase;
+    }
+
+    /**
+     * 失败原因
+     *
+     * @return 成功时返回null
+     */
+    @Nullable
+    public Failure getFailure() {
+        return mFailure;
+    }
+
+    /**
+     * 连接走的路径
+     *
+     * @return 还没添加或启用配置就失败时返回null
+     */
+    @Nullable
+    public ConnectPath getPath() {
+        return mPath;
+    }
+
+    /**
+     * 和添加新配置的完整连接相比省下的时间
+     *
+     * @return 毫秒，以连接结束时{@link ConnectPath#NEW_CONFIG}总耗时的中位数为准，
+     * 失败、走的就是完整连接或还没有完整连接的记录时返回-1
+     */
+    public long getTimeSavedMillis() {
+        if (mFailure != null || mPath == null || mPath == ConnectPath.NEW_CONFIG
+            || mBaselineMillis < 0) {
+            return -1;
+        }
+        return Math.max(0, mBaselineMillis - getTotalDuration());
+    }
+
+    /**
+     * 进入某个阶段的时间，基于{@link Clock#elapsedRealtime()}
+     *
+     * @param phase {@link Phase#DONE}和{@link Phase#FAILED}是结束的时间
+     * @return 没经过这个阶段时返回-1
+     */
+    public long getTimestamp(@NonNull Phase phase) {
+        return mTimestamps[phase.ordinal()];
+    }
+
+    /**
+     * 某个阶段的耗时，到进入下一个阶段为止
+     *
+     * @param phase
+     * @return 毫秒，没经过这个阶段或在这个阶段失败时返回-1
+     */
+    public long getDuration(@NonNull Phase phase) {
+        long start = mTimestamps[phase.ordinal()];
+        if (start < 0 || !phase.isActive()) {
+            return -1;
+        }
+        for (int i = phase.ordinal() + 1; i <= Phase.DONE.ordinal(); i++) {
+            if (mTimestamps[i] >= 0) {
+                return mTimestamps[i] - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 总耗时
+     *
+     * @return 毫秒
+     */
+    public long getTotalDuration() {
+        long start = -1;
+        long end = -1;
+        for (long timestamp : mTimestamps) {
+            if (timestamp >= 0) {
+                if (start < 0) {
+                    start = timestamp;
+                }
+                end = timestamp;
+            }
+        }
+        return start < 0 ? 0 : end - start;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ConnectionAttempt{");
+        sb.append(mSsid);
+        if (mBssid != null) {
+            sb.append(' ').append(mBssid);
+        }
+        for (Phase phase : Phase.values()) {
+            long duration = getDuration(phase);
+            if (duration >= 0) {
+                sb.append(", ").append(phase).append('=').append(duration).append("ms");
+            }
+        }
+        sb.append(", total=").append(getTotalDuration()).append("ms");
+        if (mPath != null) {
+            sb.append(", path=").append(mPath);
+            long saved = getTimeSavedMillis();
+            if (saved >= 0) {
+                sb.append(", saved=").append(saved).append("ms");
+            }
+        }
+        if (mFailure != null) {
+            sb.append(", ").append(mFailure).append(" at ").append(mFailedPhase);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,318 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 连接耗时统计
+ * <p>
+ * 记录每次连接进入各阶段的时间，按阶段把耗时记到{@link LatencyHistogram}里，
+ * 可以查询全部、某个SSID或某个BSSID的百分位数，例如获取IP阶段的p95能找出慢的DHCP服务器。
+ * {@link Phase#DONE}的直方图是成功连接的总耗时，另外按{@link ConnectPath}统计成功连接的总耗时，
+ * 用来确认快速路径省下的时间。
+ * 每次连接结束后会交给{@link Sink}，由应用上报汇总。
+ * <pre>
+ * ConnectionMetrics metrics = wifiConnManager.getConnectionMetrics();
+ * long p95 = metrics.getSsidHistogram("Office", Phase.OBTAINING_IP).getPercentile(95);
+ * </pre>
+ */
+public class ConnectionMetrics {
+
+    /**
+     * 最多统计的SSID、BSSID数量，超过后只记到全部的统计里
+     */
+    public static final int MAX_KEYS = 128;
+
+    private static final int SLOTS = Phase.values().length;
+
+    /**
+     * 连接记录的输出
+     */
+    public interface Sink {
+
+        /**
+         * 一次连接结束
+         *
+         * @param attempt
+         */
+        void onAttempt(@NonNull ConnectionAttempt attempt);
+    }
+
+    private final Clock mClock;
+
+    private final LatencyHistogram[] mAll = newHistograms();
+    private final HashMap<SsidKey, LatencyHistogram[]> mBySsid = new HashMap<>();
+    private final LongIntMap mBssidIndex = new LongIntMap(MAX_KEYS);
+    private final List<LatencyHistogram[]> mByBssid = new ArrayList<>();
+    private final LatencyHistogram[] mByPath = new LatencyHistogram[ConnectPath.values().length];
+
+    private Sink mSink;
+    private Executor mSinkExecutor;
+
+    private SsidKey mSsid;
+    private long[] mTimestamps;
+    private ConnectPath mPath;
+    private ConnectionAttempt mLastAttempt;
+    private int mAttemptCount;
+    private int mFailureCount;
+
+    public ConnectionMetrics() {
+        this(Clock.SYSTEM);
+    }
+
+    /**
+     * 连接耗时统计
+     *
+     * @param clock 时钟
+     */
+    public ConnectionMetrics(@NonNull Clock clock) {
+        mClock = clock;
+        for (int i = 0; i < mByPath.length; i++) {
+            mByPath[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 设置连接记录的输出，在后台处理线程回调
+     *
+     * @param sink null表示不输出
+     */
+    public void setSink(@Nullable Sink sink) {
+        setSink(sink, WifiExecutors.direct());
+    }
+
+    /**
+     * 设置连接记录的输出
+     *
+     * @param sink null表示不输出
+     * @param executor 回调所在的线程
+     */
+    public synchronized void setSink(@Nullable Sink sink, @NonNull Executor executor) {
+        mSink = sink;
+        mSinkExecutor = executor;
+    }
+
+    /**
+     * 开始一次连接
+     *
+     * @param ssid
+     */
+    synchronized void onStart(@NonNull SsidKey ssid) {
+        mSsid = ssid;
+        mPath = null;
+        mTimestamps = new long[SLOTS];
+        Arrays.fill(mTimestamps, -1);
+    }
+
+    /**
+     * 进入新的阶段
+     *
+     * @param phase
+     */
+    synchronized void onPhase(@NonNull Phase phase) {
+        if (mTimestamps != null) {
+            mTimestamps[phase.ordinal()] = mClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * 确定了连接走的路径
+     *
+     * @param path
+     */
+    synchronized void onPath(@NonNull ConnectPath path) {
+        mPath = path;
+    }
+
+    /**
+     * 连接结束，记录各阶段耗时并输出
+     *
+     * @param bssid 连上的接入点，失败时为null
+     * @param failedPhase 失败时所在的阶段，成功时为null
+     * @param failure 失败原因，成功时为null
+     */
+    void onFinish(@Nullable String bssid, @Nullable Phase failedPhase,
+        @Nullable Failure failure) {
+
+        final ConnectionAttempt attempt;
+        final Sink sink;
+        Executor executor;
+        synchronized (this) {
+            if (mTimestamps == null) {
+                return;
+            }
+            mTimestamps[(failure == null ? Phase.DONE : Phase.FAILED).ordinal()] =
+                mClock.elapsedRealtime();
+            attempt = new ConnectionAttempt(mSsid, bssid, mTimestamps, failedPhase, failure, mPath,
+                mByPath[ConnectPath.NEW_CONFIG.ordinal()].getPercentile(50));
+            mTimestamps = null;
+            mLastAttempt = attempt;
+            mAttemptCount++;
+            if (failure != null) {
+                mFailureCount++;
+            }
+
+            if (failure != Failure.CANCELLED) {
+                record(attempt, mAll);
+                record(attempt, ssidHistograms(attempt.getSsid()));
+                record(attempt, bssidHistograms(bssid));
+                if (failure == null && mPath != null) {
+                    mByPath[mPath.ordinal()].record(attempt.getTotalDuration());
+                }
+            }
+
+            sink = mSink;
+            executor = mSinkExecutor;
+        }
+
+        if (sink != null) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sink.onAttempt(attempt);
+                }
+            });
+        }
+    }
+
+    /**
+     * 所有连接某个阶段的耗时
+     *
+     * @param phase {@link Phase#DONE}表示成功连接的总耗时
+     * @return 副本
+     */
+    @NonNull
+    public synchronized LatencyHistogram getHistogram(@NonNull Phase phase) {
+        return new LatencyHistogram(mAll[phase.ordinal()]);
+    }
+
+    /**
+     * 某个SSID某个阶段的耗时
+     *
+     * @param SSID
+     * @param phase {@link Phase#DONE}表示成功连接的总耗时
+     * @return 副本，没有记录时是空的
+     */
+    @NonNull
+    public synchronized LatencyHistogram getSsidHistogram(String SSID, @NonNull Phase phase) {
+        LatencyHistogram[] histograms = mBySsid.get(SsidKey.of(SSID));
+        return histograms == null ? new LatencyHistogram()
+            : new LatencyHistogram(histograms[phase.ordinal()]);
+    }
+
+    /**
+     * 某个BSSID某个阶段的耗时，只统计连上的
+     *
+     * @param BSSID
+     * @param phase {@link Phase#DONE}表示成功连接的总耗时
+     * @return 副本，没有记录时是空的
+     */
+    @NonNull
+    public synchronized LatencyHistogram getBssidHistogram(String BSSID, @NonNull Phase phase) {
+        int index = mBssidIndex.get(MacAddresses.toLong(BSSID), -1);
+        return index < 0 ? new LatencyHistogram()
+            : new LatencyHistogram(mByBssid.get(index)[phase.ordinal()]);
+    }
+
+    /**
+     * 走某条路径成功连接的总耗时
+     *
+     * @param path
+     * @return 副本
+     */
+    @NonNull
+    public synchronized LatencyHistogram getPathHistogram(@NonNull ConnectPath path) {
+        return new LatencyHistogram(mByPath[path.ordinal()]);
+    }
+
+    /**
+     * 最近一次结束的连接
+     *
+     * @return 没有时返回null
+     */
+    @Nullable
+    public synchronized ConnectionAttempt getLastAttempt() {
+        return mLastAttempt;
+    }
+
+    public synchronized int getAttemptCount() {
+        return mAttemptCount;
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailureCount;
+    }
+
+    /**
+     * 清空统计，不影响进行中的连接
+     */
+    public synchronized void clear() {
+        for (LatencyHistogram histogram : mAll) {
+            histogram.clear();
+        }
+        mBySsid.clear();
+        mBssidIndex.clear();
+        mByBssid.clear();
+        for (LatencyHistogram histogram : mByPath) {
+            histogram.clear();
+        }
+        mLastAttempt = null;
+        mAttemptCount = 0;
+        mFailureCount = 0;
+    }
+
+    private static void record(ConnectionAttempt attempt, LatencyHistogram[] histograms) {
+        if (histograms == null) {
+            return;
+        }
+        for (Phase phase : Phase.values()) {
+            long duration = phase == Phase.DONE ? (attempt.isSuccessful()
+                ? attempt.getTotalDuration() : -1) : attempt.getDuration(phase);
+            if (duration >= 0) {
+                histograms[phase.ordinal()].record(duration);
+            }
+        }
+    }
+
+    private LatencyHistogram[] ssidHistograms(SsidKey ssid) {
+        LatencyHistogram[] histograms = mBySsid.get(ssid);
+        if (histograms == null && mBySsid.size() < MAX_KEYS) {
+            histograms = newHistograms();
+            mBySsid.put(ssid, histograms);
+        }
+        return histograms;
+    }
+
+    private LatencyHistogram[] bssidHistograms(String bssid) {
+        long key = MacAddresses.toLong(bssid);
+        if (key == MacAddresses.INVALID) {
+            return null;
+        }
+        int index = mBssidIndex.get(key, -1);
+        if (index >= 0) {
+            return mByBssid.get(index);
+        }
+        if (mByBssid.size() >= MAX_KEYS) {
+            return null;
+        }
+        LatencyHistogram[] histograms = newHistograms();
+        mBssidIndex.put(key, mByBssid.size());
+        mByBssid.add(histograms);
+        return histograms;
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
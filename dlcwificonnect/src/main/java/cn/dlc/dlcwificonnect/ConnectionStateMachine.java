@@ -0,0 +1,385 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * 单次连接的状态机
+ * <p>
+ * 由wifi开关、扫描结果、网络状态和密码错误等广播驱动，阶段只会前进不会后退：
+ * 开启wifi -> 等待扫描到目标 -> 关联 -> 身份验证 -> 获取IP -> 网络验证 -> 绑定网络 -> 完成。
+ * 系统可能跳过某些阶段（例如没有验证过程），跳过的阶段不回调。
+ * 每个阶段都有自己的超时时间，超时或出错后进入{@link Phase#FAILED}并给出失败原因。
+ * <p>
+ * 不是线程安全的，所有方法和超时都在构造时传入的Handler所在的线程里执行。
+ */
+public class ConnectionStateMachine {
+
+    private static final String TAG = "ConnectionStateMachine";
+
+    /**
+     * 连接阶段
+     */
+    public enum Phase {
+        /**
+         * 没有进行中的连接
+         */
+        IDLE,
+        /**
+         * 正在开启wifi
+         */
+        ENABLING,
+        /**
+         * 等待扫描到目标网络
+         */
+        SCANNING,
+        /**
+         * 正在和接入点关联
+         */
+        ASSOCIATING,
+        /**
+         * 正在验证身份（四次握手）
+         */
+        AUTHENTICATING,
+        /**
+         * 正在获取IP地址
+         */
+        OBTAINING_IP,
+        /**
+         * 系统正在验证网络（门户认证检查、弱信号检查）
+         */
+        VALIDATING,
+        /**
+         * 已连接，等待把应用绑定到该网络
+         */
+        BINDING,
+        /**
+         * 连接成功
+         */
+        DONE,
+        /**
+         * 连接失败
+         */
+        FAILED;
+
+        /**
+         * 是否为进行中的阶段
+         *
+         * @return
+         */
+        public boolean isActive() {
+            return this != IDLE && this != DONE && this != FAILED;
+        }
+    }
+
+    /**
+     * 失败原因
+     */
+    public enum Failure {
+        /**
+         * 阶段超时，具体阶段见{@link Callback#onFailed(Phase, Failure)}
+         */
+        TIMEOUT,
+        /**
+         * 扫描阶段超时，附近没有目标网络
+         */
+        NETWORK_NOT_FOUND,
+        /**
+         * 身份验证失败，一般是密码错误
+         */
+        AUTH_FAILED,
+        /**
+         * 添加或启用网络配置失败
+         */
+        CONFIG_FAILED,
+        /**
+         * 系统报告连接失败，例如获取IP失败
+         */
+        CONNECTION_FAILED,
+        /**
+         * 连接过程中wifi被关闭
+         */
+        WIFI_DISABLED,
+        /**
+         * 被取消，或被新的连接替代
+         */
+        CANCELLED
+    }
+
+    /**
+     * 状态变化回调，在状态机所在的线程里执行
+     */
+    public interface Callback {
+
+        /**
+         * 进入新的进行中阶段
+         *
+         * @param phase
+         */
+        void onPhaseChanged(@NonNull Phase phase);
+
+        /**
+         * 连接成功
+         */
+        void onDone();
+
+        /**
+         * 连接失败
+         *
+         * @param phase 失败时所在的阶段
+         * @param failure 失败原因
+         */
+        void onFailed(@NonNull Phase phase, @NonNull Failure failure);
+    }
+
+    private final Handler mHandler;
+    private final Callback mCallback;
+    private volatile ConnectTimeouts mTimeouts = ConnectTimeouts.DEFAULT;
+
+    private volatile Phase mPhase = Phase.IDLE;
+    private boolean mBindingRequired;
+
+    private Phase mFailedPhase;
+    private Failure mFailure;
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Phase phase = mPhase;
+            if (!phase.isActive()) {
+                return;
+            }
+            Log.e(TAG, "连接超时：" + phase);
+            fail(phase == Phase.SCANNING ? Failure.NETWORK_NOT_FOUND : Failure.TIMEOUT);
+        }
+    };
+
+    /**
+     * 连接状态机
+     *
+     * @param handler 状态机所在线程的Handler，也用于超时计时
+     * @param callback
+     */
+    public ConnectionStateMachine(@NonNull Handler handler, @NonNull Callback callback) {
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    /**
+     * 设置各阶段的超时时间，对下一个阶段开始生效
+     *
+     * @param timeouts
+     */
+    public void setTimeouts(@NonNull ConnectTimeouts timeouts) {
+        mTimeouts = timeouts;
+    }
+
+    @NonNull
+    public ConnectTimeouts getTimeouts() {
+        return mTimeouts;
+    }
+
+    /**
+     * 当前阶段，可以在任意线程读取
+     *
+     * @return
+     */
+    @NonNull
+    public Phase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * 是否有进行中的连接，可以在任意线程读取
+     *
+     * @return
+     */
+    public boolean isActive() {
+        return mPhase.isActive();
+    }
+
+    /**
+     * 最近一次失败时所在的阶段
+     *
+     * @return 没有失败过时返回null
+     */
+    @Nullable
+    public Phase getFailedPhase() {
+        return mFailedPhase;
+    }
+
+    /**
+     * 最近一次失败的原因
+     *
+     * @return 没有失败过时返回null
+     */
+    @Nullable
+    public Failure getFailure() {
+        return mFailure;
+    }
+
+    /**
+     * 开始一次连接，上一次连接还没结束时先取消
+     *
+     * @param wifiEnabled wifi是否已开启，没开启时从{@link Phase#ENABLING}开始
+     * @param bindingRequired 连接后是否要等待绑定网络
+     */
+    public void start(boolean wifiEnabled, boolean bindingRequired) {
+        cancel();
+        mBindingRequired = bindingRequired;
+        mFailedPhase = null;
+        mFailure = null;
+        moveTo(wifiEnabled ? Phase.SCANNING : Phase.ENABLING);
+    }
+
+    /**
+     * wifi已开启
+     */
+    public void onWifiEnabled() {
+        if (mPhase == Phase.ENABLING) {
+            moveTo(Phase.SCANNING);
+        }
+    }
+
+    /**
+     * wifi被关闭
+     */
+    public void onWifiDisabled() {
+        if (mPhase.isActive()) {
+            fail(Failure.WIFI_DISABLED);
+        }
+    }
+
+    /**
+     * 扫描结果里有目标网络
+     */
+    public void onTargetFound() {
+        if (mPhase == Phase.SCANNING) {
+            moveTo(Phase.ASSOCIATING);
+        }
+    }
+
+    /**
+     * 网络状态变化
+     *
+     * @param detailedState
+     * @param isTarget 是否为目标网络，只对{@link NetworkInfo.DetailedState#CONNECTED}有意义，
+     * 连接前断开的旧网络也会发这个状态
+     */
+    public void onNetworkStateChange(NetworkInfo.DetailedState detailedState, boolean isTarget) {
+        if (!mPhase.isActive() || mPhase == Phase.ENABLING || detailedState == null) {
+            return;
+        }
+        switch (detailedState) {
+            case CONNECTING:
+                // 隐藏网络扫描不到，系统开始关联也说明找到了
+                advance(Phase.ASSOCIATING);
+                break;
+            case AUTHENTICATING:
+                advance(Phase.AUTHENTICATING);
+                break;
+            case OBTAINING_IPADDR:
+                advance(Phase.OBTAINING_IP);
+                break;
+            case VERIFYING_POOR_LINK:
+            case CAPTIVE_PORTAL_CHECK:
+                advance(Phase.VALIDATING);
+                break;
+            case CONNECTED:
+                if (!isTarget) {
+                    return;
+                }
+                if (mBindingRequired) {
+                    advance(Phase.BINDING);
+                } else {
+                    moveTo(Phase.DONE);
+                }
+                break;
+            case FAILED:
+                fail(Failure.CONNECTION_FAILED);
+                break;
+            default:
+                // 断开、空闲等中间状态交给超时处理
+                break;
+        }
+    }
+
+    /**
+     * 身份验证失败
+     */
+    public void onAuthenticationError() {
+        if (mPhase.isActive() && mPhase != Phase.ENABLING) {
+            fail(Failure.AUTH_FAILED);
+        }
+    }
+
+    /**
+     * 应用已绑定到目标网络，说明已经连上
+     */
+    public void onNetworkBound() {
+        if (mPhase.isActive()) {
+            moveTo(Phase.DONE);
+        }
+    }
+
+    /**
+     * 不用等广播就知道已经连上，例如已经连着目标网络
+     */
+    public void onAlreadyConnected() {
+        if (mPhase.isActive()) {
+            moveTo(Phase.DONE);
+        }
+    }
+
+    /**
+     * 以指定原因结束连接
+     *
+     * @param failure
+     */
+    public void fail(@NonNull Failure failure) {
+        Phase phase = mPhase;
+        if (!phase.isActive()) {
+            return;
+        }
+        mFailedPhase = phase;
+        mFailure = failure;
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        mPhase = Phase.FAILED;
+        mCallback.onFailed(phase, failure);
+    }
+
+    /**
+     * 取消进行中的连接
+     */
+    public void cancel() {
+        fail(Failure.CANCELLED);
+    }
+
+    /**
+     * 只前进不后退
+     *
+     * @param phase
+     */
+    private void advance(Phase phase) {
+        if (phase.ordinal() > mPhase.ordinal()) {
+            moveTo(phase);
+        }
+    }
+
+    private void moveTo(Phase phase) {
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        mPhase = phase;
+        if (phase == Phase.DONE) {
+            mCallback.onDone();
+            return;
+        }
+        long timeout = mTimeouts.get(phase);
+        if (timeout > 0) {
+            mHandler.postDelayed(mTimeoutRunnable, timeout);
+        }
+        mCallback.onPhaseChanged(phase);
+    }
+}
@@ -0,0 +1,342 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR1;
+
+/**
+ * 依次尝试多个候选网络，直到连上一个或时间预算用完
+ * <p>
+ * 每次尝试前按平滑后的信号和历史连接情况重新排序，只尝试扫描结果足够新的候选网络；
+ * 失败后按指数退避加随机抖动等待再试下一个，都试过一遍后重新扫描再来一轮。
+ * 密码错误或无法添加配置的候选网络不再重试。
+ * 所有状态只在后台处理线程里访问。
+ */
+final class FallbackConnector implements WifiConnManager.ConnectHandle {
+
+    private static final String TAG = "FallbackConnector";
+
+    private final WifiConnManager mConnManager;
+    private final WifiHelper mWifiHelper;
+    private final List<NetworkSpec> mCandidates;
+    private final ConnectPolicy mPolicy;
+    private final WifiConnManager.EnsureConnectedListener mListener;
+    private final Executor mExecutor;
+    private final Handler mHandler = WifiExecutors.worker();
+    private final Clock mClock = Clock.SYSTEM;
+    private final Random mRandom = new Random();
+
+    private final RssiSmoother mRssiSmoother;
+    private final boolean mOwnRssiSmoother;
+    private final HashSet<NetworkSpec> mTried = new HashSet<>();
+    private final HashSet<NetworkSpec> mDropped = new HashSet<>();
+
+    private long mDeadline;
+    private int mFailures;
+    private boolean mEverVisible;
+    private WifiConnManager.ConnectHandle mAttempt;
+    private NetworkSpec mAttemptCandidate;
+    private ScanResultStream.Subscription mScanSubscription;
+    private volatile boolean mDone;
+
+    private final Runnable mNextRunnable = new Runnable() {
+        @Override
+        public void run() {
+            next();
+        }
+    };
+
+    private final Runnable mDeadlineRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Log.e(TAG, "时间预算用完");
+            finish(null, mEverVisible ? Failure.TIMEOUT : Failure.NETWORK_NOT_FOUND);
+        }
+    };
+
+    FallbackConnector(@NonNull WifiConnManager connManager, @NonNull List<NetworkSpec> candidates,
+        @NonNull ConnectPolicy policy, WifiConnManager.EnsureConnectedListener listener,
+        @NonNull Executor executor) {
+        mConnManager = connManager;
+        mWifiHelper = connManager.getHelper();
+        mCandidates = new ArrayList<>(candidates);
+        mPolicy = policy;
+        mListener = listener;
+        mExecutor = executor;
+        mOwnRssiSmoother = policy.getRssiSmoother() == null;
+        mRssiSmoother = mOwnRssiSmoother ? new RssiSmoother() : policy.getRssiSmoother();
+    }
+
+    /**
+     * 开始，在后台处理线程调用
+     */
+    void start() {
+        if (mDone) {
+            return;
+        }
+        if (mCandidates.isEmpty()) {
+            finish(null, Failure.NETWORK_NOT_FOUND);
+            return;
+        }
+        for (NetworkSpec candidate : mCandidates) {
+            if (mWifiHelper.isConnectedToSSID(candidate.getSSID())) {
+                finish(candidate, null);
+                return;
+            }
+        }
+        if (mOwnRssiSmoother) {
+            mRssiSmoother.update(mWifiHelper.getScanResults(false));
+        }
+        mDeadline = mClock.elapsedRealtime() + mPolicy.getDeadlineMillis();
+        mHandler.postDelayed(mDeadlineRunnable, mPolicy.getDeadlineMillis());
+        next();
+    }
+
+    @Override
+    public void cancel() {
+        if (mDone) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                finish(null, Failure.CANCELLED);
+            }
+        });
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * 尝试排名最高的候选网络，没有可用的就等扫描结果
+     */
+    private void next() {
+        if (mDone) {
+            return;
+        }
+
+        List<NetworkSpec> ranked = rank(mWifiHelper.getScanResults(false));
+        if (ranked.isEmpty() && !mTried.isEmpty()) {
+            // 这一轮都试过了，重新来一轮
+            mTried.clear();
+            ranked = rank(mWifiHelper.getScanResults(false));
+        }
+
+        if (ranked.isEmpty()) {
+            waitForScan();
+            return;
+        }
+
+        final NetworkSpec candidate = ranked.get(0);
+        mTried.add(candidate);
+        mAttemptCandidate = candidate;
+        Log.i(TAG, "尝试连接：" + candidate.getSSID());
+        mAttempt = mConnManager.connect(candidate.getProfile(), candidate.getSSID(),
+            candidate.getPassword(), new WifiConnManager.ConnectProgressListener() {
+                @Override
+                public void onPhaseChanged(Phase phase) {
+                }
+
+                @Override
+                public void onConnectFailure(Phase phase, Failure failure) {
+                    onAttemptFailed(candidate, phase, failure);
+                }
+
+                @Override
+                public void onConnected() {
+                    if (candidate == mAttemptCandidate) {
+                        finish(candidate, null);
+                    }
+                }
+
+                @Override
+                public void onConnectFailure(boolean passwordError, String reason) {
+                    // 只会回调带阶段的版本
+                }
+            }, WifiExecutors.direct());
+    }
+
+    private void onAttemptFailed(NetworkSpec candidate, Phase phase, Failure failure) {
+        if (mDone || candidate != mAttemptCandidate) {
+            return;
+        }
+        mAttempt = null;
+        mAttemptCandidate = null;
+        Log.e(TAG, candidate.getSSID() + "连接失败：" + failure + " at " + phase);
+
+        if (failure == Failure.CANCELLED || failure == Failure.WIFI_DISABLED) {
+            // 被其他连接替代或wifi被关掉，不再自动连接
+            finish(null, failure);
+            return;
+        }
+
+        if (failure == Failure.AUTH_FAILED || failure == Failure.CONFIG_FAILED) {
+            mDropped.add(candidate);
+            if (mDropped.size() >= mCandidates.size()) {
+                finish(null, failure);
+                return;
+            }
+        }
+        retryLater();
+    }
+
+    private void retryLater() {
+        mFailures++;
+        long delay = mPolicy.backoff(mFailures, mRandom.nextDouble());
+        if (mClock.elapsedRealtime() + delay >= mDeadline) {
+            // 等不到下一次了，直接结束
+            finish(null, mEverVisible ? Failure.TIMEOUT : Failure.NETWORK_NOT_FOUND);
+            return;
+        }
+        mHandler.postDelayed(mNextRunnable, delay);
+    }
+
+    /**
+     * 没有扫描结果足够新的候选网络，扫描一次，结果回来后再排序
+     */
+    private void waitForScan() {
+        if (mScanSubscription != null) {
+            return;
+        }
+        mScanSubscription = mWifiHelper.getScanResultStream()
+            .subscribeRaw(new ScanResultStream.Subscriber() {
+                @Override
+                public void onScanResults(List<ScanResult> scanResults) {
+                    stopScanSubscription();
+                    if (mDone) {
+                        return;
+                    }
+                    if (mOwnRssiSmoother) {
+                        mRssiSmoother.update(scanResults);
+                    }
+                    if (rank(scanResults).isEmpty()) {
+                        // 扫描被限流时拿到的是旧结果，等一会儿再扫
+                        retryLater();
+                    } else {
+                        next();
+                    }
+                }
+            }, ScanResultStream.Delivery.LATEST_ONLY, WifiExecutors.direct());
+        mWifiHelper.startScan();
+    }
+
+    /**
+     * 按信号和历史排序可以尝试的候选网络，历史分数映射到±historyWeight dB
+     *
+     * @param scanResults
+     * @return 扫描结果足够新、这一轮还没试过、没被放弃的候选网络
+     */
+    private List<NetworkSpec> rank(List<ScanResult> scanResults) {
+
+        // 每个SSID取平滑后信号最强的接入点
+        HashMap<SsidKey, Integer> levels = new HashMap<>();
+        long maxAge = mPolicy.getMaxScanAgeMillis();
+        long globalAge = mWifiHelper.getScanResultsAge();
+        long nowMicros = mClock.elapsedRealtime() * 1000;
+        int size = scanResults == null ? 0 : scanResults.size();
+        for (int i = 0; i < size; i++) {
+            ScanResult result = scanResults.get(i);
+            // timestamp是API 17才有的
+            long age = SDK_INT >= JELLY_BEAN_MR1 && result.timestamp > 0
+                ? (nowMicros - result.timestamp) / 1000 : globalAge;
+            if (age < 0 || age > maxAge) {
+                continue;
+            }
+            int level = mRssiSmoother.getSmoothedLevel(result);
+            if (level == RssiSmoother.UNKNOWN_LEVEL) {
+                level = result.level;
+            }
+            SsidKey key = SsidKey.of(result.SSID);
+            Integer best = levels.get(key);
+            if (best == null || best < level) {
+                levels.put(key, level);
+            }
+        }
+
+        PriorityManager priorityManager = mWifiHelper.getPriorityManager();
+        final HashMap<NetworkSpec, Double> scores = new HashMap<>();
+        List<NetworkSpec> ranked = new ArrayList<>();
+        for (NetworkSpec candidate : mCandidates) {
+            Integer level = levels.get(SsidKey.of(candidate.getSSID()));
+            if (level == null) {
+                continue;
+            }
+            mEverVisible = true;
+            if (mTried.contains(candidate) || mDropped.contains(candidate)) {
+                continue;
+            }
+            double history = priorityManager.getScore(candidate.getSSID());
+            scores.put(candidate,
+                level + mPolicy.getHistoryWeight() * history / (1 + Math.abs(history)));
+            ranked.add(candidate);
+        }
+
+        Collections.sort(ranked, new Comparator<NetworkSpec>() {
+            @Override
+            public int compare(NetworkSpec one, NetworkSpec two) {
+                return Double.compare(scores.get(two), scores.get(one));
+            }
+        });
+        return ranked;
+    }
+
+    private void stopScanSubscription() {
+        if (mScanSubscription != null) {
+            mScanSubscription.cancel();
+            mScanSubscription = null;
+        }
+    }
+
+    /**
+     * 结束并回调一次
+     *
+     * @param candidate 连上的候选网络，失败时为null
+     * @param failure 失败原因，成功时为null
+     */
+    private void finish(final NetworkSpec candidate, final Failure failure) {
+        if (mDone) {
+            return;
+        }
+        mDone = true;
+        mHandler.removeCallbacks(mNextRunnable);
+        mHandler.removeCallbacks(mDeadlineRunnable);
+        stopScanSubscription();
+        if (mAttempt != null && candidate == null) {
+            mAttempt.cancel();
+        }
+        mAttempt = null;
+        mAttemptCandidate = null;
+
+        final WifiConnManager.EnsureConnectedListener listener = mListener;
+        if (listener == null) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (candidate != null) {
+                    listener.onConnected(candidate);
+                } else {
+                    listener.onConnectFailure(failure);
+                }
+            }
+        });
+    }
+}
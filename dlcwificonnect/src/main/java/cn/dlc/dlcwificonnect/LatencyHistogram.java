@@ -0,0 +1,163 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * 耗时直方图，按对数分桶
+ * <p>
+ * 每个2的幂区间分成4个桶，相对误差不超过约12%，0到2^31毫秒只需要120个int，
+ * 记录一次只有几次位运算，不分配内存。百分位数取所在桶的中间值。
+ * <p>
+ * 不是线程安全的。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKET_COUNT =
+        SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final int[] mCounts = new int[BUCKET_COUNT];
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax = Long.MIN_VALUE;
+
+    public LatencyHistogram() {
+    }
+
+    /**
+     * 复制一份
+     *
+     * @param other
+     */
+    public LatencyHistogram(@NonNull LatencyHistogram other) {
+        add(other);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param millis 小于0的按0算
+     */
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        mCounts[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * 合并另一个直方图
+     *
+     * @param other
+     */
+    public void add(@NonNull LatencyHistogram other) {
+        if (other.mCount == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mCount += other.mCount;
+        mSum += other.mSum;
+        mMin = Math.min(mMin, other.mMin);
+        mMax = Math.max(mMax, other.mMax);
+    }
+
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = Long.MIN_VALUE;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * 最小值
+     *
+     * @return 没有记录时返回-1
+     */
+    public long getMin() {
+        return mCount == 0 ? -1 : mMin;
+    }
+
+    /**
+     * 最大值
+     *
+     * @return 没有记录时返回-1
+     */
+    public long getMax() {
+        return mCount == 0 ? -1 : mMax;
+    }
+
+    /**
+     * 平均值
+     *
+     * @return 没有记录时返回-1
+     */
+    public double getMean() {
+        return mCount == 0 ? -1 : mSum / (double) mCount;
+    }
+
+    /**
+     * 百分位数
+     *
+     * @param percentile 0到100，例如50、95
+     * @return 毫秒，没有记录时返回-1
+     */
+    public long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * mCount);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long upper = i + 1 < BUCKET_COUNT ? lowerBound(i + 1) - 1 : lower;
+                long middle = lower + (upper - lower) / 2;
+                return Math.min(mMax, Math.max(mMin, middle));
+            }
+        }
+        return mMax;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + mCount + ", p50=" + getPercentile(50) + ", p95="
+            + getPercentile(95) + ", max=" + getMax() + "}";
+    }
+}
@@ -0,0 +1,134 @@
+package cn.dlc.dlcwificonnect;
+
+import java.util.Arrays;
+
+/**
+ * long到int的哈希表，开放寻址，没有装箱，用于按BSSID索引的原始类型数组
+ * <p>
+ * 非线程安全
+ */
+final class LongIntMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mSize;
+    private int mMask;
+
+    LongIntMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+        Arrays.fill(mKeys, EMPTY);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * 获取
+     *
+     * @param key 不能为{@link Long#MIN_VALUE}
+     * @param defaultValue
+     * @return
+     */
+    int get(long key, int defaultValue) {
+        int slot = slot(key);
+        while (true) {
+            long k = mKeys[slot];
+            if (k == EMPTY) {
+                return defaultValue;
+            }
+            if (k == key) {
+                return mValues[slot];
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    void put(long key, int value) {
+        if ((mSize + 1) * 2 > mKeys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        while (true) {
+            long k = mKeys[slot];
+            if (k == EMPTY) {
+                mKeys[slot] = key;
+                mValues[slot] = value;
+                mSize++;
+                return;
+            }
+            if (k == key) {
+                mValues[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    /**
+     * 删除，后面的元素往前挪，不需要墓碑标记
+     *
+     * @param key
+     */
+    void remove(long key) {
+        int slot = slot(key);
+        while (true) {
+            long k = mKeys[slot];
+            if (k == EMPTY) {
+                return;
+            }
+            if (k == key) {
+                break;
+            }
+            slot = (slot + 1) & mMask;
+        }
+
+        mSize--;
+        int hole = slot;
+        int next = (hole + 1) & mMask;
+        while (mKeys[next] != EMPTY) {
+            int home = slot(mKeys[next]);
+            // home不在(hole, next]之间时可以挪到hole
+            if (((next - home) & mMask) >= ((next - hole) & mMask)) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        mKeys[hole] = EMPTY;
+    }
+
+    void clear() {
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mMask;
+    }
+
+    private void grow() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        mKeys = new long[keys.length * 2];
+        mValues = new int[keys.length * 2];
+        mMask = mKeys.length - 1;
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package cn.dlc.dlcwificonnect;
+
+/**
+ * mac地址工具
+ */
+final class MacAddresses {
+
+    /**
+     * 无效地址
+     */
+    static final long INVALID = -1;
+
+    private MacAddresses() {
+    }
+
+    /**
+     * 把"aa:bb:cc:dd:ee:ff"格式的mac地址转成48位整数，不分配内存
+     *
+     * @param mac
+     * @return 格式不对时返回{@link #INVALID}
+     */
+    static long toLong(String mac) {
+        if (mac == null || mac.length() != 17) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = mac.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') {
+                    return INVALID;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
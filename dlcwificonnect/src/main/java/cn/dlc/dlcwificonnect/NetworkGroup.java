@@ -0,0 +1,111 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 同一个SSID下的所有接入点
+ * <p>
+ * 最强接入点和最强5GHz接入点在每次更新时顺带算好，查询不需要排序
+ */
+public final class NetworkGroup {
+
+    private final String mSSID;
+    private final ArrayList<AccessPoint> mAccessPoints = new ArrayList<>();
+    private final List<AccessPoint> mReadOnly = Collections.unmodifiableList(mAccessPoints);
+
+    private AccessPoint mBest;
+    private AccessPoint mBest5Ghz;
+    private long mLastSeen;
+
+    NetworkGroup(String SSID) {
+        mSSID = SSID;
+    }
+
+    @NonNull
+    public String getSSID() {
+        return mSSID;
+    }
+
+    /**
+     * 所有接入点，不可修改，内容会随扫描原地更新
+     *
+     * @return
+     */
+    @NonNull
+    public List<AccessPoint> getAccessPoints() {
+        return mReadOnly;
+    }
+
+    public int size() {
+        return mAccessPoints.size();
+    }
+
+    /**
+     * 信号最强的接入点
+     *
+     * @return
+     */
+    @Nullable
+    public AccessPoint getBestAccessPoint() {
+        return mBest;
+    }
+
+    /**
+     * 信号最强的5GHz接入点
+     *
+     * @return 没有5GHz接入点时为null
+     */
+    @Nullable
+    public AccessPoint getBest5GhzAccessPoint() {
+        return mBest5Ghz;
+    }
+
+    /**
+     * 最后一次扫描到的时间
+     *
+     * @return
+     */
+    public long getLastSeen() {
+        return mLastSeen;
+    }
+
+    void add(AccessPoint accessPoint) {
+        mAccessPoints.add(accessPoint);
+    }
+
+    void remove(AccessPoint accessPoint) {
+        mAccessPoints.remove(accessPoint);
+    }
+
+    /**
+     * 重新计算最强接入点
+     */
+    void refresh() {
+        AccessPoint best = null;
+        AccessPoint best5Ghz = null;
+        long lastSeen = 0;
+        for (int i = 0, size = mAccessPoints.size(); i < size; i++) {
+            AccessPoint accessPoint = mAccessPoints.get(i);
+            if (best == null || accessPoint.getLevel() > best.getLevel()) {
+                best = accessPoint;
+            }
+            if (accessPoint.getBand() == WifiBand.GHZ_5 && (best5Ghz == null
+                || accessPoint.getLevel() > best5Ghz.getLevel())) {
+                best5Ghz = accessPoint;
+            }
+            lastSeen = Math.max(lastSeen, accessPoint.getLastSeen());
+        }
+        mBest = best;
+        mBest5Ghz = best5Ghz;
+        mLastSeen = lastSeen;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkGroup{" + mSSID + ", accessPoints=" + mAccessPoints.size() + "}";
+    }
+}
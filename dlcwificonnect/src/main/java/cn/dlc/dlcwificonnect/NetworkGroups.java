@@ -0,0 +1,178 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 按SSID聚合接入点，一个SSID对应一个{@link NetworkGroup}，保存它的所有BSSID
+ * <p>
+ * 需要未去重的扫描结果，可直接订阅扫描结果流：
+ * <pre>
+ * NetworkGroups groups = new NetworkGroups();
+ * wifiHelper.getScanResultStream()
+ *     .subscribeRaw(groups, ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+ * </pre>
+ * 更新在后台线程进行，读取方法都加了锁；遍历{@link NetworkGroup}的内容时需要
+ * {@code synchronized (groups)}
+ */
+public class NetworkGroups implements ScanResultStream.Subscriber {
+
+    /**
+     * 默认接入点过期时间，超过该时间没扫描到就移除
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 60 * 1000;
+
+    private final Clock mClock;
+    private final long mMaxAgeMillis;
+
+    private final HashMap<String, NetworkGroup> mGroups = new HashMap<>();
+    private final HashMap<String, AccessPoint> mAccessPoints = new HashMap<>();
+
+    public NetworkGroups() {
+        this(Clock.SYSTEM, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * 接入点聚合
+     *
+     * @param clock 时钟
+     * @param maxAgeMillis 接入点过期时间
+     */
+    public NetworkGroups(@NonNull Clock clock, long maxAgeMillis) {
+        mClock = clock;
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public void onScanResults(List<ScanResult> scanResults) {
+        update(scanResults);
+    }
+
+    /**
+     * 用新的扫描结果原地更新
+     *
+     * @param scanResults 未去重的扫描结果
+     */
+    public synchronized void update(@Nullable List<ScanResult> scanResults) {
+
+        long now = mClock.elapsedRealtime();
+
+        if (scanResults != null) {
+            for (int i = 0, size = scanResults.size(); i < size; i++) {
+                ScanResult scanResult = scanResults.get(i);
+                String ssid = scanResult.SSID;
+                String bssid = scanResult.BSSID;
+                if (ssid == null || ssid.isEmpty() || bssid == null) {
+                    continue;
+                }
+
+                AccessPoint accessPoint = mAccessPoints.get(bssid);
+                if (accessPoint != null && !ssid.equals(accessPoint.getSSID())) {
+                    // 同一个BSSID换了SSID
+                    accessPoint.getGroup().remove(accessPoint);
+                    accessPoint = null;
+                }
+
+                if (accessPoint == null) {
+                    NetworkGroup group = mGroups.get(ssid);
+                    if (group == null) {
+                        group = new NetworkGroup(ssid);
+                        mGroups.put(ssid, group);
+                    }
+                    accessPoint = new AccessPoint(bssid, group);
+                    group.add(accessPoint);
+                    mAccessPoints.put(bssid, accessPoint);
+                }
+
+                // 系统缓存的结果可能是之前扫描的，用自带的时间戳更准确
+                accessPoint.update(scanResult, now, mClock == Clock.SYSTEM);
+            }
+        }
+
+        // 移除过期的接入点
+        Iterator<AccessPoint> iterator = mAccessPoints.values().iterator();
+        while (iterator.hasNext()) {
+            AccessPoint accessPoint = iterator.next();
+            if (now - accessPoint.getLastSeen() > mMaxAgeMillis) {
+                accessPoint.getGroup().remove(accessPoint);
+                iterator.remove();
+            }
+        }
+
+        Iterator<NetworkGroup> groupIterator = mGroups.values().iterator();
+        while (groupIterator.hasNext()) {
+            NetworkGroup group = groupIterator.next();
+            if (group.size() == 0) {
+                groupIterator.remove();
+            } else {
+                group.refresh();
+            }
+        }
+    }
+
+    /**
+     * 获取指定SSID的网络
+     *
+     * @param SSID
+     * @return
+     */
+    @Nullable
+    public synchronized NetworkGroup getGroup(String SSID) {
+        return mGroups.get(WifiHelper.trimQuotes(SSID));
+    }
+
+    /**
+     * 获取指定BSSID的接入点
+     *
+     * @param BSSID
+     * @return
+     */
+    @Nullable
+    public synchronized AccessPoint getAccessPoint(String BSSID) {
+        return mAccessPoints.get(BSSID);
+    }
+
+    /**
+     * 指定SSID信号最强的接入点
+     *
+     * @param SSID
+     * @return
+     */
+    @Nullable
+    public synchronized AccessPoint getBestAccessPoint(String SSID) {
+        NetworkGroup group = getGroup(SSID);
+        return group == null ? null : group.getBestAccessPoint();
+    }
+
+    /**
+     * 指定SSID信号最强的5GHz接入点
+     *
+     * @param SSID
+     * @return
+     */
+    @Nullable
+    public synchronized AccessPoint getBest5GhzAccessPoint(String SSID) {
+        NetworkGroup group = getGroup(SSID);
+        return group == null ? null : group.getBest5GhzAccessPoint();
+    }
+
+    /**
+     * 所有网络的快照
+     *
+     * @return
+     */
+    @NonNull
+    public synchronized List<NetworkGroup> getGroups() {
+        return new ArrayList<>(mGroups.values());
+    }
+
+    public synchronized void clear() {
+        mGroups.clear();
+        mAccessPoints.clear();
+    }
+}
@@ -0,0 +1,208 @@
+package cn.dlc.dlcwificonnect;
+
+import android.annotation.TargetApi;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.UnknownHostException;
+import javax.net.SocketFactory;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.LOLLIPOP;
+import static android.os.Build.VERSION_CODES.LOLLIPOP_MR1;
+
+/**
+ * 只对部分连接生效的网络绑定
+ * <p>
+ * 通过这里创建的socket、连接和域名解析都走指定的wifi网络，应用的其他流量仍然走系统默认网络，
+ * 例如连着没有外网的设备热点配网时，上报数据还可以同时走移动网络。
+ * 持有期间系统会保留这个网络，用完后要{@link #close()}。
+ * <pre>
+ * wifiConnManager.requestNetworkScope("Device-AP").addCallback(new WifiFuture.Callback&lt;NetworkScope&gt;() {
+ *     public void onSuccess(NetworkScope scope) {
+ *         HttpURLConnection connection = (HttpURLConnection) scope.openConnection(url);
+ *         ...
+ *         scope.close();
+ *     }
+ *     ...
+ * });
+ * </pre>
+ *
+ * @see WifiConnManager#requestNetworkScope(String)
+ */
+@TargetApi(LOLLIPOP)
+public final class NetworkScope implements Closeable {
+
+    private final RequestCallback mRequestCallback;
+    private final Network mNetwork;
+
+    private volatile boolean mLost;
+    private volatile boolean mClosed;
+
+    NetworkScope(@NonNull RequestCallback requestCallback, @NonNull Network network) {
+        mRequestCallback = requestCallback;
+        mNetwork = network;
+    }
+
+    /**
+     * 绑定的网络
+     *
+     * @return
+     */
+    @NonNull
+    public Network getNetwork() {
+        return mNetwork;
+    }
+
+    /**
+     * 创建的socket都走这个网络，可以交给OkHttp等网络库
+     * <p>
+     * 只在获取时检查，之后用它创建的socket在网络断开后连接会失败
+     *
+     * @return
+     * @throws IllegalStateException 网络已断开或已关闭时
+     */
+    @NonNull
+    public SocketFactory getSocketFactory() {
+        if (mClosed || mLost) {
+            throw new IllegalStateException(mClosed ? "NetworkScope closed" : "Network lost");
+        }
+        return mNetwork.getSocketFactory();
+    }
+
+    /**
+     * 打开走这个网络的连接，域名也在这个网络上解析
+     *
+     * @param url
+     * @return
+     * @throws IOException 网络已断开或已关闭时
+     */
+    @NonNull
+    public URLConnection openConnection(@NonNull URL url) throws IOException {
+        checkUsable();
+        return mNetwork.openConnection(url);
+    }
+
+    /**
+     * 在这个网络上解析域名
+     *
+     * @param host
+     * @return
+     * @throws UnknownHostException 解析失败、网络已断开或已关闭时
+     */
+    @NonNull
+    public InetAddress[] resolve(@NonNull String host) throws UnknownHostException {
+        if (mClosed || mLost) {
+            throw new UnknownHostException(host + ": " + (mClosed ? "scope closed" : "network lost"));
+        }
+        return mNetwork.getAllByName(host);
+    }
+
+    /**
+     * 让已有的socket走这个网络，要在连接前调用
+     *
+     * @param socket
+     * @throws IOException 网络已断开或已关闭时
+     */
+    public void bindSocket(@NonNull Socket socket) throws IOException {
+        checkUsable();
+        mNetwork.bindSocket(socket);
+    }
+
+    /**
+     * 让UDP socket走这个网络，要在发送前调用，设备发现用的广播包也可以这样发
+     *
+     * @param socket
+     * @throws IOException 网络已断开或已关闭时
+     * @throws UnsupportedOperationException Android 5.1以下不支持绑定UDP socket
+     */
+    @RequiresApi(LOLLIPOP_MR1)
+    public void bindSocket(@NonNull DatagramSocket socket) throws IOException {
+        if (SDK_INT < LOLLIPOP_MR1) {
+            throw new UnsupportedOperationException("Requires Android 5.1");
+        }
+        checkUsable();
+        mNetwork.bindSocket(socket);
+    }
+
+    /**
+     * 网络是否已经断开，断开后要重新请求
+     *
+     * @return
+     */
+    public boolean isLost() {
+        return mLost;
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * 释放网络请求，已经创建的连接不受影响，但网络可能随后被系统断开
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        mRequestCallback.release();
+    }
+
+    void onLost() {
+        mLost = true;
+    }
+
+    private void checkUsable() throws IOException {
+        if (mClosed) {
+            throw new IOException("NetworkScope closed");
+        }
+        if (mLost) {
+            throw new IOException("Network lost");
+        }
+    }
+
+    /**
+     * 网络请求的回调，请求取消和{@link #close()}都通过它注销
+     * <p>
+     * 同一个回调注销两次在Android 8.0以上会抛IllegalArgumentException
+     */
+    abstract static class RequestCallback extends ConnectivityManager.NetworkCallback {
+
+        private final ConnectivityManager mConnectivityManager;
+        private boolean mReleased;
+
+        RequestCallback(@NonNull ConnectivityManager connectivityManager) {
+            mConnectivityManager = connectivityManager;
+        }
+
+        /**
+         * 注销网络请求，只有第一次调用生效
+         *
+         * @return
+         */
+        synchronized boolean release() {
+            if (mReleased) {
+                return false;
+            }
+            mReleased = true;
+            mConnectivityManager.unregisterNetworkCallback(this);
+            return true;
+        }
+
+        /**
+         * 是否已经注销，注销后收到的回调都要忽略
+         *
+         * @return
+         */
+        synchronized boolean isReleased() {
+            return mReleased;
+        }
+    }
+}
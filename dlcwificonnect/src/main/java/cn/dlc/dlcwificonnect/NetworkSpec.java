@@ -0,0 +1,60 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * 要保存的网络，用于{@link WifiHelper#provisionAll(java.util.List)}批量添加
+ */
+public final class NetworkSpec {
+
+    private final SecurityProfile mProfile;
+    private final String mSSID;
+    private final String mPassword;
+
+    /**
+     * 要保存的网络
+     *
+     * @param profile 安全配置
+     * @param SSID 不带引号的SSID
+     * @param password 密码，开放网络可为null
+     */
+    public NetworkSpec(@NonNull SecurityProfile profile, @NonNull String SSID,
+        @Nullable String password) {
+        mProfile = profile;
+        mSSID = SSID;
+        mPassword = password;
+    }
+
+    /**
+     * 要保存的网络
+     *
+     * @param wifiEncrypt 加密方式
+     * @param SSID 不带引号的SSID
+     * @param password 密码，开放网络可为null
+     */
+    public NetworkSpec(@NonNull WifiEncrypt wifiEncrypt, @NonNull String SSID,
+        @Nullable String password) {
+        this(SecurityProfile.of(wifiEncrypt), SSID, password);
+    }
+
+    @NonNull
+    public SecurityProfile getProfile() {
+        return mProfile;
+    }
+
+    @NonNull
+    public String getSSID() {
+        return mSSID;
+    }
+
+    @Nullable
+    public String getPassword() {
+        return mPassword;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkSpec{" + mSSID + ", " + mProfile.getEncrypt() + "}";
+    }
+}
@@ -0,0 +1,363 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已保存网络的优先级管理，避免优先级无限增长
+ * <p>
+ * 按使用情况（连接成功次数，随时间衰减）排序，优先级之间留有间隔，
+ * 某个网络排名变化时只把它改到新邻居的中间，一般只需要修改一个配置；
+ * 间隔用完或最高优先级超过上限时才整体重排，重排也只修改数值变化的配置。
+ * 使用情况保存在SharedPreferences里。
+ * <p>
+ * Android 8.0以后系统选网不再使用priority，这里的排序仍然用于本库自己的候选网络选择。
+ */
+public class PriorityManager {
+
+    /**
+     * 重排后相邻优先级的间隔
+     */
+    public static final int GAP = 16;
+
+    /**
+     * 使用次数的半衰期
+     */
+    public static final long HALF_LIFE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+
+    private static final String PREFS_NAME = "dlc_wifi_priority";
+
+    private final SharedPreferences mPreferences;
+    private final WifiManager mWifiManager;
+    private final ConfiguredNetworkCache mConfiguredNetworkCache;
+
+    private HashMap<SsidKey, Usage> mUsages;
+
+    private int mUpdateCount;
+    private int mCompactCount;
+
+    /**
+     * 使用情况
+     */
+    private static final class Usage {
+        int mSuccessCount;
+        int mFailureCount;
+        long mLastConnected;
+    }
+
+    public PriorityManager(@NonNull Context context, @NonNull WifiManager wifiManager,
+        @NonNull ConfiguredNetworkCache configuredNetworkCache) {
+        mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mWifiManager = wifiManager;
+        mConfiguredNetworkCache = configuredNetworkCache;
+    }
+
+    /**
+     * 连接成功，记录使用情况并调整排名
+     *
+     * @param SSID
+     */
+    public void onConnected(String SSID) {
+        onConnected(SsidKey.of(SSID));
+    }
+
+    /**
+     * 连接成功，记录使用情况并调整排名
+     *
+     * @param key
+     */
+    public synchronized void onConnected(@NonNull SsidKey key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        Usage usage = usage(key);
+        usage.mSuccessCount++;
+        usage.mLastConnected = System.currentTimeMillis();
+        saveUsage(key, usage);
+        rerank(key);
+    }
+
+    /**
+     * 连接失败，记录使用情况，不调整排名
+     *
+     * @param SSID
+     */
+    public void onConnectFailed(String SSID) {
+        onConnectFailed(SsidKey.of(SSID));
+    }
+
+    /**
+     * 连接失败，记录使用情况，不调整排名
+     *
+     * @param key
+     */
+    public synchronized void onConnectFailed(@NonNull SsidKey key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        Usage usage = usage(key);
+        usage.mFailureCount++;
+        saveUsage(key, usage);
+    }
+
+    /**
+     * 使用分数，连接成功次数按时间衰减，失败会扣分
+     *
+     * @param SSID
+     * @return 没有记录时为0
+     */
+    public synchronized double getScore(String SSID) {
+        return score(SsidKey.of(SSID), System.currentTimeMillis());
+    }
+
+    /**
+     * 连接成功的次数
+     *
+     * @param SSID
+     * @return
+     */
+    public synchronized int getSuccessCount(String SSID) {
+        Usage usage = usages().get(SsidKey.of(SSID));
+        return usage == null ? 0 : usage.mSuccessCount;
+    }
+
+    /**
+     * 最后一次连接成功的时间，基于{@link System#currentTimeMillis()}
+     *
+     * @param SSID
+     * @return 没有记录时为0
+     */
+    public synchronized long getLastConnected(String SSID) {
+        Usage usage = usages().get(SsidKey.of(SSID));
+        return usage == null ? 0 : usage.mLastConnected;
+    }
+
+    /**
+     * 新添加的网络应该使用的优先级，排在最前面；超过上限时先整体重排
+     *
+     * @return
+     */
+    public synchronized int getPriorityForNewNetwork() {
+        List<WifiConfiguration> configs = mConfiguredNetworkCache.getAll();
+        int max = mConfiguredNetworkCache.getMaxPriority();
+        if (max > ceiling(configs.size())) {
+            compact();
+            max = mConfiguredNetworkCache.getMaxPriority();
+        }
+        return configs.isEmpty() ? GAP : max + GAP;
+    }
+
+    /**
+     * 整体重排，按当前顺序重新分配为GAP的整数倍，只修改数值变化的配置
+     *
+     * @return 修改的配置数量
+     */
+    public synchronized int compact() {
+        List<WifiConfiguration> order = sortedByPriority();
+        return renumber(order);
+    }
+
+    /**
+     * 调用{@link WifiManager#updateNetwork(WifiConfiguration)}的次数
+     *
+     * @return
+     */
+    public synchronized int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    /**
+     * 整体重排的次数
+     *
+     * @return
+     */
+    public synchronized int getCompactCount() {
+        return mCompactCount;
+    }
+
+    /**
+     * 清空使用记录
+     */
+    public synchronized void clearUsage() {
+        mPreferences.edit().clear().apply();
+        mUsages = new HashMap<>();
+    }
+
+    /**
+     * 把网络移到按分数应在的位置
+     *
+     * @param key
+     */
+    private void rerank(SsidKey key) {
+
+        List<WifiConfiguration> order = sortedByPriority();
+
+        WifiConfiguration target = null;
+        for (int i = 0, size = order.size(); i < size; i++) {
+            if (key.equals(SsidKey.ofWifiSsid(order.get(i).SSID))) {
+                target = order.remove(i);
+                break;
+            }
+        }
+        if (target == null) {
+            return;
+        }
+
+        // 从高往低找第一个分数不高于自己的，排在它前面
+        long now = System.currentTimeMillis();
+        double score = score(key, now);
+        int position = 0;
+        for (int i = order.size() - 1; i >= 0; i--) {
+            if (score(SsidKey.ofWifiSsid(order.get(i).SSID), now) <= score) {
+                position = i + 1;
+                break;
+            }
+        }
+
+        int lower = position > 0 ? order.get(position - 1).priority : 0;
+        boolean top = position == order.size();
+        int upper = top ? lower + 2 * GAP : order.get(position).priority;
+
+        if (target.priority > lower && target.priority < upper) {
+            // 已经在正确的位置
+            return;
+        }
+
+        int priority = lower + (upper - lower) / 2;
+        if (priority <= lower || priority >= upper || priority > ceiling(order.size() + 1)) {
+            // 间隔用完了或太大，整体重排
+            order.add(position, target);
+            renumber(order);
+            return;
+        }
+
+        if (update(target, priority)) {
+            mConfiguredNetworkCache.invalidate();
+            mWifiManager.saveConfiguration();
+        }
+    }
+
+    /**
+     * 按顺序重新分配优先级
+     *
+     * @param order 从低到高
+     * @return 修改的配置数量
+     */
+    private int renumber(List<WifiConfiguration> order) {
+        int changed = 0;
+        for (int i = 0, size = order.size(); i < size; i++) {
+            WifiConfiguration config = order.get(i);
+            int priority = (i + 1) * GAP;
+            if (config.priority != priority && update(config, priority)) {
+                changed++;
+            }
+        }
+        mCompactCount++;
+        if (changed > 0) {
+            mConfiguredNetworkCache.invalidate();
+            mWifiManager.saveConfiguration();
+        }
+        return changed;
+    }
+
+    /**
+     * 只修改优先级
+     *
+     * @param config
+     * @param priority
+     * @return 是否成功，Android 10以后不能修改其他应用添加的网络
+     */
+    private boolean update(WifiConfiguration config, int priority) {
+        WifiConfiguration update = new WifiConfiguration();
+        update.networkId = config.networkId;
+        update.SSID = config.SSID;
+        update.priority = priority;
+        mUpdateCount++;
+        if (mWifiManager.updateNetwork(update) == -1) {
+            return false;
+        }
+        config.priority = priority;
+        return true;
+    }
+
+    private List<WifiConfiguration> sortedByPriority() {
+        List<WifiConfiguration> order = new ArrayList<>(mConfiguredNetworkCache.getAll());
+        Collections.sort(order, new Comparator<WifiConfiguration>() {
+            @Override
+            public int compare(WifiConfiguration one, WifiConfiguration two) {
+                return one.priority < two.priority ? -1 : (one.priority == two.priority ? 0 : 1);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * 优先级上限，超过时整体重排
+     *
+     * @param count 网络数量
+     * @return
+     */
+    private static int ceiling(int count) {
+        return (count + 1) * GAP * 2;
+    }
+
+    private double score(SsidKey key, long now) {
+        Usage usage = usages().get(key);
+        if (usage == null) {
+            return 0;
+        }
+        double decay = usage.mLastConnected <= 0 ? 0
+            : Math.pow(0.5, Math.max(0, now - usage.mLastConnected) / (double) HALF_LIFE_MILLIS);
+        return usage.mSuccessCount * decay - usage.mFailureCount * 0.1 * decay;
+    }
+
+    private Usage usage(SsidKey key) {
+        Usage usage = usages().get(key);
+        if (usage == null) {
+            usage = new Usage();
+            mUsages.put(key, usage);
+        }
+        return usage;
+    }
+
+    private HashMap<SsidKey, Usage> usages() {
+        if (mUsages == null) {
+            mUsages = new HashMap<>();
+            for (Map.Entry<String, ?> entry : mPreferences.getAll().entrySet()) {
+                Object value = entry.getValue();
+                if (!(value instanceof String)) {
+                    continue;
+                }
+                String[] parts = ((String) value).split(",");
+                if (parts.length != 3) {
+                    continue;
+                }
+                try {
+                    Usage usage = new Usage();
+                    usage.mSuccessCount = Integer.parseInt(parts[0]);
+                    usage.mFailureCount = Integer.parseInt(parts[1]);
+                    usage.mLastConnected = Long.parseLong(parts[2]);
+                    mUsages.put(SsidKey.ofWifiSsid(entry.getKey()), usage);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return mUsages;
+    }
+
+    private void saveUsage(SsidKey key, Usage usage) {
+        mPreferences.edit()
+            .putString(key.toWifiSsid(),
+                usage.mSuccessCount + "," + usage.mFailureCount + "," + usage.mLastConnected)
+            .apply();
+    }
+}
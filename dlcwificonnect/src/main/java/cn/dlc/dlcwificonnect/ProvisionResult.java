@@ -0,0 +1,77 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+
+/**
+ * 批量保存网络时每个网络的结果
+ */
+public final class ProvisionResult {
+
+    /**
+     * 结果
+     */
+    public enum Status {
+        /**
+         * 新添加
+         */
+        ADDED,
+        /**
+         * 已存在，更新了配置
+         */
+        UPDATED,
+        /**
+         * 系统拒绝
+         */
+        FAILED
+    }
+
+    private final NetworkSpec mSpec;
+    private final Status mStatus;
+    private final int mNetworkId;
+    private final int mPriority;
+
+    ProvisionResult(NetworkSpec spec, Status status, int networkId, int priority) {
+        mSpec = spec;
+        mStatus = status;
+        mNetworkId = networkId;
+        mPriority = priority;
+    }
+
+    @NonNull
+    public NetworkSpec getSpec() {
+        return mSpec;
+    }
+
+    @NonNull
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    public boolean isSuccessful() {
+        return mStatus != Status.FAILED;
+    }
+
+    /**
+     * 网络id
+     *
+     * @return 失败时为-1
+     */
+    public int getNetworkId() {
+        return mNetworkId;
+    }
+
+    /**
+     * 分配的优先级
+     *
+     * @return
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public String toString() {
+        return "ProvisionResult{" + mSpec.getSSID() + ", " + mStatus + ", networkId=" + mNetworkId
+            + "}";
+    }
+}
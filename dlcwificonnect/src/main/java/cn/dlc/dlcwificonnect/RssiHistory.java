@@ -0,0 +1,453 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.List;
+
+/**
+ * 每个接入点固定长度的信号历史（时间、信号强度、频率）
+ * <p>
+ * 数据全部保存在预先分配的原始类型数组里，每个接入点一个环形缓冲区，
+ * 接入点数量满了以后淘汰最久没扫描到的。最小值、最大值、平均值、标准差和趋势
+ * 都是增量维护的，查询是O(1)。可直接订阅扫描结果流：
+ * <pre>
+ * RssiHistory history = new RssiHistory();
+ * wifiHelper.getScanResultStream()
+ *     .subscribeRaw(history, ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+ * </pre>
+ */
+public class RssiHistory implements ScanResultStream.Subscriber {
+
+    public static final int DEFAULT_CAPACITY = 128;
+    public static final int DEFAULT_WINDOW = 32;
+
+    private final Clock mClock;
+    private final int mCapacity;
+    private final int mWindow;
+
+    private final LongIntMap mIndex;
+    private final long[] mKeys;
+    private int mSize;
+
+    // 环形缓冲区，第i个接入点占用[i * window, (i + 1) * window)
+    private final long[] mTimes;
+    private final int[] mLevels;
+    private final int[] mFrequencies;
+
+    // 每个接入点的状态
+    private final int[] mCount;
+    /**
+     * 下一个样本的序号，环形缓冲区的位置是 序号 % window
+     */
+    private final int[] mNextSeq;
+    private final long[] mLastSeen;
+    private final long[] mBaseTime;
+    private final double[] mSumT;
+    private final double[] mSumTT;
+    private final double[] mSumY;
+    private final double[] mSumYY;
+    private final double[] mSumTY;
+
+    // 单调队列，保存样本序号，用于O(1)获取窗口内的最小值和最大值
+    private final int[] mMinQueue;
+    private final int[] mMinHead;
+    private final int[] mMinCount;
+    private final int[] mMaxQueue;
+    private final int[] mMaxHead;
+    private final int[] mMaxCount;
+
+    public RssiHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW, Clock.SYSTEM);
+    }
+
+    /**
+     * 信号历史
+     *
+     * @param capacity 最多保存的接入点数量
+     * @param window 每个接入点保存的样本数
+     * @param clock 时钟
+     */
+    public RssiHistory(int capacity, int window, @NonNull Clock clock) {
+        if (capacity <= 0 || window <= 1) {
+            throw new IllegalArgumentException("capacity must be positive and window > 1");
+        }
+        mCapacity = capacity;
+        mWindow = window;
+        mClock = clock;
+
+        mIndex = new LongIntMap(capacity);
+        mKeys = new long[capacity];
+
+        mTimes = new long[capacity * window];
+        mLevels = new int[capacity * window];
+        mFrequencies = new int[capacity * window];
+
+        mCount = new int[capacity];
+        mNextSeq = new int[capacity];
+        mLastSeen = new long[capacity];
+        mBaseTime = new long[capacity];
+        mSumT = new double[capacity];
+        mSumTT = new double[capacity];
+        mSumY = new double[capacity];
+        mSumYY = new double[capacity];
+        mSumTY = new double[capacity];
+
+        mMinQueue = new int[capacity * window];
+        mMinHead = new int[capacity];
+        mMinCount = new int[capacity];
+        mMaxQueue = new int[capacity * window];
+        mMaxHead = new int[capacity];
+        mMaxCount = new int[capacity];
+    }
+
+    @Override
+    public void onScanResults(List<ScanResult> scanResults) {
+        update(scanResults);
+    }
+
+    /**
+     * 记录一次扫描
+     *
+     * @param scanResults
+     */
+    public synchronized void update(@Nullable List<ScanResult> scanResults) {
+        if (scanResults == null) {
+            return;
+        }
+        long now = mClock.elapsedRealtime();
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            add(scanResult.BSSID, now, scanResult.level, scanResult.frequency);
+        }
+    }
+
+    /**
+     * 记录一个样本
+     *
+     * @param BSSID
+     * @param time 时间，基于{@link android.os.SystemClock#elapsedRealtime()}
+     * @param level 信号强度
+     * @param frequency 频率
+     */
+    public synchronized void add(String BSSID, long time, int level, int frequency) {
+
+        long key = MacAddresses.toLong(BSSID);
+        if (key == MacAddresses.INVALID) {
+            return;
+        }
+
+        int ap = mIndex.get(key, -1);
+        if (ap < 0) {
+            ap = allocate(key, time);
+        }
+
+        int window = mWindow;
+        int base = ap * window;
+        int seq = mNextSeq[ap];
+        int pos = base + seq % window;
+
+        if (mCount[ap] == window) {
+            // 移除最旧的样本
+            double t = (mTimes[pos] - mBaseTime[ap]) / 1000.0;
+            double y = mLevels[pos];
+            mSumT[ap] -= t;
+            mSumTT[ap] -= t * t;
+            mSumY[ap] -= y;
+            mSumYY[ap] -= y * y;
+            mSumTY[ap] -= t * y;
+        } else {
+            mCount[ap]++;
+        }
+
+        mTimes[pos] = time;
+        mLevels[pos] = level;
+        mFrequencies[pos] = frequency;
+        mLastSeen[ap] = Math.max(mLastSeen[ap], time);
+        mNextSeq[ap] = seq + 1;
+
+        if ((seq + 1) % window == 0) {
+            // 每写满一圈重新计算一次累加值，消除浮点误差，均摊仍是O(1)
+            recompute(ap);
+        } else {
+            double t = (time - mBaseTime[ap]) / 1000.0;
+            double y = level;
+            mSumT[ap] += t;
+            mSumTT[ap] += t * t;
+            mSumY[ap] += y;
+            mSumYY[ap] += y * y;
+            mSumTY[ap] += t * y;
+        }
+
+        pushMonotonic(ap, seq, level, mMinQueue, mMinHead, mMinCount, true);
+        pushMonotonic(ap, seq, level, mMaxQueue, mMaxHead, mMaxCount, false);
+    }
+
+    /**
+     * 单调队列入队，并移除窗口外的序号
+     *
+     * @param ap
+     * @param seq
+     * @param level
+     * @param queue
+     * @param heads
+     * @param counts
+     * @param min true表示最小值队列（队列递增），false表示最大值队列（队列递减）
+     */
+    private void pushMonotonic(int ap, int seq, int level, int[] queue, int[] heads,
+        int[] counts, boolean min) {
+
+        int window = mWindow;
+        int base = ap * window;
+        int head = heads[ap];
+        int count = counts[ap];
+
+        // 队尾比新值差的都出队
+        while (count > 0) {
+            int tailSeq = queue[base + (head + count - 1) % window];
+            int tailLevel = mLevels[base + tailSeq % window];
+            if (min ? tailLevel >= level : tailLevel <= level) {
+                count--;
+            } else {
+                break;
+            }
+        }
+
+        queue[base + (head + count) % window] = seq;
+        count++;
+
+        // 队首超出窗口的出队
+        int oldest = seq - window + 1;
+        while (count > 0 && queue[base + head] < oldest) {
+            head = (head + 1) % window;
+            count--;
+        }
+
+        heads[ap] = head;
+        counts[ap] = count;
+    }
+
+    private void recompute(int ap) {
+        int window = mWindow;
+        int base = ap * window;
+        int count = mCount[ap];
+        int seq = mNextSeq[ap];
+
+        // 以最旧的样本为基准时间，避免运行很久后数值过大
+        long baseTime = mTimes[base + (seq - count) % window];
+        double sumT = 0, sumTT = 0, sumY = 0, sumYY = 0, sumTY = 0;
+        for (int i = seq - count; i < seq; i++) {
+            int pos = base + i % window;
+            double t = (mTimes[pos] - baseTime) / 1000.0;
+            double y = mLevels[pos];
+            sumT += t;
+            sumTT += t * t;
+            sumY += y;
+            sumYY += y * y;
+            sumTY += t * y;
+        }
+        mBaseTime[ap] = baseTime;
+        mSumT[ap] = sumT;
+        mSumTT[ap] = sumTT;
+        mSumY[ap] = sumY;
+        mSumYY[ap] = sumYY;
+        mSumTY[ap] = sumTY;
+    }
+
+    /**
+     * 分配位置，满了就淘汰最久没扫描到的
+     *
+     * @param key
+     * @param time
+     * @return
+     */
+    private int allocate(long key, long time) {
+        int ap;
+        if (mSize < mCapacity) {
+            ap = mSize++;
+        } else {
+            ap = 0;
+            for (int i = 1; i < mCapacity; i++) {
+                if (mLastSeen[i] < mLastSeen[ap]) {
+                    ap = i;
+                }
+            }
+            mIndex.remove(mKeys[ap]);
+        }
+        mKeys[ap] = key;
+        mIndex.put(key, ap);
+
+        mCount[ap] = 0;
+        mNextSeq[ap] = 0;
+        mLastSeen[ap] = time;
+        mBaseTime[ap] = time;
+        mSumT[ap] = 0;
+        mSumTT[ap] = 0;
+        mSumY[ap] = 0;
+        mSumYY[ap] = 0;
+        mSumTY[ap] = 0;
+        mMinHead[ap] = 0;
+        mMinCount[ap] = 0;
+        mMaxHead[ap] = 0;
+        mMaxCount[ap] = 0;
+        return ap;
+    }
+
+    private int indexOf(String BSSID) {
+        long key = MacAddresses.toLong(BSSID);
+        return key == MacAddresses.INVALID ? -1 : mIndex.get(key, -1);
+    }
+
+    /**
+     * 样本数量
+     *
+     * @param BSSID
+     * @return
+     */
+    public synchronized int getSampleCount(String BSSID) {
+        int ap = indexOf(BSSID);
+        return ap < 0 ? 0 : mCount[ap];
+    }
+
+    /**
+     * 窗口内的最小信号强度
+     *
+     * @param BSSID
+     * @return 没有记录时返回{@link RssiSmoother#UNKNOWN_LEVEL}
+     */
+    public synchronized int getMinLevel(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mMinCount[ap] == 0) {
+            return RssiSmoother.UNKNOWN_LEVEL;
+        }
+        int base = ap * mWindow;
+        return mLevels[base + mMinQueue[base + mMinHead[ap]] % mWindow];
+    }
+
+    /**
+     * 窗口内的最大信号强度
+     *
+     * @param BSSID
+     * @return 没有记录时返回{@link RssiSmoother#UNKNOWN_LEVEL}
+     */
+    public synchronized int getMaxLevel(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mMaxCount[ap] == 0) {
+            return RssiSmoother.UNKNOWN_LEVEL;
+        }
+        int base = ap * mWindow;
+        return mLevels[base + mMaxQueue[base + mMaxHead[ap]] % mWindow];
+    }
+
+    /**
+     * 窗口内的平均信号强度
+     *
+     * @param BSSID
+     * @return 没有记录时返回{@link Double#NaN}
+     */
+    public synchronized double getMeanLevel(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mCount[ap] == 0) {
+            return Double.NaN;
+        }
+        return mSumY[ap] / mCount[ap];
+    }
+
+    /**
+     * 窗口内信号强度的标准差，可用来判断信号是否稳定
+     *
+     * @param BSSID
+     * @return 没有记录时返回{@link Double#NaN}
+     */
+    public synchronized double getStdDev(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mCount[ap] == 0) {
+            return Double.NaN;
+        }
+        int n = mCount[ap];
+        double mean = mSumY[ap] / n;
+        return Math.sqrt(Math.max(0, mSumYY[ap] / n - mean * mean));
+    }
+
+    /**
+     * 窗口内信号强度的变化趋势（最小二乘斜率）
+     *
+     * @param BSSID
+     * @return dB每秒，正数表示变强，样本不足时返回0
+     */
+    public synchronized double getTrend(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mCount[ap] < 2) {
+            return 0;
+        }
+        int n = mCount[ap];
+        double denominator = n * mSumTT[ap] - mSumT[ap] * mSumT[ap];
+        if (Math.abs(denominator) < 1e-9) {
+            return 0;
+        }
+        return (n * mSumTY[ap] - mSumT[ap] * mSumY[ap]) / denominator;
+    }
+
+    /**
+     * 最后一次扫描到的时间
+     *
+     * @param BSSID
+     * @return 没有记录时返回-1
+     */
+    public synchronized long getLastSeen(String BSSID) {
+        int ap = indexOf(BSSID);
+        return ap < 0 ? -1 : mLastSeen[ap];
+    }
+
+    /**
+     * 最近一次的频率
+     *
+     * @param BSSID
+     * @return 没有记录时返回0
+     */
+    public synchronized int getLastFrequency(String BSSID) {
+        int ap = indexOf(BSSID);
+        if (ap < 0 || mCount[ap] == 0) {
+            return 0;
+        }
+        return mFrequencies[ap * mWindow + (mNextSeq[ap] - 1) % mWindow];
+    }
+
+    /**
+     * 复制窗口内的样本，按时间从旧到新排列，用于诊断
+     *
+     * @param BSSID
+     * @param times 长度至少为窗口大小，可为null
+     * @param levels 长度至少为窗口大小，可为null
+     * @return 样本数量
+     */
+    public synchronized int copySamples(String BSSID, @Nullable long[] times,
+        @Nullable int[] levels) {
+        int ap = indexOf(BSSID);
+        if (ap < 0) {
+            return 0;
+        }
+        int base = ap * mWindow;
+        int count = mCount[ap];
+        int seq = mNextSeq[ap];
+        for (int i = 0; i < count; i++) {
+            int pos = base + (seq - count + i) % mWindow;
+            if (times != null) {
+                times[i] = mTimes[pos];
+            }
+            if (levels != null) {
+                levels[i] = mLevels[pos];
+            }
+        }
+        return count;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mIndex.clear();
+        mSize = 0;
+    }
+}
@@ -0,0 +1,317 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按BSSID平滑信号强度，避免列表因为信号抖动频繁重排
+ * <p>
+ * 支持指数加权移动平均(EWMA)和一维卡尔曼滤波两种方式；状态保存在原始类型数组里，
+ * 容量固定，满了以后淘汰最久没更新的接入点，长时间运行内存不会增长。
+ * 可直接订阅扫描结果流：
+ * <pre>
+ * RssiSmoother smoother = new RssiSmoother();
+ * wifiHelper.getScanResultStream()
+ *     .subscribeRaw(smoother, ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+ * </pre>
+ */
+public class RssiSmoother implements ScanResultStream.Subscriber {
+
+    /**
+     * 平滑方式
+     */
+    public enum Mode {
+        /**
+         * 指数加权移动平均
+         */
+        EWMA,
+        /**
+         * 一维卡尔曼滤波
+         */
+        KALMAN
+    }
+
+    /**
+     * 未知的信号强度
+     */
+    public static final int UNKNOWN_LEVEL = Integer.MIN_VALUE;
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final float DEFAULT_ALPHA = 0.3f;
+    public static final int DEFAULT_HYSTERESIS = 5;
+
+    private final Clock mClock;
+    private final Mode mMode;
+    private final int mCapacity;
+
+    private float mAlpha = DEFAULT_ALPHA;
+    private float mProcessNoise = 1f;
+    private float mMeasurementNoise = 9f;
+    private int mHysteresis = DEFAULT_HYSTERESIS;
+
+    private final LongIntMap mIndex;
+    private final long[] mKeys;
+    private final float[] mSmoothed;
+    private final float[] mVariance;
+    private final int[] mRaw;
+    private final long[] mUpdated;
+    private final int[] mRank;
+    private int mSize;
+
+    public RssiSmoother() {
+        this(Mode.EWMA, DEFAULT_CAPACITY, Clock.SYSTEM);
+    }
+
+    /**
+     * 信号平滑
+     *
+     * @param mode 平滑方式
+     * @param capacity 最多保存的接入点数量
+     * @param clock 时钟
+     */
+    public RssiSmoother(@NonNull Mode mode, int capacity, @NonNull Clock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        mMode = mode;
+        mCapacity = capacity;
+        mClock = clock;
+        mIndex = new LongIntMap(capacity);
+        mKeys = new long[capacity];
+        mSmoothed = new float[capacity];
+        mVariance = new float[capacity];
+        mRaw = new int[capacity];
+        mUpdated = new long[capacity];
+        mRank = new int[capacity];
+    }
+
+    /**
+     * EWMA的平滑系数，越小越平滑
+     *
+     * @param alpha 0~1
+     */
+    public synchronized void setAlpha(float alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]");
+        }
+        mAlpha = alpha;
+    }
+
+    /**
+     * 卡尔曼滤波的噪声参数
+     *
+     * @param processNoise 过程噪声，信号本身变化的快慢
+     * @param measurementNoise 测量噪声，单次扫描的抖动
+     */
+    public synchronized void setKalmanNoise(float processNoise, float measurementNoise) {
+        mProcessNoise = processNoise;
+        mMeasurementNoise = measurementNoise;
+    }
+
+    /**
+     * 排序的滞后阈值，两个热点平滑后的信号差超过该值(dB)才交换位置
+     *
+     * @param hysteresis
+     */
+    public synchronized void setHysteresis(int hysteresis) {
+        mHysteresis = Math.max(0, hysteresis);
+    }
+
+    @Override
+    public void onScanResults(List<ScanResult> scanResults) {
+        update(scanResults);
+    }
+
+    /**
+     * 用新的扫描结果更新
+     *
+     * @param scanResults
+     */
+    public synchronized void update(@Nullable List<ScanResult> scanResults) {
+        if (scanResults == null) {
+            return;
+        }
+        long now = mClock.elapsedRealtime();
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            update(scanResult.BSSID, scanResult.level, now);
+        }
+    }
+
+    /**
+     * 更新单个接入点
+     *
+     * @param BSSID
+     * @param level
+     */
+    public synchronized void update(String BSSID, int level) {
+        update(BSSID, level, mClock.elapsedRealtime());
+    }
+
+    private void update(String BSSID, int level, long now) {
+
+        long key = MacAddresses.toLong(BSSID);
+        if (key == MacAddresses.INVALID) {
+            return;
+        }
+
+        int index = mIndex.get(key, -1);
+        if (index < 0) {
+            index = allocate(key);
+            mSmoothed[index] = level;
+            mVariance[index] = mMeasurementNoise;
+            mRank[index] = -1;
+        } else if (mMode == Mode.EWMA) {
+            mSmoothed[index] += mAlpha * (level - mSmoothed[index]);
+        } else {
+            float variance = mVariance[index] + mProcessNoise;
+            float gain = variance / (variance + mMeasurementNoise);
+            mSmoothed[index] += gain * (level - mSmoothed[index]);
+            mVariance[index] = (1 - gain) * variance;
+        }
+        mRaw[index] = level;
+        mUpdated[index] = now;
+    }
+
+    /**
+     * 分配位置，满了就淘汰最久没更新的
+     *
+     * @param key
+     * @return
+     */
+    private int allocate(long key) {
+        int index;
+        if (mSize < mCapacity) {
+            index = mSize++;
+        } else {
+            index = 0;
+            for (int i = 1; i < mCapacity; i++) {
+                if (mUpdated[i] < mUpdated[index]) {
+                    index = i;
+                }
+            }
+            mIndex.remove(mKeys[index]);
+        }
+        mKeys[index] = key;
+        mIndex.put(key, index);
+        return index;
+    }
+
+    private int indexOf(String BSSID) {
+        long key = MacAddresses.toLong(BSSID);
+        return key == MacAddresses.INVALID ? -1 : mIndex.get(key, -1);
+    }
+
+    /**
+     * 平滑后的信号强度
+     *
+     * @param BSSID
+     * @return 四舍五入后的dBm，没有记录时返回{@link #UNKNOWN_LEVEL}
+     */
+    public synchronized int getSmoothedLevel(String BSSID) {
+        int index = indexOf(BSSID);
+        return index < 0 ? UNKNOWN_LEVEL : Math.round(mSmoothed[index]);
+    }
+
+    /**
+     * 平滑后的信号强度，没有记录时返回扫描结果里的原始值
+     *
+     * @param scanResult
+     * @return
+     */
+    public synchronized int getSmoothedLevel(@NonNull ScanResult scanResult) {
+        int index = indexOf(scanResult.BSSID);
+        return index < 0 ? scanResult.level : Math.round(mSmoothed[index]);
+    }
+
+    /**
+     * 最近一次的原始信号强度
+     *
+     * @param BSSID
+     * @return 没有记录时返回{@link #UNKNOWN_LEVEL}
+     */
+    public synchronized int getRawLevel(String BSSID) {
+        int index = indexOf(BSSID);
+        return index < 0 ? UNKNOWN_LEVEL : mRaw[index];
+    }
+
+    /**
+     * 最近一次更新的时间
+     *
+     * @param BSSID
+     * @return 没有记录时返回-1
+     */
+    public synchronized long getLastUpdated(String BSSID) {
+        int index = indexOf(BSSID);
+        return index < 0 ? -1 : mUpdated[index];
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mIndex.clear();
+        mSize = 0;
+    }
+
+    /**
+     * 按平滑后的信号强度排序，带滞后：以上一次排序的顺序为基础，
+     * 只有信号差超过阈值时才交换位置
+     *
+     * @param scanResults
+     */
+    public synchronized void sortBySmoothedSignal(@Nullable List<ScanResult> scanResults) {
+
+        if (scanResults == null || scanResults.size() < 2) {
+            return;
+        }
+
+        // 先恢复上一次的顺序，新出现的放后面按信号排
+        Collections.sort(scanResults, new Comparator<ScanResult>() {
+            @Override
+            public int compare(ScanResult one, ScanResult two) {
+                int rankOne = rankOf(one);
+                int rankTwo = rankOf(two);
+                if (rankOne != rankTwo) {
+                    return rankOne < rankTwo ? -1 : 1;
+                }
+                return levelOf(two) - levelOf(one);
+            }
+        });
+
+        // 插入排序，基本有序时接近O(n)
+        for (int i = 1, size = scanResults.size(); i < size; i++) {
+            ScanResult item = scanResults.get(i);
+            int level = levelOf(item);
+            int j = i - 1;
+            while (j >= 0 && level > levelOf(scanResults.get(j)) + mHysteresis) {
+                scanResults.set(j + 1, scanResults.get(j));
+                j--;
+            }
+            scanResults.set(j + 1, item);
+        }
+
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            int index = indexOf(scanResults.get(i).BSSID);
+            if (index >= 0) {
+                mRank[index] = i;
+            }
+        }
+    }
+
+    private int rankOf(ScanResult scanResult) {
+        int index = indexOf(scanResult.BSSID);
+        int rank = index < 0 ? -1 : mRank[index];
+        return rank < 0 ? Integer.MAX_VALUE : rank;
+    }
+
+    private int levelOf(ScanResult scanResult) {
+        int index = indexOf(scanResult.BSSID);
+        return index < 0 ? scanResult.level : Math.round(mSmoothed[index]);
+    }
+}
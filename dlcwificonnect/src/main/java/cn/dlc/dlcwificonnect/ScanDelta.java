@@ -0,0 +1,85 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * 两次扫描之间单个热点的变化，按BSSID还是SSID区分见{@link ScanResultDiffer.Key}
+ * <p>
+ * 按SSID区分时，{@link #getScanResult()}和{@link #getPrevious()}可能是同一个网络的不同接入点
+ */
+public final class ScanDelta {
+
+    /**
+     * 变化类型
+     */
+    public enum Type {
+        /**
+         * 新出现的热点
+         */
+        ADDED,
+        /**
+         * 消失的热点
+         */
+        REMOVED,
+        /**
+         * 信号强度变化
+         */
+        LEVEL_CHANGED,
+        /**
+         * 加密能力变化
+         */
+        CAPABILITIES_CHANGED,
+        /**
+         * 按SSID区分时信号最强的接入点换了(BSSID或频率变化)，信号强度可能没变
+         */
+        ACCESS_POINT_CHANGED
+    }
+
+    private final Type mType;
+    private final ScanResult mScanResult;
+    private final ScanResult mPrevious;
+
+    ScanDelta(Type type, ScanResult scanResult, ScanResult previous) {
+        mType = type;
+        mScanResult = scanResult;
+        mPrevious = previous;
+    }
+
+    @NonNull
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * 当前的扫描结果，{@link Type#REMOVED} 时为上一次的扫描结果
+     *
+     * @return
+     */
+    @NonNull
+    public ScanResult getScanResult() {
+        return mScanResult;
+    }
+
+    /**
+     * 上一次的扫描结果，{@link Type#ADDED} 时为null
+     *
+     * @return
+     */
+    @Nullable
+    public ScanResult getPrevious() {
+        return mPrevious;
+    }
+
+    public String getBSSID() {
+        return mScanResult.BSSID;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanDelta{" + mType + ", SSID=" + mScanResult.SSID + ", BSSID=" + mScanResult.BSSID
+            + ", level=" + (mPrevious == null ? "" : mPrevious.level + "->") + mScanResult.level
+            + "}";
+    }
+}
@@ -0,0 +1,263 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 扫描结果去重器，同名热点只保留信号最强的一个
+ * <p>
+ * 内部用开放寻址的数组代替HashMap，可重复使用，稳定后去重和取前K个都不再分配内存。
+ * 非线程安全，同一个实例只能在一个线程里使用
+ */
+public class ScanResultDeduper {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private String[] mKeys = new String[MIN_CAPACITY];
+    private int[] mIndexes = new int[MIN_CAPACITY];
+
+    /** 取前K个时每个热点当前信号最强的结果，和mKeys对应 */
+    private ScanResult[] mBest = new ScanResult[MIN_CAPACITY];
+    /** 取前K个时的小顶堆，存mKeys的下标 */
+    private int[] mHeap = new int[0];
+
+    /**
+     * 去重
+     *
+     * @param scanResults 待处理的数据
+     * @param filter 自定义过滤器，可为null
+     * @param out 输出列表，会先被清空，按热点第一次出现的顺序排列
+     * @return out
+     */
+    @NonNull
+    public List<ScanResult> dedup(@Nullable List<ScanResult> scanResults,
+        @Nullable WifiScanner.ScanResultFilter filter, @NonNull List<ScanResult> out) {
+
+        out.clear();
+
+        if (scanResults == null || scanResults.isEmpty()) {
+            return out;
+        }
+
+        prepare(scanResults.size());
+
+        final String[] keys = mKeys;
+        final int[] indexes = mIndexes;
+        final int mask = keys.length - 1;
+
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            String ssid = scanResult.SSID;
+
+            if (ssid == null || ssid.length() == 0) {
+                continue;
+            }
+
+            // 使用自定义过滤器自定义
+            if (filter != null && !filter.letItGo(scanResult)) {
+                continue;
+            }
+
+            int slot = ssid.hashCode() & mask;
+            while (true) {
+                String key = keys[slot];
+                if (key == null) {
+                    // 第一次出现
+                    keys[slot] = ssid;
+                    indexes[slot] = out.size();
+                    out.add(scanResult);
+                    break;
+                }
+                if (key == ssid || key.equals(ssid)) {
+                    int index = indexes[slot];
+                    if (out.get(index).level < scanResult.level) {
+                        out.set(index, scanResult);
+                    }
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * 去重后只保留信号最强的前K个
+     * <p>
+     * 去重和选前K个在同一次遍历里完成：去重表里记着每个热点在堆里的位置，
+     * 热点信号变强时直接在堆里调整，不生成中间的去重列表
+     *
+     * @param scanResults 待处理的数据
+     * @param filter 自定义过滤器，可为null
+     * @param k 个数
+     * @param out 输出列表，会先被清空，按信号从强到弱排列
+     * @return out
+     */
+    @NonNull
+    public List<ScanResult> dedupTopK(@Nullable List<ScanResult> scanResults,
+        @Nullable WifiScanner.ScanResultFilter filter, int k, @NonNull List<ScanResult> out) {
+
+        out.clear();
+
+        if (scanResults == null || scanResults.isEmpty() || k <= 0) {
+            return out;
+        }
+
+        int size = scanResults.size();
+        prepare(size);
+        int capacity = Math.min(k, size);
+        if (mHeap.length < capacity) {
+            mHeap = new int[capacity];
+        }
+
+        final String[] keys = mKeys;
+        // 这里存的是在堆里的位置，不在堆里时为-1
+        final int[] positions = mIndexes;
+        final ScanResult[] best = mBest;
+        final int[] heap = mHeap;
+        final int mask = keys.length - 1;
+        int heapSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            String ssid = scanResult.SSID;
+
+            if (ssid == null || ssid.length() == 0) {
+                continue;
+            }
+
+            // 使用自定义过滤器自定义
+            if (filter != null && !filter.letItGo(scanResult)) {
+                continue;
+            }
+
+            int slot = ssid.hashCode() & mask;
+            while (true) {
+                String key = keys[slot];
+                if (key == null) {
+                    // 第一次出现
+                    keys[slot] = ssid;
+                    best[slot] = scanResult;
+                    if (heapSize < capacity) {
+                        heap[heapSize] = slot;
+                        siftUp(heapSize);
+                        heapSize++;
+                    } else {
+                        positions[slot] = -1;
+                        offer(slot, heapSize);
+                    }
+                    break;
+                }
+                if (key == ssid || key.equals(ssid)) {
+                    if (best[slot].level < scanResult.level) {
+                        best[slot] = scanResult;
+                        int position = positions[slot];
+                        if (position >= 0) {
+                            // 变强了，在小顶堆里往下沉
+                            siftDown(position, heapSize);
+                        } else {
+                            offer(slot, heapSize);
+                        }
+                    }
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        // 依次取出堆顶（最弱的）放到末尾，得到从强到弱的顺序
+        for (int end = heapSize - 1; end > 0; end--) {
+            int weakest = heap[0];
+            heap[0] = heap[end];
+            heap[end] = weakest;
+            siftDown(0, end);
+        }
+
+        for (int i = 0; i < heapSize; i++) {
+            out.add(best[heap[i]]);
+        }
+        // 不持有扫描结果
+        Arrays.fill(best, null);
+        return out;
+    }
+
+    /**
+     * 清空索引，容量不够时扩容，负载因子不超过0.5
+     *
+     * @param expectedSize
+     */
+    private void prepare(int expectedSize) {
+
+        int capacity = mKeys.length;
+        if (capacity < expectedSize * 2) {
+            while (capacity < expectedSize * 2) {
+                capacity <<= 1;
+            }
+            mKeys = new String[capacity];
+            mIndexes = new int[capacity];
+            mBest = new ScanResult[capacity];
+        } else {
+            Arrays.fill(mKeys, null);
+        }
+    }
+
+    /**
+     * 不在堆里的热点比堆里最弱的强时替换掉它，堆已满
+     *
+     * @param slot
+     * @param heapSize
+     */
+    private void offer(int slot, int heapSize) {
+        int weakest = mHeap[0];
+        if (mBest[slot].level > mBest[weakest].level) {
+            mIndexes[weakest] = -1;
+            mHeap[0] = slot;
+            siftDown(0, heapSize);
+        }
+    }
+
+    private void siftUp(int index) {
+        final int[] heap = mHeap;
+        final ScanResult[] best = mBest;
+        int item = heap[index];
+        int level = best[item].level;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (best[heap[parent]].level <= level) {
+                break;
+            }
+            heap[index] = heap[parent];
+            mIndexes[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = item;
+        mIndexes[item] = index;
+    }
+
+    private void siftDown(int index, int size) {
+        final int[] heap = mHeap;
+        final ScanResult[] best = mBest;
+        int item = heap[index];
+        int level = best[item].level;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && best[heap[right]].level < best[heap[child]].level) {
+                child = right;
+            }
+            if (level <= best[heap[child]].level) {
+                break;
+            }
+            heap[index] = heap[child];
+            mIndexes[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = item;
+        mIndexes[item] = index;
+    }
+}
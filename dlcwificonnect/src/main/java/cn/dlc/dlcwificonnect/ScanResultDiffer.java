@@ -0,0 +1,181 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 扫描结果差分器，保存上一次的快照，每次只输出变化的部分
+ * <p>
+ * 未去重的结果按BSSID索引；按SSID去重后的结果要按SSID索引，否则同一个SSID信号最强的接入点
+ * 换了时会输出一对{@link ScanDelta.Type#REMOVED}和{@link ScanDelta.Type#ADDED}。
+ * <p>
+ * 非线程安全，同一个实例只能在一个线程里使用
+ */
+public class ScanResultDiffer {
+
+    /**
+     * 快照的索引方式
+     */
+    public enum Key {
+        /**
+         * 按接入点，用于未去重的结果
+         */
+        BSSID,
+        /**
+         * 按网络，用于按SSID去重后的结果，接入点换了算作变化
+         */
+        SSID
+    }
+
+    private final Key mKey;
+
+    private HashMap<Object, ScanResult> mSnapshot = new HashMap<>();
+    private HashMap<Object, ScanResult> mNext = new HashMap<>();
+
+    private int mLevelThreshold;
+
+    /**
+     * 按BSSID索引的差分器
+     */
+    public ScanResultDiffer() {
+        this(Key.BSSID);
+    }
+
+    /**
+     * 扫描结果差分器
+     *
+     * @param key 快照的索引方式
+     */
+    public ScanResultDiffer(@NonNull Key key) {
+        mKey = key;
+    }
+
+    @NonNull
+    public Key getKey() {
+        return mKey;
+    }
+
+    /**
+     * 设置信号强度变化的阈值，变化小于该值(dBm)不输出 {@link ScanDelta.Type#LEVEL_CHANGED}
+     *
+     * @param levelThreshold 默认为0，即有变化就输出
+     */
+    public void setLevelThreshold(int levelThreshold) {
+        mLevelThreshold = Math.max(0, levelThreshold);
+    }
+
+    /**
+     * 用已有的列表作为上一次的快照，不输出变化
+     *
+     * @param scanResults
+     */
+    public void reset(@Nullable List<ScanResult> scanResults) {
+        mSnapshot.clear();
+        if (scanResults != null) {
+            for (int i = 0, size = scanResults.size(); i < size; i++) {
+                ScanResult scanResult = scanResults.get(i);
+                Object key = keyOf(scanResult);
+                if (key != null) {
+                    mSnapshot.put(key, scanResult);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空快照，下一次差分所有结果都是 {@link ScanDelta.Type#ADDED}
+     */
+    public void clear() {
+        mSnapshot.clear();
+    }
+
+    /**
+     * 快照中热点的数量
+     *
+     * @return
+     */
+    public int size() {
+        return mSnapshot.size();
+    }
+
+    /**
+     * 和上一次的快照比较，并把当前结果作为新的快照
+     *
+     * @param scanResults 本次扫描结果
+     * @return 变化列表，没变化时为空列表
+     */
+    @NonNull
+    public List<ScanDelta> diff(@Nullable List<ScanResult> scanResults) {
+
+        List<ScanDelta> deltas = new ArrayList<>();
+
+        HashMap<Object, ScanResult> previous = mSnapshot;
+        HashMap<Object, ScanResult> next = mNext;
+        next.clear();
+
+        if (scanResults != null) {
+            for (int i = 0, size = scanResults.size(); i < size; i++) {
+                ScanResult current = scanResults.get(i);
+                Object key = keyOf(current);
+                if (key == null || next.containsKey(key)) {
+                    continue;
+                }
+
+                ScanResult old = previous.remove(key);
+                if (old == null) {
+                    deltas.add(new ScanDelta(ScanDelta.Type.ADDED, current, null));
+                    next.put(key, current);
+                } else if (!TextUtils.equals(old.capabilities, current.capabilities)) {
+                    deltas.add(new ScanDelta(ScanDelta.Type.CAPABILITIES_CHANGED, current, old));
+                    next.put(key, current);
+                } else if (mKey == Key.SSID && isAccessPointChanged(old, current)) {
+                    // 旧的接入点可能已经不在了，不能继续用它的BSSID和频率
+                    deltas.add(new ScanDelta(ScanDelta.Type.ACCESS_POINT_CHANGED, current, old));
+                    next.put(key, current);
+                } else if (old.level != current.level
+                    && Math.abs(old.level - current.level) >= mLevelThreshold) {
+                    deltas.add(new ScanDelta(ScanDelta.Type.LEVEL_CHANGED, current, old));
+                    next.put(key, current);
+                } else {
+                    // 变化没达到阈值，保留上次输出的结果，避免小幅度抖动累积
+                    next.put(key, old.level == current.level ? current : old);
+                }
+            }
+        }
+
+        // 剩下的就是这次没扫描到的
+        for (ScanResult removed : previous.values()) {
+            deltas.add(new ScanDelta(ScanDelta.Type.REMOVED, removed, removed));
+        }
+        previous.clear();
+
+        mSnapshot = next;
+        mNext = previous;
+
+        return deltas;
+    }
+
+    private static boolean isAccessPointChanged(ScanResult old, ScanResult current) {
+        return old.frequency != current.frequency || (old.BSSID == null ? current.BSSID != null
+            : !old.BSSID.equalsIgnoreCase(current.BSSID));
+    }
+
+    /**
+     * 快照里的索引
+     *
+     * @param scanResult
+     * @return 没有BSSID或SSID时返回null，这样的结果不参与差分
+     */
+    private Object keyOf(ScanResult scanResult) {
+        if (mKey == Key.SSID) {
+            SsidKey ssid = SsidKey.of(scanResult.SSID);
+            return ssid.isEmpty() ? null : ssid;
+        }
+        return TextUtils.isEmpty(scanResult.BSSID) ? null : scanResult.BSSID;
+    }
+}
@@ -0,0 +1,323 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 组合扫描结果过滤器构建器
+ * <p>
+ * 同一类条件之间是“或”的关系，不同类条件之间是“与”的关系。
+ * 构建后的过滤器按开销从小到大依次判断：信号强度、频段、BSSID厂商前缀、加密方式、
+ * SSID前缀、SSID包含、SSID正则，判断过程除正则外不分配内存。
+ * <pre>
+ * ScanResultFilter filter = new ScanResultFilterBuilder()
+ *     .ignoreCase(true)
+ *     .ssidContains("USR")
+ *     .minLevel(-80)
+ *     .band(WifiBand.GHZ_2_4)
+ *     .build();
+ * </pre>
+ */
+public class ScanResultFilterBuilder {
+
+    private int mMinLevel = Integer.MIN_VALUE;
+    private final boolean[] mBands = new boolean[WifiBand.values().length];
+    private boolean mHasBand;
+    private final List<Integer> mOuis = new ArrayList<>();
+    private final boolean[] mEncrypts = new boolean[WifiEncrypt.values().length];
+    private boolean mHasEncrypt;
+    private final List<String> mPrefixes = new ArrayList<>();
+    private final List<String> mContains = new ArrayList<>();
+    private final List<Pattern> mPatterns = new ArrayList<>();
+    private boolean mIgnoreCase;
+
+    /**
+     * 最低信号强度
+     *
+     * @param level dBm，例如-80
+     * @return
+     */
+    public ScanResultFilterBuilder minLevel(int level) {
+        mMinLevel = level;
+        return this;
+    }
+
+    /**
+     * 限定频段
+     *
+     * @param bands
+     * @return
+     */
+    public ScanResultFilterBuilder band(@NonNull WifiBand... bands) {
+        for (WifiBand band : bands) {
+            mBands[band.ordinal()] = true;
+            mHasBand = true;
+        }
+        return this;
+    }
+
+    /**
+     * 限定BSSID厂商前缀(OUI)
+     *
+     * @param oui 例如"D8:B0:4C"，分隔符可以是":"或"-"
+     * @return
+     */
+    public ScanResultFilterBuilder bssidOui(@NonNull String oui) {
+        int value = parseOui(oui);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid OUI: " + oui);
+        }
+        mOuis.add(value);
+        return this;
+    }
+
+    /**
+     * 限定加密方式
+     *
+     * @param encrypts
+     * @return
+     */
+    public ScanResultFilterBuilder encrypt(@NonNull WifiEncrypt... encrypts) {
+        for (WifiEncrypt encrypt : encrypts) {
+            mEncrypts[encrypt.ordinal()] = true;
+            mHasEncrypt = true;
+        }
+        return this;
+    }
+
+    /**
+     * SSID前缀
+     *
+     * @param prefix
+     * @return
+     */
+    public ScanResultFilterBuilder ssidPrefix(@NonNull String prefix) {
+        mPrefixes.add(prefix);
+        return this;
+    }
+
+    /**
+     * SSID包含指定字符串
+     *
+     * @param part
+     * @return
+     */
+    public ScanResultFilterBuilder ssidContains(@NonNull String part) {
+        mContains.add(part);
+        return this;
+    }
+
+    /**
+     * SSID前缀和包含条件是否忽略大小写
+     *
+     * @param ignoreCase
+     * @return
+     */
+    public ScanResultFilterBuilder ignoreCase(boolean ignoreCase) {
+        mIgnoreCase = ignoreCase;
+        return this;
+    }
+
+    /**
+     * SSID正则，使用{@link Matcher#find()}匹配
+     *
+     * @param regex
+     * @return
+     */
+    public ScanResultFilterBuilder ssidRegex(@NonNull String regex) {
+        mPatterns.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * SSID正则，使用{@link Matcher#find()}匹配
+     *
+     * @param pattern
+     * @return
+     */
+    public ScanResultFilterBuilder ssidRegex(@NonNull Pattern pattern) {
+        mPatterns.add(pattern);
+        return this;
+    }
+
+    /**
+     * 构建过滤器，构建后再修改构建器不影响已构建的过滤器
+     *
+     * @return
+     */
+    public WifiScanner.ScanResultFilter build() {
+        return new CompiledFilter(this);
+    }
+
+    /**
+     * 解析OUI
+     *
+     * @param text 至少包含前3个字节的mac地址
+     * @return 24位整数，格式不对时返回-1
+     */
+    static int parseOui(String text) {
+        if (text == null || text.length() < 8) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = text.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') {
+                    return -1;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static boolean startsWith(String text, String prefix, boolean ignoreCase) {
+        return text.regionMatches(ignoreCase, 0, prefix, 0, prefix.length());
+    }
+
+    private static boolean contains(String text, String part, boolean ignoreCase) {
+        if (!ignoreCase) {
+            return text.contains(part);
+        }
+        int length = part.length();
+        for (int i = 0, last = text.length() - length; i <= last; i++) {
+            if (text.regionMatches(true, i, part, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 编译后的过滤器
+     */
+    private static final class CompiledFilter implements WifiScanner.ScanResultFilter {
+
+        private final int mMinLevel;
+        private final boolean[] mBands;
+        private final int[] mOuis;
+        private final boolean[] mEncrypts;
+        private final String[] mPrefixes;
+        private final String[] mContains;
+        private final Pattern[] mPatterns;
+        private final boolean mIgnoreCase;
+
+        private final ThreadLocal<Matcher[]> mMatchers;
+
+        CompiledFilter(ScanResultFilterBuilder builder) {
+            mMinLevel = builder.mMinLevel;
+            mBands = builder.mHasBand ? builder.mBands.clone() : null;
+            mEncrypts = builder.mHasEncrypt ? builder.mEncrypts.clone() : null;
+            mOuis = new int[builder.mOuis.size()];
+            for (int i = 0; i < mOuis.length; i++) {
+                mOuis[i] = builder.mOuis.get(i);
+            }
+            mPrefixes = builder.mPrefixes.toArray(new String[builder.mPrefixes.size()]);
+            mContains = builder.mContains.toArray(new String[builder.mContains.size()]);
+            mPatterns = builder.mPatterns.toArray(new Pattern[builder.mPatterns.size()]);
+            mIgnoreCase = builder.mIgnoreCase;
+
+            mMatchers = new ThreadLocal<Matcher[]>() {
+                @Override
+                protected Matcher[] initialValue() {
+                    Matcher[] matchers = new Matcher[mPatterns.length];
+                    for (int i = 0; i < matchers.length; i++) {
+                        matchers[i] = mPatterns[i].matcher("");
+                    }
+                    return matchers;
+                }
+            };
+        }
+
+        @Override
+        public boolean letItGo(ScanResult scanResult) {
+
+            if (scanResult.level < mMinLevel) {
+                return false;
+            }
+
+            if (mBands != null && !mBands[WifiBand.of(scanResult.frequency).ordinal()]) {
+                return false;
+            }
+
+            if (mOuis.length > 0 && !matchOui(scanResult.BSSID)) {
+                return false;
+            }
+
+            if (mEncrypts != null && (scanResult.capabilities == null
+                || !mEncrypts[WifiEncrypt.distinguish(scanResult).ordinal()])) {
+                return false;
+            }
+
+            String ssid = scanResult.SSID;
+            if (ssid == null) {
+                return mPrefixes.length == 0 && mContains.length == 0 && mPatterns.length == 0;
+            }
+
+            if (mPrefixes.length > 0) {
+                boolean matched = false;
+                for (String prefix : mPrefixes) {
+                    if (startsWith(ssid, prefix, mIgnoreCase)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+
+            if (mContains.length > 0) {
+                boolean matched = false;
+                for (String part : mContains) {
+                    if (contains(ssid, part, mIgnoreCase)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+
+            if (mPatterns.length > 0) {
+                Matcher[] matchers = mMatchers.get();
+                boolean matched = false;
+                for (Matcher matcher : matchers) {
+                    if (matcher.reset(ssid).find()) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean matchOui(String bssid) {
+            int oui = parseOui(bssid);
+            if (oui < 0) {
+                return false;
+            }
+            for (int value : mOuis) {
+                if (value == oui) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
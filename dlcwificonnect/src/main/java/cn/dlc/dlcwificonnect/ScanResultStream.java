@@ -0,0 +1,309 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 扫描结果流，支持多个订阅者长期订阅
+ * <p>
+ * 所有订阅者共用一个广播接收器，有订阅者或有扫描在进行时注册，没有订阅者时扫描也要靠它结束；
+ * 每次扫描只在后台线程获取一次结果，再分发给所有订阅者，分发的列表不可修改。
+ */
+public class ScanResultStream {
+
+    /**
+     * 分发方式
+     */
+    public enum Delivery {
+        /**
+         * 只分发最新的一次结果，订阅者处理不过来时旧的结果会被丢弃
+         */
+        LATEST_ONLY,
+        /**
+         * 每次扫描结果都按顺序分发
+         */
+        EVERY_SCAN
+    }
+
+    /**
+     * 订阅者
+     */
+    public interface Subscriber {
+
+        /**
+         * 收到扫描结果
+         *
+         * @param scanResults 过滤去重后的结果，不可修改
+         */
+        void onScanResults(List<ScanResult> scanResults);
+    }
+
+    /**
+     * 订阅关系
+     */
+    public interface Subscription {
+
+        /**
+         * 取消订阅，取消后不会再收到结果
+         */
+        void cancel();
+
+        boolean isCancelled();
+    }
+
+    private final Context mContext;
+    private final WifiHelper mWifiHelper;
+
+    private final List<SubscriberRecord> mRecords = new ArrayList<>();
+    private BroadcastReceiver mScanReceiver;
+    /**
+     * 是否有发起后还没收到结果的扫描，和订阅者一样用mRecords加锁
+     */
+    private boolean mScanPending;
+
+    private volatile List<ScanResult> mLatest;
+
+    ScanResultStream(Context context, WifiHelper wifiHelper) {
+        mContext = context;
+        mWifiHelper = wifiHelper;
+    }
+
+    /**
+     * 订阅扫描结果，在主线程回调
+     *
+     * @param subscriber
+     * @param delivery 分发方式
+     * @return 订阅关系，用于取消订阅
+     */
+    public Subscription subscribe(@NonNull Subscriber subscriber, @NonNull Delivery delivery) {
+        return subscribe(subscriber, delivery, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 订阅扫描结果
+     *
+     * @param subscriber
+     * @param delivery 分发方式
+     * @param executor 回调所在的线程，{@link WifiExecutors#direct()}表示直接在后台处理线程回调
+     * @return 订阅关系，用于取消订阅
+     */
+    public Subscription subscribe(@NonNull Subscriber subscriber, @NonNull Delivery delivery,
+        @NonNull Executor executor) {
+        SubscriberRecord record = new SubscriberRecord(subscriber, delivery, executor, false);
+        synchronized (mRecords) {
+            mRecords.add(record);
+            updateScanReceiver();
+        }
+        return record;
+    }
+
+    /**
+     * 订阅未去重的扫描结果，同一个SSID的每个BSSID都会保留，也不经过自定义过滤器，
+     * 适合按接入点统计的场景
+     *
+     * @param subscriber
+     * @param delivery 分发方式
+     * @param executor 回调所在的线程
+     * @return 订阅关系，用于取消订阅
+     */
+    public Subscription subscribeRaw(@NonNull Subscriber subscriber, @NonNull Delivery delivery,
+        @NonNull Executor executor) {
+        SubscriberRecord record = new SubscriberRecord(subscriber, delivery, executor, true);
+        synchronized (mRecords) {
+            mRecords.add(record);
+            updateScanReceiver();
+        }
+        return record;
+    }
+
+    /**
+     * 当前订阅者数量
+     *
+     * @return
+     */
+    public int getSubscriberCount() {
+        synchronized (mRecords) {
+            return mRecords.size();
+        }
+    }
+
+    /**
+     * 最近一次分发的结果
+     *
+     * @return 可能为null
+     */
+    public List<ScanResult> getLatest() {
+        return mLatest;
+    }
+
+    /**
+     * 发起了扫描，在收到结果前保持注册广播接收器，这样没有订阅者时扫描也能结束
+     */
+    void onScanStarted() {
+        synchronized (mRecords) {
+            mScanPending = true;
+            updateScanReceiver();
+        }
+    }
+
+    /**
+     * 在后台处理线程里获取当前(缓存的)扫描结果并分发给所有订阅者
+     */
+    void publishAsync() {
+        WifiExecutors.worker().post(new Runnable() {
+            @Override
+            public void run() {
+                publish();
+            }
+        });
+    }
+
+    /**
+     * 获取当前(缓存的)扫描结果并分发给所有订阅者，在后台处理线程里调用
+     */
+    void publish() {
+
+        SubscriberRecord[] records;
+        synchronized (mRecords) {
+            if (mRecords.isEmpty()) {
+                return;
+            }
+            records = mRecords.toArray(new SubscriberRecord[mRecords.size()]);
+        }
+
+        List<ScanResult> rawResults = mWifiHelper.getScanResults(false);
+        if (rawResults == null) {
+            rawResults = Collections.emptyList();
+        }
+        List<ScanResult> scanResults = Collections.unmodifiableList(
+            WifiHelper.filterScanResult(rawResults, mWifiHelper.getScanResultFilter()));
+        mLatest = scanResults;
+        rawResults = Collections.unmodifiableList(rawResults);
+
+        for (SubscriberRecord record : records) {
+            record.offer(record.mRaw ? rawResults : scanResults);
+        }
+    }
+
+    private void unsubscribe(SubscriberRecord record) {
+        synchronized (mRecords) {
+            mRecords.remove(record);
+            updateScanReceiver();
+        }
+    }
+
+    /**
+     * 有订阅者或有扫描在进行时注册，否则注销，调用时要持有mRecords
+     */
+    private void updateScanReceiver() {
+        boolean needed = !mRecords.isEmpty() || mScanPending;
+        if (needed && mScanReceiver == null) {
+            registerScanReceiver();
+        } else if (!needed && mScanReceiver != null) {
+            mContext.unregisterReceiver(mScanReceiver);
+            mScanReceiver = null;
+        }
+    }
+
+    private void registerScanReceiver() {
+
+        IntentFilter intentFilter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+
+        mScanReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                mWifiHelper.getScanScheduler()
+                    .onScanResultsAvailable(
+                        intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, true));
+                synchronized (mRecords) {
+                    mScanPending = false;
+                    updateScanReceiver();
+                }
+                publish();
+            }
+        };
+
+        // 在后台线程接收广播，过滤去重不占用主线程
+        mContext.registerReceiver(mScanReceiver, intentFilter, null, WifiExecutors.worker());
+    }
+
+    private final class SubscriberRecord implements Subscription, Runnable {
+
+        private final Subscriber mSubscriber;
+        private final Delivery mDelivery;
+        private final Executor mExecutor;
+        private final boolean mRaw;
+
+        private final ArrayDeque<List<ScanResult>> mPending = new ArrayDeque<>();
+        private boolean mScheduled;
+        private volatile boolean mCancelled;
+
+        SubscriberRecord(Subscriber subscriber, Delivery delivery, Executor executor,
+            boolean raw) {
+            mSubscriber = subscriber;
+            mDelivery = delivery;
+            mExecutor = executor;
+            mRaw = raw;
+        }
+
+        void offer(List<ScanResult> scanResults) {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                if (mDelivery == Delivery.LATEST_ONLY) {
+                    mPending.clear();
+                }
+                mPending.add(scanResults);
+                if (mScheduled) {
+                    return;
+                }
+                mScheduled = true;
+            }
+            mExecutor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                List<ScanResult> scanResults;
+                synchronized (this) {
+                    scanResults = mPending.poll();
+                    if (scanResults == null || mCancelled) {
+                        mPending.clear();
+                        mScheduled = false;
+                        return;
+                    }
+                }
+                mSubscriber.onScanResults(scanResults);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                mPending.clear();
+            }
+            unsubscribe(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+/**
+ * 扫描调度器，控制{@link WifiManager#startScan()}的调用频率
+ * <p>
+ * Android 9 以上前台应用每2分钟只能扫描4次，超出后系统不会报错，只会返回旧的结果。
+ * 这里记录最近的扫描时间，额度用完后不再调用系统扫描，由调用方直接使用缓存结果；
+ * 正在扫描时的重复请求合并成一次。Android 9 以下系统不限制，默认也不限制次数。
+ * <p>
+ * 系统扫描通过{@link ScanTrigger}发起，时间来自{@link Clock}，都可以替换，方便在JVM上测试。
+ */
+public class ScanScheduler {
+
+    /**
+     * 发起系统扫描
+     */
+    public interface ScanTrigger {
+
+        /**
+         * 发起一次扫描
+         *
+         * @return 系统是否接受了请求
+         */
+        boolean startScan();
+    }
+
+    /**
+     * Android 9，当前编译版本还没有这个常量
+     */
+    private static final int VERSION_P = 28;
+
+    /**
+     * Android 9 以上每个窗口内最多扫描次数
+     */
+    public static final int DEFAULT_MAX_SCANS = 4;
+
+    /**
+     * 不限制扫描次数，只合并正在进行的扫描
+     */
+    public static final int UNLIMITED_SCANS = Integer.MAX_VALUE;
+
+    /**
+     * 默认窗口时长
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 2 * 60 * 1000;
+
+    /**
+     * 默认扫描超时，超过该时间没收到结果就当作扫描结束
+     */
+    public static final long DEFAULT_SCAN_TIMEOUT_MILLIS = 10 * 1000;
+
+    /**
+     * 请求结果：发起了新的扫描
+     */
+    public static final int SCAN_STARTED = 0;
+
+    /**
+     * 请求结果：已经有扫描在进行，合并到该次扫描
+     */
+    public static final int SCAN_MERGED = 1;
+
+    /**
+     * 请求结果：额度已用完或系统拒绝，只能使用缓存结果
+     */
+    public static final int SCAN_THROTTLED = 2;
+
+    private final ScanTrigger mScanTrigger;
+    private final Clock mClock;
+
+    private final long mWindowMillis;
+    private final long mScanTimeoutMillis;
+
+    /**
+     * 最近的扫描时间，环形数组，不限次数时为null
+     */
+    private final long[] mScanTimes;
+    private int mScanTimesHead;
+    private int mScanTimesCount;
+
+    private boolean mScanning;
+    private long mScanStartTime;
+    private long mLastResultsTime = -1;
+
+    private int mStartedCount;
+    private int mMergedCount;
+    private int mThrottledCount;
+
+    public ScanScheduler(@NonNull WifiManager wifiManager) {
+        this(wifiManager, Clock.SYSTEM, defaultMaxScans(Build.VERSION.SDK_INT),
+            DEFAULT_WINDOW_MILLIS, DEFAULT_SCAN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 系统对扫描次数的限制
+     *
+     * @param sdkInt
+     * @return Android 9 以上为{@link #DEFAULT_MAX_SCANS}，以下为{@link #UNLIMITED_SCANS}
+     */
+    public static int defaultMaxScans(int sdkInt) {
+        return sdkInt >= VERSION_P ? DEFAULT_MAX_SCANS : UNLIMITED_SCANS;
+    }
+
+    /**
+     * 扫描调度器
+     *
+     * @param wifiManager
+     * @param clock 时钟
+     * @param maxScans 每个窗口内最多扫描次数，{@link #UNLIMITED_SCANS}表示不限
+     * @param windowMillis 窗口时长
+     * @param scanTimeoutMillis 扫描超时
+     */
+    public ScanScheduler(@NonNull WifiManager wifiManager, @NonNull Clock clock, int maxScans,
+        long windowMillis, long scanTimeoutMillis) {
+        this(trigger(wifiManager), clock, maxScans, windowMillis, scanTimeoutMillis);
+    }
+
+    /**
+     * 扫描调度器
+     *
+     * @param scanTrigger 发起系统扫描
+     * @param clock 时钟
+     * @param maxScans 每个窗口内最多扫描次数，{@link #UNLIMITED_SCANS}表示不限
+     * @param windowMillis 窗口时长
+     * @param scanTimeoutMillis 扫描超时
+     */
+    public ScanScheduler(@NonNull ScanTrigger scanTrigger, @NonNull Clock clock, int maxScans,
+        long windowMillis, long scanTimeoutMillis) {
+        if (maxScans <= 0) {
+            throw new IllegalArgumentException("maxScans must be positive");
+        }
+        mScanTrigger = scanTrigger;
+        mClock = clock;
+        mScanTimes = maxScans == UNLIMITED_SCANS ? null : new long[maxScans];
+        mWindowMillis = windowMillis;
+        mScanTimeoutMillis = scanTimeoutMillis;
+    }
+
+    /**
+     * 请求扫描
+     *
+     * @return {@link #SCAN_STARTED}，{@link #SCAN_MERGED} 或 {@link #SCAN_THROTTLED}
+     */
+    public synchronized int requestScan() {
+
+        long now = mClock.elapsedRealtime();
+
+        if (isScanning(now)) {
+            mMergedCount++;
+            return SCAN_MERGED;
+        }
+
+        expire(now);
+        if (mScanTimes != null && mScanTimesCount >= mScanTimes.length) {
+            mThrottledCount++;
+            return SCAN_THROTTLED;
+        }
+
+        boolean started = mScanTrigger.startScan();
+
+        if (mScanTimes != null) {
+            // 系统拒绝的请求在新版本上也可能计入额度，这里按已扫描算
+            mScanTimes[(mScanTimesHead + mScanTimesCount) % mScanTimes.length] = now;
+            mScanTimesCount++;
+        }
+
+        if (!started) {
+            mThrottledCount++;
+            return SCAN_THROTTLED;
+        }
+
+        mScanning = true;
+        mScanStartTime = now;
+        mStartedCount++;
+        return SCAN_STARTED;
+    }
+
+    private static ScanTrigger trigger(@NonNull final WifiManager wifiManager) {
+        return new ScanTrigger() {
+            @Override
+            public boolean startScan() {
+                try {
+                    return wifiManager.startScan();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * 收到扫描结果广播时调用
+     *
+     * @param resultsUpdated 结果是否更新，对应{@link WifiManager#EXTRA_RESULTS_UPDATED}
+     */
+    public synchronized void onScanResultsAvailable(boolean resultsUpdated) {
+        mScanning = false;
+        if (resultsUpdated) {
+            mLastResultsTime = mClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * 是否正在扫描
+     *
+     * @return
+     */
+    public synchronized boolean isScanning() {
+        return isScanning(mClock.elapsedRealtime());
+    }
+
+    private boolean isScanning(long now) {
+        if (mScanning && now - mScanStartTime >= mScanTimeoutMillis) {
+            mScanning = false;
+        }
+        return mScanning;
+    }
+
+    /**
+     * 移除窗口外的扫描记录
+     *
+     * @param now
+     */
+    private void expire(long now) {
+        if (mScanTimes == null) {
+            return;
+        }
+        while (mScanTimesCount > 0 && now - mScanTimes[mScanTimesHead] >= mWindowMillis) {
+            mScanTimesHead = (mScanTimesHead + 1) % mScanTimes.length;
+            mScanTimesCount--;
+        }
+    }
+
+    /**
+     * 当前窗口剩余的扫描次数
+     *
+     * @return 不限次数时为{@link #UNLIMITED_SCANS}
+     */
+    public synchronized int getRemainingBudget() {
+        if (mScanTimes == null) {
+            return UNLIMITED_SCANS;
+        }
+        expire(mClock.elapsedRealtime());
+        return mScanTimes.length - mScanTimesCount;
+    }
+
+    /**
+     * 距离下一次可以扫描的时间
+     *
+     * @return 毫秒，0表示现在就可以扫描
+     */
+    public synchronized long getNextScanDelay() {
+        long now = mClock.elapsedRealtime();
+        expire(now);
+        if (mScanTimes == null || mScanTimesCount < mScanTimes.length) {
+            return 0;
+        }
+        return Math.max(0, mScanTimes[mScanTimesHead] + mWindowMillis - now);
+    }
+
+    /**
+     * 最近一次结果的时长
+     *
+     * @return 毫秒，-1表示还没收到过扫描结果
+     */
+    public synchronized long getResultsAge() {
+        if (mLastResultsTime < 0) {
+            return -1;
+        }
+        return mClock.elapsedRealtime() - mLastResultsTime;
+    }
+
+    /**
+     * 实际发起的扫描次数
+     *
+     * @return
+     */
+    public synchronized int getStartedCount() {
+        return mStartedCount;
+    }
+
+    /**
+     * 合并的扫描请求数
+     *
+     * @return
+     */
+    public synchronized int getMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * 被限流的扫描请求数
+     *
+     * @return
+     */
+    public synchronized int getThrottledCount() {
+        return mThrottledCount;
+    }
+}
@@ -0,0 +1,69 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 从磁盘读取的扫描结果快照，用于冷启动时先显示上一次的列表
+ * <p>
+ * 快照里的结果都是旧的，界面上应该标记为过期，收到新的扫描结果后用
+ * {@link WifiHelper#setScanDeltaListener(WifiScanner.ScanDeltaListener, java.util.concurrent.Executor, List)}
+ * 对账
+ */
+public final class ScanSnapshot {
+
+    private final List<ScanResult> mScanResults;
+    private final long mSavedTime;
+    private final long mLoadNanos;
+
+    ScanSnapshot(List<ScanResult> scanResults, long savedTime, long loadNanos) {
+        mScanResults = Collections.unmodifiableList(scanResults);
+        mSavedTime = savedTime;
+        mLoadNanos = loadNanos;
+    }
+
+    /**
+     * 过滤去重后的扫描结果，不可修改
+     *
+     * @return
+     */
+    @NonNull
+    public List<ScanResult> getScanResults() {
+        return mScanResults;
+    }
+
+    /**
+     * 保存时间，基于{@link System#currentTimeMillis()}，重启后仍然有效
+     *
+     * @return
+     */
+    public long getSavedTime() {
+        return mSavedTime;
+    }
+
+    /**
+     * 距离保存过去了多久
+     *
+     * @return 毫秒
+     */
+    public long getAgeMillis() {
+        return Math.max(0, System.currentTimeMillis() - mSavedTime);
+    }
+
+    /**
+     * 读取快照花费的时间，用于统计启动耗时
+     *
+     * @return 纳秒
+     */
+    public long getLoadNanos() {
+        return mLoadNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanSnapshot{results=" + mScanResults.size() + ", age=" + getAgeMillis()
+            + "ms, load=" + mLoadNanos / 1000 + "us}";
+    }
+}
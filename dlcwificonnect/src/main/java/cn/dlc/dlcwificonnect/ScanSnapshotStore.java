@@ -0,0 +1,229 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.os.Build;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把最近一次过滤去重后的扫描结果保存到应用私有目录，冷启动时通过内存映射读取
+ * <p>
+ * 文件格式：头部(魔数、版本、SDK版本、系统指纹、保存时间、结果数量、数据长度) +
+ * {@link Parcel}序列化的结果。Parcel格式跟系统版本有关，系统升级后指纹不一致的快照直接丢弃。
+ * 可直接订阅扫描结果流自动保存，保存有最小间隔，避免频繁写闪存：
+ * <pre>
+ * wifiHelper.setScanSnapshotEnabled(true);
+ * </pre>
+ */
+public class ScanSnapshotStore implements ScanResultStream.Subscriber {
+
+    public static final String FILE_NAME = "dlc_wifi_scan_snapshot.bin";
+
+    /**
+     * 默认的最小保存间隔
+     */
+    public static final long DEFAULT_MIN_SAVE_INTERVAL_MILLIS = 30 * 1000;
+
+    private static final int MAGIC = 0x444C5753;
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    private final Clock mClock;
+    private long mMinSaveIntervalMillis = DEFAULT_MIN_SAVE_INTERVAL_MILLIS;
+    private long mLastSaveTime = -1;
+
+    public ScanSnapshotStore(@NonNull Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME), Clock.SYSTEM);
+    }
+
+    /**
+     * 扫描结果快照
+     *
+     * @param file 保存的文件
+     * @param clock 时钟，用于控制保存间隔
+     */
+    public ScanSnapshotStore(@NonNull File file, @NonNull Clock clock) {
+        mFile = file;
+        mClock = clock;
+    }
+
+    /**
+     * 设置自动保存的最小间隔
+     *
+     * @param minSaveIntervalMillis
+     */
+    public synchronized void setMinSaveInterval(long minSaveIntervalMillis) {
+        mMinSaveIntervalMillis = Math.max(0, minSaveIntervalMillis);
+    }
+
+    @Override
+    public void onScanResults(List<ScanResult> scanResults) {
+        synchronized (this) {
+            long now = mClock.elapsedRealtime();
+            if (mLastSaveTime >= 0 && now - mLastSaveTime < mMinSaveIntervalMillis) {
+                return;
+            }
+            mLastSaveTime = now;
+        }
+        save(scanResults);
+    }
+
+    /**
+     * 保存快照，先写临时文件再重命名，写到一半被杀也不会损坏旧的快照
+     *
+     * @param scanResults 过滤去重后的扫描结果
+     * @return 是否成功
+     */
+    public synchronized boolean save(@Nullable List<ScanResult> scanResults) {
+
+        if (scanResults == null) {
+            return false;
+        }
+
+        byte[] payload;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(scanResults);
+            payload = parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+
+        byte[] fingerprint = fingerprint().getBytes(UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(4 * 6 + 8 + fingerprint.length);
+        header.putInt(MAGIC)
+            .putInt(VERSION)
+            .putInt(Build.VERSION.SDK_INT)
+            .putInt(fingerprint.length)
+            .put(fingerprint)
+            .putLong(System.currentTimeMillis())
+            .putInt(scanResults.size())
+            .putInt(payload.length);
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(header.array());
+            out.write(payload);
+            out.getFD().sync();
+            out.close();
+            out = null;
+            if (temp.renameTo(mFile)) {
+                return true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(out);
+        }
+        temp.delete();
+        return false;
+    }
+
+    /**
+     * 读取快照
+     *
+     * @return 没有快照、格式不对或系统升级过时返回null
+     */
+    @Nullable
+    public synchronized ScanSnapshot load() {
+
+        long start = System.nanoTime();
+
+        if (!mFile.isFile()) {
+            return null;
+        }
+
+        FileInputStream in = null;
+        Parcel parcel = null;
+        try {
+            in = new FileInputStream(mFile);
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 4 * 4 || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION || buffer.getInt() != Build.VERSION.SDK_INT) {
+                return discard();
+            }
+
+            int fingerprintLength = buffer.getInt();
+            if (fingerprintLength < 0 || fingerprintLength > buffer.remaining()) {
+                return discard();
+            }
+            byte[] fingerprint = new byte[fingerprintLength];
+            buffer.get(fingerprint);
+            if (!fingerprint().equals(new String(fingerprint, UTF_8))) {
+                return discard();
+            }
+
+            long savedTime = buffer.getLong();
+            int count = buffer.getInt();
+            int payloadLength = buffer.getInt();
+            if (count < 0 || payloadLength != buffer.remaining()) {
+                return discard();
+            }
+
+            byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+
+            parcel = Parcel.obtain();
+            parcel.unmarshall(payload, 0, payloadLength);
+            parcel.setDataPosition(0);
+            ArrayList<ScanResult> scanResults = parcel.createTypedArrayList(ScanResult.CREATOR);
+            if (scanResults == null || scanResults.size() != count) {
+                return discard();
+            }
+
+            return new ScanSnapshot(scanResults, savedTime, System.nanoTime() - start);
+        } catch (Exception e) {
+            // 截断的文件或Parcel格式变化都会抛运行时异常
+            e.printStackTrace();
+            return discard();
+        } finally {
+            if (parcel != null) {
+                parcel.recycle();
+            }
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 删除快照
+     */
+    public synchronized void delete() {
+        mFile.delete();
+    }
+
+    private ScanSnapshot discard() {
+        mFile.delete();
+        return null;
+    }
+
+    private static String fingerprint() {
+        return Build.FINGERPRINT == null ? "" : Build.FINGERPRINT;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点的安全配置，由{@link ScanResult#capabilities}解析而来，不可修改
+ * <p>
+ * 相同的capabilities字符串只解析一次，解析结果会被缓存，
+ * 例如"[WPA2-PSK-CCMP][RSN-SAE-CCMP][ESS][MFPC][WPS]"
+ */
+public final class SecurityProfile {
+
+    /**
+     * 密钥管理方式
+     */
+    public static final int KEY_MGMT_NONE = 1;
+    public static final int KEY_MGMT_WEP = 1 << 1;
+    public static final int KEY_MGMT_PSK = 1 << 2;
+    public static final int KEY_MGMT_SAE = 1 << 3;
+    public static final int KEY_MGMT_OWE = 1 << 4;
+    public static final int KEY_MGMT_EAP = 1 << 5;
+    public static final int KEY_MGMT_SUITE_B = 1 << 6;
+    public static final int KEY_MGMT_FT = 1 << 7;
+
+    /**
+     * 协议
+     */
+    public static final int PROTOCOL_WPA = 1;
+    public static final int PROTOCOL_RSN = 1 << 1;
+
+    /**
+     * 加密算法
+     */
+    public static final int CIPHER_TKIP = 1;
+    public static final int CIPHER_CCMP = 1 << 1;
+    public static final int CIPHER_GCMP = 1 << 2;
+
+    /**
+     * 缓存上限，超过后清空重来，正常环境下不同的capabilities只有几十种
+     */
+    private static final int MAX_CACHE_SIZE = 512;
+
+    private static final ConcurrentHashMap<String, SecurityProfile> sCache =
+        new ConcurrentHashMap<>();
+
+    private static final SecurityProfile OPEN = parse("[ESS]");
+
+    private final String mCapabilities;
+    private final int mKeyMgmt;
+    private final int mProtocols;
+    private final int mCiphers;
+    private final boolean mPmfRequired;
+    private final boolean mPmfCapable;
+    private final boolean mWps;
+    private final WifiEncrypt mEncrypt;
+
+    private SecurityProfile(String capabilities, int keyMgmt, int protocols, int ciphers,
+        boolean pmfRequired, boolean pmfCapable, boolean wps) {
+        mCapabilities = capabilities;
+        mKeyMgmt = keyMgmt;
+        mProtocols = protocols;
+        mCiphers = ciphers;
+        mPmfRequired = pmfRequired;
+        mPmfCapable = pmfCapable;
+        mWps = wps;
+        mEncrypt = toEncrypt(keyMgmt);
+    }
+
+    /**
+     * 获取热点的安全配置
+     *
+     * @param scanResult
+     * @return
+     */
+    @NonNull
+    public static SecurityProfile of(@NonNull ScanResult scanResult) {
+        return of(scanResult.capabilities);
+    }
+
+    /**
+     * 获取安全配置，相同的字符串只解析一次
+     *
+     * @param capabilities 对应{@link ScanResult#capabilities}
+     * @return
+     */
+    @NonNull
+    public static SecurityProfile of(@Nullable String capabilities) {
+
+        if (capabilities == null || capabilities.isEmpty()) {
+            return OPEN;
+        }
+
+        SecurityProfile profile = sCache.get(capabilities);
+        if (profile == null) {
+            if (sCache.size() >= MAX_CACHE_SIZE) {
+                sCache.clear();
+            }
+            profile = parse(capabilities);
+            sCache.put(capabilities, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * 旧的加密方式对应的安全配置，用于只知道{@link WifiEncrypt}的情况
+     *
+     * @param wifiEncrypt
+     * @return
+     */
+    @NonNull
+    public static SecurityProfile of(@NonNull WifiEncrypt wifiEncrypt) {
+        switch (wifiEncrypt) {
+            case WEP:
+                return of("[WEP]");
+            case WPA:
+                return of("[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP]");
+            case EAP:
+                return of("[WPA-EAP-CCMP+TKIP][WPA2-EAP-CCMP+TKIP]");
+            case NONE:
+            default:
+                return OPEN;
+        }
+    }
+
+    /**
+     * 解析capabilities
+     *
+     * @param capabilities
+     * @return
+     */
+    private static SecurityProfile parse(String capabilities) {
+
+        int keyMgmt = 0;
+        int protocols = 0;
+        int ciphers = 0;
+        boolean pmfRequired = false;
+        boolean pmfCapable = false;
+        boolean wps = false;
+
+        int start = capabilities.indexOf('[');
+        while (start >= 0) {
+            int end = capabilities.indexOf(']', start);
+            if (end < 0) {
+                end = capabilities.length();
+            }
+            String group = capabilities.substring(start + 1, end);
+            start = capabilities.indexOf('[', end);
+
+            if (group.equals("WPS")) {
+                wps = true;
+                continue;
+            } else if (group.equals("MFPR")) {
+                pmfRequired = true;
+                continue;
+            } else if (group.equals("MFPC")) {
+                pmfCapable = true;
+                continue;
+            } else if (group.startsWith("WEP")) {
+                keyMgmt |= KEY_MGMT_WEP;
+                continue;
+            }
+
+            // 格式：协议-密钥管理-加密算法，例如 WPA2-PSK-CCMP，RSN-PSK+SAE-CCMP
+            int firstDash = group.indexOf('-');
+            if (firstDash < 0) {
+                // ESS, IBSS 等
+                continue;
+            }
+            String protocol = group.substring(0, firstDash);
+            if (protocol.equals("WPA")) {
+                protocols |= PROTOCOL_WPA;
+            } else if (protocol.equals("WPA2") || protocol.equals("RSN")) {
+                protocols |= PROTOCOL_RSN;
+            } else {
+                continue;
+            }
+
+            int secondDash = group.indexOf('-', firstDash + 1);
+            String keyPart = secondDash < 0 ? group.substring(firstDash + 1)
+                : group.substring(firstDash + 1, secondDash);
+            String cipherPart = secondDash < 0 ? "" : group.substring(secondDash + 1);
+
+            for (String key : keyPart.split("\\+")) {
+                keyMgmt |= parseKeyMgmt(key);
+            }
+            if (cipherPart.contains("CCMP")) {
+                ciphers |= CIPHER_CCMP;
+            }
+            if (cipherPart.contains("TKIP")) {
+                ciphers |= CIPHER_TKIP;
+            }
+            if (cipherPart.contains("GCMP")) {
+                ciphers |= CIPHER_GCMP;
+            }
+        }
+
+        if (keyMgmt == 0 || keyMgmt == KEY_MGMT_FT) {
+            keyMgmt |= KEY_MGMT_NONE;
+        }
+
+        return new SecurityProfile(capabilities, keyMgmt, protocols, ciphers, pmfRequired,
+            pmfCapable, wps);
+    }
+
+    private static int parseKeyMgmt(String key) {
+        int keyMgmt = 0;
+        if (key.startsWith("FT/")) {
+            keyMgmt |= KEY_MGMT_FT;
+            key = key.substring(3);
+        }
+        if (key.startsWith("PSK")) {
+            keyMgmt |= KEY_MGMT_PSK;
+        } else if (key.startsWith("SAE")) {
+            keyMgmt |= KEY_MGMT_SAE;
+        } else if (key.startsWith("OWE")) {
+            keyMgmt |= KEY_MGMT_OWE;
+        } else if (key.contains("SUITE_B")) {
+            keyMgmt |= KEY_MGMT_SUITE_B | KEY_MGMT_EAP;
+        } else if (key.startsWith("EAP") || key.startsWith("FILS")) {
+            keyMgmt |= KEY_MGMT_EAP;
+        }
+        return keyMgmt;
+    }
+
+    private static WifiEncrypt toEncrypt(int keyMgmt) {
+        if ((keyMgmt & KEY_MGMT_EAP) != 0) {
+            return WifiEncrypt.EAP;
+        } else if ((keyMgmt & (KEY_MGMT_PSK | KEY_MGMT_SAE)) != 0) {
+            return WifiEncrypt.WPA;
+        } else if ((keyMgmt & KEY_MGMT_WEP) != 0) {
+            return WifiEncrypt.WEP;
+        } else {
+            return WifiEncrypt.NONE;
+        }
+    }
+
+    /**
+     * 原始的capabilities
+     *
+     * @return
+     */
+    public String getCapabilities() {
+        return mCapabilities;
+    }
+
+    /**
+     * 密钥管理方式，{@link #KEY_MGMT_NONE}等的组合
+     *
+     * @return
+     */
+    public int getKeyMgmt() {
+        return mKeyMgmt;
+    }
+
+    /**
+     * 协议，{@link #PROTOCOL_WPA}，{@link #PROTOCOL_RSN}的组合
+     *
+     * @return
+     */
+    public int getProtocols() {
+        return mProtocols;
+    }
+
+    /**
+     * 加密算法，{@link #CIPHER_CCMP}等的组合
+     *
+     * @return
+     */
+    public int getCiphers() {
+        return mCiphers;
+    }
+
+    public boolean hasKeyMgmt(int keyMgmt) {
+        return (mKeyMgmt & keyMgmt) != 0;
+    }
+
+    /**
+     * 对应的旧加密方式
+     *
+     * @return
+     */
+    @NonNull
+    public WifiEncrypt getEncrypt() {
+        return mEncrypt;
+    }
+
+    /**
+     * 是否不需要密码（开放网络或增强开放OWE）
+     *
+     * @return
+     */
+    public boolean isOpen() {
+        return (mKeyMgmt & (KEY_MGMT_WEP | KEY_MGMT_PSK | KEY_MGMT_SAE | KEY_MGMT_EAP)) == 0;
+    }
+
+    public boolean isWep() {
+        return hasKeyMgmt(KEY_MGMT_WEP);
+    }
+
+    public boolean isPsk() {
+        return hasKeyMgmt(KEY_MGMT_PSK);
+    }
+
+    public boolean isSae() {
+        return hasKeyMgmt(KEY_MGMT_SAE);
+    }
+
+    /**
+     * 是否只支持WPA3-SAE，不兼容WPA2-PSK
+     *
+     * @return
+     */
+    public boolean isSaeOnly() {
+        return isSae() && !isPsk();
+    }
+
+    public boolean isOwe() {
+        return hasKeyMgmt(KEY_MGMT_OWE);
+    }
+
+    public boolean isEnterprise() {
+        return hasKeyMgmt(KEY_MGMT_EAP);
+    }
+
+    /**
+     * 是否要求受保护管理帧(PMF)
+     *
+     * @return
+     */
+    public boolean isPmfRequired() {
+        return mPmfRequired;
+    }
+
+    /**
+     * 是否支持受保护管理帧(PMF)
+     *
+     * @return
+     */
+    public boolean isPmfCapable() {
+        return mPmfCapable || mPmfRequired;
+    }
+
+    public boolean isWps() {
+        return mWps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SecurityProfile)) {
+            return false;
+        }
+        SecurityProfile that = (SecurityProfile) o;
+        return mKeyMgmt == that.mKeyMgmt
+            && mProtocols == that.mProtocols
+            && mCiphers == that.mCiphers
+            && mPmfRequired == that.mPmfRequired
+            && mPmfCapable == that.mPmfCapable
+            && mWps == that.mWps;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mKeyMgmt;
+        result = 31 * result + mProtocols;
+        result = 31 * result + mCiphers;
+        result = 31 * result + (mPmfRequired ? 1 : 0);
+        result = 31 * result + (mPmfCapable ? 1 : 0);
+        result = 31 * result + (mWps ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SecurityProfile{" + mEncrypt + ", capabilities=" + mCapabilities + "}";
+    }
+}
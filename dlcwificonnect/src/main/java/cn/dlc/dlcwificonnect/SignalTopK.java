@@ -0,0 +1,103 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 取信号最强的前K个热点，用大小为K的小顶堆实现，复杂度O(n log k)
+ * <p>
+ * 堆数组重复使用，非线程安全
+ */
+final class SignalTopK {
+
+    private ScanResult[] mHeap = new ScanResult[0];
+
+    /**
+     * 选出信号最强的前K个
+     *
+     * @param scanResults 待处理的数据
+     * @param k 个数
+     * @param out 输出列表，会先被清空，按信号从强到弱排列
+     * @return out
+     */
+    List<ScanResult> select(List<ScanResult> scanResults, int k, List<ScanResult> out) {
+
+        out.clear();
+
+        if (scanResults == null || k <= 0) {
+            return out;
+        }
+
+        int size = scanResults.size();
+        int capacity = Math.min(k, size);
+        if (capacity == 0) {
+            return out;
+        }
+
+        if (mHeap.length < capacity) {
+            mHeap = new ScanResult[capacity];
+        }
+        final ScanResult[] heap = mHeap;
+        int heapSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            if (heapSize < capacity) {
+                heap[heapSize] = scanResult;
+                siftUp(heap, heapSize);
+                heapSize++;
+            } else if (scanResult.level > heap[0].level) {
+                // 比堆里最弱的强，替换掉
+                heap[0] = scanResult;
+                siftDown(heap, 0, heapSize);
+            }
+        }
+
+        // 依次取出堆顶（最弱的）放到末尾，得到从强到弱的顺序
+        for (int end = heapSize - 1; end > 0; end--) {
+            ScanResult weakest = heap[0];
+            heap[0] = heap[end];
+            heap[end] = weakest;
+            siftDown(heap, 0, end);
+        }
+
+        for (int i = 0; i < heapSize; i++) {
+            out.add(heap[i]);
+        }
+        // 不持有扫描结果
+        Arrays.fill(heap, 0, heapSize, null);
+        return out;
+    }
+
+    private static void siftUp(ScanResult[] heap, int index) {
+        ScanResult item = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].level <= item.level) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    private static void siftDown(ScanResult[] heap, int index, int size) {
+        ScanResult item = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && heap[right].level < heap[child].level) {
+                child = right;
+            }
+            if (item.level <= heap[child].level) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = item;
+    }
+}
@@ -0,0 +1,184 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.WeakHashMap;
+
+/**
+ * 规范化的SSID，用作查找的键
+ * <p>
+ * 去掉引号，不用正则；{@link android.net.wifi.WifiConfiguration#SSID}和
+ * {@link android.net.wifi.WifiInfo#getSSID()}里不带引号的十六进制SSID会按UTF-8解码，
+ * 解码失败的保留十六进制形式。实例通过弱引用缓存复用，相等的键通常是同一个对象，
+ * 比较时先比引用，哈希值也只算一次。
+ */
+public final class SsidKey {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final WeakHashMap<SsidKey, WeakReference<SsidKey>> sCache =
+        new WeakHashMap<>();
+
+    /**
+     * 空SSID
+     */
+    public static final SsidKey EMPTY = intern(new SsidKey("", false));
+
+    private final String mText;
+    private final boolean mHex;
+    private final int mHash;
+
+    private SsidKey(String text, boolean hex) {
+        mText = text;
+        mHex = hex;
+        mHash = hex ? ~text.hashCode() : text.hashCode();
+    }
+
+    /**
+     * 从普通的SSID获取，例如{@link android.net.wifi.ScanResult#SSID}或用户输入的，
+     * 两端的引号会被去掉
+     *
+     * @param SSID
+     * @return
+     */
+    @NonNull
+    public static SsidKey of(@Nullable String SSID) {
+        String text = WifiHelper.trimQuotes(SSID);
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        return intern(new SsidKey(text, false));
+    }
+
+    /**
+     * 从系统格式的SSID获取：带引号的是文本，不带引号的是十六进制，
+     * 对应{@link android.net.wifi.WifiConfiguration#SSID}、{@link android.net.wifi.WifiInfo#getSSID()}和
+     * {@link android.net.NetworkInfo#getExtraInfo()}
+     *
+     * @param SSID
+     * @return
+     */
+    @NonNull
+    public static SsidKey ofWifiSsid(@Nullable String SSID) {
+        if (SSID == null || SSID.isEmpty()) {
+            return EMPTY;
+        }
+        if (SSID.charAt(0) == '"' || !isHex(SSID)) {
+            return of(SSID);
+        }
+        String decoded = decodeHex(SSID);
+        if (decoded != null) {
+            return of(decoded);
+        }
+        return intern(new SsidKey(SSID.toLowerCase(), true));
+    }
+
+    private static SsidKey intern(SsidKey key) {
+        synchronized (sCache) {
+            WeakReference<SsidKey> reference = sCache.get(key);
+            SsidKey cached = reference == null ? null : reference.get();
+            if (cached != null) {
+                return cached;
+            }
+            sCache.put(key, new WeakReference<>(key));
+            return key;
+        }
+    }
+
+    private static boolean isHex(String str) {
+        int length = str.length();
+        if (length % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(str.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 十六进制按UTF-8解码
+     *
+     * @param hex
+     * @return 不是合法的UTF-8时返回null
+     */
+    @Nullable
+    private static String decodeHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(
+                hex.charAt(i * 2 + 1), 16));
+        }
+        try {
+            return UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes))
+                .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 可显示的文本，无法按UTF-8解码的是小写十六进制
+     *
+     * @return
+     */
+    @NonNull
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * 是否是无法按UTF-8解码的十六进制SSID
+     *
+     * @return
+     */
+    public boolean isHex() {
+        return mHex;
+    }
+
+    public boolean isEmpty() {
+        return mText.isEmpty();
+    }
+
+    /**
+     * 转成{@link android.net.wifi.WifiConfiguration#SSID}的格式
+     *
+     * @return 文本带引号，十六进制不带
+     */
+    @NonNull
+    public String toWifiSsid() {
+        return mHex ? mText : WifiHelper.addQuotes(mText);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SsidKey)) {
+            return false;
+        }
+        SsidKey other = (SsidKey) o;
+        return mHash == other.mHash && mHex == other.mHex && mText.equals(other.mText);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    @Override
+    public String toString() {
+        return mText;
+    }
+}
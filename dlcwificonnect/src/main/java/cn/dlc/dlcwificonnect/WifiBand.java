@@ -0,0 +1,27 @@
+package cn.dlc.dlcwificonnect;
+
+/**
+ * wifi频段
+ */
+public enum WifiBand {
+
+    GHZ_2_4, GHZ_5, GHZ_6, UNKNOWN;
+
+    /**
+     * 根据频率判断频段
+     *
+     * @param frequency 频率(MHz)，对应{@link android.net.wifi.ScanResult#frequency}
+     * @return
+     */
+    public static WifiBand of(int frequency) {
+        if (frequency >= 2400 && frequency < 2500) {
+            return GHZ_2_4;
+        } else if (frequency >= 5925 && frequency < 7125) {
+            return GHZ_6;
+        } else if (frequency >= 4900 && frequency < 5925) {
+            return GHZ_5;
+        } else {
+            return UNKNOWN;
+        }
+    }
+}
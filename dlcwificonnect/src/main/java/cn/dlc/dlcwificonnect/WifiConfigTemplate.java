@@ -0,0 +1,300 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiEnterpriseConfig;
+import android.support.annotation.VisibleForTesting;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.BitSet;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+/**
+ * 各种安全类型的{@link WifiConfiguration}模板，BitSet只构建一次，新配置直接复制
+ * <p>
+ * 模板按安全类型、协议和加密算法缓存，创建后不可修改，可在多个线程间共享
+ */
+final class WifiConfigTemplate {
+
+    /**
+     * Android 10，当前编译版本还没有这些常量
+     */
+    private static final int VERSION_Q = 29;
+    /**
+     * WifiConfiguration.KeyMgmt.SAE
+     */
+    private static final int KEY_MGMT_SAE = 8;
+    /**
+     * WifiConfiguration.KeyMgmt.OWE
+     */
+    private static final int KEY_MGMT_OWE = 9;
+
+    private static final int TYPE_OPEN = 0;
+    private static final int TYPE_WEP = 1;
+    private static final int TYPE_PSK = 2;
+    private static final int TYPE_SAE = 3;
+    private static final int TYPE_OWE = 4;
+    private static final int TYPE_EAP = 5;
+
+    private static final int TYPE_COUNT = 6;
+    private static final int PROTOCOL_COUNT = 4;
+    private static final int CIPHER_COUNT = 8;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * 模板是不可变的，并发创建最多多建几个，不需要加锁
+     */
+    private static final WifiConfigTemplate[] sTemplates =
+        new WifiConfigTemplate[TYPE_COUNT * PROTOCOL_COUNT * CIPHER_COUNT];
+
+    private final int mType;
+    private final BitSet mKeyManagement = new BitSet();
+    private final BitSet mProtocols = new BitSet();
+    private final BitSet mAuthAlgorithms = new BitSet();
+    private final BitSet mPairwiseCiphers = new BitSet();
+    private final BitSet mGroupCiphers = new BitSet();
+
+    /**
+     * 获取安全配置对应的模板
+     *
+     * @param profile
+     * @return
+     */
+    static WifiConfigTemplate of(SecurityProfile profile) {
+        return of(profile, SDK_INT);
+    }
+
+    /**
+     * 获取指定系统版本上安全配置对应的模板
+     *
+     * @param profile
+     * @param sdkInt 系统版本，决定WPA3-SAE和OWE是否降级
+     * @return
+     */
+    @VisibleForTesting
+    static WifiConfigTemplate of(SecurityProfile profile, int sdkInt) {
+        int type = typeOf(profile, sdkInt);
+        int protocols = profile.getProtocols() & (PROTOCOL_COUNT - 1);
+        int ciphers = profile.getCiphers() & (CIPHER_COUNT - 1);
+        int index = (type * PROTOCOL_COUNT + protocols) * CIPHER_COUNT + ciphers;
+        WifiConfigTemplate template = sTemplates[index];
+        if (template == null) {
+            template = new WifiConfigTemplate(type, protocols, ciphers);
+            sTemplates[index] = template;
+        }
+        return template;
+    }
+
+    /**
+     * 安全类型，系统不支持的WPA3-SAE和OWE降级为WPA2-PSK和开放网络
+     *
+     * @param profile
+     * @param sdkInt
+     * @return
+     */
+    private static int typeOf(SecurityProfile profile, int sdkInt) {
+        if (profile.isEnterprise()) {
+            return TYPE_EAP;
+        } else if (profile.isSaeOnly() && sdkInt >= VERSION_Q) {
+            return TYPE_SAE;
+        } else if (profile.isPsk() || profile.isSae()) {
+            // WPA2/WPA3过渡模式按WPA2-PSK连接
+            return TYPE_PSK;
+        } else if (profile.isWep()) {
+            return TYPE_WEP;
+        } else if (profile.isOwe() && sdkInt >= VERSION_Q) {
+            return TYPE_OWE;
+        } else {
+            return TYPE_OPEN;
+        }
+    }
+
+    private WifiConfigTemplate(int type, int protocols, int ciphers) {
+        mType = type;
+        switch (type) {
+            case TYPE_EAP:
+                mKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
+                mKeyManagement.set(WifiConfiguration.KeyMgmt.IEEE8021X);
+                setProtocols(protocols);
+                setCiphers(ciphers);
+                break;
+            case TYPE_SAE:
+                mKeyManagement.set(KEY_MGMT_SAE);
+                mProtocols.set(WifiConfiguration.Protocol.RSN);
+                setCiphers(ciphers);
+                break;
+            case TYPE_PSK:
+                mKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+                setProtocols(protocols);
+                setCiphers(ciphers);
+                break;
+            case TYPE_WEP:
+                mKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                mAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
+                mAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
+                mGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                mGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
+                break;
+            case TYPE_OWE:
+                mKeyManagement.set(KEY_MGMT_OWE);
+                mProtocols.set(WifiConfiguration.Protocol.RSN);
+                setCiphers(ciphers);
+                break;
+            default:
+                mKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                break;
+        }
+    }
+
+    private void setProtocols(int protocols) {
+        if (protocols == 0 || (protocols & SecurityProfile.PROTOCOL_RSN) != 0) {
+            mProtocols.set(WifiConfiguration.Protocol.RSN);
+        }
+        if (protocols == 0 || (protocols & SecurityProfile.PROTOCOL_WPA) != 0) {
+            mProtocols.set(WifiConfiguration.Protocol.WPA);
+        }
+    }
+
+    private void setCiphers(int ciphers) {
+        if (ciphers == 0 || (ciphers & (SecurityProfile.CIPHER_CCMP
+            | SecurityProfile.CIPHER_GCMP)) != 0) {
+            mPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+        }
+        if (ciphers == 0 || (ciphers & SecurityProfile.CIPHER_TKIP) != 0) {
+            mPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+        }
+        // 组播加密可能比单播弱，都允许
+        mGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
+        mGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
+    }
+
+    /**
+     * 把模板复制到配置里，并按安全类型填写密码
+     *
+     * @param config
+     * @param password
+     */
+    void apply(WifiConfiguration config, String password) {
+
+        copy(mKeyManagement, config.allowedKeyManagement);
+        copy(mProtocols, config.allowedProtocols);
+        copy(mAuthAlgorithms, config.allowedAuthAlgorithms);
+        copy(mPairwiseCiphers, config.allowedPairwiseCiphers);
+        copy(mGroupCiphers, config.allowedGroupCiphers);
+
+        switch (mType) {
+            case TYPE_SAE:
+                config.preSharedKey = WifiHelper.addQuotes(password);
+                break;
+            case TYPE_PSK:
+                config.preSharedKey =
+                    isHexKey(password, 64) ? password : WifiHelper.addQuotes(password);
+                break;
+            case TYPE_WEP:
+                config.wepKeys[0] = isHexKey(password, 10) || isHexKey(password, 26)
+                    || isHexKey(password, 58) ? password : WifiHelper.addQuotes(password);
+                config.wepTxKeyIndex = 0;
+                break;
+            case TYPE_EAP:
+                // 调用方没指定EAP方式时默认PEAP + MSCHAPv2，证书、身份等由调用方通过enterpriseConfig设置
+                if (SDK_INT >= JELLY_BEAN_MR2) {
+                    if (config.enterpriseConfig == null) {
+                        config.enterpriseConfig = new WifiEnterpriseConfig();
+                    }
+                    WifiEnterpriseConfig enterpriseConfig = config.enterpriseConfig;
+                    if (enterpriseConfig.getEapMethod() == WifiEnterpriseConfig.Eap.NONE) {
+                        enterpriseConfig.setEapMethod(WifiEnterpriseConfig.Eap.PEAP);
+                        enterpriseConfig.setPhase2Method(WifiEnterpriseConfig.Phase2.MSCHAPV2);
+                    }
+                    if (!WifiHelper.isEmpty(password)) {
+                        enterpriseConfig.setPassword(password);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 已保存配置的认证方式是否和模板一致
+     *
+     * @param config
+     * @return
+     */
+    boolean matchesKeyManagement(WifiConfiguration config) {
+        return mKeyManagement.equals(config.allowedKeyManagement);
+    }
+
+    /**
+     * 是否需要密码，开放网络和OWE不需要
+     *
+     * @return
+     */
+    boolean hasPassword() {
+        return mType != TYPE_OPEN && mType != TYPE_OWE;
+    }
+
+    /**
+     * 模板和密码的摘要，系统不返回已保存的密码，用它判断已保存的配置是不是和这次要写的一样
+     * <p>
+     * 用HMAC-SHA256加上每个安装随机生成的密钥，拿到摘要也不能用现成的彩虹表反查密码
+     *
+     * @param key HMAC密钥，见{@link ConfigFingerprints}
+     * @param password
+     * @return
+     */
+    String fingerprint(byte[] key, String password) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(mType)
+            .append(mKeyManagement)
+            .append(mProtocols)
+            .append(mAuthAlgorithms)
+            .append(mPairwiseCiphers)
+            .append(mGroupCiphers)
+            .append('\n')
+            .append(password == null ? "" : password);
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            byte[] digest = mac.doFinal(sb.toString().getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                    .append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            // 不会发生，Android都支持HmacSHA256；不能退回明文，里面有密码
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void copy(BitSet from, BitSet to) {
+        to.clear();
+        to.or(from);
+    }
+
+    /**
+     * 是否为指定长度的十六进制密钥，这种密钥不加双引号
+     *
+     * @param key
+     * @param length
+     * @return
+     */
+    private static boolean isHexKey(String key, int length) {
+        if (key == null || key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,14 +1,27 @@
 package cn.dlc.dlcwificonnect;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkInfo;
 import android.net.wifi.ScanResult;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.util.Log;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * wifi连接管理器
@@ -18,6 +31,21 @@ public class WifiConnManager
 
     private static final String TAG = "WifiConnManager";
 
+    /**
+     * 没有定位权限时系统返回的SSID
+     */
+    private static final SsidKey UNKNOWN_SSID = SsidKey.of("<unknown ssid>");
+
+    /**
+     * 超过这个时间的扫描结果不能说明目标网络还在
+     */
+    private static final long SCAN_RESULTS_MAX_AGE_MILLIS = 30 * 1000;
+
+    /**
+     * 没有定位权限时系统返回的BSSID
+     */
+    private static final String UNKNOWN_BSSID = "02:00:00:00:00:00";
+
     private Context mContext;
     private WifiManager mWifiManager;
     private ConnectivityManager mConnectivityManager;
@@ -25,12 +53,35 @@ public class WifiConnManager
     private final WifiHelper mWifiHelper;
     private final WifiConnector mWifiConnector;
 
+    private final ConnectionStateMachine mStateMachine;
+    private final ConnectionMetrics mConnectionMetrics = new ConnectionMetrics();
+
     private boolean mShouldBindToNetwork;
+    /**
+     * 是否已注册网络状态监听，只在后台处理线程访问
+     */
+    private boolean mListeningNetworkState;
 
-    private String mToConnectSSID;
+    private SsidKey mToConnectSSID;
+    private String mToConnectRawSSID;
+    private SecurityProfile mToConnectProfile;
+    private String mToConnectPassword;
+    private String mToConnectBSSID;
+    private ConnectPath mConnectPath;
+    private boolean mSawConnecting;
+    /**
+     * 启用网络后是否断开过或开始过关联，之前收到的已连接广播是旧的连接
+     */
+    private boolean mSawReassociating;
+    private ScanResultStream.Subscription mScanSubscription;
 
-    private ConnectNetworkListener mConnectNetworkListener;
+    /**
+     * 当前连接的所有请求，相同的请求会合并到同一次连接，只在后台处理线程访问
+     */
+    private final List<ConnectRequest> mRequests = new ArrayList<>();
+    private FallbackConnector mFallbackConnector;
     private NetworkInfoListener mNetworkInfoListener;
+    private Executor mNetworkInfoExecutor;
 
     /**
      * 网路信息监听器
@@ -47,7 +98,7 @@ public class WifiConnManager
     public interface ConnectNetworkListener {
 
         /**
-         * 当有网络连接成功是，注意这里不一定是自己要连的那个网络，可以用{@link WifiHelper#isConnectedToSSID(String)} 去判断
+         * 连接到要连的网络时回调；没有定位权限拿不到SSID时无法区分，可以用{@link WifiHelper#isConnectedToSSID(String)} 再判断
          */
         void onConnected();
 
@@ -60,6 +111,67 @@ public class WifiConnManager
         void onConnectFailure(boolean passwordError, String reason);
     }
 
+    /**
+     * 带连接阶段的连接监听，失败时只回调{@link #onConnectFailure(Phase, Failure)}
+     */
+    public interface ConnectProgressListener extends ConnectNetworkListener {
+
+        /**
+         * 进入新的连接阶段
+         *
+         * @param phase
+         */
+        void onPhaseChanged(Phase phase);
+
+        /**
+         * 网络连接失败
+         *
+         * @param phase 失败时所在的阶段
+         * @param failure 失败原因
+         */
+        void onConnectFailure(Phase phase, Failure failure);
+    }
+
+    /**
+     * 多个候选网络自动连接的监听
+     */
+    public interface EnsureConnectedListener {
+
+        /**
+         * 连上了其中一个候选网络
+         *
+         * @param candidate
+         */
+        void onConnected(NetworkSpec candidate);
+
+        /**
+         * 没能连上任何候选网络
+         *
+         * @param failure 时间预算用完时为{@link Failure#TIMEOUT}，一直没扫描到任何候选网络时为
+         * {@link Failure#NETWORK_NOT_FOUND}，所有候选网络都密码错误时为{@link Failure#AUTH_FAILED}
+         */
+        void onConnectFailure(Failure failure);
+    }
+
+    /**
+     * 连接请求，用于取消
+     */
+    public interface ConnectHandle {
+
+        /**
+         * 取消请求，还没结束时监听会收到{@link Failure#CANCELLED}；
+         * 合并到同一次连接的其他请求不受影响，都取消后才停止连接
+         */
+        void cancel();
+
+        /**
+         * 是否已经回调过成功或失败
+         *
+         * @return
+         */
+        boolean isDone();
+    }
+
     /**
      * wifi连接管理器
      *
@@ -77,6 +189,7 @@ public class WifiConnManager
 
         mWifiHelper = new WifiHelper(mContext, mWifiManager, mConnectivityManager);
         mWifiConnector = new WifiConnector(mContext, mWifiHelper);
+        mStateMachine = new ConnectionStateMachine(WifiExecutors.worker(), new StateCallback());
     }
 
     public WifiHelper getHelper() {
@@ -87,44 +200,149 @@ public class WifiConnManager
         return mWifiConnector;
     }
 
+    /**
+     * 连上后把整个应用绑定到这个网络，应用的所有流量都会走这个wifi；
+     * 只有部分连接需要走这个网络时用{@link #requestNetworkScope(String)}
+     *
+     * @param shouldBindToNetwork
+     */
     public void setBindingEnabled(boolean shouldBindToNetwork) {
         mShouldBindToNetwork = shouldBindToNetwork;
     }
 
+    /**
+     * 设置连接各阶段的超时时间
+     *
+     * @param timeouts
+     */
+    public void setConnectTimeouts(@NonNull ConnectTimeouts timeouts) {
+        mStateMachine.setTimeouts(timeouts);
+    }
+
+    @NonNull
+    public ConnectTimeouts getConnectTimeouts() {
+        return mStateMachine.getTimeouts();
+    }
+
+    /**
+     * 连接耗时统计
+     *
+     * @return
+     */
+    @NonNull
+    public ConnectionMetrics getConnectionMetrics() {
+        return mConnectionMetrics;
+    }
+
+    /**
+     * 当前的连接阶段
+     *
+     * @return
+     */
+    @NonNull
+    public Phase getConnectPhase() {
+        return mStateMachine.getPhase();
+    }
+
+    /**
+     * 停止监听并取消进行中的连接，连接监听会收到{@link Failure#CANCELLED}
+     */
     public void abort() {
-        mWifiConnector.removeNetworkStateChangeListener();
-        mWifiConnector.removeWifiStateChangeListener();
-        mWifiConnector.clearNetworkBinding();
+        runOnWorker(new Runnable() {
+            @Override
+            public void run() {
+                mListeningNetworkState = false;
+                mWifiConnector.removeNetworkStateChangeListener();
+                mWifiConnector.removeWifiStateChangeListener();
+                mWifiConnector.clearNetworkBinding();
+                mStateMachine.cancel();
+            }
+        });
     }
 
     /**
      * 开启wifi
      */
     public void enableWifi() {
-        // 先移除上一个监听器
-        mWifiConnector.removeWifiStateChangeListener();
-        mWifiConnector.setWifiStateChangeListener(this);
-        mWifiConnector.enableWifi(true);
+        runOnWorker(new Runnable() {
+            @Override
+            public void run() {
+                // 先移除上一个监听器
+                mWifiConnector.removeWifiStateChangeListener();
+                mWifiConnector.setWifiStateChangeListener(WifiConnManager.this,
+                    WifiExecutors.direct());
+                mWifiConnector.enableWifi(true);
+            }
+        });
     }
 
     /**
-     * 监控网络连接状态变化
+     * 监控网络连接状态变化，在主线程回调
      */
     public void listenNetworkInfo(NetworkInfoListener listener) {
+        listenNetworkInfo(listener, WifiExecutors.mainThread());
+    }
 
-        mNetworkInfoListener = listener;
-        // 先移除上一个监听器
-        mWifiConnector.removeNetworkStateChangeListener();
-        mWifiConnector.setNetworkStateChangeListener(this);
+    /**
+     * 监控网络连接状态变化
+     *
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    public void listenNetworkInfo(final NetworkInfoListener listener,
+        @NonNull final Executor executor) {
+        runOnWorker(new Runnable() {
+            @Override
+            public void run() {
+                mNetworkInfoExecutor = executor;
+                mNetworkInfoListener = listener;
+                listenNetworkState();
+            }
+        });
     }
 
     /**
-     * 移除网络连接状态监听
+     * 移除网络连接状态监听，有进行中的连接时继续监听，直到连接结束
      */
     public void removeListenNetworkInfo() {
-        mNetworkInfoListener = null;
+        runOnWorker(new Runnable() {
+            @Override
+            public void run() {
+                mNetworkInfoListener = null;
+                if (!mStateMachine.isActive()) {
+                    mListeningNetworkState = false;
+                    mWifiConnector.removeNetworkStateChangeListener();
+                }
+                mWifiConnector.clearNetworkBinding();
+            }
+        });
+    }
+
+    /**
+     * 在后台处理线程执行，已经在这个线程里时直接执行，注册和注销广播都在这个线程里进行
+     *
+     * @param runnable
+     */
+    private static void runOnWorker(Runnable runnable) {
+        Handler worker = WifiExecutors.worker();
+        if (Looper.myLooper() == worker.getLooper()) {
+            runnable.run();
+        } else {
+            worker.post(runnable);
+        }
+    }
+
+    /**
+     * 在后台处理线程监听网络状态，已经在监听时不重复注册，避免再收到一次粘性广播，
+     * 只在后台处理线程调用
+     */
+    private void listenNetworkState() {
+        if (mListeningNetworkState) {
+            return;
+        }
+        mListeningNetworkState = true;
         mWifiConnector.removeNetworkStateChangeListener();
-        mWifiConnector.clearNetworkBinding();
+        mWifiConnector.setNetworkStateChangeListener(this, WifiExecutors.direct());
     }
 
     /**
@@ -134,36 +352,434 @@ public class WifiConnManager
         mWifiHelper.disconnect();
     }
 
+    /**
+     * 连接wifi，在主线程回调
+     *
+     * @param scanResult
+     * @param password
+     * @param listener
+     */
+    public ConnectHandle connect(ScanResult scanResult, String password,
+        ConnectNetworkListener listener) {
+        return connect(scanResult, password, listener, WifiExecutors.mainThread());
+    }
+
     /**
      * 连接wifi
+     *
      * @param scanResult
      * @param password
      * @param listener
+     * @param executor 回调所在的线程
      */
-    public void connect(ScanResult scanResult, String password, ConnectNetworkListener listener) {
-        connect(WifiEncrypt.distinguish(scanResult), scanResult.SSID, password, listener);
+    public ConnectHandle connect(ScanResult scanResult, String password,
+        ConnectNetworkListener listener, @NonNull Executor executor) {
+        return connect(SecurityProfile.of(scanResult), scanResult.SSID, password,
+            scanResult.BSSID, listener, executor);
     }
 
-    public void connect(WifiEncrypt wifiEncrypt, String SSID, String password,
+    public ConnectHandle connect(WifiEncrypt wifiEncrypt, String SSID, String password,
         ConnectNetworkListener listener) {
+        return connect(wifiEncrypt, SSID, password, listener, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 连接wifi
+     *
+     * @param wifiEncrypt
+     * @param SSID
+     * @param password
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    public ConnectHandle connect(WifiEncrypt wifiEncrypt, String SSID, String password,
+        ConnectNetworkListener listener, @NonNull Executor executor) {
+        return connect(SecurityProfile.of(wifiEncrypt), SSID, password, listener, executor);
+    }
+
+    /**
+     * 连接wifi
+     * <p>
+     * 连接按{@link Phase}分阶段进行，每个阶段超时都会失败，超时时间见{@link #setConnectTimeouts(ConnectTimeouts)}；
+     * 监听是{@link ConnectProgressListener}时还会回调阶段变化和具体的失败原因。
+     * <p>
+     * 请求按调用顺序在后台处理线程里排队处理：正在连接同一个SSID（密码也相同）时合并到这次连接，
+     * 不会重新断开；要连的是别的网络时取消当前连接，之前的请求收到{@link Failure#CANCELLED}。
+     * 每个请求都只会收到一次成功或失败的回调。
+     *
+     * @param profile 安全配置
+     * @param SSID
+     * @param password
+     * @param listener
+     * @param executor 回调所在的线程
+     * @return 用于取消这个请求
+     */
+    public ConnectHandle connect(SecurityProfile profile, String SSID, String password,
+        ConnectNetworkListener listener, @NonNull Executor executor) {
+        return connect(profile, SSID, password, null, listener, executor);
+    }
+
+    /**
+     * 连接wifi的指定接入点
+     * <p>
+     * 已经连着这个接入点时直接成功；已经连着同一个网络的其他接入点时只切换接入点，
+     * 不断开重连，也不重新绑定网络。已保存的配置和要写的一致时直接启用，不重新添加。
+     * 走的路径和省下的时间见{@link ConnectionAttempt#getPath()}。
+     *
+     * @param profile 安全配置
+     * @param SSID
+     * @param password
+     * @param BSSID 要连的接入点，null表示不限
+     * @param listener
+     * @param executor 回调所在的线程
+     * @return 用于取消这个请求
+     */
+    public ConnectHandle connect(final SecurityProfile profile, final String SSID,
+        final String password, @Nullable final String BSSID, ConnectNetworkListener listener,
+        @NonNull Executor executor) {
+        final ConnectRequest request = new ConnectRequest(listener, executor);
+        // 连接过程都在后台处理线程里进行
+        WifiExecutors.worker().post(new Runnable() {
+            @Override
+            public void run() {
+                startConnect(request, profile, SSID, password, BSSID);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * 连上任意一个候选网络，在主线程回调
+     *
+     * @param candidates
+     * @param policy
+     * @param listener
+     * @return 用于取消
+     */
+    public ConnectHandle ensureConnected(@NonNull List<NetworkSpec> candidates,
+        @NonNull ConnectPolicy policy, EnsureConnectedListener listener) {
+        return ensureConnected(candidates, policy, listener, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 连上任意一个候选网络
+     * <p>
+     * 每次按平滑后的信号强度和历史连接情况排序，扫描结果过期的候选网络会跳过；
+     * 失败后按指数退避加随机抖动再试下一个，直到连上或用完{@link ConnectPolicy#getDeadlineMillis()}。
+     * 已经连着其中一个时直接回调成功。新的调用会取消上一次还没结束的。
+     *
+     * @param candidates 候选网络
+     * @param policy 重试策略
+     * @param listener
+     * @param executor 回调所在的线程
+     * @return 用于取消
+     */
+    public ConnectHandle ensureConnected(@NonNull List<NetworkSpec> candidates,
+        @NonNull ConnectPolicy policy, EnsureConnectedListener listener,
+        @NonNull Executor executor) {
+        final FallbackConnector connector =
+            new FallbackConnector(this, candidates, policy, listener, executor);
+        WifiExecutors.worker().post(new Runnable() {
+            @Override
+            public void run() {
+                if (mFallbackConnector != null) {
+                    mFallbackConnector.cancel();
+                }
+                mFallbackConnector = connector;
+                connector.start();
+            }
+        });
+        return connector;
+    }
+
+    /**
+     * 开启wifi，已经开启时直接成功
+     * <p>
+     * 系统不允许应用开关wifi时（Android 10以后）不会完成，需要配合{@link WifiFuture#withTimeout(long)}
+     *
+     * @return wifi开启后成功
+     */
+    @NonNull
+    public WifiFuture<Void> enableWifiAsync() {
+        if (mWifiHelper.isWifiEnabled()) {
+            return WifiFuture.succeeded(null);
+        }
+        final WifiFuture<Void> future = new WifiFuture<>();
+        final BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE,
+                    WifiManager.WIFI_STATE_UNKNOWN) == WifiManager.WIFI_STATE_ENABLED) {
+                    future.complete(null);
+                }
+            }
+        };
+        mContext.registerReceiver(receiver,
+            new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION), null,
+            WifiExecutors.worker());
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                mContext.unregisterReceiver(receiver);
+            }
+        }, WifiExecutors.handler(WifiExecutors.worker()));
+        mWifiConnector.enableWifi(true);
+        return future;
+    }
 
-        mConnectNetworkListener = listener;
+    /**
+     * 扫描一次，结果是过滤去重后的，不可修改
+     * <p>
+     * 扫描被限流时用缓存的结果完成，可以用{@link WifiHelper#getScanResultsAge()}判断新旧
+     *
+     * @return
+     */
+    @NonNull
+    public WifiFuture<List<ScanResult>> scanAsync() {
+        final WifiFuture<List<ScanResult>> future = new WifiFuture<>();
+        final ScanResultStream.Subscription subscription = mWifiHelper.getScanResultStream()
+            .subscribe(new ScanResultStream.Subscriber() {
+                @Override
+                public void onScanResults(List<ScanResult> scanResults) {
+                    future.complete(scanResults);
+                }
+            }, ScanResultStream.Delivery.LATEST_ONLY, WifiExecutors.direct());
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                subscription.cancel();
+            }
+        }, WifiExecutors.direct());
+        mWifiHelper.startScan();
+        return future;
+    }
 
-        mToConnectSSID = SSID;
+    /**
+     * 连接wifi
+     *
+     * @param scanResult
+     * @param password
+     * @return 连上后成功，失败时是{@link ConnectFailureException}，取消会停止这个连接请求
+     * @see #connectAsync(SecurityProfile, String, String, String)
+     */
+    @NonNull
+    public WifiFuture<Void> connectAsync(ScanResult scanResult, String password) {
+        return connectAsync(SecurityProfile.of(scanResult), scanResult.SSID, password,
+            scanResult.BSSID);
+    }
 
-        if (mWifiHelper.isConnectedToSSID(SSID)) {
-            listener.onConnected();
+    /**
+     * 连接wifi，和{@link #connect(SecurityProfile, String, String, String, ConnectNetworkListener, Executor)}
+     * 一样排队和合并请求
+     *
+     * @param profile 安全配置
+     * @param SSID
+     * @param password
+     * @param BSSID 要连的接入点，null表示不限
+     * @return 连上后成功，失败时是{@link ConnectFailureException}，取消会停止这个连接请求
+     */
+    @NonNull
+    public WifiFuture<Void> connectAsync(SecurityProfile profile, String SSID, String password,
+        @Nullable String BSSID) {
+        final WifiFuture<Void> future = new WifiFuture<>();
+        final ConnectHandle handle =
+            connect(profile, SSID, password, BSSID, new ConnectProgressListener() {
+                @Override
+                public void onPhaseChanged(Phase phase) {
+                }
+
+                @Override
+                public void onConnectFailure(Phase phase, Failure failure) {
+                    future.fail(new ConnectFailureException(phase, failure));
+                }
+
+                @Override
+                public void onConnected() {
+                    future.complete(null);
+                }
+
+                @Override
+                public void onConnectFailure(boolean passwordError, String reason) {
+                    // 只会回调带阶段的版本
+                }
+            }, WifiExecutors.direct());
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                handle.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 请求只对部分连接生效的网络绑定，不影响应用的其他流量，不需要{@link #setBindingEnabled(boolean)}
+     * <pre>
+     * wifiConnManager.connectAsync(profile, SSID, password, null)
+     *     .compose(new WifiFuture.AsyncFunction&lt;Void, NetworkScope&gt;() {
+     *         public WifiFuture&lt;NetworkScope&gt; apply(Void input) {
+     *             return wifiConnManager.requestNetworkScope(SSID);
+     *         }
+     *     }, WifiExecutors.direct())
+     *     .withTimeout(30000)
+     *     .addCallback(callback);
+     * </pre>
+     *
+     * @param SSID
+     * @return 目标网络可用后成功，Android 5.0以下失败；用完后要{@link NetworkScope#close()}
+     */
+    @NonNull
+    public WifiFuture<NetworkScope> requestNetworkScope(String SSID) {
+        return mWifiConnector.requestNetworkScope(SSID);
+    }
+
+    private void startConnect(ConnectRequest request, SecurityProfile profile, String SSID,
+        String password, String BSSID) {
+
+        if (request.isDone()) {
+            // 还没开始就被取消了
             return;
         }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && mShouldBindToNetwork) {
-            mWifiConnector.bindToNetwork(SSID, this);
+        SsidKey ssid = SsidKey.of(SSID);
+        if (mStateMachine.isActive() && ssid.equals(mToConnectSSID) && TextUtils.equals(password,
+            mToConnectPassword) && (BSSID == null || BSSID.equalsIgnoreCase(mToConnectBSSID))) {
+            // 同一个网络正在连接，等这次的结果
+            Log.i(TAG, "合并到正在进行的连接：" + ssid);
+            mRequests.add(request);
+            request.notifyPhaseChanged(mStateMachine.getPhase());
+            return;
         }
 
-        boolean connectingToSSID = mWifiConnector.connect(wifiEncrypt, SSID, password);
-        if (!connectingToSSID) {
-            String reason = "Error while enabling network.";
-            listener.onConnectFailure(false, reason);
+        // 先结束上一次连接，旧的请求收到取消
+        mStateMachine.cancel();
+
+        mRequests.add(request);
+
+        mToConnectSSID = ssid;
+        mToConnectRawSSID = SSID;
+        mToConnectProfile = profile;
+        mToConnectPassword = password;
+        mToConnectBSSID = BSSID;
+        mConnectPath = null;
+        mSawConnecting = false;
+        mSawReassociating = false;
+
+        boolean connectedToSSID = mWifiHelper.isConnectedToSSID(SSID);
+        if (connectedToSSID && (BSSID == null || BSSID.equalsIgnoreCase(getConnectedBssid()))) {
+            mConnectionMetrics.onStart(mToConnectSSID);
+            mConnectionMetrics.onPhase(Phase.IDLE);
+            mConnectionMetrics.onPath(ConnectPath.ALREADY_CONNECTED);
+            mConnectionMetrics.onFinish(getConnectedBssid(), null, null);
+            notifyConnected();
+            return;
+        }
+
+        listenNetworkState();
+        mWifiConnector.removeWifiStateChangeListener();
+        mWifiConnector.setWifiStateChangeListener(this, WifiExecutors.direct());
+
+        // 同一个网络里切换接入点不会断开，已绑定的网络不变
+        boolean bind = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+            && mShouldBindToNetwork && !connectedToSSID;
+        if (bind) {
+            mWifiConnector.bindToNetwork(SSID, this,
+                WifiExecutors.handler(WifiExecutors.worker()));
+        }
+
+        mConnectionMetrics.onStart(mToConnectSSID);
+        mStateMachine.start(mWifiHelper.isWifiEnabled(), bind);
+    }
+
+    /**
+     * wifi已开启，添加并启用网络，再看扫描结果里有没有目标网络
+     */
+    private void enableTargetNetwork() {
+
+        // 启用前收到的状态都属于旧的连接
+        mSawConnecting = false;
+        mSawReassociating = false;
+        ConnectPath path = mWifiConnector.connect(mToConnectProfile, mToConnectRawSSID,
+            mToConnectPassword, mToConnectBSSID);
+        if (path == null) {
+            Log.e(TAG, "Error while enabling network.");
+            mStateMachine.fail(Failure.CONFIG_FAILED);
+            return;
+        }
+        mConnectPath = path;
+        mConnectionMetrics.onPath(path);
+        if (path == ConnectPath.ALREADY_CONNECTED) {
+            mStateMachine.onAlreadyConnected();
+            return;
+        }
+
+        long age = mWifiHelper.getScanResultsAge();
+        if (age >= 0 && age <= SCAN_RESULTS_MAX_AGE_MILLIS && containsTarget(
+            mWifiHelper.getScanResults(false))) {
+            mStateMachine.onTargetFound();
+            return;
+        }
+
+        mScanSubscription = mWifiHelper.getScanResultStream()
+            .subscribeRaw(new ScanResultStream.Subscriber() {
+                @Override
+                public void onScanResults(List<ScanResult> scanResults) {
+                    if (containsTarget(scanResults)) {
+                        mStateMachine.onTargetFound();
+                    }
+                }
+            }, ScanResultStream.Delivery.LATEST_ONLY, WifiExecutors.direct());
+        mWifiHelper.startScan();
+    }
+
+    private boolean containsTarget(List<ScanResult> scanResults) {
+        if (scanResults == null) {
+            return false;
+        }
+        for (int i = 0, size = scanResults.size(); i < size; i++) {
+            if (mToConnectSSID.equals(SsidKey.of(scanResults.get(i).SSID))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已连接的是不是要连的网络，连接前断开的旧网络也会发已连接的广播
+     *
+     * @param networkInfo
+     * @return
+     */
+    private boolean isTargetNetwork(NetworkInfo networkInfo) {
+        SsidKey ssid = SsidKey.ofWifiSsid(networkInfo == null ? null : networkInfo.getExtraInfo());
+        if (ssid.isEmpty() || UNKNOWN_SSID.equals(ssid)) {
+            WifiInfo wifiInfo = mWifiHelper.getConnectionInfo();
+            ssid = SsidKey.ofWifiSsid(wifiInfo == null ? null : wifiInfo.getSSID());
+        }
+        if (ssid.isEmpty() || UNKNOWN_SSID.equals(ssid)) {
+            // 没有定位权限拿不到SSID，这次连接开始关联后才收到的就认为是目标网络
+            return mSawConnecting;
+        }
+        if (!ssid.equals(mToConnectSSID)) {
+            return false;
+        }
+        if ((mConnectPath == ConnectPath.NEW_CONFIG || mConnectPath == ConnectPath.REUSE_SAVED)
+            && !mSawReassociating) {
+            // 原来就连着同名网络时，重新关联前收到的(包括粘性广播)还是旧配置的连接
+            return false;
+        }
+        if (mConnectPath == ConnectPath.ROAM) {
+            // 切换接入点前已经是连着这个网络的，要等连到指定的接入点
+            String bssid = getConnectedBssid();
+            return bssid == null || bssid.equalsIgnoreCase(mToConnectBSSID);
+        }
+        return true;
+    }
+
+    private void stopScanSubscription() {
+        if (mScanSubscription != null) {
+            mScanSubscription.cancel();
+            mScanSubscription = null;
         }
     }
 
@@ -177,6 +793,11 @@ public class WifiConnManager
 
     @Override
     public void onWifiEnabled(boolean initialStickyBroadcast) {
+        if (mStateMachine.isActive()) {
+            // 连接过程中继续监听，wifi被关闭时连接失败
+            mStateMachine.onWifiEnabled();
+            return;
+        }
         mWifiConnector.removeWifiStateChangeListener();
         scheduleWifiScan();
     }
@@ -186,22 +807,37 @@ public class WifiConnManager
         if (initialStickyBroadcast) {
             mWifiConnector.enableWifi(true);
         } else {
+            mStateMachine.onWifiDisabled();
             abort();
         }
     }
 
     @Override
-    public void onNetworkStateChange(NetworkInfo networkInfo, NetworkInfo.State state,
-        NetworkInfo.DetailedState detailedState) {
+    public void onNetworkStateChange(final NetworkInfo networkInfo, final NetworkInfo.State state,
+        final NetworkInfo.DetailedState detailedState) {
 
-        mNetworkInfoListener.onConnecting(networkInfo, state, detailedState);
+        final NetworkInfoListener networkInfoListener = mNetworkInfoListener;
+        if (networkInfoListener != null) {
+            mNetworkInfoExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    networkInfoListener.onConnecting(networkInfo, state, detailedState);
+                }
+            });
+        }
 
-        if (mConnectNetworkListener != null) {
-            if (state == NetworkInfo.State.CONNECTED) {
-                mConnectNetworkListener.onConnected();
-                mConnectNetworkListener = null;
-            }
+        if (detailedState == NetworkInfo.DetailedState.CONNECTING
+            || detailedState == NetworkInfo.DetailedState.AUTHENTICATING
+            || detailedState == NetworkInfo.DetailedState.OBTAINING_IPADDR) {
+            mSawConnecting = true;
+            mSawReassociating = true;
+        } else if (detailedState == NetworkInfo.DetailedState.DISCONNECTED
+            || detailedState == NetworkInfo.DetailedState.SCANNING) {
+            mSawReassociating = true;
         }
+
+        mStateMachine.onNetworkStateChange(detailedState,
+            detailedState == NetworkInfo.DetailedState.CONNECTED && isTargetNetwork(networkInfo));
     }
 
     @Override
@@ -209,25 +845,257 @@ public class WifiConnManager
 
         Log.e(TAG, "wifi密码验证失败");
 
-        if (mConnectNetworkListener != null) {
-            mConnectNetworkListener.onConnectFailure(true, "password error!");
-            mConnectNetworkListener = null;
-        }
+        mStateMachine.onAuthenticationError();
     }
 
     @Override
     public void onNetworkBound() {
-        if (mConnectNetworkListener != null) {
-            mConnectNetworkListener.onConnected();
-            mConnectNetworkListener = null;
+        mStateMachine.onNetworkBound();
+    }
+
+    /**
+     * 状态机回调，在后台处理线程执行
+     */
+    private class StateCallback implements ConnectionStateMachine.Callback {
+
+        @Override
+        public void onPhaseChanged(@NonNull Phase phase) {
+            mConnectionMetrics.onPhase(phase);
+            if (phase != Phase.SCANNING) {
+                stopScanSubscription();
+            }
+            notifyPhaseChanged(phase);
+            if (phase == Phase.ENABLING) {
+                mWifiConnector.enableWifi(true);
+            } else if (phase == Phase.SCANNING) {
+                enableTargetNetwork();
+            }
+        }
+
+        @Override
+        public void onDone() {
+            stopScanSubscription();
+            mWifiConnector.removeWifiStateChangeListener();
+            clearRoamTarget();
+            mConnectionMetrics.onFinish(getConnectedBssid(), null, null);
+            notifyConnected();
+        }
+
+        @Override
+        public void onFailed(@NonNull Phase phase, @NonNull Failure failure) {
+            stopScanSubscription();
+            mWifiConnector.removeWifiStateChangeListener();
+            // 超时、失败和取消(包括取消最后一个请求)都走这里，不再等待或保留绑定
+            mWifiConnector.clearNetworkBinding();
+            clearRoamTarget();
+            mConnectionMetrics.onFinish(null, phase, failure);
+            notifyConnectFailure(phase, failure);
+        }
+    }
+
+    /**
+     * 切换接入点时指定了BSSID，结束后恢复，之后系统可以自己漫游
+     */
+    private void clearRoamTarget() {
+        if (mConnectPath == ConnectPath.ROAM) {
+            mWifiConnector.clearRoamTarget(mToConnectRawSSID);
+        }
+    }
+
+    private String getConnectedBssid() {
+        WifiInfo wifiInfo = mWifiHelper.getConnectionInfo();
+        String bssid = wifiInfo == null ? null : wifiInfo.getBSSID();
+        return UNKNOWN_BSSID.equals(bssid) ? null : bssid;
+    }
+
+    /**
+     * 回调连接阶段变化
+     *
+     * @param phase
+     */
+    private void notifyPhaseChanged(Phase phase) {
+        for (int i = 0, size = mRequests.size(); i < size; i++) {
+            mRequests.get(i).notifyPhaseChanged(phase);
+        }
+    }
+
+    /**
+     * 回调连接成功，每个请求只回调一次
+     */
+    private void notifyConnected() {
+        if (mRequests.isEmpty()) {
+            return;
+        }
+        recordUsage(true);
+        ConnectRequest[] requests = mRequests.toArray(new ConnectRequest[mRequests.size()]);
+        mRequests.clear();
+        for (ConnectRequest request : requests) {
+            request.notifyConnected();
+        }
+    }
+
+    /**
+     * 回调连接失败，每个请求只回调一次
+     *
+     * @param phase 失败时所在的阶段
+     * @param failure
+     */
+    private void notifyConnectFailure(Phase phase, Failure failure) {
+        if (mRequests.isEmpty()) {
+            return;
+        }
+        if (failure != Failure.CANCELLED && failure != Failure.WIFI_DISABLED) {
+            // 取消和关闭wifi不是网络的问题
+            recordUsage(false);
+        }
+        ConnectRequest[] requests = mRequests.toArray(new ConnectRequest[mRequests.size()]);
+        mRequests.clear();
+        for (ConnectRequest request : requests) {
+            request.notifyConnectFailure(phase, failure);
+        }
+    }
+
+    /**
+     * 取消单个请求，没有其他请求等这次连接时停止连接
+     *
+     * @param request
+     */
+    private void cancelRequest(ConnectRequest request) {
+        if (!mRequests.remove(request)) {
+            return;
+        }
+        request.notifyConnectFailure(mStateMachine.getPhase(), Failure.CANCELLED);
+        if (mRequests.isEmpty()) {
+            mStateMachine.cancel();
+        }
+    }
+
+    /**
+     * 一个连接请求，回调只在后台处理线程里发起
+     */
+    private class ConnectRequest implements ConnectHandle {
+
+        private final ConnectNetworkListener mListener;
+        private final Executor mExecutor;
+        private volatile boolean mDone;
+
+        ConnectRequest(@Nullable ConnectNetworkListener listener, @NonNull Executor executor) {
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        @Override
+        public void cancel() {
+            if (mDone) {
+                return;
+            }
+            WifiExecutors.worker().post(new Runnable() {
+                @Override
+                public void run() {
+                    cancelRequest(ConnectRequest.this);
+                }
+            });
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone;
+        }
+
+        void notifyPhaseChanged(final Phase phase) {
+            if (mDone || !(mListener instanceof ConnectProgressListener) || !phase.isActive()) {
+                return;
+            }
+            final ConnectProgressListener listener = (ConnectProgressListener) mListener;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onPhaseChanged(phase);
+                }
+            });
         }
+
+        void notifyConnected() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            final ConnectNetworkListener listener = mListener;
+            if (listener == null) {
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onConnected();
+                }
+            });
+        }
+
+        void notifyConnectFailure(final Phase phase, final Failure failure) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            final ConnectNetworkListener listener = mListener;
+            if (listener == null) {
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener instanceof ConnectProgressListener) {
+                        ((ConnectProgressListener) listener).onConnectFailure(phase, failure);
+                    } else {
+                        listener.onConnectFailure(failure == Failure.AUTH_FAILED,
+                            failureReason(phase, failure));
+                    }
+                }
+            });
+        }
+    }
+
+    private static String failureReason(Phase phase, Failure failure) {
+        switch (failure) {
+            case AUTH_FAILED:
+                return "password error!";
+            case CONFIG_FAILED:
+                return "Error while enabling network.";
+            case TIMEOUT:
+                return "Timed out while " + phase + ".";
+            default:
+                return failure + " while " + phase + ".";
+        }
+    }
+
+    /**
+     * 记录连接结果，用于调整已保存网络的优先级，会修改配置，在后台线程执行
+     *
+     * @param success
+     */
+    private void recordUsage(final boolean success) {
+        final SsidKey ssid = mToConnectSSID;
+        if (ssid == null) {
+            return;
+        }
+        WifiExecutors.worker().post(new Runnable() {
+            @Override
+            public void run() {
+                PriorityManager priorityManager = mWifiHelper.getPriorityManager();
+                if (success) {
+                    priorityManager.onConnected(ssid);
+                } else {
+                    priorityManager.onConnectFailed(ssid);
+                }
+            }
+        });
     }
 
     /**
      * 延迟执行扫描
      */
     private void scheduleWifiScan() {
-        new Handler().postDelayed(new Runnable() {
+        WifiExecutors.worker().postDelayed(new Runnable() {
             @Override
             public void run() {
                 mWifiHelper.startScan();
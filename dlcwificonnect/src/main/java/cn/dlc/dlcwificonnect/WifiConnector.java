@@ -11,10 +11,14 @@ import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.net.NetworkRequest;
 import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
+import java.util.concurrent.Executor;
 
 import static android.os.Build.VERSION.SDK_INT;
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
@@ -25,17 +29,25 @@ class WifiConnector {
 
     private static final String TAG = "WifiConnector";
 
+    /**
+     * 不限定接入点，用来取消切换接入点时固定的BSSID
+     */
+    private static final String BSSID_ANY = "any";
+
     private Context mContext;
     private WifiHelper mWifiHelper;
     private WifiManager mWifiManager;
     private ConnectivityManager mConnectivityManager;
 
-    private WifiStateChangeListener mWifiStateChangeListener;
+    private volatile WifiStateChangeListener mWifiStateChangeListener;
     private BroadcastReceiver mWifiStateReceiver;
 
-    private NetworkStateChangeListener mNetworkStateChangeListener;
+    private volatile NetworkStateChangeListener mNetworkStateChangeListener;
     private BroadcastReceiver mNetworkStateReceiver;
 
+    /**
+     * 等待目标网络可用的绑定回调，读写都要持有this
+     */
     private ConnectivityManager.NetworkCallback networkCallback;
 
     /**
@@ -128,32 +140,58 @@ class WifiConnector {
     }
 
     /**
-     * 监听wifi状态变化
+     * 监听wifi状态变化，在主线程回调
      *
      * @param listener
      */
     public void setWifiStateChangeListener(@NonNull WifiStateChangeListener listener) {
+        setWifiStateChangeListener(listener, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 监听wifi状态变化
+     *
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    public void setWifiStateChangeListener(@NonNull WifiStateChangeListener listener,
+        @NonNull final Executor executor) {
 
         mWifiStateChangeListener = listener;
 
         mWifiStateReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                int wifiState = intent.getExtras().getInt(WifiManager.EXTRA_WIFI_STATE);
+                final int wifiState = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE,
+                    WifiManager.WIFI_STATE_UNKNOWN);
+                final boolean initialStickyBroadcast = isInitialStickyBroadcast();
 
-                if (mWifiStateChangeListener != null) {
-                    if (wifiState == WifiManager.WIFI_STATE_ENABLED) {
-                        mWifiStateChangeListener.onWifiEnabled(isInitialStickyBroadcast());
-                    } else if (wifiState == WifiManager.WIFI_STATE_DISABLED) {
-                        mWifiStateChangeListener.onWifiDisabled(isInitialStickyBroadcast());
-                    }
+                if (wifiState != WifiManager.WIFI_STATE_ENABLED
+                    && wifiState != WifiManager.WIFI_STATE_DISABLED) {
+                    return;
                 }
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        WifiStateChangeListener stateChangeListener = mWifiStateChangeListener;
+                        if (stateChangeListener == null) {
+                            return;
+                        }
+                        if (wifiState == WifiManager.WIFI_STATE_ENABLED) {
+                            stateChangeListener.onWifiEnabled(initialStickyBroadcast);
+                        } else {
+                            stateChangeListener.onWifiDisabled(initialStickyBroadcast);
+                        }
+                    }
+                });
             }
         };
 
         IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
-        mContext.registerReceiver(mWifiStateReceiver, intentFilter);
+        mContext.registerReceiver(mWifiStateReceiver, intentFilter, null,
+            WifiExecutors.worker());
     }
 
     /**
@@ -176,8 +214,8 @@ class WifiConnector {
      * @return
      */
     public boolean connect(ScanResult scanResult, String password) {
-        WifiEncrypt wifiEncrypt = WifiEncrypt.distinguish(scanResult);
-        return connect(wifiEncrypt, scanResult.SSID, password);
+        return connect(SecurityProfile.of(scanResult), scanResult.SSID, password, scanResult.BSSID)
+            != null;
     }
 
     /**
@@ -189,10 +227,139 @@ class WifiConnector {
      * @return
      */
     public boolean connect(WifiEncrypt wifiEncrypt, String SSID, String password) {
+        return connect(SecurityProfile.of(wifiEncrypt), SSID, password, null) != null;
+    }
+
+    /**
+     * 连接接入点
+     *
+     * @param profile
+     * @param SSID
+     * @param password
+     * @return
+     */
+    public boolean connect(SecurityProfile profile, String SSID, String password) {
+        return connect(profile, SSID, password, null) != null;
+    }
+
+    /**
+     * 连接接入点，尽量走快的路径：
+     * 已保存的配置和要写的一致时直接启用，不重新添加、不先断开；
+     * 已经连着这个网络时只切换到指定的接入点
+     *
+     * @param profile
+     * @param SSID
+     * @param password
+     * @param BSSID 要连的接入点，null表示不限
+     * @return 走的路径，失败时返回null
+     */
+    @Nullable
+    public ConnectPath connect(SecurityProfile profile, String SSID, String password,
+        @Nullable String BSSID) {
+
+        SsidKey key = SsidKey.of(SSID);
+        WifiConfigTemplate template = WifiConfigTemplate.of(profile);
+        String fingerprint = mWifiHelper.getConfigFingerprints().fingerprint(template, password);
+        WifiConfiguration saved = mWifiHelper.getConfiguredNetworkCache().get(key);
+
+        if (saved != null && matchesSaved(saved, key, template, fingerprint)) {
+            WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
+            if (wifiInfo != null && wifiInfo.getNetworkId() == saved.networkId
+                && wifiInfo.getSupplicantState() == SupplicantState.COMPLETED) {
+                if (BSSID == null || BSSID.equalsIgnoreCase(wifiInfo.getBSSID())) {
+                    return ConnectPath.ALREADY_CONNECTED;
+                }
+                if (roam(saved, BSSID)) {
+                    Log.i(TAG, "切换接入点：" + SSID + " -> " + BSSID);
+                    return ConnectPath.ROAM;
+                }
+                // 还连着原来的接入点，不能当成已连上
+                Log.e(TAG, "切换接入点失败：" + SSID + " -> " + BSSID);
+                return null;
+            }
+            if (mWifiManager.enableNetwork(saved.networkId, true)) {
+                mWifiManager.reconnect();
+                Log.i(TAG, "复用已保存的配置：" + SSID);
+                return ConnectPath.REUSE_SAVED;
+            }
+        }
+
+        return writeAndEnable(profile, key, SSID, password, saved, fingerprint)
+            ? ConnectPath.NEW_CONFIG : null;
+    }
+
+    /**
+     * 已保存的配置能否直接使用，需要密码的网络只认本库按相同密码写入的配置
+     */
+    private boolean matchesSaved(WifiConfiguration saved, SsidKey key,
+        WifiConfigTemplate template, String fingerprint) {
+        if (!template.matchesKeyManagement(saved)) {
+            return false;
+        }
+        return !template.hasPassword() || mWifiHelper.getConfigFingerprints()
+            .matches(key, saved.networkId, fingerprint);
+    }
 
-        WifiConfiguration configuration = mWifiHelper.createWifiConfig(wifiEncrypt, SSID, password);
+    /**
+     * 固定BSSID后重新关联，同一个网络内切换接入点，不断开网络
+     *
+     * @param saved
+     * @param BSSID
+     * @return
+     */
+    private boolean roam(WifiConfiguration saved, String BSSID) {
+        WifiConfiguration update = new WifiConfiguration();
+        update.networkId = saved.networkId;
+        update.SSID = saved.SSID;
+        update.BSSID = BSSID;
+        if (mWifiManager.updateNetwork(update) == -1) {
+            return false;
+        }
+        mWifiHelper.getConfiguredNetworkCache().invalidate();
+        if (!mWifiManager.reassociate()) {
+            clearRoamTarget(saved.SSID);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 取消切换接入点时固定的BSSID，切换结束后调用，之后系统可以自由漫游
+     *
+     * @param SSID
+     */
+    void clearRoamTarget(String SSID) {
+        WifiConfiguration saved = mWifiHelper.getConfiguredNetworkCache().get(SSID);
+        if (saved == null) {
+            return;
+        }
+        WifiConfiguration update = new WifiConfiguration();
+        update.networkId = saved.networkId;
+        update.SSID = saved.SSID;
+        update.BSSID = BSSID_ANY;
+        mWifiManager.updateNetwork(update);
+        mWifiHelper.getConfiguredNetworkCache().invalidate();
+    }
+
+    /**
+     * 写入配置后断开重连：已保存的改写，不再添加重复的配置
+     */
+    private boolean writeAndEnable(SecurityProfile profile, SsidKey key, String SSID,
+        String password, @Nullable WifiConfiguration saved, String fingerprint) {
+
+        WifiConfiguration config = mWifiHelper.createWifiConfig(profile, SSID, password);
+        int networkId = -1;
+        if (saved != null) {
+            config.networkId = saved.networkId;
+            networkId = mWifiManager.updateNetwork(config);
+        }
+        if (networkId == -1) {
+            // Android 10以后不能修改其他应用添加的网络，改为添加
+            config.networkId = -1;
+            networkId = mWifiManager.addNetwork(config);
+        }
+        mWifiHelper.getConfiguredNetworkCache().invalidate();
 
-        int networkId = mWifiManager.addNetwork(configuration);
         if (networkId == -1) {
             networkId = mWifiHelper.getExistingNetworkId(SSID);
 
@@ -202,6 +369,8 @@ class WifiConnector {
                 Log.e(TAG, "Couldn't add network with SSID: " + SSID);
                 return false;
             }
+        } else {
+            mWifiHelper.getConfigFingerprints().put(key, networkId, fingerprint);
         }
 
         mWifiManager.disconnect();
@@ -212,11 +381,22 @@ class WifiConnector {
     }
 
     /**
-     * 设置网路状态变化监听
+     * 设置网路状态变化监听，在主线程回调
      *
      * @param listener
      */
     public void setNetworkStateChangeListener(@NonNull NetworkStateChangeListener listener) {
+        setNetworkStateChangeListener(listener, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 设置网路状态变化监听
+     *
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    public void setNetworkStateChangeListener(@NonNull NetworkStateChangeListener listener,
+        @NonNull final Executor executor) {
 
         mNetworkStateChangeListener = listener;
         mNetworkStateReceiver = new BroadcastReceiver() {
@@ -225,20 +405,39 @@ class WifiConnector {
 
                 final String action = intent.getAction();
 
-                if (mNetworkStateChangeListener != null) {
-                    if (action.equals(WifiManager.NETWORK_STATE_CHANGED_ACTION)) {
-                        NetworkInfo info =
-                            intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
-                        NetworkInfo.State state = info.getState();
-                        NetworkInfo.DetailedState detailedState = info.getDetailedState();
-                        mNetworkStateChangeListener.onNetworkStateChange(info, state,
-                            detailedState);
-                    } else if (action.equals(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)) {
-                        int error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0);
-                        if (error == WifiManager.ERROR_AUTHENTICATING) {
-                            // 密码错误
-                            mNetworkStateChangeListener.onErrorAuthenticating();
+                if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(action)) {
+                    final NetworkInfo info =
+                        intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+                    if (info == null) {
+                        return;
+                    }
+                    final NetworkInfo.State state = info.getState();
+                    final NetworkInfo.DetailedState detailedState = info.getDetailedState();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            NetworkStateChangeListener stateChangeListener =
+                                mNetworkStateChangeListener;
+                            if (stateChangeListener != null) {
+                                stateChangeListener.onNetworkStateChange(info, state,
+                                    detailedState);
+                            }
                         }
+                    });
+                } else if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(action)) {
+                    int error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0);
+                    if (error == WifiManager.ERROR_AUTHENTICATING) {
+                        // 密码错误
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                NetworkStateChangeListener stateChangeListener =
+                                    mNetworkStateChangeListener;
+                                if (stateChangeListener != null) {
+                                    stateChangeListener.onErrorAuthenticating();
+                                }
+                            }
+                        });
                     }
                 }
             }
@@ -248,7 +447,8 @@ class WifiConnector {
         intentFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
         intentFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);// 密码校验
 
-        mContext.registerReceiver(mNetworkStateReceiver, intentFilter);
+        mContext.registerReceiver(mNetworkStateReceiver, intentFilter, null,
+            WifiExecutors.worker());
     }
 
     /**
@@ -272,6 +472,19 @@ class WifiConnector {
      */
     @TargetApi(LOLLIPOP)
     public void bindToNetwork(final String SSID, final NetworkStateChangeListener listener) {
+        bindToNetwork(SSID, listener, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 绑定网络，还在等待的上一次绑定会被取消
+     *
+     * @param SSID
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    @TargetApi(LOLLIPOP)
+    public void bindToNetwork(final String SSID, final NetworkStateChangeListener listener,
+        @NonNull Executor executor) {
         if (SDK_INT < LOLLIPOP) {
             return;
         }
@@ -281,13 +494,35 @@ class WifiConnector {
         NetworkRequest request =
             new NetworkRequest.Builder().addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
                 .build();
-        networkCallback = networkCallback(SSID, listener);
-        mConnectivityManager.registerNetworkCallback(request, networkCallback);
+        ConnectivityManager.NetworkCallback callback = networkCallback(SSID, listener, executor);
+        synchronized (this) {
+            unregisterBindCallback(networkCallback);
+            networkCallback = callback;
+            mConnectivityManager.registerNetworkCallback(request, callback);
+        }
+    }
+
+    /**
+     * 注销绑定网络的回调，已经被替换或注销的不再处理
+     *
+     * @param callback
+     * @return 是否注销了
+     */
+    @TargetApi(LOLLIPOP)
+    private synchronized boolean unregisterBindCallback(
+        ConnectivityManager.NetworkCallback callback) {
+        if (callback == null || callback != networkCallback) {
+            return false;
+        }
+        networkCallback = null;
+        mConnectivityManager.unregisterNetworkCallback(callback);
+        return true;
     }
 
     @TargetApi(LOLLIPOP)
     ConnectivityManager.NetworkCallback networkCallback(final String SSID,
-        final NetworkStateChangeListener listener) {
+        final NetworkStateChangeListener listener, final Executor executor) {
+        final SsidKey target = SsidKey.of(SSID);
         return new ConnectivityManager.NetworkCallback() {
             @Override
             public void onAvailable(Network network) {
@@ -295,20 +530,92 @@ class WifiConnector {
                 NetworkInfo networkInfo = mConnectivityManager.getNetworkInfo(network);
                 Log.i(TAG, "当前可以网络: " + networkInfo);
 
-                if (WifiHelper.areEqual(networkInfo.getExtraInfo(), SSID)) {
-                    mConnectivityManager.unregisterNetworkCallback(this);
-                    networkCallback = null;
+                if (networkInfo != null && target.equals(
+                    SsidKey.ofWifiSsid(networkInfo.getExtraInfo()))) {
+                    if (!unregisterBindCallback(this)) {
+                        // 连接已经结束或者换了新的绑定
+                        return;
+                    }
 
                     bindToRequiredNetwork(network);
 
                     Log.i(TAG, format("应用绑定到网络：%s", SSID));
 
-                    listener.onNetworkBound();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onNetworkBound();
+                        }
+                    });
                 }
             }
         };
     }
 
+    /**
+     * 请求只对部分连接生效的网络绑定，不影响应用的其他流量
+     *
+     * @param SSID
+     * @return 目标网络可用后成功，取消时停止请求
+     */
+    @TargetApi(LOLLIPOP)
+    @NonNull
+    public WifiFuture<NetworkScope> requestNetworkScope(final String SSID) {
+        final WifiFuture<NetworkScope> future = new WifiFuture<>();
+        if (SDK_INT < LOLLIPOP) {
+            future.fail(new UnsupportedOperationException("Requires Android 5.0"));
+            return future;
+        }
+
+        Log.i(TAG, "请求网络：" + SSID);
+
+        final SsidKey target = SsidKey.of(SSID);
+        final NetworkScope.RequestCallback callback =
+            new NetworkScope.RequestCallback(mConnectivityManager) {
+
+                private NetworkScope mScope;
+
+                @Override
+                public void onAvailable(Network network) {
+                    if (mScope != null || isReleased()) {
+                        // 已经取消的请求可能还会收到回调
+                        return;
+                    }
+                    NetworkInfo networkInfo = mConnectivityManager.getNetworkInfo(network);
+                    if (networkInfo == null || !target.equals(
+                        SsidKey.ofWifiSsid(networkInfo.getExtraInfo()))) {
+                        // 还连着别的wifi，等切换到目标网络
+                        return;
+                    }
+                    NetworkScope scope = new NetworkScope(this, network);
+                    if (future.complete(scope)) {
+                        mScope = scope;
+                    } else {
+                        // 和取消同时发生时由release()保证只注销一次
+                        scope.close();
+                    }
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    NetworkScope scope = mScope;
+                    if (scope != null && scope.getNetwork().equals(network)) {
+                        Log.i(TAG, format("网络已断开：%s", SSID));
+                        scope.onLost();
+                    }
+                }
+            };
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                callback.release();
+            }
+        });
+        mConnectivityManager.requestNetwork(new NetworkRequest.Builder().addTransportType(
+            NetworkCapabilities.TRANSPORT_WIFI).build(), callback);
+        return future;
+    }
+
     @TargetApi(LOLLIPOP)
     void bindToRequiredNetwork(Network network) {
         if (SDK_INT >= M) {
@@ -319,14 +626,19 @@ class WifiConnector {
     }
 
     /**
-     * 清除网络绑定
+     * 清除网络绑定，同时注销还在等待的绑定回调
      */
     public @TargetApi(LOLLIPOP)
     void clearNetworkBinding() {
 
-        if (networkCallback != null) {
-            mConnectivityManager.unregisterNetworkCallback(networkCallback);
-            Log.i(TAG, "解除网路绑定回调");
+        if (SDK_INT >= LOLLIPOP) {
+            ConnectivityManager.NetworkCallback callback;
+            synchronized (this) {
+                callback = networkCallback;
+            }
+            if (unregisterBindCallback(callback)) {
+                Log.i(TAG, "解除网路绑定回调");
+            }
         }
 
         if (SDK_INT < LOLLIPOP || getBoundNetworkForProcess() == null) {
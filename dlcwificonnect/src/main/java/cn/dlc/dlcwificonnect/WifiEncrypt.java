@@ -20,22 +20,14 @@ public enum WifiEncrypt {
     }
 
     /**
-     * 辨别加密类型
+     * 辨别加密类型，企业级(EAP)网络即使包含WPA也归为{@link #EAP}，
+     * 更详细的信息见{@link SecurityProfile}
      *
      * @param scanResult_capabilities
      * @return
      */
     public static WifiEncrypt distinguish(String scanResult_capabilities) {
-
-        if (scanResult_capabilities.contains("WPA")) {
-            return WPA;
-        } else if (scanResult_capabilities.contains("WEP")) {
-            return WEP;
-        } else if (scanResult_capabilities.contains("EAP")) {
-            return EAP;
-        } else {
-            return NONE;
-        }
+        return SecurityProfile.of(scanResult_capabilities).getEncrypt();
     }
 
 }
@@ -0,0 +1,94 @@
+package cn.dlc.dlcwificonnect;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import java.util.concurrent.Executor;
+
+/**
+ * 回调线程相关工具
+ * <p>
+ * 广播接收、过滤去重等耗时处理都在共用的后台线程里执行，处理完后再通过调用方指定的
+ * {@link Executor}回调，默认回调到主线程
+ */
+public final class WifiExecutors {
+
+    private static final Object sLock = new Object();
+
+    private static Executor sMainThread;
+    private static HandlerThread sWorkerThread;
+    private static Handler sWorker;
+
+    private WifiExecutors() {
+    }
+
+    /**
+     * 主线程
+     *
+     * @return
+     */
+    @NonNull
+    public static Executor mainThread() {
+        synchronized (sLock) {
+            if (sMainThread == null) {
+                sMainThread = handler(new Handler(Looper.getMainLooper()));
+            }
+            return sMainThread;
+        }
+    }
+
+    /**
+     * 把Handler包装成Executor
+     *
+     * @param handler
+     * @return
+     */
+    @NonNull
+    public static Executor handler(@NonNull final Handler handler) {
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * 直接在当前线程执行
+     *
+     * @return
+     */
+    @NonNull
+    public static Executor direct() {
+        return DirectExecutor.INSTANCE;
+    }
+
+    /**
+     * 后台处理线程的Handler，所有广播都在这个线程里接收
+     *
+     * @return
+     */
+    @NonNull
+    static Handler worker() {
+        synchronized (sLock) {
+            if (sWorker == null) {
+                sWorkerThread = new HandlerThread("dlc-wifi-worker",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+                sWorkerThread.start();
+                sWorker = new Handler(sWorkerThread.getLooper());
+            }
+            return sWorker;
+        }
+    }
+
+    private enum DirectExecutor implements Executor {
+        INSTANCE;
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package cn.dlc.dlcwificonnect;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步操作的结果，可以组合、设置超时和取消
+ * <p>
+ * 只会完成一次：成功、失败或取消，之后再调用{@link #complete(Object)}等都会被忽略。
+ * 回调在指定的{@link Executor}里执行，完成后再添加的回调也会执行。
+ * 取消组合后的结果会同时取消正在进行的那一步。
+ * <pre>
+ * wifiConnManager.scanAsync()
+ *     .compose(new WifiFuture.AsyncFunction&lt;List&lt;ScanResult&gt;, Void&gt;() {
+ *         public WifiFuture&lt;Void&gt; apply(List&lt;ScanResult&gt; scanResults) {
+ *             return wifiConnManager.connectAsync(pick(scanResults), password);
+ *         }
+ *     }, WifiExecutors.direct())
+ *     .withTimeout(30000)
+ *     .addCallback(callback);
+ * </pre>
+ * 不要在后台处理线程里调用{@link #get()}，结果正是在那个线程里完成的。
+ *
+ * @param <T> 结果类型
+ */
+public final class WifiFuture<T> implements Future<T> {
+
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    /**
+     * 结果回调
+     *
+     * @param <T>
+     */
+    public interface Callback<T> {
+
+        /**
+         * 成功
+         *
+         * @param result
+         */
+        void onSuccess(T result);
+
+        /**
+         * 失败或被取消
+         *
+         * @param error 取消时是{@link CancellationException}，超时是{@link TimeoutException}
+         */
+        void onFailure(@NonNull Throwable error);
+    }
+
+    /**
+     * 转换结果
+     *
+     * @param <T>
+     * @param <R>
+     */
+    public interface Function<T, R> {
+
+        R apply(T input) throws Exception;
+    }
+
+    /**
+     * 用结果开始下一步异步操作
+     *
+     * @param <T>
+     * @param <R>
+     */
+    public interface AsyncFunction<T, R> {
+
+        @NonNull
+        WifiFuture<R> apply(T input) throws Exception;
+    }
+
+    private int mState = PENDING;
+    private T mResult;
+    private Throwable mError;
+    private List<Runnable> mListeners = new ArrayList<>();
+    private List<Runnable> mCancelActions = new ArrayList<>();
+
+    public WifiFuture() {
+    }
+
+    /**
+     * 已经成功的结果
+     *
+     * @param result
+     * @param <T>
+     * @return
+     */
+    @NonNull
+    public static <T> WifiFuture<T> succeeded(T result) {
+        WifiFuture<T> future = new WifiFuture<>();
+        future.complete(result);
+        return future;
+    }
+
+    /**
+     * 已经失败的结果
+     *
+     * @param error
+     * @param <T>
+     * @return
+     */
+    @NonNull
+    public static <T> WifiFuture<T> failed(@NonNull Throwable error) {
+        WifiFuture<T> future = new WifiFuture<>();
+        future.fail(error);
+        return future;
+    }
+
+    /**
+     * 成功完成
+     *
+     * @param result
+     * @return 已经完成过时返回false
+     */
+    public boolean complete(T result) {
+        return finish(SUCCEEDED, result, null);
+    }
+
+    /**
+     * 失败
+     *
+     * @param error
+     * @return 已经完成过时返回false
+     */
+    public boolean fail(@NonNull Throwable error) {
+        return finish(FAILED, null, error);
+    }
+
+    /**
+     * 取消，回调收到{@link CancellationException}，并停止还在进行的操作
+     *
+     * @param mayInterruptIfRunning 没有作用，操作总是会被停止
+     * @return 已经完成过时返回false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Runnable> cancelActions;
+        synchronized (this) {
+            cancelActions = mCancelActions;
+        }
+        if (!finish(CANCELLED, null, new CancellationException())) {
+            return false;
+        }
+        for (Runnable action : cancelActions) {
+            action.run();
+        }
+        return true;
+    }
+
+    /**
+     * 取消，同{@link #cancel(boolean)}
+     *
+     * @return
+     */
+    public boolean cancel() {
+        return cancel(true);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    /**
+     * 失败的原因
+     *
+     * @return 还没完成或成功时返回null
+     */
+    @Nullable
+    public synchronized Throwable getError() {
+        return mError;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, @NonNull TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    /**
+     * 完成时执行
+     *
+     * @param listener
+     * @param executor 执行所在的线程
+     * @return this
+     */
+    @NonNull
+    public WifiFuture<T> addListener(@NonNull final Runnable listener,
+        @NonNull final Executor executor) {
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(listener);
+            }
+        };
+        synchronized (this) {
+            if (mState == PENDING) {
+                mListeners.add(dispatch);
+                return this;
+            }
+        }
+        dispatch.run();
+        return this;
+    }
+
+    /**
+     * 添加结果回调，在主线程回调
+     *
+     * @param callback
+     * @return this
+     */
+    @NonNull
+    public WifiFuture<T> addCallback(@NonNull Callback<? super T> callback) {
+        return addCallback(callback, WifiExecutors.mainThread());
+    }
+
+    /**
+     * 添加结果回调
+     *
+     * @param callback
+     * @param executor 回调所在的线程
+     * @return this
+     */
+    @NonNull
+    public WifiFuture<T> addCallback(@NonNull final Callback<? super T> callback,
+        @NonNull Executor executor) {
+        return addListener(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                Throwable error;
+                synchronized (WifiFuture.this) {
+                    result = mResult;
+                    error = mError;
+                }
+                if (error == null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onFailure(error);
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * 成功后转换结果，失败和取消原样传递
+     *
+     * @param function
+     * @param executor 转换所在的线程
+     * @param <R>
+     * @return 转换后的结果，取消它会同时取消这一个
+     */
+    @NonNull
+    public <R> WifiFuture<R> transform(@NonNull final Function<? super T, ? extends R> function,
+        @NonNull Executor executor) {
+        final WifiFuture<R> future = new WifiFuture<>();
+        cancelWith(future);
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone() || !propagateFailure(future)) {
+                    return;
+                }
+                try {
+                    future.complete(function.apply(getResult()));
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            }
+        }, executor);
+        return future;
+    }
+
+    /**
+     * 成功后开始下一步异步操作，失败和取消原样传递
+     *
+     * @param function
+     * @param executor 开始下一步所在的线程
+     * @param <R>
+     * @return 下一步的结果，取消它会同时取消正在进行的那一步
+     */
+    @NonNull
+    public <R> WifiFuture<R> compose(@NonNull final AsyncFunction<? super T, R> function,
+        @NonNull Executor executor) {
+        final WifiFuture<R> future = new WifiFuture<>();
+        final AtomicReference<WifiFuture<R>> next = new AtomicReference<>();
+        cancelWith(future);
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                WifiFuture<R> step = next.get();
+                if (step != null) {
+                    step.cancel(true);
+                }
+            }
+        });
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone() || !propagateFailure(future)) {
+                    return;
+                }
+                WifiFuture<R> step;
+                try {
+                    step = function.apply(getResult());
+                } catch (Exception e) {
+                    future.fail(e);
+                    return;
+                }
+                next.set(step);
+                if (future.isCancelled()) {
+                    step.cancel(true);
+                    return;
+                }
+                step.propagateTo(future);
+            }
+        }, executor);
+        return future;
+    }
+
+    /**
+     * 超时后失败，并取消这一个
+     *
+     * @param timeoutMillis
+     * @return 带超时的结果，超时时收到{@link TimeoutException}
+     */
+    @NonNull
+    public WifiFuture<T> withTimeout(final long timeoutMillis) {
+        final WifiFuture<T> future = new WifiFuture<>();
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                if (future.fail(new TimeoutException("Timed out after " + timeoutMillis + "ms"))) {
+                    cancel(true);
+                }
+            }
+        };
+        cancelWith(future);
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                WifiExecutors.worker().removeCallbacks(timeout);
+            }
+        }, WifiExecutors.direct());
+        propagateTo(future);
+        WifiExecutors.worker().postDelayed(timeout, timeoutMillis);
+        return future;
+    }
+
+    /**
+     * 被取消时执行，用于停止正在进行的操作；已经取消时立即执行
+     *
+     * @param action
+     */
+    void onCancel(@NonNull Runnable action) {
+        synchronized (this) {
+            if (mState == PENDING) {
+                mCancelActions.add(action);
+                return;
+            }
+            if (mState != CANCELLED) {
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * 下游被取消时取消这一个
+     *
+     * @param downstream
+     */
+    private void cancelWith(WifiFuture<?> downstream) {
+        downstream.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancel(true);
+            }
+        });
+    }
+
+    /**
+     * 完成后把结果传给另一个
+     *
+     * @param future
+     */
+    private void propagateTo(final WifiFuture<T> future) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (propagateFailure(future)) {
+                    future.complete(getResult());
+                }
+            }
+        }, WifiExecutors.direct());
+    }
+
+    /**
+     * 把失败或取消传给另一个
+     *
+     * @param future
+     * @return 是否成功，成功时不传递
+     */
+    private boolean propagateFailure(WifiFuture<?> future) {
+        int state;
+        Throwable error;
+        synchronized (this) {
+            state = mState;
+            error = mError;
+        }
+        if (state == CANCELLED) {
+            future.cancel(true);
+            return false;
+        }
+        if (state == FAILED) {
+            future.fail(error);
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized T getResult() {
+        return mResult;
+    }
+
+    private T report() throws ExecutionException {
+        if (mState == CANCELLED) {
+            throw new CancellationException();
+        }
+        if (mState == FAILED) {
+            throw new ExecutionException(mError);
+        }
+        return mResult;
+    }
+
+    private boolean finish(int state, T result, Throwable error) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mState = state;
+            mResult = result;
+            mError = error;
+            listeners = mListeners;
+            mListeners = null;
+            mCancelActions = null;
+            notifyAll();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+}
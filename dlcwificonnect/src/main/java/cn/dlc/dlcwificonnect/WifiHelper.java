@@ -1,9 +1,6 @@
 package cn.dlc.dlcwificonnect;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.wifi.ScanResult;
@@ -13,27 +10,57 @@ import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 import android.util.Log;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Wifi帮助类
  */
 public class WifiHelper implements WifiScanner {
 
+    private static final ThreadLocal<ScanResultDeduper> sDeduper =
+        new ThreadLocal<ScanResultDeduper>() {
+            @Override
+            protected ScanResultDeduper initialValue() {
+                return new ScanResultDeduper();
+            }
+        };
+
+    private static final ThreadLocal<SignalTopK> sTopK = new ThreadLocal<SignalTopK>() {
+        @Override
+        protected SignalTopK initialValue() {
+            return new SignalTopK();
+        }
+    };
+
     private final Context mContext;
     private final WifiManager mWifiManager;
     private final ConnectivityManager mConnectivityManager;
 
-    private ScanResultFilter mScanResultFilter;
-    private ScanListener mScanListener;
-    private BroadcastReceiver mScanReceiver;
+    private volatile ScanResultFilter mScanResultFilter;
+    private volatile ScanListener mScanListener;
+    private volatile ScanDeltaListener mScanDeltaListener;
+    private ScanResultStream.Subscription mScanListenerSubscription;
+    private ScanResultStream.Subscription mScanDeltaSubscription;
+    /**
+     * 差分的是按SSID去重后的结果，要按SSID索引
+     */
+    private final ScanResultDiffer mScanResultDiffer =
+        new ScanResultDiffer(ScanResultDiffer.Key.SSID);
+    private final ScanScheduler mScanScheduler;
+    private final ScanResultStream mScanResultStream;
+    private final ScanSnapshotStore mScanSnapshotStore;
+    private final ConfiguredNetworkCache mConfiguredNetworkCache;
+    private final PriorityManager mPriorityManager;
+    private final ConfigFingerprints mConfigFingerprints;
+    private ScanResultStream.Subscription mScanSnapshotSubscription;
+    private volatile RssiSmoother mRssiSmoother;
+    private ScanResultStream.Subscription mRssiSmootherSubscription;
 
     /**
      * Wifi帮助类
@@ -47,6 +74,12 @@ public class WifiHelper implements WifiScanner {
         mContext = context;
         mWifiManager = wifiManager;
         mConnectivityManager = connectivityManager;
+        mScanScheduler = new ScanScheduler(wifiManager);
+        mScanResultStream = new ScanResultStream(context, this);
+        mScanSnapshotStore = new ScanSnapshotStore(context);
+        mConfiguredNetworkCache = new ConfiguredNetworkCache(context, wifiManager);
+        mPriorityManager = new PriorityManager(context, wifiManager, mConfiguredNetworkCache);
+        mConfigFingerprints = new ConfigFingerprints(context);
     }
 
     public WifiManager getWifiManager() {
@@ -66,10 +99,18 @@ public class WifiHelper implements WifiScanner {
      */
     @NonNull
     public static String trimQuotes(String ssid) {
-        if (!isEmpty(ssid)) {
-            return ssid.replaceAll("^\"*", "").replaceAll("\"*$", "");
+        if (isEmpty(ssid)) {
+            return ssid;
         }
-        return ssid;
+        int start = 0;
+        int end = ssid.length();
+        while (start < end && ssid.charAt(start) == '"') {
+            start++;
+        }
+        while (end > start && ssid.charAt(end - 1) == '"') {
+            end--;
+        }
+        return start == 0 && end == ssid.length() ? ssid : ssid.substring(start, end);
     }
 
     /**
@@ -86,14 +127,34 @@ public class WifiHelper implements WifiScanner {
     }
 
     /**
-     * 判断两个ssid是否一样
+     * 判断两个ssid是否一样，忽略两端的引号，不会创建新的字符串
      *
      * @param SSID
      * @param anotherSSID
      * @return
      */
     public static boolean areEqual(String SSID, String anotherSSID) {
-        return TextUtils.equals(trimQuotes(SSID), trimQuotes(anotherSSID));
+        if (SSID == null || anotherSSID == null) {
+            return SSID == anotherSSID;
+        }
+        int start = 0;
+        int end = SSID.length();
+        while (start < end && SSID.charAt(start) == '"') {
+            start++;
+        }
+        while (end > start && SSID.charAt(end - 1) == '"') {
+            end--;
+        }
+        int anotherStart = 0;
+        int anotherEnd = anotherSSID.length();
+        while (anotherStart < anotherEnd && anotherSSID.charAt(anotherStart) == '"') {
+            anotherStart++;
+        }
+        while (anotherEnd > anotherStart && anotherSSID.charAt(anotherEnd - 1) == '"') {
+            anotherEnd--;
+        }
+        return end - start == anotherEnd - anotherStart
+            && SSID.regionMatches(start, anotherSSID, anotherStart, end - start);
     }
 
     /**
@@ -105,7 +166,7 @@ public class WifiHelper implements WifiScanner {
     public boolean isConnectedToSSID(String SSID) {
         WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
         if (wifiInfo != null) {
-            return areEqual(wifiInfo.getSSID(), SSID)
+            return SsidKey.ofWifiSsid(wifiInfo.getSSID()).equals(SsidKey.of(SSID))
                 && wifiInfo.getSupplicantState() == SupplicantState.COMPLETED;
         }
         return false;
@@ -163,15 +224,7 @@ public class WifiHelper implements WifiScanner {
      * @return
      */
     public int getExistingNetworkId(String SSID) {
-        List<WifiConfiguration> configuredNetworks = mWifiManager.getConfiguredNetworks();
-        if (configuredNetworks != null) {
-            for (WifiConfiguration existingConfig : configuredNetworks) {
-                if (areEqual(trimQuotes(existingConfig.SSID), trimQuotes(SSID))) {
-                    return existingConfig.networkId;
-                }
-            }
-        }
-        return -1;
+        return mConfiguredNetworkCache.getNetworkId(SSID);
     }
 
     /**
@@ -181,33 +234,30 @@ public class WifiHelper implements WifiScanner {
      * @return
      */
     public WifiConfiguration getExistingNetworkConfig(String SSID) {
-        List<WifiConfiguration> configuredNetworks = mWifiManager.getConfiguredNetworks();
-        if (configuredNetworks != null) {
-            for (WifiConfiguration existingConfig : configuredNetworks) {
-                if (areEqual(trimQuotes(existingConfig.SSID), trimQuotes(SSID))) {
-                    return existingConfig;
-                }
-            }
-        }
-        return null;
+        return mConfiguredNetworkCache.get(SSID);
     }
 
     /**
-     * 提高新的优先级
+     * 提高新的优先级，排在所有已保存网络的前面，优先级过大时会先整体重排
      *
      * @param config
      */
     public void assignHighestPriority(WifiConfiguration config) {
-        List<WifiConfiguration> configuredNetworks = mWifiManager.getConfiguredNetworks();
-        if (configuredNetworks != null) {
-            for (WifiConfiguration existingConfig : configuredNetworks) {
-                if (config.priority <= existingConfig.priority) {
-                    config.priority = existingConfig.priority + 1;
-                }
-            }
+        int priority = mPriorityManager.getPriorityForNewNetwork();
+        if (config.priority < priority) {
+            config.priority = priority;
         }
     }
 
+    /**
+     * 获取优先级管理
+     *
+     * @return
+     */
+    public PriorityManager getPriorityManager() {
+        return mPriorityManager;
+    }
+
     /**
      * 通过热点名获取热点配置
      *
@@ -215,19 +265,26 @@ public class WifiHelper implements WifiScanner {
      * @return 返回热点配置，可能为null
      */
     public WifiConfiguration getConfigBySSID(@NonNull String SSID) {
+        return mConfiguredNetworkCache.get(SSID);
+    }
 
-        // 下面比较要先加个双引号
-        SSID = addQuotes(SSID);
+    /**
+     * 本库写入的配置的摘要
+     *
+     * @return
+     */
+    ConfigFingerprints getConfigFingerprints() {
+        return mConfigFingerprints;
+    }
 
-        List<WifiConfiguration> existingConfigs = mWifiManager.getConfiguredNetworks();
-        if (null != existingConfigs) {
-            for (WifiConfiguration existingConfig : existingConfigs) {
-                if (SSID.equals(existingConfig.SSID)) {
-                    return existingConfig;
-                }
-            }
-        }
-        return null;
+    /**
+     * 获取已保存网络的缓存，自己调用{@link WifiManager}修改网络后需要调用
+     * {@link ConfiguredNetworkCache#invalidate()}
+     *
+     * @return
+     */
+    public ConfiguredNetworkCache getConfiguredNetworkCache() {
+        return mConfiguredNetworkCache;
     }
 
     /**
@@ -241,53 +298,49 @@ public class WifiHelper implements WifiScanner {
      */
     public WifiConfiguration editWifiConfig(WifiConfiguration config, WifiEncrypt wifiEncrypt,
         String SSID, String password) {
+        return editWifiConfig(config, SecurityProfile.of(wifiEncrypt), SSID, password);
+    }
+
+    /**
+     * 根据热点的安全配置修改wifi配置，能区分WPA3-SAE、OWE和企业级网络
+     *
+     * @param config 要修改的配置
+     * @param profile 安全配置，见{@link SecurityProfile#of(ScanResult)}
+     * @param SSID SSID
+     * @param password 新密码
+     * @return
+     */
+    public WifiConfiguration editWifiConfig(WifiConfiguration config,
+        @NonNull SecurityProfile profile, String SSID, String password) {
+        assignHighestPriority(config);
+        return fillWifiConfig(config, profile, SSID, password);
+    }
+
+    /**
+     * 填写SSID，复制安全类型对应的模板，不改优先级
+     */
+    private static WifiConfiguration fillWifiConfig(WifiConfiguration config,
+        SecurityProfile profile, String SSID, String password) {
 
         config.SSID = addQuotes(SSID);
         config.status = WifiConfiguration.Status.DISABLED;
-        assignHighestPriority(config);
 
-        switch (wifiEncrypt) {
-            case NONE:
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
-                config.allowedAuthAlgorithms.clear();
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
-                break;
-            case EAP:
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
-                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
-                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
-                config.wepKeys[0] = addQuotes(password);
-                config.wepTxKeyIndex = 0;
-                break;
-            case WPA:
-                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
-                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
-                config.preSharedKey = addQuotes(password);
-                break;
-            default:
-                break;
-        }
+        WifiConfigTemplate.of(profile).apply(config, password);
+        return config;
+    }
 
+    /**
+     * 根据热点的安全配置创建配置
+     *
+     * @param profile
+     * @param SSID
+     * @param password
+     * @return
+     */
+    public WifiConfiguration createWifiConfig(@NonNull SecurityProfile profile, String SSID,
+        String password) {
+        WifiConfiguration config = new WifiConfiguration();
+        editWifiConfig(config, profile, SSID, password);
         return config;
     }
 
@@ -309,17 +362,110 @@ public class WifiHelper implements WifiScanner {
         return config;
     }
 
+    /**
+     * 批量保存网络：只获取一次已保存的网络，一次遍历按间隔分配优先级（列表中靠后的优先级更高，
+     * 和逐个添加的结果一致），已存在的更新，不存在或不能更新的添加，最后统一保存
+     *
+     * @param specs 要保存的网络，同一个SSID出现多次时以最后一个为准
+     * @return 每个网络的结果，顺序和specs一致
+     */
+    @NonNull
+    public List<ProvisionResult> provisionAll(@NonNull List<NetworkSpec> specs) {
+
+        List<ProvisionResult> results = new ArrayList<>(specs.size());
+        if (specs.isEmpty()) {
+            return results;
+        }
+
+        // 优先级从现有的最前面开始往上排，过大时会先整体重排
+        int priority = mPriorityManager.getPriorityForNewNetwork() - PriorityManager.GAP;
+
+        // 只读一次，后面的修改都记在本地
+        HashMap<SsidKey, Integer> networkIds = new HashMap<>();
+        List<WifiConfiguration> existingConfigs = mConfiguredNetworkCache.getAll();
+        for (int i = 0, size = existingConfigs.size(); i < size; i++) {
+            WifiConfiguration existing = existingConfigs.get(i);
+            SsidKey key = SsidKey.ofWifiSsid(existing.SSID);
+            if (!networkIds.containsKey(key)) {
+                networkIds.put(key, existing.networkId);
+            }
+        }
+
+        boolean changed = false;
+        // 摘要也一起写，逐个写的话每次都会重写整个文件
+        ConfigFingerprints.Editor fingerprints = mConfigFingerprints.edit();
+        for (int i = 0, size = specs.size(); i < size; i++) {
+            NetworkSpec spec = specs.get(i);
+            SsidKey key = SsidKey.of(spec.getSSID());
+
+            WifiConfiguration config = new WifiConfiguration();
+            fillWifiConfig(config, spec.getProfile(), spec.getSSID(), spec.getPassword());
+            priority += PriorityManager.GAP;
+            config.priority = priority;
+
+            Integer existingId = networkIds.get(key);
+            ProvisionResult.Status status = ProvisionResult.Status.UPDATED;
+            int networkId = -1;
+            if (existingId != null) {
+                config.networkId = existingId;
+                networkId = mWifiManager.updateNetwork(config);
+            }
+            if (networkId == -1) {
+                // Android 10以后不能修改其他应用添加的网络，改为添加
+                config.networkId = -1;
+                networkId = mWifiManager.addNetwork(config);
+                status = ProvisionResult.Status.ADDED;
+            }
+
+            if (networkId == -1) {
+                status = ProvisionResult.Status.FAILED;
+            } else {
+                networkIds.put(key, networkId);
+                fingerprints.put(key, networkId, mConfigFingerprints.fingerprint(
+                    WifiConfigTemplate.of(spec.getProfile()), spec.getPassword()));
+                changed = true;
+            }
+            results.add(new ProvisionResult(spec, status, networkId, config.priority));
+        }
+
+        if (changed) {
+            fingerprints.apply();
+            // Android 8.0以下需要手动保存，之后的版本会自动保存，调用也无害
+            mWifiManager.saveConfiguration();
+            mConfiguredNetworkCache.invalidate();
+        }
+        return results;
+    }
+
     /**
      * 按照信号强度排序
      *
      * @param scanResults
      */
     public static void sortBySignalStrength(List<ScanResult> scanResults) {
+        sortBySignalStrength(scanResults, null);
+    }
+
+    /**
+     * 按照信号强度排序，指定了信号平滑时按平滑后的信号带滞后排序，
+     * 信号抖动不会让列表频繁重排
+     *
+     * @param scanResults
+     * @param smoother 信号平滑，为null时按原始信号强度排序
+     * @see RssiSmoother#sortBySmoothedSignal(List)
+     */
+    public static void sortBySignalStrength(List<ScanResult> scanResults,
+        @Nullable RssiSmoother smoother) {
 
         if (scanResults == null) {
             return;
         }
 
+        if (smoother != null) {
+            smoother.sortBySmoothedSignal(scanResults);
+            return;
+        }
+
         Collections.sort(scanResults, new Comparator<ScanResult>() {
             @Override
             public int compare(ScanResult resultOne, ScanResult resultTwo) {
@@ -328,39 +474,280 @@ public class WifiHelper implements WifiScanner {
         });
     }
 
+    /**
+     * 按照信号强度排序，设置了{@link #setRssiSmoother(RssiSmoother)}时按平滑后的信号带滞后排序
+     *
+     * @param scanResults
+     */
+    public void sortScanResults(List<ScanResult> scanResults) {
+        sortBySignalStrength(scanResults, mRssiSmoother);
+    }
+
+    /**
+     * 设置信号平滑，默认不开启；设置后平滑器订阅每一次扫描结果，
+     * {@link #sortScanResults(List)}改为按平滑后的信号带滞后排序
+     *
+     * @param smoother 为null时关闭
+     */
+    public synchronized void setRssiSmoother(@Nullable RssiSmoother smoother) {
+        if (mRssiSmootherSubscription != null) {
+            mRssiSmootherSubscription.cancel();
+            mRssiSmootherSubscription = null;
+        }
+        mRssiSmoother = smoother;
+        if (smoother != null) {
+            mRssiSmootherSubscription = mScanResultStream.subscribeRaw(smoother,
+                ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+        }
+    }
+
+    /**
+     * 获取信号平滑
+     *
+     * @return 没有开启时返回null
+     */
+    @Nullable
+    public RssiSmoother getRssiSmoother() {
+        return mRssiSmoother;
+    }
+
+    /**
+     * 按估算的信噪比排序，信号差不多时排在拥挤信道上的网络会靠后
+     *
+     * @param scanResults
+     * @param channelAnalyzer 信道分析
+     * @see ChannelAnalyzer#getSinr(ScanResult)
+     */
+    public static void sortByChannelQuality(List<ScanResult> scanResults,
+        @NonNull final ChannelAnalyzer channelAnalyzer) {
+
+        if (scanResults == null) {
+            return;
+        }
+
+        // 排序期间不让分析结果变化
+        synchronized (channelAnalyzer) {
+            Collections.sort(scanResults, new Comparator<ScanResult>() {
+                @Override
+                public int compare(ScanResult resultOne, ScanResult resultTwo) {
+                    return Double.compare(channelAnalyzer.getSinr(resultTwo),
+                        channelAnalyzer.getSinr(resultOne));
+                }
+            });
+        }
+    }
+
+    /**
+     * 取信号最强的前K个，比整体排序快，适合只显示部分热点的场景
+     *
+     * @param scanResults
+     * @param k
+     * @return 按信号从强到弱排列的新列表
+     */
+    public static List<ScanResult> topKBySignal(List<ScanResult> scanResults, int k) {
+        return sTopK.get().select(scanResults, k,
+            new ArrayList<ScanResult>(Math.max(0, Math.min(k, 32))));
+    }
+
+    /**
+     * 过滤去重并取信号最强的前K个
+     *
+     * @param scanResults 待处理的数据
+     * @param filter 自定义过滤器，可为null
+     * @param k 个数
+     * @return 按信号从强到弱排列的新列表
+     */
+    public static List<ScanResult> filterTopKBySignal(List<ScanResult> scanResults,
+        @Nullable ScanResultFilter filter, int k) {
+        return sDeduper.get()
+            .dedupTopK(scanResults, filter, k,
+                new ArrayList<ScanResult>(Math.max(0, Math.min(k, 32))));
+    }
+
+    /**
+     * 获取扫描结果流，可以有多个订阅者长期订阅
+     *
+     * @return
+     */
+    public ScanResultStream getScanResultStream() {
+        return mScanResultStream;
+    }
+
     @Override
     public void setScanListener(ScanListener listener) {
+        setScanListener(listener, WifiExecutors.mainThread());
+    }
+
+    @Override
+    public void setScanListener(ScanListener listener, @NonNull Executor executor) {
 
         if (mScanListener == null) {
             mScanListener = listener;
-            IntentFilter intentFilter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+            mScanListenerSubscription = mScanResultStream.subscribe(
+                new ScanResultStream.Subscriber() {
+                    @Override
+                    public void onScanResults(List<ScanResult> scanResults) {
+                        ScanListener scanListener = mScanListener;
+                        // 只回调一次
+                        removeScanListener();
+                        if (scanListener != null) {
+                            scanListener.onScanResults(WifiHelper.this);
+                        }
+                    }
+                }, ScanResultStream.Delivery.LATEST_ONLY, executor);
+        }
+    }
+
+    @Override
+    public void removeScanListener() {
+        mScanListener = null;
+        ScanResultStream.Subscription subscription = mScanListenerSubscription;
+        mScanListenerSubscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void setScanDeltaListener(ScanDeltaListener listener) {
+        setScanDeltaListener(listener, WifiExecutors.mainThread());
+    }
+
+    @Override
+    public void setScanDeltaListener(ScanDeltaListener listener,
+        @NonNull final Executor executor) {
+        setScanDeltaListener(listener, executor, null);
+    }
+
+    @Override
+    public void setScanDeltaListener(ScanDeltaListener listener,
+        @NonNull final Executor executor, @Nullable final List<ScanResult> baseline) {
+
+        // 换监听器时取消旧的订阅，新的监听器从完整列表或指定的基准开始
+        removeScanDeltaListener();
+        mScanDeltaListener = listener;
 
-            mScanReceiver = new BroadcastReceiver() {
+        if (baseline != null) {
+            // 和差分在同一个线程里重置，保证在下一次扫描结果之前完成
+            WifiExecutors.worker().post(new Runnable() {
                 @Override
-                public void onReceive(Context context, Intent intent) {
-                    if (mScanListener != null) {
-                        mScanListener.onScanResults(WifiHelper.this);
+                public void run() {
+                    mScanResultDiffer.reset(baseline);
+                }
+            });
+        }
+
+        // 差分在后台处理线程里计算，只把结果回调到指定线程
+        mScanDeltaSubscription = mScanResultStream.subscribe(new ScanResultStream.Subscriber() {
+            @Override
+            public void onScanResults(List<ScanResult> scanResults) {
+                final List<ScanDelta> deltas = mScanResultDiffer.diff(scanResults);
+                if (deltas.isEmpty()) {
+                    return;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ScanDeltaListener scanDeltaListener = mScanDeltaListener;
+                        if (scanDeltaListener != null) {
+                            scanDeltaListener.onScanDelta(WifiHelper.this, deltas);
+                        }
                     }
-                    removeScanListener();
+                });
+            }
+        }, ScanResultStream.Delivery.EVERY_SCAN, WifiExecutors.direct());
+    }
+
+    @Override
+    public void removeScanDeltaListener() {
+        mScanDeltaListener = null;
+        ScanResultStream.Subscription subscription = mScanDeltaSubscription;
+        mScanDeltaSubscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+            WifiExecutors.worker().post(new Runnable() {
+                @Override
+                public void run() {
+                    mScanResultDiffer.clear();
                 }
-            };
+            });
+        }
+    }
 
-            mContext.registerReceiver(mScanReceiver, intentFilter);
+    /**
+     * 获取扫描差分器，可用来调整阈值或用已有列表重置快照，差分在后台处理线程里进行，
+     * 重置快照需要post到{@link WifiExecutors}的后台线程
+     *
+     * @return
+     */
+    public ScanResultDiffer getScanResultDiffer() {
+        return mScanResultDiffer;
+    }
+
+    /**
+     * 读取上一次保存的扫描结果快照，用于冷启动时先显示列表，
+     * 读取很快（内存映射），可以在主线程调用
+     *
+     * @return 没有快照时返回null
+     */
+    @Nullable
+    public ScanSnapshot loadScanSnapshot() {
+        return mScanSnapshotStore.load();
+    }
+
+    /**
+     * 是否自动保存扫描结果快照，开启后每次扫描（有最小间隔）在后台线程保存过滤去重后的结果
+     *
+     * @param enabled
+     */
+    public synchronized void setScanSnapshotEnabled(boolean enabled) {
+        if (enabled && mScanSnapshotSubscription == null) {
+            mScanSnapshotSubscription = mScanResultStream.subscribe(mScanSnapshotStore,
+                ScanResultStream.Delivery.LATEST_ONLY, WifiExecutors.direct());
+        } else if (!enabled && mScanSnapshotSubscription != null) {
+            mScanSnapshotSubscription.cancel();
+            mScanSnapshotSubscription = null;
         }
     }
 
+    /**
+     * 获取扫描结果快照的存储
+     *
+     * @return
+     */
+    public ScanSnapshotStore getScanSnapshotStore() {
+        return mScanSnapshotStore;
+    }
+
+    /**
+     * 获取扫描调度器
+     *
+     * @return
+     */
+    public ScanScheduler getScanScheduler() {
+        return mScanScheduler;
+    }
+
     @Override
-    public void removeScanListener() {
-        mScanListener = null;
-        if (mScanReceiver != null) {
-            mContext.unregisterReceiver(mScanReceiver);
-            mScanReceiver = null;
+    public void startScan() {
+        int result = mScanScheduler.requestScan();
+        if (result == ScanScheduler.SCAN_STARTED) {
+            mScanResultStream.onScanStarted();
+            return;
+        }
+        if (result == ScanScheduler.SCAN_MERGED) {
+            return;
+        }
+        Log.i("WifiHelper", "扫描额度已用完，" + mScanScheduler.getNextScanDelay() + "ms后可再次扫描");
+        if (mScanResultStream.getSubscriberCount() > 0) {
+            // 扫描额度用完，不会有新的广播，直接用缓存结果回调
+            mScanResultStream.publishAsync();
         }
     }
 
     @Override
-    public void startScan() {
-        mWifiManager.startScan();
+    public long getScanResultsAge() {
+        return mScanScheduler.getResultsAge();
     }
 
     @Override
@@ -393,46 +780,35 @@ public class WifiHelper implements WifiScanner {
      */
     public static List<ScanResult> filterScanResult(List<ScanResult> scanResults,
         @Nullable ScanResultFilter filter) {
+        int size = scanResults == null ? 0 : scanResults.size();
+        return filterScanResult(scanResults, filter, new ArrayList<ScanResult>(size));
+    }
 
-        ArrayList<ScanResult> results = new ArrayList<>();
-
-        if (scanResults != null) {
-            HashMap<String, ScanResult> hashMap = new HashMap<>();
-
-            for (ScanResult scanResult : scanResults) {
-                String ssid = scanResult.SSID;
-
-                if (TextUtils.isEmpty(ssid)) {
-                    continue;
-                }
-
-                // 使用自定义过滤器自定义
-                if (filter != null && !filter.letItGo(scanResult)) {
-                    continue;
-                }
-
-                ScanResult tempResult = hashMap.get(ssid);
-                if (null == tempResult) {
-                    hashMap.put(ssid, scanResult);
-                    continue;
-                }
-
-                if (WifiManager.calculateSignalLevel(tempResult.level, 100)
-                    < WifiManager.calculateSignalLevel(scanResult.level, 100)) {
-                    hashMap.put(ssid, scanResult);
-                }
-            }
-
-            for (Map.Entry<String, ScanResult> entry : hashMap.entrySet()) {
-                results.add(entry.getValue());
-            }
-        }
-
-        return results;
+    /**
+     * 过滤结果，结果写入调用方提供的列表，可重复使用以减少内存分配
+     *
+     * @param scanResults 待处理的数据
+     * @param filter 自定义过滤器，可为null
+     * @param out 输出列表，会先被清空
+     * @return out
+     */
+    public static List<ScanResult> filterScanResult(List<ScanResult> scanResults,
+        @Nullable ScanResultFilter filter, @NonNull List<ScanResult> out) {
+        return sDeduper.get().dedup(scanResults, filter, out);
     }
 
     @Override
     public void setScanResultFilter(ScanResultFilter scanResultFilter) {
         mScanResultFilter = scanResultFilter;
     }
+
+    /**
+     * 获取当前的扫描过滤器
+     *
+     * @return 可能为null
+     */
+    @Nullable
+    public ScanResultFilter getScanResultFilter() {
+        return mScanResultFilter;
+    }
 }
@@ -3,6 +3,7 @@ package cn.dlc.dlcwificonnect;
 import android.net.wifi.ScanResult;
 import android.support.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Wifi扫描器
@@ -17,6 +18,20 @@ public interface WifiScanner {
         void onScanResults(WifiScanner wifiScanner);
     }
 
+    /**
+     * 扫描结果差分监听器，只接收和上一次扫描相比发生变化的热点
+     */
+    interface ScanDeltaListener {
+
+        /**
+         * 扫描结果有变化
+         *
+         * @param wifiScanner
+         * @param deltas 变化列表，不为空
+         */
+        void onScanDelta(WifiScanner wifiScanner, List<ScanDelta> deltas);
+    }
+
     /**
      * 扫描结果过滤器
      */
@@ -32,16 +47,63 @@ public interface WifiScanner {
      */
     void setScanListener(ScanListener listener);
 
+    /**
+     * 设置扫描监听器
+     *
+     * @param listener
+     * @param executor 回调所在的线程
+     */
+    void setScanListener(ScanListener listener, Executor executor);
+
     /**
      * 移除扫描
      */
     void removeScanListener();
 
     /**
-     * 开始扫描
+     * 设置扫描差分监听器，和{@link #setScanListener(ScanListener)}不同，不会在回调后自动移除
+     *
+     * @param listener
+     */
+    void setScanDeltaListener(ScanDeltaListener listener);
+
+    /**
+     * 设置扫描差分监听器
+     *
+     * @param listener
+     * @param executor 回调所在的线程，差分计算在后台线程进行
+     */
+    void setScanDeltaListener(ScanDeltaListener listener, Executor executor);
+
+    /**
+     * 设置扫描差分监听器，以已有的列表（例如磁盘上的快照）为基准，
+     * 第一次回调只包含和该列表相比的变化
+     *
+     * @param listener
+     * @param executor 回调所在的线程，差分计算在后台线程进行
+     * @param baseline 基准列表，为null时从空列表开始
+     */
+    void setScanDeltaListener(ScanDeltaListener listener, Executor executor,
+        @Nullable List<ScanResult> baseline);
+
+    /**
+     * 移除扫描差分监听器
+     */
+    void removeScanDeltaListener();
+
+    /**
+     * 开始扫描，扫描额度用完时不会真正扫描，监听器会直接收到缓存的结果，
+     * 可通过{@link #getScanResultsAge()}判断结果的新旧
      */
     void startScan();
 
+    /**
+     * 最近一次扫描结果的时长
+     *
+     * @return 毫秒，-1表示未知
+     */
+    long getScanResultsAge();
+
     /**
      * 获取最近扫描的WIFI热点
      *
@@ -0,0 +1,51 @@
+package cn.dlc.dlcwificonnect;
+
+import java.util.regex.Pattern;
+import org.junit.Assume;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 在单元测试里运行JMH基准测试
+ * <p>
+ * 默认跳过，加-Pbenchmark才运行。在测试进程里直接运行（forks=0），
+ * 结果只用来比较同一台机器上的新旧实现，gc.alloc.rate.norm是每次调用分配的字节数。
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * 运行一个类里的所有基准测试
+     *
+     * @param benchmark
+     * @throws RunnerException
+     */
+    static void run(Class<?> benchmark) throws RunnerException {
+        assumeEnabled();
+
+        Options options = new OptionsBuilder()
+            .include(Pattern.quote(benchmark.getName()) + "\\.")
+            .forks(0)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.milliseconds(300))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.milliseconds(300))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * 没有加-Pbenchmark时跳过，用于不能在JMH里运行的基准测试，例如依赖Robolectric的
+     */
+    static void assumeEnabled() {
+        Assume.assumeTrue("benchmark disabled, run with -Pbenchmark",
+            Boolean.getBoolean("benchmark"));
+    }
+}
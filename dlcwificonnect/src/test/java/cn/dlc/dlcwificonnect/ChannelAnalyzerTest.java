@@ -0,0 +1,144 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ChannelAnalyzerTest {
+
+    private static final String PSK = "[WPA2-PSK-CCMP][ESS]";
+    private static final long MAX_AGE = 60 * 1000;
+    private static final double DELTA = 1e-6;
+
+    private FakeClock mClock;
+    private ChannelAnalyzer mAnalyzer;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(0);
+        mAnalyzer = new ChannelAnalyzer(ChannelAnalyzer.DEFAULT_CAPACITY, mClock, MAX_AGE);
+    }
+
+    @Test
+    public void toChannel_andBack() {
+        assertEquals(1, ChannelAnalyzer.toChannel(2412));
+        assertEquals(14, ChannelAnalyzer.toChannel(2484));
+        assertEquals(36, ChannelAnalyzer.toChannel(5180));
+        assertEquals(165, ChannelAnalyzer.toChannel(5825));
+        assertEquals(1, ChannelAnalyzer.toChannel(5955));
+        assertEquals(2, ChannelAnalyzer.toChannel(5935));
+        assertEquals(-1, ChannelAnalyzer.toChannel(900));
+
+        assertEquals(2437, ChannelAnalyzer.toFrequency(WifiBand.GHZ_2_4, 6));
+        assertEquals(2484, ChannelAnalyzer.toFrequency(WifiBand.GHZ_2_4, 14));
+        assertEquals(5180, ChannelAnalyzer.toFrequency(WifiBand.GHZ_5, 36));
+        assertEquals(5935, ChannelAnalyzer.toFrequency(WifiBand.GHZ_6, 2));
+    }
+
+    @Test
+    public void update_spreadsPowerOverOverlappingChannels() {
+        mAnalyzer.update(Collections.singletonList(
+            create("A", "02:00:00:00:00:01", PSK, -50, 2412)));
+
+        assertEquals(1, mAnalyzer.getApCount(WifiBand.GHZ_2_4, 1));
+        assertEquals(0, mAnalyzer.getApCount(WifiBand.GHZ_2_4, 2));
+        assertEquals(-50, mAnalyzer.getInterference(WifiBand.GHZ_2_4, 1), DELTA);
+        // 信道2和信道1重叠15MHz
+        assertEquals(-50 + 10 * Math.log10(0.75),
+            mAnalyzer.getInterference(WifiBand.GHZ_2_4, 2), DELTA);
+        assertEquals(ChannelAnalyzer.NO_INTERFERENCE,
+            mAnalyzer.getInterference(WifiBand.GHZ_2_4, 6), 0);
+        assertEquals(6, mAnalyzer.recommendChannel(WifiBand.GHZ_2_4));
+    }
+
+    @Test
+    public void update_wideChannelSplitsPowerByWidth() {
+        ScanResult scanResult = create("A", "02:00:00:00:00:01", PSK, -50, 5180);
+        scanResult.channelWidth = ScanResult.CHANNEL_WIDTH_40MHZ;
+        scanResult.centerFreq0 = 5190;
+
+        mAnalyzer.update(Collections.singletonList(scanResult));
+
+        double half = -50 + 10 * Math.log10(0.5);
+        assertEquals(half, mAnalyzer.getInterference(WifiBand.GHZ_5, 36), DELTA);
+        assertEquals(half, mAnalyzer.getInterference(WifiBand.GHZ_5, 40), DELTA);
+        assertEquals(ChannelAnalyzer.NO_INTERFERENCE,
+            mAnalyzer.getInterference(WifiBand.GHZ_5, 44), 0);
+        assertEquals(1, mAnalyzer.getApCount(WifiBand.GHZ_5, 36));
+        assertEquals(0, mAnalyzer.getApCount(WifiBand.GHZ_5, 40));
+        assertEquals(44, mAnalyzer.recommendChannel(WifiBand.GHZ_5));
+    }
+
+    @Test
+    public void update_replacesChangedContributionAndExpires() {
+        mAnalyzer.update(Collections.singletonList(
+            create("A", "02:00:00:00:00:01", PSK, -50, 2437)));
+        mClock.advance(1000);
+        mAnalyzer.update(Arrays.asList(
+            create("A", "02:00:00:00:00:01", PSK, -70, 2437),
+            create("B", "02:00:00:00:00:02", PSK, -70, 2462)));
+
+        assertEquals(2, mAnalyzer.size());
+        assertEquals(1, mAnalyzer.getApCount(WifiBand.GHZ_2_4, 6));
+        assertEquals(-70, mAnalyzer.getInterference(WifiBand.GHZ_2_4, 6), DELTA);
+
+        // A过期，B还在
+        mClock.advance(MAX_AGE);
+        mAnalyzer.update(Collections.singletonList(
+            create("B", "02:00:00:00:00:02", PSK, -70, 2462)));
+        mClock.advance(1);
+        mAnalyzer.update(Collections.singletonList(
+            create("B", "02:00:00:00:00:02", PSK, -70, 2462)));
+
+        assertEquals(1, mAnalyzer.size());
+        assertEquals(0, mAnalyzer.getApCount(WifiBand.GHZ_2_4, 6));
+        assertEquals(ChannelAnalyzer.NO_INTERFERENCE,
+            mAnalyzer.getInterference(WifiBand.GHZ_2_4, 6), 0);
+        assertEquals(-70, mAnalyzer.getInterference(WifiBand.GHZ_2_4, 11), DELTA);
+    }
+
+    @Test
+    public void congestionAndSinr_excludeOwnContribution() {
+        ScanResult own = create("A", "02:00:00:00:00:01", PSK, -50, 2437);
+        mAnalyzer.update(Collections.singletonList(own));
+
+        assertEquals(ChannelAnalyzer.NO_INTERFERENCE, mAnalyzer.getCongestion(own), 0);
+        assertEquals(-50 - ChannelAnalyzer.NOISE_FLOOR, mAnalyzer.getSinr(own), DELTA);
+
+        mAnalyzer.update(Arrays.asList(own,
+            create("B", "02:00:00:00:00:02", PSK, -60, 2437)));
+
+        assertEquals(-60, mAnalyzer.getCongestion(own), DELTA);
+        double noise = Math.pow(10, ChannelAnalyzer.NOISE_FLOOR / 10.0) + Math.pow(10, -6);
+        assertEquals(-50 - 10 * Math.log10(noise), mAnalyzer.getSinr(own), DELTA);
+    }
+
+    @Test
+    public void capacity_evictsLeastRecentlySeen() {
+        ChannelAnalyzer analyzer = new ChannelAnalyzer(2, mClock, MAX_AGE);
+        analyzer.update(Collections.singletonList(
+            create("A", "02:00:00:00:00:01", PSK, -50, 2412)));
+        mClock.advance(1);
+        analyzer.update(Collections.singletonList(
+            create("B", "02:00:00:00:00:02", PSK, -50, 2437)));
+        mClock.advance(1);
+        analyzer.update(Collections.singletonList(
+            create("C", "02:00:00:00:00:03", PSK, -50, 2462)));
+
+        assertEquals(2, analyzer.size());
+        assertEquals(0, analyzer.getApCount(WifiBand.GHZ_2_4, 1));
+        assertEquals(ChannelAnalyzer.NO_INTERFERENCE,
+            analyzer.getInterference(WifiBand.GHZ_2_4, 1), 0);
+        assertEquals(1, analyzer.getApCount(WifiBand.GHZ_2_4, 11));
+    }
+}
@@ -0,0 +1,60 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConfigFingerprintsTest {
+
+    private static final String PREFS_NAME = "dlc_wifi_config";
+
+    private Context mContext;
+    private WifiConfigTemplate mTemplate;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mTemplate = WifiConfigTemplate.of(SecurityProfile.of("[WPA2-PSK-CCMP][ESS]"), 27);
+    }
+
+    @Test
+    public void fingerprint_keyIsKeptAcrossInstances() {
+        String fingerprint = new ConfigFingerprints(mContext).fingerprint(mTemplate, "password");
+
+        assertEquals(fingerprint,
+            new ConfigFingerprints(mContext).fingerprint(mTemplate, "password"));
+    }
+
+    @Test
+    public void fingerprint_differsPerInstall() {
+        String fingerprint = new ConfigFingerprints(mContext).fingerprint(mTemplate, "password");
+        mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+
+        assertNotEquals(fingerprint,
+            new ConfigFingerprints(mContext).fingerprint(mTemplate, "password"));
+    }
+
+    @Test
+    public void put_matchesSameNetworkAndFingerprint() {
+        ConfigFingerprints fingerprints = new ConfigFingerprints(mContext);
+        SsidKey key = SsidKey.of("Office");
+        String fingerprint = fingerprints.fingerprint(mTemplate, "password");
+        fingerprints.put(key, 3, fingerprint);
+
+        assertTrue(fingerprints.matches(key, 3, fingerprint));
+        assertFalse(fingerprints.matches(key, 4, fingerprint));
+        assertFalse(fingerprints.matches(key, 3,
+            fingerprints.fingerprint(mTemplate, "password2")));
+    }
+}
@@ -0,0 +1,111 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConfiguredNetworkCacheTest {
+
+    private static final long MAX_AGE = 60 * 1000;
+
+    private Context mContext;
+    private WifiManager mWifiManager;
+    private FakeClock mClock;
+    private ConfiguredNetworkCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+        mClock = new FakeClock(0);
+        mCache = new ConfiguredNetworkCache(mContext, mWifiManager, mClock);
+        mCache.setMaxAge(MAX_AGE);
+    }
+
+    @Test
+    public void get_indexesBySsidAndAnswersFromCache() {
+        int officeId = addNetwork("Office", 3);
+        addNetwork("Home", 7);
+
+        assertEquals(officeId, mCache.getNetworkId("Office"));
+        assertEquals(officeId, mCache.getNetworkId("\"Office\""));
+        assertEquals(-1, mCache.getNetworkId("Guest"));
+        assertEquals(7, mCache.getMaxPriority());
+        assertEquals(2, mCache.getAll().size());
+
+        assertEquals(1, mCache.getLoadCount());
+        assertEquals(4, mCache.getHitCount());
+    }
+
+    @Test
+    public void invalidate_reloadsOnNextQuery() {
+        assertNull(mCache.get("Office"));
+
+        int officeId = addNetwork("Office", 1);
+        // 本地修改没有调用invalidate时还是旧的
+        assertNull(mCache.get("Office"));
+
+        mCache.invalidate();
+        assertEquals(officeId, mCache.getNetworkId("Office"));
+        assertEquals(2, mCache.getLoadCount());
+        assertEquals(1, mCache.getInvalidateCount());
+    }
+
+    @Test
+    public void configuredNetworksChanged_invalidates() {
+        assertNull(mCache.get("Office"));
+        addNetwork("Office", 1);
+
+        mContext.sendBroadcast(
+            new Intent(ConfiguredNetworkCache.CONFIGURED_NETWORKS_CHANGED_ACTION));
+        TestLoopers.idleMain();
+        TestLoopers.idleWorker();
+
+        assertNotNull(mCache.get("Office"));
+        assertEquals(2, mCache.getLoadCount());
+    }
+
+    @Test
+    public void maxAge_reloadsWithoutBroadcast() {
+        assertNull(mCache.get("Office"));
+        addNetwork("Office", 1);
+
+        mClock.advance(MAX_AGE - 1);
+        assertNull(mCache.get("Office"));
+
+        mClock.advance(1);
+        assertNotNull(mCache.get("Office"));
+        assertEquals(2, mCache.getLoadCount());
+    }
+
+    @Test
+    public void release_reloadsOnNextQuery() {
+        mCache.get("Office");
+        addNetwork("Office", 1);
+
+        mCache.release();
+
+        assertNotNull(mCache.get("Office"));
+        assertEquals(2, mCache.getLoadCount());
+    }
+
+    private int addNetwork(String SSID, int priority) {
+        WifiConfiguration config = new WifiConfiguration();
+        config.SSID = "\"" + SSID + "\"";
+        config.priority = priority;
+        return mWifiManager.addNetwork(config);
+    }
+}
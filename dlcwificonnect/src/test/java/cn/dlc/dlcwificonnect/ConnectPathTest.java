@@ -0,0 +1,77 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWifiManager;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConnectPathTest {
+
+    private static final SecurityProfile PSK = SecurityProfile.of("[WPA2-PSK-CCMP][ESS]");
+    private static final String CONNECTED_BSSID = "02:00:00:00:00:01";
+    private static final String OTHER_BSSID = "02:00:00:00:00:02";
+
+    private WifiManager mWifiManager;
+    private WifiConnector mWifiConnector;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mWifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        mWifiConnector = new WifiConnector(context, new WifiHelper(context, mWifiManager,
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE)));
+    }
+
+    @Test
+    public void connectedToSavedNetwork_isAlreadyConnected() {
+        connectTo(saveNetwork());
+
+        assertEquals(ConnectPath.ALREADY_CONNECTED,
+            mWifiConnector.connect(PSK, "Office", "password", null));
+        assertEquals(ConnectPath.ALREADY_CONNECTED,
+            mWifiConnector.connect(PSK, "Office", "password", CONNECTED_BSSID.toUpperCase()));
+    }
+
+    @Test
+    @Config(shadows = ProvisionAllTest.ReadOnlyShadowWifiManager.class)
+    public void roamRejected_isNotReportedAsConnected() {
+        connectTo(saveNetwork());
+
+        // 还连着原来的接入点
+        assertNull(mWifiConnector.connect(PSK, "Office", "password", OTHER_BSSID));
+    }
+
+    private int saveNetwork() {
+        assertEquals(ConnectPath.NEW_CONFIG,
+            mWifiConnector.connect(PSK, "Office", "password", null));
+        return mWifiManager.getConfiguredNetworks().get(0).networkId;
+    }
+
+    private void connectTo(int networkId) {
+        WifiInfo wifiInfo = ReflectionHelpers.callConstructor(WifiInfo.class);
+        ReflectionHelpers.callInstanceMethod(wifiInfo, "setBSSID",
+            ClassParameter.from(String.class, CONNECTED_BSSID));
+        ReflectionHelpers.callInstanceMethod(wifiInfo, "setNetworkId",
+            ClassParameter.from(int.class, networkId));
+        ReflectionHelpers.callInstanceMethod(wifiInfo, "setSupplicantState",
+            ClassParameter.from(SupplicantState.class, SupplicantState.COMPLETED));
+        ShadowWifiManager shadowWifiManager = Shadow.extract(mWifiManager);
+        shadowWifiManager.setConnectionInfo(wifiInfo);
+    }
+}
@@ -0,0 +1,68 @@
+package cn.dlc.dlcwificonnect;
+
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConnectTimeoutsTest {
+
+    @Test
+    public void default_everyActivePhaseHasTimeout() {
+        for (Phase phase : Phase.values()) {
+            if (phase.isActive()) {
+                assertTrue(phase.name(), ConnectTimeouts.DEFAULT.get(phase) > 0);
+            } else {
+                assertEquals(phase.name(), 0, ConnectTimeouts.DEFAULT.get(phase));
+            }
+        }
+        assertEquals(15 * 1000, ConnectTimeouts.DEFAULT.get(Phase.SCANNING));
+    }
+
+    @Test
+    public void builder_overridesOnlyGivenPhase() {
+        ConnectTimeouts timeouts = new ConnectTimeouts.Builder()
+            .timeout(Phase.SCANNING, 8000)
+            .timeout(Phase.OBTAINING_IP, 0)
+            .build();
+
+        assertEquals(8000, timeouts.get(Phase.SCANNING));
+        assertEquals(0, timeouts.get(Phase.OBTAINING_IP));
+        assertEquals(ConnectTimeouts.DEFAULT.get(Phase.ENABLING), timeouts.get(Phase.ENABLING));
+    }
+
+    @Test
+    public void builder_rejectsInactivePhases() {
+        ConnectTimeouts.Builder builder = new ConnectTimeouts.Builder();
+        for (Phase phase : new Phase[]{Phase.IDLE, Phase.DONE, Phase.FAILED}) {
+            try {
+                builder.timeout(phase, 1000);
+                fail(phase.name());
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void build_isNotChangedByLaterBuilderCalls() {
+        ConnectTimeouts.Builder builder = new ConnectTimeouts.Builder().timeout(Phase.BINDING, 1);
+        ConnectTimeouts timeouts = builder.build();
+        builder.timeout(Phase.BINDING, 2);
+
+        assertEquals(1, timeouts.get(Phase.BINDING));
+        assertEquals(2, builder.build().get(Phase.BINDING));
+    }
+
+    @Test
+    public void buildUpon_copiesAndLeavesOriginal() {
+        ConnectTimeouts changed = ConnectTimeouts.DEFAULT.buildUpon()
+            .timeout(Phase.VALIDATING, 3000)
+            .build();
+
+        assertEquals(3000, changed.get(Phase.VALIDATING));
+        assertEquals(10 * 1000, ConnectTimeouts.DEFAULT.get(Phase.VALIDATING));
+        assertEquals(ConnectTimeouts.DEFAULT.get(Phase.SCANNING), changed.get(Phase.SCANNING));
+    }
+}
@@ -0,0 +1,194 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.NetworkInfo.DetailedState;
+import android.os.Handler;
+import android.os.Looper;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConnectionStateMachineTest {
+
+    private RecordingCallback mCallback;
+    private ConnectionStateMachine mStateMachine;
+
+    @Before
+    public void setUp() {
+        mCallback = new RecordingCallback();
+        // 状态机和测试都在主线程，由测试推进时间
+        mStateMachine = new ConnectionStateMachine(new Handler(Looper.getMainLooper()),
+            mCallback);
+    }
+
+    @Test
+    public void connect_passesPhasesInOrder() {
+        mStateMachine.start(true, false);
+        mStateMachine.onTargetFound();
+        mStateMachine.onNetworkStateChange(DetailedState.AUTHENTICATING, false);
+        mStateMachine.onNetworkStateChange(DetailedState.OBTAINING_IPADDR, false);
+        // 旧网络断开前发的CONNECTED
+        mStateMachine.onNetworkStateChange(DetailedState.CONNECTED, false);
+        assertEquals(Phase.OBTAINING_IP, mStateMachine.getPhase());
+
+        mStateMachine.onNetworkStateChange(DetailedState.CONNECTED, true);
+
+        assertEquals(Arrays.asList(Phase.SCANNING, Phase.ASSOCIATING, Phase.AUTHENTICATING,
+            Phase.OBTAINING_IP), mCallback.mPhases);
+        assertEquals(1, mCallback.mDoneCount);
+        assertEquals(Phase.DONE, mStateMachine.getPhase());
+        assertNull(mStateMachine.getFailure());
+    }
+
+    @Test
+    public void networkState_neverMovesBack() {
+        mStateMachine.start(true, false);
+        mStateMachine.onNetworkStateChange(DetailedState.OBTAINING_IPADDR, false);
+        mStateMachine.onNetworkStateChange(DetailedState.CONNECTING, false);
+        mStateMachine.onNetworkStateChange(DetailedState.AUTHENTICATING, false);
+
+        // 跳过的阶段不回调
+        assertEquals(Arrays.asList(Phase.SCANNING, Phase.OBTAINING_IP), mCallback.mPhases);
+        assertEquals(Phase.OBTAINING_IP, mStateMachine.getPhase());
+    }
+
+    @Test
+    public void enabling_waitsForWifiBeforeNetworkStates() {
+        mStateMachine.start(false, false);
+        mStateMachine.onNetworkStateChange(DetailedState.CONNECTING, false);
+        mStateMachine.onAuthenticationError();
+        assertEquals(Phase.ENABLING, mStateMachine.getPhase());
+
+        mStateMachine.onWifiEnabled();
+        assertEquals(Phase.SCANNING, mStateMachine.getPhase());
+    }
+
+    @Test
+    public void binding_requiredBeforeDone() {
+        mStateMachine.start(true, true);
+        mStateMachine.onNetworkStateChange(DetailedState.CONNECTED, true);
+        assertEquals(Phase.BINDING, mStateMachine.getPhase());
+        assertEquals(0, mCallback.mDoneCount);
+
+        mStateMachine.onNetworkBound();
+        assertEquals(Phase.DONE, mStateMachine.getPhase());
+        assertEquals(1, mCallback.mDoneCount);
+    }
+
+    @Test
+    public void scanningTimeout_failsWithNetworkNotFound() {
+        mStateMachine.setTimeouts(new ConnectTimeouts.Builder()
+            .timeout(Phase.SCANNING, 1000)
+            .build());
+        mStateMachine.start(true, false);
+
+        TestLoopers.idleMain(999);
+        assertEquals(Phase.SCANNING, mStateMachine.getPhase());
+
+        TestLoopers.idleMain(1);
+        assertEquals(Phase.FAILED, mStateMachine.getPhase());
+        assertEquals(Phase.SCANNING, mCallback.mFailedPhase);
+        assertEquals(Failure.NETWORK_NOT_FOUND, mCallback.mFailure);
+    }
+
+    @Test
+    public void phaseTimeout_restartsOnEachPhase() {
+        mStateMachine.setTimeouts(new ConnectTimeouts.Builder()
+            .timeout(Phase.ASSOCIATING, 1000)
+            .timeout(Phase.AUTHENTICATING, 5000)
+            .build());
+        mStateMachine.start(true, false);
+        mStateMachine.onTargetFound();
+        TestLoopers.idleMain(500);
+        mStateMachine.onNetworkStateChange(DetailedState.AUTHENTICATING, false);
+
+        // 关联阶段的超时已经取消
+        TestLoopers.idleMain(1000);
+        assertEquals(Phase.AUTHENTICATING, mStateMachine.getPhase());
+
+        TestLoopers.idleMain(4000);
+        assertEquals(Phase.FAILED, mStateMachine.getPhase());
+        assertEquals(Phase.AUTHENTICATING, mCallback.mFailedPhase);
+        assertEquals(Failure.TIMEOUT, mCallback.mFailure);
+    }
+
+    @Test
+    public void failures_reportPhaseAndReason() {
+        mStateMachine.start(true, false);
+        mStateMachine.onNetworkStateChange(DetailedState.AUTHENTICATING, false);
+        mStateMachine.onAuthenticationError();
+        assertEquals(Phase.AUTHENTICATING, mStateMachine.getFailedPhase());
+        assertEquals(Failure.AUTH_FAILED, mStateMachine.getFailure());
+
+        mStateMachine.start(true, false);
+        mStateMachine.onWifiDisabled();
+        assertEquals(Failure.WIFI_DISABLED, mStateMachine.getFailure());
+
+        mStateMachine.start(true, false);
+        mStateMachine.onNetworkStateChange(DetailedState.FAILED, false);
+        assertEquals(Failure.CONNECTION_FAILED, mStateMachine.getFailure());
+        assertEquals(3, mCallback.mFailedCount);
+    }
+
+    @Test
+    public void start_cancelsRunningConnection() {
+        mStateMachine.setTimeouts(new ConnectTimeouts.Builder()
+            .timeout(Phase.SCANNING, 1000)
+            .build());
+        mStateMachine.start(true, false);
+        mStateMachine.start(true, false);
+
+        assertEquals(Phase.SCANNING, mCallback.mFailedPhase);
+        assertEquals(Failure.CANCELLED, mCallback.mFailure);
+        assertEquals(Phase.SCANNING, mStateMachine.getPhase());
+
+        // 只有新连接的超时
+        TestLoopers.idleMain(1000);
+        assertEquals(2, mCallback.mFailedCount);
+        assertEquals(Failure.NETWORK_NOT_FOUND, mCallback.mFailure);
+
+        // 结束后的事件不再处理
+        mStateMachine.onNetworkBound();
+        mStateMachine.cancel();
+        assertEquals(Phase.FAILED, mStateMachine.getPhase());
+        assertEquals(2, mCallback.mFailedCount);
+        assertEquals(0, mCallback.mDoneCount);
+    }
+
+    private static class RecordingCallback implements ConnectionStateMachine.Callback {
+
+        final List<Phase> mPhases = new ArrayList<>();
+        int mDoneCount;
+        int mFailedCount;
+        Phase mFailedPhase;
+        Failure mFailure;
+
+        @Override
+        public void onPhaseChanged(Phase phase) {
+            mPhases.add(phase);
+        }
+
+        @Override
+        public void onDone() {
+            mDoneCount++;
+        }
+
+        @Override
+        public void onFailed(Phase phase, Failure failure) {
+            mFailedCount++;
+            mFailedPhase = phase;
+            mFailure = failure;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.dlc.dlcwificonnect;
+
+/**
+ * 手动推进的时钟
+ */
+final class FakeClock implements Clock {
+
+    private long mNow;
+
+    FakeClock(long now) {
+        mNow = now;
+    }
+
+    void advance(long millis) {
+        mNow += millis;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return mNow;
+    }
+}
@@ -0,0 +1,150 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWifiManager;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class FallbackConnectorTest {
+
+    private static final NetworkSpec WEAK = new NetworkSpec(WifiEncrypt.WPA, "Weak", "password");
+    private static final NetworkSpec STRONG =
+        new NetworkSpec(WifiEncrypt.WPA, "Strong", "password");
+
+    private WifiManager mWifiManager;
+    private WifiConnManager mConnManager;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mWifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        mConnManager = new WifiConnManager(context);
+        mConnManager.setBindingEnabled(false);
+        mListener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() {
+        mConnManager.abort();
+        TestLoopers.idleWorker();
+    }
+
+    @Test
+    public void noCandidates_failsWithNetworkNotFound() {
+        ensureConnected(Collections.<NetworkSpec>emptyList());
+
+        assertEquals(Failure.NETWORK_NOT_FOUND, mListener.mFailure);
+    }
+
+    @Test
+    public void start_triesStrongestVisibleCandidate() {
+        setScanResults(create("Weak", "02:00:00:00:00:01", -75),
+            create("Strong", "02:00:00:00:00:02", -45));
+
+        WifiConnManager.ConnectHandle handle = ensureConnected(Arrays.asList(WEAK, STRONG));
+
+        assertEquals(Phase.SCANNING, mConnManager.getConnectPhase());
+        assertEquals(Collections.singletonList("\"Strong\""), configuredSsids());
+        assertNull(mListener.mFailure);
+        assertFalse(handle.isDone());
+    }
+
+    @Test
+    public void authFailure_dropsCandidateAndFailsWhenNoneLeft() {
+        setScanResults(create("Strong", "02:00:00:00:00:02", -45));
+        ensureConnected(Collections.singletonList(STRONG));
+
+        WifiExecutors.worker().post(new Runnable() {
+            @Override
+            public void run() {
+                mConnManager.onErrorAuthenticating();
+            }
+        });
+        TestLoopers.idleWorker();
+
+        assertEquals(Failure.AUTH_FAILED, mListener.mFailure);
+        assertEquals(1, mListener.mFailureCount);
+        assertNull(mListener.mConnected);
+    }
+
+    @Test
+    public void cancel_stopsRunningAttempt() {
+        setScanResults(create("Strong", "02:00:00:00:00:02", -45));
+        WifiConnManager.ConnectHandle handle = ensureConnected(Collections.singletonList(STRONG));
+
+        handle.cancel();
+        TestLoopers.idleWorker();
+
+        assertTrue(handle.isDone());
+        assertEquals(Failure.CANCELLED, mListener.mFailure);
+        assertEquals(Phase.FAILED, mConnManager.getConnectPhase());
+    }
+
+    private WifiConnManager.ConnectHandle ensureConnected(List<NetworkSpec> candidates) {
+        WifiConnManager.ConnectHandle handle = mConnManager.ensureConnected(candidates,
+            ConnectPolicy.DEFAULT, mListener, WifiExecutors.direct());
+        TestLoopers.idleWorker();
+        return handle;
+    }
+
+    private void setScanResults(ScanResult... scanResults) {
+        // 扫描结果按时间戳判断是否足够新
+        long now = SystemClock.elapsedRealtime() * 1000;
+        for (ScanResult scanResult : scanResults) {
+            scanResult.timestamp = now;
+        }
+        ShadowWifiManager shadowWifiManager = Shadow.extract(mWifiManager);
+        shadowWifiManager.setScanResults(Arrays.asList(scanResults));
+    }
+
+    private List<String> configuredSsids() {
+        List<String> SSIDs = new ArrayList<>();
+        for (WifiConfiguration config : mWifiManager.getConfiguredNetworks()) {
+            SSIDs.add(config.SSID);
+        }
+        return SSIDs;
+    }
+
+    private static class RecordingListener implements WifiConnManager.EnsureConnectedListener {
+
+        int mFailureCount;
+        Failure mFailure;
+        NetworkSpec mConnected;
+
+        @Override
+        public void onConnected(NetworkSpec candidate) {
+            mConnected = candidate;
+        }
+
+        @Override
+        public void onConnectFailure(Failure failure) {
+            mFailureCount++;
+            mFailure = failure;
+        }
+    }
+}
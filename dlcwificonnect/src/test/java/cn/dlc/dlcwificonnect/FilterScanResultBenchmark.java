@@ -0,0 +1,109 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 扫描结果去重：原来的HashMap实现和{@link ScanResultDeduper}对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterScanResultBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int size;
+
+    private List<ScanResult> mScanResults;
+    private final ArrayList<ScanResult> mOut = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        mScanResults = TestScanResults.synthetic(size, 4, 42);
+    }
+
+    @Benchmark
+    public List<ScanResult> legacyHashMap() {
+        return legacyFilterScanResult(mScanResults);
+    }
+
+    @Benchmark
+    public List<ScanResult> deduper() {
+        return WifiHelper.filterScanResult(mScanResults, null);
+    }
+
+    @Benchmark
+    public List<ScanResult> deduperReuseOutput() {
+        return WifiHelper.filterScanResult(mScanResults, null, mOut);
+    }
+
+    @Test
+    public void run() throws Exception {
+        Benchmarks.run(FilterScanResultBenchmark.class);
+    }
+
+    /**
+     * 改写前的filterScanResult，TextUtils.isEmpty和WifiManager.calculateSignalLevel
+     * 换成了框架里的同样实现，JVM上才能运行
+     */
+    private static List<ScanResult> legacyFilterScanResult(List<ScanResult> scanResults) {
+
+        ArrayList<ScanResult> results = new ArrayList<>();
+
+        if (scanResults != null) {
+            HashMap<String, ScanResult> hashMap = new HashMap<>();
+
+            for (ScanResult scanResult : scanResults) {
+                String ssid = scanResult.SSID;
+
+                if (ssid == null || ssid.length() == 0) {
+                    continue;
+                }
+
+                ScanResult tempResult = hashMap.get(ssid);
+                if (null == tempResult) {
+                    hashMap.put(ssid, scanResult);
+                    continue;
+                }
+
+                if (calculateSignalLevel(tempResult.level, 100)
+                    < calculateSignalLevel(scanResult.level, 100)) {
+                    hashMap.put(ssid, scanResult);
+                }
+            }
+
+            for (Map.Entry<String, ScanResult> entry : hashMap.entrySet()) {
+                results.add(entry.getValue());
+            }
+        }
+
+        return results;
+    }
+
+    private static int calculateSignalLevel(int rssi, int numLevels) {
+        final int minRssi = -100;
+        final int maxRssi = -55;
+        if (rssi <= minRssi) {
+            return 0;
+        } else if (rssi >= maxRssi) {
+            return numLevels - 1;
+        } else {
+            float inputRange = maxRssi - minRssi;
+            float outputRange = numLevels - 1;
+            return (int) ((float) (rssi - minRssi) * outputRange / inputRange);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package cn.dlc.dlcwificonnect;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty_returnsMinusOne() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(-1, histogram.getMin());
+        assertEquals(-1, histogram.getMax());
+        assertEquals(-1, histogram.getMean(), 0);
+        assertEquals(-1, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void record_smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(2, histogram.getPercentile(75));
+        assertEquals(3, histogram.getPercentile(100));
+        assertEquals(1.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void record_negativeCountsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void percentile_isClampedToMinAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getPercentile(0));
+        assertEquals(1000, histogram.getPercentile(50));
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void percentile_relativeErrorWithinBucketWidth() {
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + (long) Math.exp(random.nextDouble() * Math.log(10000000));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{1, 10, 50, 90, 95, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.getPercentile(percentile);
+            double error = Math.abs(estimate - exact) / (double) exact;
+            assertTrue("p" + percentile + " exact=" + exact + " estimate=" + estimate,
+                error <= 0.125);
+        }
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    public void record_hugeValuesGoToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(1L << 40);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(1L << 40, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void add_mergesCountsAndBounds() {
+        LatencyHistogram a = new LatencyHistogram();
+        a.record(10);
+        a.record(20);
+        LatencyHistogram b = new LatencyHistogram();
+        b.record(5);
+        b.record(1000);
+
+        a.add(b);
+        a.add(new LatencyHistogram());
+
+        assertEquals(4, a.getCount());
+        assertEquals(5, a.getMin());
+        assertEquals(1000, a.getMax());
+        assertEquals(258.75, a.getMean(), 1e-9);
+        assertEquals(2, b.getCount());
+    }
+
+    @Test
+    public void copy_isIndependent() {
+        LatencyHistogram original = new LatencyHistogram();
+        original.record(100);
+        LatencyHistogram copy = new LatencyHistogram(original);
+        original.record(200);
+
+        assertEquals(1, copy.getCount());
+        assertEquals(100, copy.getMax());
+    }
+
+    @Test
+    public void clear_resetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.clear();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(-1, histogram.getMax());
+        assertEquals(-1, histogram.getPercentile(99));
+
+        histogram.record(7);
+        assertEquals(7, histogram.getMin());
+        assertEquals(7, histogram.getPercentile(50));
+    }
+}
@@ -0,0 +1,80 @@
+package cn.dlc.dlcwificonnect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LongIntMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongIntMap map = new LongIntMap(4);
+        map.put(0x020000000001L, 1);
+        map.put(0x020000000002L, 2);
+        map.put(0x020000000001L, 3);
+
+        assertEquals(2, map.size());
+        assertEquals(3, map.get(0x020000000001L, -1));
+        assertEquals(2, map.get(0x020000000002L, -1));
+        assertEquals(-1, map.get(0x020000000003L, -1));
+
+        map.remove(0x020000000001L);
+        map.remove(0x020000000003L);
+        assertEquals(1, map.size());
+        assertEquals(-1, map.get(0x020000000001L, -1));
+        assertEquals(2, map.get(0x020000000002L, -1));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(0x020000000002L, -1));
+    }
+
+    @Test
+    public void growKeepsEntries() {
+        LongIntMap map = new LongIntMap(1);
+        for (int i = 0; i < 1000; i++) {
+            map.put(0x020000000000L + i, i);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(0x020000000000L + i, -1));
+        }
+    }
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        // 键的范围小，删除时的前移会频繁跨过冲突链和数组末尾
+        Random random = new Random(11);
+        LongIntMap map = new LongIntMap(8);
+        Map<Long, Integer> expected = new HashMap<>();
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            keys.add(random.nextLong() & 0xffffffffffffL);
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            long key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                int value = random.nextInt();
+                map.put(key, value);
+                expected.put(key, value);
+            }
+
+            assertEquals(expected.size(), map.size());
+            if (i % 100 == 0) {
+                for (long k : keys) {
+                    Integer value = expected.get(k);
+                    assertEquals(value == null ? -1 : value, map.get(k, -1));
+                }
+            }
+        }
+    }
+}
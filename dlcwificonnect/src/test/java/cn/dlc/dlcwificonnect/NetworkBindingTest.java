@@ -0,0 +1,71 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowConnectivityManager;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NetworkBindingTest {
+
+    private ShadowConnectivityManager mShadowConnectivityManager;
+    private WifiConnector mWifiConnector;
+
+    private final WifiConnector.NetworkStateChangeListener mListener =
+        new WifiConnector.NetworkStateChangeListener() {
+            @Override
+            public void onNetworkStateChange(NetworkInfo networkInfo, NetworkInfo.State state,
+                NetworkInfo.DetailedState detailedState) {
+            }
+
+            @Override
+            public void onErrorAuthenticating() {
+            }
+
+            @Override
+            public void onNetworkBound() {
+            }
+        };
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        ConnectivityManager connectivityManager =
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mShadowConnectivityManager = Shadow.extract(connectivityManager);
+        mWifiConnector = new WifiConnector(context, new WifiHelper(context,
+            (WifiManager) context.getSystemService(Context.WIFI_SERVICE), connectivityManager));
+    }
+
+    @Test
+    public void bindToNetwork_replacesPendingCallback() {
+        mWifiConnector.bindToNetwork("First", mListener, WifiExecutors.direct());
+        mWifiConnector.bindToNetwork("Second", mListener, WifiExecutors.direct());
+
+        assertEquals(1, mShadowConnectivityManager.getNetworkCallbacks().size());
+    }
+
+    @Test
+    public void clearNetworkBinding_unregistersPendingCallback() {
+        mWifiConnector.bindToNetwork("Office", mListener, WifiExecutors.direct());
+        mWifiConnector.clearNetworkBinding();
+
+        assertEquals(0, mShadowConnectivityManager.getNetworkCallbacks().size());
+
+        // 再清除一次不会重复注销
+        mWifiConnector.clearNetworkBinding();
+        mWifiConnector.bindToNetwork("Office", mListener, WifiExecutors.direct());
+        assertEquals(1, mShadowConnectivityManager.getNetworkCallbacks().size());
+    }
+}
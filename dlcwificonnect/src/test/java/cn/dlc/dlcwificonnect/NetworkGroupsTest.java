@@ -0,0 +1,97 @@
+package cn.dlc.dlcwificonnect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NetworkGroupsTest {
+
+    private static final String PSK = "[WPA2-PSK-CCMP][ESS]";
+    private static final long MAX_AGE = 60 * 1000;
+
+    private FakeClock mClock;
+    private NetworkGroups mGroups;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(100 * 1000);
+        mGroups = new NetworkGroups(mClock, MAX_AGE);
+    }
+
+    @Test
+    public void update_groupsAccessPointsBySsid() {
+        mGroups.update(Arrays.asList(
+            create("Office", "02:00:00:00:00:01", PSK, -70, 2437),
+            create("Office", "02:00:00:00:00:02", PSK, -50, 2412),
+            create("Office", "02:00:00:00:00:03", PSK, -60, 5180),
+            create("Guest", "02:00:00:00:00:04", PSK, -40, 2437),
+            create("", "02:00:00:00:00:05", PSK, -30, 2437)));
+
+        assertEquals(2, mGroups.getGroups().size());
+        NetworkGroup office = mGroups.getGroup("\"Office\"");
+        assertNotNull(office);
+        assertEquals(3, office.size());
+        assertEquals("02:00:00:00:00:02", mGroups.getBestAccessPoint("Office").getBSSID());
+        assertEquals("02:00:00:00:00:03", mGroups.getBest5GhzAccessPoint("Office").getBSSID());
+        assertNull(mGroups.getBest5GhzAccessPoint("Guest"));
+        assertNull(mGroups.getAccessPoint("02:00:00:00:00:05"));
+    }
+
+    @Test
+    public void update_keepsAccessPointInstancesAndRefreshesBest() {
+        mGroups.update(Arrays.asList(
+            create("Office", "02:00:00:00:00:01", -70),
+            create("Office", "02:00:00:00:00:02", -50)));
+        AccessPoint first = mGroups.getAccessPoint("02:00:00:00:00:01");
+
+        mClock.advance(1000);
+        mGroups.update(Arrays.asList(
+            create("Office", "02:00:00:00:00:01", -40),
+            create("Office", "02:00:00:00:00:02", -50)));
+
+        assertSame(first, mGroups.getAccessPoint("02:00:00:00:00:01"));
+        assertEquals(-40, first.getLevel());
+        assertSame(first, mGroups.getBestAccessPoint("Office"));
+    }
+
+    @Test
+    public void update_expiresAccessPointsAndEmptyGroups() {
+        mGroups.update(Arrays.asList(
+            create("Office", "02:00:00:00:00:01", -70),
+            create("Guest", "02:00:00:00:00:02", -50)));
+
+        mClock.advance(MAX_AGE);
+        mGroups.update(Collections.singletonList(create("Office", "02:00:00:00:00:01", -70)));
+        // 刚好到过期时间还保留
+        assertNotNull(mGroups.getGroup("Guest"));
+
+        mClock.advance(1);
+        mGroups.update(Collections.singletonList(create("Office", "02:00:00:00:00:01", -70)));
+        assertNull(mGroups.getGroup("Guest"));
+        assertNull(mGroups.getAccessPoint("02:00:00:00:00:02"));
+        assertEquals(1, mGroups.getGroups().size());
+    }
+
+    @Test
+    public void update_bssidRenamedMovesToNewGroup() {
+        mGroups.update(Collections.singletonList(create("Setup-AP", "02:00:00:00:00:01", -50)));
+        mGroups.update(Collections.singletonList(create("Home", "02:00:00:00:00:01", -50)));
+
+        assertNull(mGroups.getGroup("Setup-AP"));
+        AccessPoint accessPoint = mGroups.getAccessPoint("02:00:00:00:00:01");
+        assertEquals("Home", accessPoint.getSSID());
+        assertSame(mGroups.getGroup("Home"), accessPoint.getGroup());
+    }
+}
@@ -0,0 +1,171 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkInfo.DetailedState;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.URL;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowConnectivityManager;
+import org.robolectric.shadows.ShadowNetwork;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+    shadows = NetworkScopeTest.StrictShadowConnectivityManager.class)
+public class NetworkScopeTest {
+
+    private ConnectivityManager mConnectivityManager;
+    private ShadowConnectivityManager mShadowConnectivityManager;
+    private NetworkScope.RequestCallback mRequestCallback;
+    private NetworkScope mScope;
+
+    @Before
+    public void setUp() {
+        mConnectivityManager =
+            (ConnectivityManager) RuntimeEnvironment.application.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        mShadowConnectivityManager = Shadow.extract(mConnectivityManager);
+        mRequestCallback = new NetworkScope.RequestCallback(mConnectivityManager) {
+        };
+        mConnectivityManager.requestNetwork(new NetworkRequest.Builder().build(),
+            mRequestCallback);
+        mScope = new NetworkScope(mRequestCallback, ShadowNetwork.newInstance(1));
+    }
+
+    @Test
+    public void newScope_isUsable() {
+        assertFalse(mScope.isClosed());
+        assertFalse(mScope.isLost());
+        assertFalse(mRequestCallback.isReleased());
+    }
+
+    @Test
+    public void close_releasesRequestOnce() {
+        mScope.close();
+        mScope.close();
+
+        assertTrue(mScope.isClosed());
+        assertTrue(mRequestCallback.isReleased());
+        assertTrue(mShadowConnectivityManager.getNetworkCallbacks().isEmpty());
+        assertFalse(mRequestCallback.release());
+    }
+
+    @Test
+    public void cancelledRequest_ignoresLateAvailable() {
+        Context context = RuntimeEnvironment.application;
+        WifiConnector connector = new WifiConnector(context, new WifiHelper(context,
+            (WifiManager) context.getSystemService(Context.WIFI_SERVICE), mConnectivityManager));
+        WifiFuture<NetworkScope> future = connector.requestNetworkScope("Device-AP");
+        assertEquals(2, mShadowConnectivityManager.getNetworkCallbacks().size());
+        mShadowConnectivityManager.getNetworkCallbacks().remove(mRequestCallback);
+        ConnectivityManager.NetworkCallback callback =
+            mShadowConnectivityManager.getNetworkCallbacks().iterator().next();
+
+        future.cancel(true);
+        assertTrue(mShadowConnectivityManager.getNetworkCallbacks().isEmpty());
+
+        // 取消后才收到目标网络可用，不能再注销一次
+        Network network = ShadowNetwork.newInstance(2);
+        NetworkInfo networkInfo = ShadowNetworkInfo.newInstance(DetailedState.CONNECTED,
+            ConnectivityManager.TYPE_WIFI, 0, true, true);
+        ReflectionHelpers.callInstanceMethod(networkInfo, "setExtraInfo",
+            ClassParameter.from(String.class, "\"Device-AP\""));
+        mShadowConnectivityManager.addNetwork(network, networkInfo);
+        callback.onAvailable(network);
+
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void getSocketFactory_throwsAfterClose() {
+        mScope.close();
+
+        try {
+            mScope.getSocketFactory();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void getSocketFactory_throwsAfterLost() {
+        mScope.onLost();
+
+        try {
+            mScope.getSocketFactory();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(mScope.isLost());
+    }
+
+    @Test
+    public void openConnection_throwsAfterClose() throws Exception {
+        mScope.close();
+
+        try {
+            mScope.openConnection(new URL("http://192.168.4.1/"));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void bindDatagramSocket_unsupportedBeforeLollipopMr1() throws Exception {
+        int sdkInt = Build.VERSION.SDK_INT;
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT",
+            Build.VERSION_CODES.LOLLIPOP);
+        DatagramSocket socket = new DatagramSocket();
+        try {
+            mScope.bindSocket(socket);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        } finally {
+            socket.close();
+            ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdkInt);
+        }
+    }
+
+    /**
+     * 和Android 8.0以上一样，注销没有注册的回调时抛异常
+     */
+    @Implements(ConnectivityManager.class)
+    public static class StrictShadowConnectivityManager extends ShadowConnectivityManager {
+
+        @Implementation
+        public void requestNetwork(NetworkRequest request,
+            ConnectivityManager.NetworkCallback networkCallback) {
+            getNetworkCallbacks().add(networkCallback);
+        }
+
+        @Implementation
+        @Override
+        public void unregisterNetworkCallback(ConnectivityManager.NetworkCallback networkCallback) {
+            if (!getNetworkCallbacks().remove(networkCallback)) {
+                throw new IllegalArgumentException("NetworkCallback was not registered");
+            }
+        }
+    }
+}
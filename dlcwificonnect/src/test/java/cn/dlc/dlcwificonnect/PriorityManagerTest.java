@@ -0,0 +1,123 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class PriorityManagerTest {
+
+    private Context mContext;
+    private WifiManager mWifiManager;
+    private ConfiguredNetworkCache mCache;
+    private PriorityManager mPriorityManager;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+        mCache = new ConfiguredNetworkCache(mContext, mWifiManager);
+        mPriorityManager = new PriorityManager(mContext, mWifiManager, mCache);
+    }
+
+    @Test
+    public void onConnected_movesToTopWithOneUpdate() {
+        addNetwork("A", 16);
+        addNetwork("B", 32);
+        addNetwork("C", 48);
+
+        mPriorityManager.onConnected("A");
+
+        assertEquals(64, priorityOf("A"));
+        assertEquals(32, priorityOf("B"));
+        assertEquals(48, priorityOf("C"));
+        assertEquals(1, mPriorityManager.getUpdateCount());
+        assertEquals(0, mPriorityManager.getCompactCount());
+    }
+
+    @Test
+    public void onConnected_alreadyInPlaceDoesNotUpdate() {
+        addNetwork("A", 16);
+        addNetwork("B", 32);
+
+        mPriorityManager.onConnected("B");
+
+        assertEquals(32, priorityOf("B"));
+        assertEquals(0, mPriorityManager.getUpdateCount());
+    }
+
+    @Test
+    public void onConnected_renumbersWhenGapIsUsedUp() {
+        addNetwork("A", 1);
+        addNetwork("B", 2);
+        addNetwork("C", 3);
+        mPriorityManager.onConnected("C");
+        mPriorityManager.onConnected("C");
+        assertEquals(0, mPriorityManager.getUpdateCount());
+
+        // A的分数在B和C之间，但2和3之间没有空位
+        mPriorityManager.onConnected("A");
+
+        assertEquals(1, mPriorityManager.getCompactCount());
+        assertEquals(PriorityManager.GAP, priorityOf("B"));
+        assertEquals(2 * PriorityManager.GAP, priorityOf("A"));
+        assertEquals(3 * PriorityManager.GAP, priorityOf("C"));
+    }
+
+    @Test
+    public void getPriorityForNewNetwork_compactsAboveCeiling() {
+        assertEquals(PriorityManager.GAP, mPriorityManager.getPriorityForNewNetwork());
+
+        addNetwork("A", 1000);
+        addNetwork("B", 2000);
+        mCache.invalidate();
+
+        assertEquals(3 * PriorityManager.GAP, mPriorityManager.getPriorityForNewNetwork());
+        assertEquals(PriorityManager.GAP, priorityOf("A"));
+        assertEquals(2 * PriorityManager.GAP, priorityOf("B"));
+        assertEquals(1, mPriorityManager.getCompactCount());
+    }
+
+    @Test
+    public void usage_scoresFailuresAndIsPersisted() {
+        addNetwork("A", 16);
+
+        mPriorityManager.onConnectFailed("A");
+        // 没有连接成功过，不计分
+        assertEquals(0, mPriorityManager.getScore("A"), 0);
+
+        mPriorityManager.onConnected("A");
+        assertEquals(0.9, mPriorityManager.getScore("A"), 0.001);
+
+        PriorityManager reloaded = new PriorityManager(mContext, mWifiManager, mCache);
+        assertEquals(1, reloaded.getSuccessCount("\"A\""));
+        assertTrue(reloaded.getLastConnected("A") > 0);
+        assertEquals(0.9, reloaded.getScore("A"), 0.001);
+    }
+
+    private void addNetwork(String SSID, int priority) {
+        WifiConfiguration config = new WifiConfiguration();
+        config.SSID = "\"" + SSID + "\"";
+        config.priority = priority;
+        mWifiManager.addNetwork(config);
+    }
+
+    private int priorityOf(String SSID) {
+        for (WifiConfiguration config : mWifiManager.getConfiguredNetworks()) {
+            if (config.SSID.equals("\"" + SSID + "\"")) {
+                return config.priority;
+            }
+        }
+        throw new AssertionError(SSID);
+    }
+}
@@ -0,0 +1,112 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * 批量保存网络和逐个保存的对比，系统里已有200个网络
+ * <p>
+ * WifiManager是Robolectric的假实现，getConfiguredNetworks和系统一样每次复制整个列表，
+ * 但没有跨进程调用的延迟，所以主要看读取次数：逐个保存时每次写入后缓存失效，
+ * 每个网络都要重新读取整个列表，总开销是平方级的；批量保存只读一次，随数量线性增长。
+ * 要在Robolectric里运行，所以不用JMH，手动计时，第一轮用来预热不输出。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ProvisionAllBenchmark {
+
+    private static final int RUNS = 5;
+
+    @Test
+    public void provision() {
+        Benchmarks.assumeEnabled();
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int count : new int[] { 25, 50, 100, 200 }) {
+                measure(count, pass > 0);
+            }
+        }
+    }
+
+    private static void measure(int count, boolean print) {
+        long[] batch = new long[RUNS];
+        long[] oneByOne = new long[RUNS];
+        int batchLoads = 0;
+        int oneByOneLoads = 0;
+        for (int run = 0; run < RUNS; run++) {
+            WifiHelper wifiHelper = newWifiHelper();
+            List<NetworkSpec> specs = ProvisionAllTest.specs("new-", count);
+            int loads = wifiHelper.getConfiguredNetworkCache().getLoadCount();
+            long start = System.nanoTime();
+            wifiHelper.provisionAll(specs);
+            batch[run] = System.nanoTime() - start;
+            batchLoads = wifiHelper.getConfiguredNetworkCache().getLoadCount() - loads;
+
+            wifiHelper = newWifiHelper();
+            loads = wifiHelper.getConfiguredNetworkCache().getLoadCount();
+            start = System.nanoTime();
+            provisionOneByOne(wifiHelper, specs);
+            oneByOne[run] = System.nanoTime() - start;
+            oneByOneLoads = wifiHelper.getConfiguredNetworkCache().getLoadCount() - loads;
+        }
+
+        if (!print) {
+            return;
+        }
+        long batchMedian = median(batch);
+        long oneByOneMedian = median(oneByOne);
+        System.out.println(String.format(Locale.US,
+            "provision %3d of %d saved: batch %6dus (%4dus/network, %d reads), "
+                + "one by one %7dus (%4dus/network, %d reads)",
+            count, ProvisionAllTest.SAVED_NETWORKS, batchMedian / 1000,
+            batchMedian / 1000 / count, batchLoads, oneByOneMedian / 1000,
+            oneByOneMedian / 1000 / count, oneByOneLoads));
+    }
+
+    /**
+     * 原来的做法：每个网络分配最高优先级后写入，并让缓存失效
+     */
+    private static void provisionOneByOne(WifiHelper wifiHelper, List<NetworkSpec> specs) {
+        WifiManager wifiManager = wifiHelper.getWifiManager();
+        for (NetworkSpec spec : specs) {
+            WifiConfiguration existing = wifiHelper.getExistingNetworkConfig(spec.getSSID());
+            if (existing != null) {
+                wifiHelper.editWifiConfig(existing, spec.getProfile(), spec.getSSID(),
+                    spec.getPassword());
+                wifiManager.updateNetwork(existing);
+            } else {
+                wifiManager.addNetwork(wifiHelper.createWifiConfig(spec.getProfile(),
+                    spec.getSSID(), spec.getPassword()));
+            }
+            wifiManager.saveConfiguration();
+            wifiHelper.getConfiguredNetworkCache().invalidate();
+        }
+    }
+
+    private static WifiHelper newWifiHelper() {
+        Context context = RuntimeEnvironment.application;
+        WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        for (WifiConfiguration config : wifiManager.getConfiguredNetworks()) {
+            wifiManager.removeNetwork(config.networkId);
+        }
+        ProvisionAllTest.saveNetworks(wifiManager, ProvisionAllTest.SAVED_NETWORKS);
+        return new WifiHelper(context, wifiManager,
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,129 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowWifiManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ProvisionAllTest {
+
+    static final int SAVED_NETWORKS = 200;
+
+    private WifiManager mWifiManager;
+    private WifiHelper mWifiHelper;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mWifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        mWifiHelper = new WifiHelper(context, mWifiManager,
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE));
+        saveNetworks(mWifiManager, SAVED_NETWORKS);
+    }
+
+    @Test
+    public void provisionAll_readsConfiguredNetworksOnce() {
+        ConfiguredNetworkCache cache = mWifiHelper.getConfiguredNetworkCache();
+
+        for (int count : new int[] { 10, 100, 200 }) {
+            cache.invalidate();
+            int loads = cache.getLoadCount();
+            mWifiHelper.provisionAll(specs("batch" + count + "-", count));
+            assertEquals(1, cache.getLoadCount() - loads);
+        }
+    }
+
+    @Test
+    public void provisionAll_updatesExistingAndAddsNew() {
+        List<NetworkSpec> specs = new ArrayList<>();
+        specs.add(new NetworkSpec(WifiEncrypt.WPA, "saved-7", "new-password"));
+        specs.add(new NetworkSpec(WifiEncrypt.WPA, "fresh", "password"));
+        specs.add(new NetworkSpec(WifiEncrypt.NONE, "open", null));
+
+        List<ProvisionResult> results = mWifiHelper.provisionAll(specs);
+
+        assertEquals(3, results.size());
+        assertEquals(ProvisionResult.Status.UPDATED, results.get(0).getStatus());
+        assertEquals(ProvisionResult.Status.ADDED, results.get(1).getStatus());
+        assertEquals(ProvisionResult.Status.ADDED, results.get(2).getStatus());
+        assertEquals(SAVED_NETWORKS + 2, mWifiManager.getConfiguredNetworks().size());
+
+        // 列表中靠后的优先级更高，都排在已有网络前面
+        int maxSaved = (SAVED_NETWORKS - 1) * PriorityManager.GAP;
+        int previous = maxSaved;
+        for (ProvisionResult result : results) {
+            assertTrue(result.getNetworkId() >= 0);
+            assertTrue(result.getPriority() > previous);
+            previous = result.getPriority();
+        }
+        assertEquals(results.get(0).getNetworkId(),
+            mWifiHelper.getExistingNetworkId("saved-7"));
+    }
+
+    @Test
+    @Config(shadows = ReadOnlyShadowWifiManager.class)
+    public void provisionAll_addsWhenUpdateIsRejected() {
+        int savedId = mWifiHelper.getExistingNetworkId("saved-7");
+        List<NetworkSpec> specs = new ArrayList<>();
+        specs.add(new NetworkSpec(WifiEncrypt.WPA, "saved-7", "new-password"));
+
+        List<ProvisionResult> results = mWifiHelper.provisionAll(specs);
+
+        ProvisionResult result = results.get(0);
+        assertEquals(ProvisionResult.Status.ADDED, result.getStatus());
+        assertTrue(result.getNetworkId() >= 0);
+        assertNotEquals(savedId, result.getNetworkId());
+        assertEquals(SAVED_NETWORKS + 1, mWifiManager.getConfiguredNetworks().size());
+    }
+
+    /**
+     * 模拟Android 10以后不能修改其他应用添加的网络
+     */
+    @Implements(WifiManager.class)
+    public static class ReadOnlyShadowWifiManager extends ShadowWifiManager {
+
+        @Implementation
+        @Override
+        public int updateNetwork(WifiConfiguration config) {
+            return -1;
+        }
+    }
+
+    static void saveNetworks(WifiManager wifiManager, int count) {
+        for (int i = 0; i < count; i++) {
+            WifiConfiguration config = new WifiConfiguration();
+            config.SSID = "\"saved-" + i + "\"";
+            config.preSharedKey = "\"password\"";
+            config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+            config.priority = i * PriorityManager.GAP;
+            wifiManager.addNetwork(config);
+        }
+    }
+
+    static List<NetworkSpec> specs(String prefix, int count) {
+        List<NetworkSpec> specs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 一半更新已保存的网络，一半新增
+            String SSID = i % 2 == 0 ? "saved-" + i : prefix + i;
+            specs.add(new NetworkSpec(WifiEncrypt.WPA, SSID, "password" + i));
+        }
+        return specs;
+    }
+}
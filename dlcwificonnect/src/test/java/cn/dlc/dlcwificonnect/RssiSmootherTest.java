@@ -0,0 +1,87 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RssiSmootherTest {
+
+    private static final String BSSID_A = "02:00:00:00:00:0a";
+    private static final String BSSID_B = "02:00:00:00:00:0b";
+
+    private RssiSmoother mSmoother;
+    private ScanResult mA;
+    private ScanResult mB;
+
+    @Before
+    public void setUp() {
+        mSmoother = new RssiSmoother(RssiSmoother.Mode.EWMA, 16, new FakeClock(0));
+        mA = create("A", BSSID_A, -50);
+        mB = create("B", BSSID_B, -55);
+    }
+
+    @Test
+    public void ewma_movesTowardsNewLevel() {
+        mSmoother.update(BSSID_A, -50);
+        mSmoother.update(BSSID_A, -40);
+
+        // -50 + 0.3 * 10
+        assertEquals(-47, mSmoother.getSmoothedLevel(BSSID_A));
+        assertEquals(-40, mSmoother.getRawLevel(BSSID_A));
+        assertEquals(RssiSmoother.UNKNOWN_LEVEL, mSmoother.getSmoothedLevel(BSSID_B));
+    }
+
+    @Test
+    public void sort_swapsOnlyWhenSmoothedDifferenceExceedsHysteresis() {
+        List<ScanResult> list = new ArrayList<>(Arrays.asList(mB, mA));
+        mSmoother.update(Arrays.asList(mA, mB));
+        WifiHelper.sortBySignalStrength(list, mSmoother);
+        assertSame(mA, list.get(0));
+
+        boolean swapped = false;
+        for (int i = 0; i < 10 && !swapped; i++) {
+            mSmoother.update(BSSID_A, -50);
+            mSmoother.update(BSSID_B, -40);
+            int difference = mSmoother.getSmoothedLevel(BSSID_B)
+                - mSmoother.getSmoothedLevel(BSSID_A);
+
+            WifiHelper.sortBySignalStrength(list, mSmoother);
+
+            swapped = list.get(0) == mB;
+            assertEquals(difference > RssiSmoother.DEFAULT_HYSTERESIS, swapped);
+        }
+        assertSame(mB, list.get(0));
+    }
+
+    @Test
+    public void sort_keepsOrderWhileJittering() {
+        List<ScanResult> list = new ArrayList<>(Arrays.asList(mA, mB));
+        mSmoother.update(Arrays.asList(mA, mB));
+        WifiHelper.sortBySignalStrength(list, mSmoother);
+
+        // 原始信号来回交叉，平滑后的差距一直在阈值内
+        for (int i = 0; i < 20; i++) {
+            mSmoother.update(BSSID_A, i % 2 == 0 ? -58 : -48);
+            mSmoother.update(BSSID_B, i % 2 == 0 ? -47 : -57);
+            WifiHelper.sortBySignalStrength(list, mSmoother);
+            assertSame(mA, list.get(0));
+        }
+    }
+
+    @Test
+    public void sort_withoutSmootherUsesRawLevel() {
+        mB.level = -49;
+        List<ScanResult> list = new ArrayList<>(Arrays.asList(mA, mB));
+
+        WifiHelper.sortBySignalStrength(list, null);
+
+        assertSame(mB, list.get(0));
+    }
+}
@@ -0,0 +1,79 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScanResultDeduperTest {
+
+    private final ScanResultDeduper mDeduper = new ScanResultDeduper();
+
+    @Test
+    public void dedup_keepsStrongestPerSsidInFirstSeenOrder() {
+        ScanResult weakA = TestScanResults.create("a", "02:00:00:00:00:01", -80);
+        ScanResult b = TestScanResults.create("b", "02:00:00:00:00:02", -60);
+        ScanResult strongA = TestScanResults.create("a", "02:00:00:00:00:03", -40);
+
+        List<ScanResult> out = mDeduper.dedup(Arrays.asList(weakA, b, strongA), null,
+            new ArrayList<ScanResult>());
+
+        assertEquals(2, out.size());
+        assertSame(strongA, out.get(0));
+        assertSame(b, out.get(1));
+    }
+
+    @Test
+    public void dedup_skipsHiddenAndFilteredNetworks() {
+        ScanResult hidden = TestScanResults.create("", "02:00:00:00:00:01", -40);
+        ScanResult nullSsid = TestScanResults.create(null, "02:00:00:00:00:02", -40);
+        ScanResult open = TestScanResults.create("open", "02:00:00:00:00:03", "[ESS]", -50, 2437);
+        ScanResult secured = TestScanResults.create("secured", "02:00:00:00:00:04", -50);
+
+        List<ScanResult> out = mDeduper.dedup(Arrays.asList(hidden, nullSsid, open, secured),
+            new WifiScanner.ScanResultFilter() {
+                @Override
+                public boolean letItGo(ScanResult scanResult) {
+                    return scanResult.capabilities.contains("PSK");
+                }
+            }, new ArrayList<ScanResult>());
+
+        assertEquals(1, out.size());
+        assertSame(secured, out.get(0));
+    }
+
+    @Test
+    public void dedup_matchesHashMapImplementationAcrossReuseAndGrowth() {
+        ArrayList<ScanResult> out = new ArrayList<>();
+        for (int size : new int[] { 5000, 50, 500 }) {
+            List<ScanResult> scanResults = TestScanResults.synthetic(size, 3, size);
+            mDeduper.dedup(scanResults, null, out);
+
+            assertEquals((size + 2) / 3, out.size());
+            for (int i = 0; i < out.size(); i++) {
+                ScanResult kept = out.get(i);
+                assertEquals("net-" + i, kept.SSID);
+                for (ScanResult scanResult : scanResults) {
+                    if (scanResult.SSID.equals(kept.SSID)) {
+                        assertTrue(scanResult.level <= kept.level);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void dedup_nullOrEmptyInputClearsOutput() {
+        ArrayList<ScanResult> out = new ArrayList<>();
+        out.add(TestScanResults.create("stale", "02:00:00:00:00:01", -40));
+
+        assertTrue(mDeduper.dedup(null, null, out).isEmpty());
+        out.add(TestScanResults.create("stale", "02:00:00:00:00:01", -40));
+        assertTrue(mDeduper.dedup(new ArrayList<ScanResult>(), null, out).isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ScanResultDifferTest {
+
+    @Test
+    public void bssidKey_reportsAddedChangedRemoved() {
+        ScanResultDiffer differ = new ScanResultDiffer();
+        ScanResult a = create("Office", "02:00:00:00:00:01", -50);
+        ScanResult b = create("Office", "02:00:00:00:00:02", -60);
+        assertEquals(2, differ.diff(Arrays.asList(a, b)).size());
+
+        ScanResult a2 = create("Office", "02:00:00:00:00:01", -40);
+        List<ScanDelta> deltas = differ.diff(Collections.singletonList(a2));
+        assertEquals(2, deltas.size());
+        assertEquals(ScanDelta.Type.LEVEL_CHANGED, deltas.get(0).getType());
+        assertSame(a, deltas.get(0).getPrevious());
+        assertEquals(ScanDelta.Type.REMOVED, deltas.get(1).getType());
+        assertSame(b, deltas.get(1).getScanResult());
+    }
+
+    @Test
+    public void ssidKey_strongestApSwitchIsAChange() {
+        ScanResultDiffer differ = new ScanResultDiffer(ScanResultDiffer.Key.SSID);
+        differ.reset(Collections.singletonList(create("Office", "02:00:00:00:00:01", -50)));
+
+        ScanResult switched = create("\"Office\"", "02:00:00:00:00:02", -45);
+        List<ScanDelta> deltas = differ.diff(Collections.singletonList(switched));
+        assertEquals(1, deltas.size());
+        assertEquals(ScanDelta.Type.ACCESS_POINT_CHANGED, deltas.get(0).getType());
+        assertSame(switched, deltas.get(0).getScanResult());
+    }
+
+    @Test
+    public void ssidKey_apSwitchWithSameLevelIsReported() {
+        ScanResultDiffer differ = new ScanResultDiffer(ScanResultDiffer.Key.SSID);
+        differ.setLevelThreshold(5);
+        differ.reset(Collections.singletonList(create("Office", "02:00:00:00:00:01", -50)));
+
+        ScanResult switched = create("Office", "02:00:00:00:00:02", -50);
+        List<ScanDelta> deltas = differ.diff(Collections.singletonList(switched));
+        assertEquals(1, deltas.size());
+        assertEquals(ScanDelta.Type.ACCESS_POINT_CHANGED, deltas.get(0).getType());
+        assertSame(switched, deltas.get(0).getScanResult());
+
+        // 同一个接入点换到5G
+        ScanResult moved = create("Office", "02:00:00:00:00:02", "[WPA2-PSK-CCMP][ESS]", -50, 5180);
+        deltas = differ.diff(Collections.singletonList(moved));
+        assertEquals(ScanDelta.Type.ACCESS_POINT_CHANGED, deltas.get(0).getType());
+
+        assertTrue(differ.diff(Collections.singletonList(moved)).isEmpty());
+    }
+
+    @Test
+    public void levelThreshold_suppressesSmallChanges() {
+        ScanResultDiffer differ = new ScanResultDiffer();
+        differ.setLevelThreshold(5);
+        differ.reset(Collections.singletonList(create("Office", "02:00:00:00:00:01", -50)));
+
+        assertTrue(differ.diff(Collections.singletonList(
+            create("Office", "02:00:00:00:00:01", -53))).isEmpty());
+        // 和上次输出的-50比，累计变化达到阈值
+        assertEquals(1, differ.diff(Collections.singletonList(
+            create("Office", "02:00:00:00:00:01", -55))).size());
+    }
+
+    @Test
+    public void capabilitiesChange_isReported() {
+        ScanResultDiffer differ = new ScanResultDiffer();
+        differ.reset(Collections.singletonList(create("Office", "02:00:00:00:00:01", -50)));
+
+        List<ScanDelta> deltas = differ.diff(Collections.singletonList(
+            create("Office", "02:00:00:00:00:01", "[ESS]", -50, 2437)));
+        assertEquals(ScanDelta.Type.CAPABILITIES_CHANGED, deltas.get(0).getType());
+    }
+}
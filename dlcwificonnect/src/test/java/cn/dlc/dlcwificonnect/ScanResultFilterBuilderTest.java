@@ -0,0 +1,97 @@
+package cn.dlc.dlcwificonnect;
+
+import org.junit.Test;
+
+import static cn.dlc.dlcwificonnect.TestScanResults.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanResultFilterBuilderTest {
+
+    private static final String PSK = "[WPA2-PSK-CCMP][ESS]";
+
+    @Test
+    public void emptyBuilder_letsEverythingGo() {
+        WifiScanner.ScanResultFilter filter = new ScanResultFilterBuilder().build();
+
+        assertTrue(filter.letItGo(create("Office", "02:00:00:00:00:01", -90)));
+        assertTrue(filter.letItGo(create(null, "02:00:00:00:00:01", -90)));
+    }
+
+    @Test
+    public void sameKind_isOrAndDifferentKinds_areAnd() {
+        WifiScanner.ScanResultFilter filter = new ScanResultFilterBuilder()
+            .ssidPrefix("USR")
+            .ssidPrefix("DEV")
+            .minLevel(-70)
+            .build();
+
+        assertTrue(filter.letItGo(create("USR-1", "02:00:00:00:00:01", -60)));
+        assertTrue(filter.letItGo(create("DEV-1", "02:00:00:00:00:01", -70)));
+        assertFalse(filter.letItGo(create("DEV-1", "02:00:00:00:00:01", -71)));
+        assertFalse(filter.letItGo(create("Office", "02:00:00:00:00:01", -40)));
+        // 有SSID条件时没有SSID的不通过
+        assertFalse(filter.letItGo(create(null, "02:00:00:00:00:01", -40)));
+    }
+
+    @Test
+    public void ignoreCase_appliesToPrefixAndContains() {
+        ScanResultFilterBuilder builder = new ScanResultFilterBuilder().ssidContains("usr");
+        WifiScanner.ScanResultFilter caseSensitive = builder.build();
+        WifiScanner.ScanResultFilter ignoreCase = builder.ignoreCase(true).build();
+
+        assertFalse(caseSensitive.letItGo(create("My-USR-AP", "02:00:00:00:00:01", -50)));
+        assertTrue(ignoreCase.letItGo(create("My-USR-AP", "02:00:00:00:00:01", -50)));
+        assertFalse(ignoreCase.letItGo(create("US", "02:00:00:00:00:01", -50)));
+    }
+
+    @Test
+    public void band_encryptAndOui() {
+        WifiScanner.ScanResultFilter filter = new ScanResultFilterBuilder()
+            .band(WifiBand.GHZ_5)
+            .encrypt(WifiEncrypt.WPA)
+            .bssidOui("d8-b0-4c")
+            .build();
+
+        assertTrue(filter.letItGo(create("A", "D8:B0:4C:11:22:33", PSK, -50, 5180)));
+        assertFalse(filter.letItGo(create("A", "D8:B0:4C:11:22:33", PSK, -50, 2437)));
+        assertFalse(filter.letItGo(create("A", "D8:B0:4C:11:22:33", "[ESS]", -50, 5180)));
+        assertFalse(filter.letItGo(create("A", "D8:B0:4D:11:22:33", PSK, -50, 5180)));
+        assertFalse(filter.letItGo(create("A", null, PSK, -50, 5180)));
+    }
+
+    @Test
+    public void regex_usesFind() {
+        WifiScanner.ScanResultFilter filter = new ScanResultFilterBuilder()
+            .ssidRegex("\\d{4}$")
+            .build();
+
+        assertTrue(filter.letItGo(create("Device-1234", "02:00:00:00:00:01", -50)));
+        assertFalse(filter.letItGo(create("Device-12", "02:00:00:00:00:01", -50)));
+    }
+
+    @Test
+    public void build_isNotChangedByLaterBuilderCalls() {
+        ScanResultFilterBuilder builder = new ScanResultFilterBuilder().ssidPrefix("USR");
+        WifiScanner.ScanResultFilter filter = builder.build();
+        builder.minLevel(-40).ssidPrefix("DEV");
+
+        assertTrue(filter.letItGo(create("USR-1", "02:00:00:00:00:01", -80)));
+        assertFalse(filter.letItGo(create("DEV-1", "02:00:00:00:00:01", -80)));
+    }
+
+    @Test
+    public void parseOui_acceptsColonAndDash() {
+        assertEquals(0xD8B04C, ScanResultFilterBuilder.parseOui("D8:B0:4C:00:00:00"));
+        assertEquals(0xD8B04C, ScanResultFilterBuilder.parseOui("d8-b0-4c"));
+        assertEquals(-1, ScanResultFilterBuilder.parseOui("D8B04C"));
+        assertEquals(-1, ScanResultFilterBuilder.parseOui("D8:B0:4G"));
+        assertEquals(-1, ScanResultFilterBuilder.parseOui(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bssidOui_rejectsInvalid() {
+        new ScanResultFilterBuilder().bssidOui("nope");
+    }
+}
@@ -0,0 +1,164 @@
+package cn.dlc.dlcwificonnect;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowApplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ScanResultStreamTest {
+
+    private Context mContext;
+    private WifiHelper mWifiHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mWifiHelper = new WifiHelper(mContext,
+            (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE),
+            (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE));
+    }
+
+    @Test
+    public void scan_completesWithoutSubscribers() {
+        ScanScheduler scheduler = mWifiHelper.getScanScheduler();
+        assertEquals(0, mWifiHelper.getScanResultStream().getSubscriberCount());
+
+        mWifiHelper.startScan();
+        assertTrue(scheduler.isScanning());
+        mWifiHelper.startScan();
+        assertEquals(1, scheduler.getMergedCount());
+
+        sendScanResults();
+
+        assertFalse(scheduler.isScanning());
+        assertTrue(mWifiHelper.getScanResultsAge() >= 0);
+        // 扫描结束又没有订阅者，接收器注销
+        assertFalse(hasScanReceiver());
+    }
+
+    @Test
+    public void receiver_keptWhileScanningAfterLastUnsubscribe() {
+        ScanResultStream stream = mWifiHelper.getScanResultStream();
+        ScanResultStream.Subscription subscription = stream.subscribe(
+            new ScanResultStream.Subscriber() {
+                @Override
+                public void onScanResults(List<ScanResult> scanResults) {
+                }
+            }, ScanResultStream.Delivery.LATEST_ONLY, WifiExecutors.direct());
+        assertTrue(hasScanReceiver());
+
+        mWifiHelper.startScan();
+        subscription.cancel();
+        assertTrue(hasScanReceiver());
+
+        sendScanResults();
+        assertFalse(mWifiHelper.getScanScheduler().isScanning());
+        assertFalse(hasScanReceiver());
+    }
+
+    @Test
+    public void latestOnly_dropsResultsTheSubscriberHasNotTaken() {
+        QueueExecutor executor = new QueueExecutor();
+        CountingSubscriber latest = new CountingSubscriber();
+        CountingSubscriber every = new CountingSubscriber();
+        ScanResultStream stream = mWifiHelper.getScanResultStream();
+        stream.subscribe(latest, ScanResultStream.Delivery.LATEST_ONLY, executor);
+        stream.subscribe(every, ScanResultStream.Delivery.EVERY_SCAN, executor);
+
+        stream.publish();
+        stream.publish();
+        stream.publish();
+        // 每个订阅者只排一个任务，处理不过来的结果在任务里合并
+        assertEquals(2, executor.mTasks.size());
+        executor.runAll();
+
+        assertEquals(1, latest.mCount);
+        assertEquals(3, every.mCount);
+    }
+
+    @Test
+    public void cancel_dropsPendingAndUnregistersOnLastSubscriber() {
+        QueueExecutor executor = new QueueExecutor();
+        CountingSubscriber first = new CountingSubscriber();
+        CountingSubscriber second = new CountingSubscriber();
+        ScanResultStream stream = mWifiHelper.getScanResultStream();
+        ScanResultStream.Subscription firstSubscription =
+            stream.subscribe(first, ScanResultStream.Delivery.EVERY_SCAN, executor);
+        ScanResultStream.Subscription secondSubscription =
+            stream.subscribe(second, ScanResultStream.Delivery.EVERY_SCAN, executor);
+
+        stream.publish();
+        firstSubscription.cancel();
+        assertTrue(firstSubscription.isCancelled());
+        assertTrue(hasScanReceiver());
+
+        secondSubscription.cancel();
+        assertEquals(0, stream.getSubscriberCount());
+        assertFalse(hasScanReceiver());
+
+        executor.runAll();
+        assertEquals(0, first.mCount);
+        assertEquals(0, second.mCount);
+    }
+
+    private boolean hasScanReceiver() {
+        ShadowApplication application = Shadow.extract(mContext);
+        return application.hasReceiverForIntent(
+            new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+    }
+
+    private void sendScanResults() {
+        mContext.sendBroadcast(new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION)
+            .putExtra(WifiManager.EXTRA_RESULTS_UPDATED, true));
+        TestLoopers.idleMain();
+        TestLoopers.idleWorker();
+    }
+
+    private static class CountingSubscriber implements ScanResultStream.Subscriber {
+
+        int mCount;
+
+        @Override
+        public void onScanResults(List<ScanResult> scanResults) {
+            mCount++;
+        }
+    }
+
+    /**
+     * 先攒着任务，模拟处理不过来的订阅者
+     */
+    private static class QueueExecutor implements Executor {
+
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task : mTasks) {
+                task.run();
+            }
+            mTasks.clear();
+        }
+    }
+}
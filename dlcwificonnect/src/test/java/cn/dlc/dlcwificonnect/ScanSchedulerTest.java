@@ -0,0 +1,130 @@
+package cn.dlc.dlcwificonnect;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanSchedulerTest {
+
+    private static final long WINDOW = 120 * 1000;
+    private static final long TIMEOUT = 10 * 1000;
+
+    private FakeClock mClock;
+    private FakeTrigger mTrigger;
+    private ScanScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(1000);
+        mTrigger = new FakeTrigger();
+        mScheduler = new ScanScheduler(mTrigger, mClock, 4, WINDOW, TIMEOUT);
+    }
+
+    @Test
+    public void quota_throttlesAfterMaxScansInWindow() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ScanScheduler.SCAN_STARTED, mScheduler.requestScan());
+            mScheduler.onScanResultsAvailable(true);
+            mClock.advance(1000);
+        }
+        assertEquals(0, mScheduler.getRemainingBudget());
+        assertEquals(ScanScheduler.SCAN_THROTTLED, mScheduler.requestScan());
+        assertEquals(4, mTrigger.mCalls);
+
+        // 第一次扫描在1000，窗口在121000过期，现在是5000
+        assertEquals(WINDOW - 4000, mScheduler.getNextScanDelay());
+        mClock.advance(WINDOW - 4000);
+        assertEquals(1, mScheduler.getRemainingBudget());
+        assertEquals(ScanScheduler.SCAN_STARTED, mScheduler.requestScan());
+        assertEquals(5, mTrigger.mCalls);
+        assertEquals(1, mScheduler.getThrottledCount());
+    }
+
+    @Test
+    public void overlappingRequests_mergeIntoOneScan() {
+        assertEquals(ScanScheduler.SCAN_STARTED, mScheduler.requestScan());
+        assertEquals(ScanScheduler.SCAN_MERGED, mScheduler.requestScan());
+        assertEquals(ScanScheduler.SCAN_MERGED, mScheduler.requestScan());
+        assertEquals(1, mTrigger.mCalls);
+        assertEquals(2, mScheduler.getMergedCount());
+        assertEquals(3, mScheduler.getRemainingBudget());
+    }
+
+    @Test
+    public void scanTimeout_endsScanWithoutResults() {
+        mScheduler.requestScan();
+        mClock.advance(TIMEOUT - 1);
+        assertTrue(mScheduler.isScanning());
+        mClock.advance(1);
+        assertFalse(mScheduler.isScanning());
+        assertEquals(ScanScheduler.SCAN_STARTED, mScheduler.requestScan());
+    }
+
+    @Test
+    public void rejectedScan_countsAgainstBudget() {
+        mTrigger.mAccept = false;
+        assertEquals(ScanScheduler.SCAN_THROTTLED, mScheduler.requestScan());
+        assertFalse(mScheduler.isScanning());
+        assertEquals(3, mScheduler.getRemainingBudget());
+    }
+
+    @Test
+    public void resultsAge_onlyAdvancesOnUpdatedResults() {
+        assertEquals(-1, mScheduler.getResultsAge());
+
+        mScheduler.requestScan();
+        mScheduler.onScanResultsAvailable(false);
+        assertFalse(mScheduler.isScanning());
+        assertEquals(-1, mScheduler.getResultsAge());
+
+        mScheduler.requestScan();
+        mClock.advance(500);
+        mScheduler.onScanResultsAvailable(true);
+        mClock.advance(2000);
+        assertEquals(2000, mScheduler.getResultsAge());
+
+        // 没更新的结果不会刷新时间
+        mScheduler.onScanResultsAvailable(false);
+        assertEquals(2000, mScheduler.getResultsAge());
+    }
+
+    @Test
+    public void unlimited_neverThrottlesButStillMerges() {
+        ScanScheduler scheduler = new ScanScheduler(mTrigger, mClock,
+            ScanScheduler.UNLIMITED_SCANS, WINDOW, TIMEOUT);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(ScanScheduler.SCAN_STARTED, scheduler.requestScan());
+            assertEquals(ScanScheduler.SCAN_MERGED, scheduler.requestScan());
+            scheduler.onScanResultsAvailable(true);
+        }
+        assertEquals(20, mTrigger.mCalls);
+        assertEquals(ScanScheduler.UNLIMITED_SCANS, scheduler.getRemainingBudget());
+        assertEquals(0, scheduler.getNextScanDelay());
+    }
+
+    @Test
+    public void defaultMaxScans_onlyLimitedFromAndroidP() {
+        assertEquals(ScanScheduler.UNLIMITED_SCANS, ScanScheduler.defaultMaxScans(27));
+        assertEquals(ScanScheduler.DEFAULT_MAX_SCANS, ScanScheduler.defaultMaxScans(28));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMaxScans_isRejected() {
+        new ScanScheduler(mTrigger, mClock, 0, WINDOW, TIMEOUT);
+    }
+
+    private static class FakeTrigger implements ScanScheduler.ScanTrigger {
+
+        boolean mAccept = true;
+        int mCalls;
+
+        @Override
+        public boolean startScan() {
+            mCalls++;
+            return mAccept;
+        }
+    }
+}
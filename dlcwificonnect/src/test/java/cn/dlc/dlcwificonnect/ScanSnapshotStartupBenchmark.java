@@ -0,0 +1,54 @@
+package cn.dlc.dlcwificonnect;
+
+import java.io.File;
+import java.util.Locale;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 冷启动读取扫描快照的耗时
+ * <p>
+ * Parcel要在Robolectric里运行，所以不用JMH，手动计时。第一次读取近似冷启动，
+ * 之后多次读取看分布。JVM上的绝对值和设备不同，设备上的耗时看{@link ScanSnapshot#getLoadNanos()}。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ScanSnapshotStartupBenchmark {
+
+    private static final int ITERATIONS = 200;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void load() {
+        Benchmarks.assumeEnabled();
+
+        for (int size : new int[] { 50, 500, 5000 }) {
+            File file = new File(mFolder.getRoot(), size + ".bin");
+            new ScanSnapshotStore(file, Clock.SYSTEM)
+                .save(TestScanResults.synthetic(size, 1, size));
+
+            // 新的实例，和冷启动一样没有任何缓存
+            ScanSnapshotStore store = new ScanSnapshotStore(file, Clock.SYSTEM);
+            ScanSnapshot first = store.load();
+            assertEquals(size, first.getScanResults().size());
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int i = 0; i < ITERATIONS; i++) {
+                histogram.record(store.load().getLoadNanos() / 1000);
+            }
+
+            System.out.println(String.format(Locale.US,
+                "ScanSnapshotStore.load size=%d file=%dB first=%dus p50=%dus p95=%dus max=%dus",
+                size, file.length(), first.getLoadNanos() / 1000, histogram.getPercentile(50),
+                histogram.getPercentile(95), histogram.getMax()));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ScanSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private FakeClock mClock;
+    private ScanSnapshotStore mStore;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), ScanSnapshotStore.FILE_NAME);
+        mClock = new FakeClock(1000);
+        mStore = new ScanSnapshotStore(mFile, mClock);
+    }
+
+    @Test
+    public void saveAndLoad_roundTrips() {
+        List<ScanResult> scanResults = TestScanResults.synthetic(30, 1, 3);
+        assertTrue(mStore.save(scanResults));
+
+        ScanSnapshot snapshot = new ScanSnapshotStore(mFile, mClock).load();
+
+        assertNotNull(snapshot);
+        assertEquals(scanResults.size(), snapshot.getScanResults().size());
+        for (int i = 0; i < scanResults.size(); i++) {
+            ScanResult expected = scanResults.get(i);
+            ScanResult actual = snapshot.getScanResults().get(i);
+            assertEquals(expected.SSID, actual.SSID);
+            assertEquals(expected.BSSID, actual.BSSID);
+            assertEquals(expected.capabilities, actual.capabilities);
+            assertEquals(expected.level, actual.level);
+            assertEquals(expected.frequency, actual.frequency);
+        }
+        assertTrue(snapshot.getLoadNanos() > 0);
+    }
+
+    @Test
+    public void load_missingFileReturnsNull() {
+        assertNull(mStore.load());
+    }
+
+    @Test
+    public void load_truncatedFileIsDiscarded() throws Exception {
+        assertTrue(mStore.save(TestScanResults.synthetic(10, 1, 3)));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 7);
+        file.close();
+
+        assertNull(mStore.load());
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void load_wrongMagicIsDiscarded() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[64]);
+        out.close();
+
+        assertNull(mStore.load());
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void onScanResults_savesAtMostOncePerInterval() {
+        mStore.setMinSaveInterval(30 * 1000);
+        mStore.onScanResults(TestScanResults.synthetic(5, 1, 1));
+        mStore.onScanResults(TestScanResults.synthetic(8, 1, 1));
+        assertEquals(5, mStore.load().getScanResults().size());
+
+        mClock.advance(30 * 1000);
+        mStore.onScanResults(TestScanResults.synthetic(8, 1, 1));
+        assertEquals(8, mStore.load().getScanResults().size());
+    }
+}
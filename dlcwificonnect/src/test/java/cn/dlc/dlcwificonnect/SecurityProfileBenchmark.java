@@ -0,0 +1,91 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 列表每次绑定时判断加密方式的开销：原来的字符串查找和缓存的{@link SecurityProfile}对比
+ * <p>
+ * 结果是平均每个条目的耗时，每个条目的capabilities都是单独的字符串对象，和真实扫描结果一样
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SecurityProfileBenchmark {
+
+    private static final int ITEMS = 50;
+
+    private static final String[] CAPABILITIES = {
+        "[WPA2-PSK-CCMP][ESS]",
+        "[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP][ESS][WPS]",
+        "[WPA2-PSK-CCMP][RSN-SAE-CCMP][ESS][MFPC]",
+        "[RSN-SAE-CCMP][ESS][MFPR][MFPC]",
+        "[WPA2-EAP-CCMP][ESS]",
+        "[RSN-OWE-CCMP][ESS][MFPR][MFPC]",
+        "[WEP][ESS]",
+        "[ESS]",
+    };
+
+    private ScanResult[] mItems;
+
+    @Setup
+    public void setUp() {
+        List<ScanResult> scanResults = TestScanResults.synthetic(ITEMS, 1, 42);
+        mItems = new ScanResult[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            ScanResult scanResult = scanResults.get(i);
+            scanResult.capabilities = new String(CAPABILITIES[i % CAPABILITIES.length]);
+            mItems[i] = scanResult;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public int legacyDistinguish() {
+        int sum = 0;
+        for (ScanResult item : mItems) {
+            sum += legacyDistinguish(item.capabilities).ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public int cachedProfile() {
+        int sum = 0;
+        for (ScanResult item : mItems) {
+            sum += SecurityProfile.of(item).getEncrypt().ordinal();
+        }
+        return sum;
+    }
+
+    @Test
+    public void run() throws Exception {
+        Benchmarks.run(SecurityProfileBenchmark.class);
+    }
+
+    /**
+     * 改写前的WifiEncrypt.distinguish
+     */
+    private static WifiEncrypt legacyDistinguish(String capabilities) {
+        if (capabilities.contains("WPA")) {
+            return WifiEncrypt.WPA;
+        } else if (capabilities.contains("WEP")) {
+            return WifiEncrypt.WEP;
+        } else if (capabilities.contains("EAP")) {
+            return WifiEncrypt.EAP;
+        } else {
+            return WifiEncrypt.NONE;
+        }
+    }
+}
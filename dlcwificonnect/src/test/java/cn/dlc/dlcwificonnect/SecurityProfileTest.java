@@ -0,0 +1,128 @@
+package cn.dlc.dlcwificonnect;
+
+import org.junit.Test;
+
+import static cn.dlc.dlcwificonnect.SecurityProfile.CIPHER_CCMP;
+import static cn.dlc.dlcwificonnect.SecurityProfile.CIPHER_GCMP;
+import static cn.dlc.dlcwificonnect.SecurityProfile.CIPHER_TKIP;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_EAP;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_FT;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_NONE;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_OWE;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_PSK;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_SAE;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_SUITE_B;
+import static cn.dlc.dlcwificonnect.SecurityProfile.KEY_MGMT_WEP;
+import static cn.dlc.dlcwificonnect.SecurityProfile.PROTOCOL_RSN;
+import static cn.dlc.dlcwificonnect.SecurityProfile.PROTOCOL_WPA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SecurityProfileTest {
+
+    @Test
+    public void parse_wpa2Personal() {
+        SecurityProfile profile = SecurityProfile.of("[WPA2-PSK-CCMP][ESS]");
+
+        assertEquals(KEY_MGMT_PSK, profile.getKeyMgmt());
+        assertEquals(PROTOCOL_RSN, profile.getProtocols());
+        assertEquals(CIPHER_CCMP, profile.getCiphers());
+        assertEquals(WifiEncrypt.WPA, profile.getEncrypt());
+        assertFalse(profile.isPmfCapable());
+        assertFalse(profile.isWps());
+        assertFalse(profile.isOpen());
+    }
+
+    @Test
+    public void parse_wpa3TransitionWithPmfAndWps() {
+        SecurityProfile profile =
+            SecurityProfile.of("[WPA2-PSK-CCMP][RSN-SAE-CCMP][ESS][MFPC][WPS]");
+
+        assertEquals(KEY_MGMT_PSK | KEY_MGMT_SAE, profile.getKeyMgmt());
+        assertTrue(profile.isSae());
+        assertFalse(profile.isSaeOnly());
+        assertTrue(profile.isPmfCapable());
+        assertFalse(profile.isPmfRequired());
+        assertTrue(profile.isWps());
+        assertEquals(WifiEncrypt.WPA, profile.getEncrypt());
+    }
+
+    @Test
+    public void parse_wpa3SaeOnlyRequiresPmf() {
+        SecurityProfile profile = SecurityProfile.of("[RSN-SAE-CCMP][ESS][MFPR][MFPC]");
+
+        assertEquals(KEY_MGMT_SAE, profile.getKeyMgmt());
+        assertTrue(profile.isSaeOnly());
+        assertTrue(profile.isPmfRequired());
+        assertTrue(profile.isPmfCapable());
+    }
+
+    @Test
+    public void parse_oweIsOpenWithoutPassword() {
+        SecurityProfile profile = SecurityProfile.of("[RSN-OWE-CCMP][ESS][MFPR][MFPC]");
+
+        assertEquals(KEY_MGMT_OWE, profile.getKeyMgmt());
+        assertTrue(profile.isOwe());
+        assertTrue(profile.isOpen());
+        assertEquals(WifiEncrypt.NONE, profile.getEncrypt());
+    }
+
+    @Test
+    public void parse_enterpriseMixedModeIsEapNotWpa() {
+        SecurityProfile profile =
+            SecurityProfile.of("[WPA-EAP-CCMP+TKIP][WPA2-EAP-CCMP+TKIP][ESS]");
+
+        assertEquals(KEY_MGMT_EAP, profile.getKeyMgmt());
+        assertEquals(PROTOCOL_WPA | PROTOCOL_RSN, profile.getProtocols());
+        assertEquals(CIPHER_CCMP | CIPHER_TKIP, profile.getCiphers());
+        assertTrue(profile.isEnterprise());
+        assertEquals(WifiEncrypt.EAP, profile.getEncrypt());
+        assertEquals(WifiEncrypt.EAP,
+            WifiEncrypt.distinguish("[WPA-EAP-CCMP+TKIP][WPA2-EAP-CCMP+TKIP][ESS]"));
+    }
+
+    @Test
+    public void parse_suiteBAndFastTransition() {
+        SecurityProfile suiteB = SecurityProfile.of("[RSN-EAP_SUITE_B_192-GCMP-256][ESS][MFPR]");
+        assertEquals(KEY_MGMT_EAP | KEY_MGMT_SUITE_B, suiteB.getKeyMgmt());
+        assertEquals(CIPHER_GCMP, suiteB.getCiphers());
+
+        SecurityProfile ft = SecurityProfile.of("[WPA2-PSK+FT/PSK-CCMP][ESS]");
+        assertEquals(KEY_MGMT_PSK | KEY_MGMT_FT, ft.getKeyMgmt());
+        assertTrue(ft.isPsk());
+    }
+
+    @Test
+    public void parse_wepAndOpen() {
+        SecurityProfile wep = SecurityProfile.of("[WEP][ESS]");
+        assertEquals(KEY_MGMT_WEP, wep.getKeyMgmt());
+        assertEquals(WifiEncrypt.WEP, wep.getEncrypt());
+
+        for (String capabilities : new String[] { "[ESS]", "[IBSS]", "", null }) {
+            SecurityProfile open = SecurityProfile.of(capabilities);
+            assertEquals(KEY_MGMT_NONE, open.getKeyMgmt());
+            assertTrue(open.isOpen());
+            assertEquals(WifiEncrypt.NONE, open.getEncrypt());
+        }
+    }
+
+    @Test
+    public void of_sameCapabilitiesParsedOnce() {
+        String capabilities = "[WPA2-PSK-CCMP][ESS][WPS]";
+        SecurityProfile first = SecurityProfile.of(capabilities);
+
+        // 每次扫描得到的是新的字符串对象
+        assertSame(first, SecurityProfile.of(new String(capabilities)));
+        assertSame(first, SecurityProfile.of(TestScanResults.create("a", "02:00:00:00:00:01",
+            capabilities, -50, 2437)));
+    }
+
+    @Test
+    public void of_legacyEncryptRoundTrips() {
+        for (WifiEncrypt encrypt : WifiEncrypt.values()) {
+            assertEquals(encrypt, SecurityProfile.of(encrypt).getEncrypt());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SignalTopKTest {
+
+    private static final Comparator<ScanResult> STRONGEST_FIRST = new Comparator<ScanResult>() {
+        @Override
+        public int compare(ScanResult resultOne, ScanResult resultTwo) {
+            return resultTwo.level - resultOne.level;
+        }
+    };
+
+    private final SignalTopK mTopK = new SignalTopK();
+
+    @Test
+    public void select_matchesFullSortForEveryK() {
+        List<ScanResult> scanResults = TestScanResults.synthetic(200, 1, 7);
+        List<ScanResult> sorted = new ArrayList<>(scanResults);
+        Collections.sort(sorted, STRONGEST_FIRST);
+
+        ArrayList<ScanResult> out = new ArrayList<>();
+        for (int k : new int[] { 1, 5, 20, 199, 200, 500, 3 }) {
+            mTopK.select(scanResults, k, out);
+            assertEquals(Math.min(k, 200), out.size());
+            assertLevels(sorted.subList(0, out.size()), out);
+        }
+    }
+
+    @Test
+    public void select_emptyInputsAndNonPositiveK() {
+        ArrayList<ScanResult> out = new ArrayList<>();
+        out.add(TestScanResults.create("stale", "02:00:00:00:00:01", -40));
+
+        assertTrue(mTopK.select(null, 3, out).isEmpty());
+        assertTrue(mTopK.select(new ArrayList<ScanResult>(), 3, out).isEmpty());
+        assertTrue(mTopK.select(TestScanResults.synthetic(10, 1, 1), 0, out).isEmpty());
+    }
+
+    @Test
+    public void dedupTopK_matchesDedupThenSort() {
+        ScanResultDeduper deduper = new ScanResultDeduper();
+        ArrayList<ScanResult> deduped = new ArrayList<>();
+        ArrayList<ScanResult> out = new ArrayList<>();
+
+        // 乱序、同名热点多，覆盖信号变强后在堆里下沉和重新入堆
+        for (long seed = 0; seed < 20; seed++) {
+            List<ScanResult> scanResults = new ArrayList<>(TestScanResults.synthetic(300, 6, seed));
+            Collections.shuffle(scanResults, new java.util.Random(seed));
+
+            deduper.dedup(scanResults, null, deduped);
+            Collections.sort(deduped, STRONGEST_FIRST);
+
+            for (int k : new int[] { 1, 10, 50, 100 }) {
+                deduper.dedupTopK(scanResults, null, k, out);
+                assertEquals(Math.min(k, deduped.size()), out.size());
+                assertLevels(deduped.subList(0, out.size()), out);
+
+                List<String> ssids = new ArrayList<>();
+                for (ScanResult scanResult : out) {
+                    assertTrue(scanResult.SSID, !ssids.contains(scanResult.SSID));
+                    ssids.add(scanResult.SSID);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void dedupTopK_replacesWeakerApOfSameSsid() {
+        ScanResult weakA = TestScanResults.create("a", "02:00:00:00:00:01", -90);
+        ScanResult b = TestScanResults.create("b", "02:00:00:00:00:02", -60);
+        ScanResult c = TestScanResults.create("c", "02:00:00:00:00:03", -70);
+        ScanResult strongA = TestScanResults.create("a", "02:00:00:00:00:04", -40);
+
+        List<ScanResult> out = new ScanResultDeduper().dedupTopK(
+            Arrays.asList(weakA, b, c, strongA), null, 2, new ArrayList<ScanResult>());
+
+        assertEquals(Arrays.asList(strongA, b), out);
+    }
+
+    private static void assertLevels(List<ScanResult> expected, List<ScanResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).level, actual.get(i).level);
+        }
+    }
+}
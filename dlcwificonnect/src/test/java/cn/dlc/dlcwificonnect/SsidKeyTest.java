@@ -0,0 +1,64 @@
+package cn.dlc.dlcwificonnect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SsidKeyTest {
+
+    @Test
+    public void of_trimsQuotesAndInterns() {
+        SsidKey key = SsidKey.of("Office");
+
+        assertSame(key, SsidKey.of("\"Office\""));
+        assertSame(key, SsidKey.of(new String("Office")));
+        assertEquals("Office", key.getText());
+        assertEquals("\"Office\"", key.toWifiSsid());
+        assertFalse(key.isHex());
+        assertNotEquals(key, SsidKey.of("office"));
+    }
+
+    @Test
+    public void of_emptyValuesAreEmpty() {
+        assertSame(SsidKey.EMPTY, SsidKey.of(null));
+        assertSame(SsidKey.EMPTY, SsidKey.of(""));
+        assertSame(SsidKey.EMPTY, SsidKey.of("\"\""));
+        assertSame(SsidKey.EMPTY, SsidKey.ofWifiSsid(null));
+        assertTrue(SsidKey.EMPTY.isEmpty());
+    }
+
+    @Test
+    public void ofWifiSsid_quotedIsText() {
+        assertSame(SsidKey.of("Office"), SsidKey.ofWifiSsid("\"Office\""));
+        assertSame(SsidKey.of("<unknown ssid>"), SsidKey.ofWifiSsid("<unknown ssid>"));
+    }
+
+    @Test
+    public void ofWifiSsid_utf8HexDecodesToText() {
+        // "咖啡"的UTF-8
+        assertSame(SsidKey.of("咖啡"), SsidKey.ofWifiSsid("e59296e595a1"));
+        assertSame(SsidKey.of("咖啡"), SsidKey.ofWifiSsid("E59296E595A1"));
+    }
+
+    @Test
+    public void ofWifiSsid_invalidUtf8StaysHex() {
+        SsidKey key = SsidKey.ofWifiSsid("FF00FE");
+
+        assertTrue(key.isHex());
+        assertEquals("ff00fe", key.getText());
+        assertEquals("ff00fe", key.toWifiSsid());
+        assertSame(key, SsidKey.ofWifiSsid("ff00fe"));
+        // 同样文字的普通SSID是另一个网络
+        assertNotEquals(key, SsidKey.of("ff00fe"));
+    }
+
+    @Test
+    public void ofWifiSsid_oddLengthOrNonHexIsText() {
+        assertSame(SsidKey.of("abc"), SsidKey.ofWifiSsid("abc"));
+        assertSame(SsidKey.of("Office"), SsidKey.ofWifiSsid("Office"));
+    }
+}
@@ -0,0 +1,51 @@
+package cn.dlc.dlcwificonnect;
+
+import android.os.Looper;
+import java.util.concurrent.TimeUnit;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * 在Robolectric里推进后台处理线程和主线程的消息
+ */
+final class TestLoopers {
+
+    private TestLoopers() {
+    }
+
+    /**
+     * 执行后台处理线程里已经到时间的消息
+     */
+    static void idleWorker() {
+        shadowOf(WifiExecutors.worker().getLooper()).idle();
+    }
+
+    /**
+     * 推进后台处理线程的时间，执行期间到时间的延时消息
+     *
+     * @param millis
+     */
+    static void idleWorker(long millis) {
+        shadowOf(WifiExecutors.worker().getLooper()).idle(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 执行主线程里已经到时间的消息
+     */
+    static void idleMain() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * 推进主线程的时间，执行期间到时间的延时消息
+     *
+     * @param millis
+     */
+    static void idleMain(long millis) {
+        shadowOf(Looper.getMainLooper()).idle(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ShadowLooper shadowOf(Looper looper) {
+        return Shadow.extract(looper);
+    }
+}
@@ -0,0 +1,73 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试用的扫描结果
+ * <p>
+ * SDK里ScanResult没有公开的构造方法，这里跳过构造直接分配对象再填字段，
+ * 所以普通JVM测试、基准测试和Robolectric里都能用。
+ */
+final class TestScanResults {
+
+    private static Object sUnsafe;
+    private static Method sAllocateInstance;
+
+    private TestScanResults() {
+    }
+
+    static ScanResult create(String SSID, String BSSID, int level) {
+        return create(SSID, BSSID, "[WPA2-PSK-CCMP][ESS]", level, 2437);
+    }
+
+    static ScanResult create(String SSID, String BSSID, String capabilities, int level,
+        int frequency) {
+        ScanResult scanResult = allocate();
+        scanResult.SSID = SSID;
+        scanResult.BSSID = BSSID;
+        scanResult.capabilities = capabilities;
+        scanResult.level = level;
+        scanResult.frequency = frequency;
+        return scanResult;
+    }
+
+    /**
+     * 生成count个不同BSSID的结果，每个SSID有apsPerSsid个接入点
+     *
+     * @param count
+     * @param apsPerSsid
+     * @param seed
+     * @return
+     */
+    static List<ScanResult> synthetic(int count, int apsPerSsid, long seed) {
+        Random random = new Random(seed);
+        List<ScanResult> scanResults = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String bssid = String.format("02:00:00:%02x:%02x:%02x", (i >> 16) & 0xff,
+                (i >> 8) & 0xff, i & 0xff);
+            scanResults.add(create("net-" + (i / apsPerSsid), bssid, "[WPA2-PSK-CCMP][ESS]",
+                -30 - random.nextInt(60), random.nextBoolean() ? 2437 : 5180));
+        }
+        return scanResults;
+    }
+
+    private static synchronized ScanResult allocate() {
+        try {
+            if (sAllocateInstance == null) {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                sUnsafe = field.get(null);
+                sAllocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            }
+            return (ScanResult) sAllocateInstance.invoke(sUnsafe, ScanResult.class);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
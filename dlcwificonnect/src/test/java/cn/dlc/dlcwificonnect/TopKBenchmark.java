@@ -0,0 +1,73 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.ScanResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 取信号最强的前K个：整体排序、小顶堆、去重和选前K个合并成一次遍历
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TopKBenchmark {
+
+    private static final int K = 20;
+
+    @Param({"50", "500", "5000"})
+    public int size;
+
+    private List<ScanResult> mScanResults;
+    private List<ScanResult> mDeduped;
+    private final ArrayList<ScanResult> mOut = new ArrayList<>();
+    private final ArrayList<ScanResult> mScratch = new ArrayList<>();
+    private final ScanResultDeduper mDeduper = new ScanResultDeduper();
+    private final SignalTopK mTopK = new SignalTopK();
+
+    @Setup
+    public void setUp() {
+        mScanResults = TestScanResults.synthetic(size, 2, 42);
+        mDeduped = WifiHelper.filterScanResult(mScanResults, null);
+    }
+
+    /** 已去重的列表整体排序后取前K个，复制一份以免每次都排已经有序的列表 */
+    @Benchmark
+    public List<ScanResult> fullSort() {
+        mOut.clear();
+        mOut.addAll(mDeduped);
+        WifiHelper.sortBySignalStrength(mOut);
+        return mOut.subList(0, Math.min(K, mOut.size()));
+    }
+
+    @Benchmark
+    public List<ScanResult> heap() {
+        return mTopK.select(mDeduped, K, mOut);
+    }
+
+    /** 先去重再选前K个 */
+    @Benchmark
+    public List<ScanResult> dedupThenHeap() {
+        mDeduper.dedup(mScanResults, null, mScratch);
+        return mTopK.select(mScratch, K, mOut);
+    }
+
+    @Benchmark
+    public List<ScanResult> fusedDedupTopK() {
+        return mDeduper.dedupTopK(mScanResults, null, K, mOut);
+    }
+
+    @Test
+    public void run() throws Exception {
+        Benchmarks.run(TopKBenchmark.class);
+    }
+}
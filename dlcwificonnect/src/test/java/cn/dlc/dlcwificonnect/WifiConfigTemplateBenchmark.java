@@ -0,0 +1,144 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.WifiConfiguration;
+import java.util.Locale;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * 批量保存时构建配置的开销：原来逐位设置BitSet和复制模板对比
+ * <p>
+ * WifiConfiguration要在Robolectric里创建，所以不用JMH，手动计时，先预热再取多轮的最小值。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class WifiConfigTemplateBenchmark {
+
+    private static final int CONFIGS = 20000;
+    private static final int ROUNDS = 10;
+
+    private static final String[] CAPABILITIES = {
+        "[WPA2-PSK-CCMP][ESS]",
+        "[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP][ESS]",
+        "[WEP][ESS]",
+        "[ESS]",
+    };
+
+    private final WifiEncrypt[] mEncrypts = new WifiEncrypt[CAPABILITIES.length];
+    private final SecurityProfile[] mProfiles = new SecurityProfile[CAPABILITIES.length];
+
+    @Test
+    public void build() {
+        Benchmarks.assumeEnabled();
+
+        for (int i = 0; i < CAPABILITIES.length; i++) {
+            mProfiles[i] = SecurityProfile.of(CAPABILITIES[i]);
+            mEncrypts[i] = mProfiles[i].getEncrypt();
+        }
+
+        long legacy = Long.MAX_VALUE;
+        long template = Long.MAX_VALUE;
+        long legacyReused = Long.MAX_VALUE;
+        long templateReused = Long.MAX_VALUE;
+        WifiConfiguration reused = new WifiConfiguration();
+        // 第一轮是预热
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CONFIGS; i++) {
+                legacyEdit(new WifiConfiguration(), mEncrypts[i & 3], "password");
+            }
+            long elapsed = System.nanoTime() - start;
+            legacy = round == 0 ? legacy : Math.min(legacy, elapsed);
+
+            start = System.nanoTime();
+            for (int i = 0; i < CONFIGS; i++) {
+                WifiConfigTemplate.of(mProfiles[i & 3]).apply(new WifiConfiguration(), "password");
+            }
+            elapsed = System.nanoTime() - start;
+            template = round == 0 ? template : Math.min(template, elapsed);
+
+            start = System.nanoTime();
+            for (int i = 0; i < CONFIGS; i++) {
+                clear(reused);
+                legacyEdit(reused, mEncrypts[i & 3], "password");
+            }
+            elapsed = System.nanoTime() - start;
+            legacyReused = round == 0 ? legacyReused : Math.min(legacyReused, elapsed);
+
+            start = System.nanoTime();
+            for (int i = 0; i < CONFIGS; i++) {
+                WifiConfigTemplate.of(mProfiles[i & 3]).apply(reused, "password");
+            }
+            elapsed = System.nanoTime() - start;
+            templateReused = round == 0 ? templateReused : Math.min(templateReused, elapsed);
+        }
+
+        System.out.println(String.format(Locale.US,
+            "WifiConfiguration build: legacy %dns, template %dns per config; "
+                + "security fields only: legacy %dns, template %dns",
+            legacy / CONFIGS, template / CONFIGS, legacyReused / CONFIGS,
+            templateReused / CONFIGS));
+    }
+
+    /**
+     * 逐位设置的不会清掉之前的位，重复使用同一个配置时先清空，和新建的一样
+     */
+    private static void clear(WifiConfiguration config) {
+        config.allowedKeyManagement.clear();
+        config.allowedProtocols.clear();
+        config.allowedAuthAlgorithms.clear();
+        config.allowedPairwiseCiphers.clear();
+        config.allowedGroupCiphers.clear();
+    }
+
+    /**
+     * 改写前editWifiConfig里设置安全类型的部分
+     */
+    private static void legacyEdit(WifiConfiguration config, WifiEncrypt wifiEncrypt,
+        String password) {
+        switch (wifiEncrypt) {
+            case NONE:
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
+                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
+                config.allowedAuthAlgorithms.clear();
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
+                break;
+            case EAP:
+            case WEP:
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
+                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
+                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
+                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
+                config.wepKeys[0] = WifiHelper.addQuotes(password);
+                config.wepTxKeyIndex = 0;
+                break;
+            case WPA:
+                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
+                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
+                config.preSharedKey = WifiHelper.addQuotes(password);
+                break;
+            default:
+                break;
+        }
+    }
+}
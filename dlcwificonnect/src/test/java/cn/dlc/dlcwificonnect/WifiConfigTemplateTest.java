@@ -0,0 +1,279 @@
+package cn.dlc.dlcwificonnect;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiConfiguration.AuthAlgorithm;
+import android.net.wifi.WifiConfiguration.GroupCipher;
+import android.net.wifi.WifiConfiguration.KeyMgmt;
+import android.net.wifi.WifiConfiguration.PairwiseCipher;
+import android.net.wifi.WifiConfiguration.Protocol;
+import android.net.wifi.WifiEnterpriseConfig;
+import java.util.BitSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class WifiConfigTemplateTest {
+
+    /**
+     * Android 10，SAE和OWE从这个版本开始支持
+     */
+    private static final int Q = 29;
+    private static final int KEY_MGMT_SAE = 8;
+    private static final int KEY_MGMT_OWE = 9;
+
+    private static final String HEX_64 =
+        "0123456789abcdef0123456789abcdef0123456789abcdef0123456789ABCDEF";
+
+    @Test
+    public void wep() {
+        WifiConfiguration config = apply("[WEP][ESS]", 27, "abcde");
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.NONE);
+        assertBits(config.allowedProtocols);
+        assertBits(config.allowedAuthAlgorithms, AuthAlgorithm.OPEN, AuthAlgorithm.SHARED);
+        assertBits(config.allowedPairwiseCiphers);
+        assertBits(config.allowedGroupCiphers, GroupCipher.WEP40, GroupCipher.WEP104);
+        assertEquals("\"abcde\"", config.wepKeys[0]);
+        assertEquals(0, config.wepTxKeyIndex);
+        assertNull(config.preSharedKey);
+    }
+
+    @Test
+    public void wep_hexKeysAreNotQuoted() {
+        for (String key : new String[] {
+            "0123456789", "0123456789abcdef0123456789",
+            "0123456789abcdef0123456789abcdef0123456789abcdef0123456789" }) {
+            assertEquals(key, apply("[WEP][ESS]", 27, key).wepKeys[0]);
+        }
+        // 长度对但不是十六进制，或者是十六进制但长度不对
+        assertEquals("\"012345678g\"", apply("[WEP][ESS]", 27, "012345678g").wepKeys[0]);
+        assertEquals("\"0123456789a\"", apply("[WEP][ESS]", 27, "0123456789a").wepKeys[0]);
+    }
+
+    @Test
+    public void wpa2Psk() {
+        WifiConfiguration config = apply("[WPA2-PSK-CCMP][ESS]", 27, "password");
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.WPA_PSK);
+        assertBits(config.allowedProtocols, Protocol.RSN);
+        assertBits(config.allowedAuthAlgorithms);
+        assertBits(config.allowedPairwiseCiphers, PairwiseCipher.CCMP);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+        assertEquals("\"password\"", config.preSharedKey);
+    }
+
+    @Test
+    public void wpaWpa2MixedPsk() {
+        WifiConfiguration config =
+            apply("[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP][ESS]", 27, "password");
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.WPA_PSK);
+        assertBits(config.allowedProtocols, Protocol.WPA, Protocol.RSN);
+        assertBits(config.allowedPairwiseCiphers, PairwiseCipher.TKIP, PairwiseCipher.CCMP);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+    }
+
+    @Test
+    public void psk_hexKeyIsNotQuoted() {
+        assertEquals(HEX_64, apply("[WPA2-PSK-CCMP][ESS]", 27, HEX_64).preSharedKey);
+
+        String passphrase63 = HEX_64.substring(1);
+        assertEquals("\"" + passphrase63 + "\"",
+            apply("[WPA2-PSK-CCMP][ESS]", 27, passphrase63).preSharedKey);
+        String notHex64 = "g" + passphrase63;
+        assertEquals("\"" + notHex64 + "\"",
+            apply("[WPA2-PSK-CCMP][ESS]", 27, notHex64).preSharedKey);
+    }
+
+    @Test
+    public void sae() {
+        WifiConfiguration config = apply("[RSN-SAE-CCMP][ESS][MFPR][MFPC]", Q, HEX_64);
+
+        assertBits(config.allowedKeyManagement, KEY_MGMT_SAE);
+        assertBits(config.allowedProtocols, Protocol.RSN);
+        assertBits(config.allowedAuthAlgorithms);
+        assertBits(config.allowedPairwiseCiphers, PairwiseCipher.CCMP);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+        // SAE没有十六进制形式的密钥
+        assertEquals("\"" + HEX_64 + "\"", config.preSharedKey);
+    }
+
+    @Test
+    public void sae_transitionModeAndOldSystemsUsePsk() {
+        WifiConfiguration transition =
+            apply("[WPA2-PSK-CCMP][RSN-SAE-CCMP][ESS][MFPC]", Q, "password");
+        assertBits(transition.allowedKeyManagement, KeyMgmt.WPA_PSK);
+
+        WifiConfiguration oldSystem = apply("[RSN-SAE-CCMP][ESS][MFPR][MFPC]", 27, "password");
+        assertBits(oldSystem.allowedKeyManagement, KeyMgmt.WPA_PSK);
+        assertEquals("\"password\"", oldSystem.preSharedKey);
+    }
+
+    @Test
+    public void owe() {
+        WifiConfiguration config = apply("[RSN-OWE-CCMP][ESS][MFPR][MFPC]", Q, null);
+
+        assertBits(config.allowedKeyManagement, KEY_MGMT_OWE);
+        assertBits(config.allowedProtocols, Protocol.RSN);
+        assertBits(config.allowedPairwiseCiphers, PairwiseCipher.CCMP);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+        assertNull(config.preSharedKey);
+        assertFalse(WifiConfigTemplate.of(SecurityProfile.of("[RSN-OWE-CCMP][ESS]"), Q)
+            .hasPassword());
+
+        // 旧系统上按开放网络连接
+        WifiConfiguration oldSystem = apply("[RSN-OWE-CCMP][ESS][MFPR][MFPC]", 27, null);
+        assertBits(oldSystem.allowedKeyManagement, KeyMgmt.NONE);
+        assertBits(oldSystem.allowedProtocols);
+    }
+
+    @Test
+    public void eap() {
+        WifiConfiguration config = apply("[WPA2-EAP-CCMP][ESS]", 27, "secret");
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.WPA_EAP, KeyMgmt.IEEE8021X);
+        assertBits(config.allowedProtocols, Protocol.RSN);
+        assertBits(config.allowedAuthAlgorithms);
+        assertBits(config.allowedPairwiseCiphers, PairwiseCipher.CCMP);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+        assertEquals(WifiEnterpriseConfig.Eap.PEAP, config.enterpriseConfig.getEapMethod());
+        assertEquals(WifiEnterpriseConfig.Phase2.MSCHAPV2,
+            config.enterpriseConfig.getPhase2Method());
+        assertNull(config.preSharedKey);
+    }
+
+    @Test
+    public void eap_withoutPasswordStillSetsDefaultMethod() {
+        WifiConfiguration config = apply("[WPA2-EAP-CCMP][ESS]", 27, "");
+
+        assertNotNull(config.enterpriseConfig);
+        assertEquals(WifiEnterpriseConfig.Eap.PEAP, config.enterpriseConfig.getEapMethod());
+        assertEquals(WifiEnterpriseConfig.Phase2.MSCHAPV2,
+            config.enterpriseConfig.getPhase2Method());
+    }
+
+    @Test
+    public void eap_keepsMethodSetByCaller() {
+        WifiConfiguration config = new WifiConfiguration();
+        config.enterpriseConfig = new WifiEnterpriseConfig();
+        config.enterpriseConfig.setEapMethod(WifiEnterpriseConfig.Eap.TTLS);
+        config.enterpriseConfig.setPhase2Method(WifiEnterpriseConfig.Phase2.PAP);
+
+        WifiConfigTemplate.of(SecurityProfile.of("[WPA2-EAP-CCMP][ESS]"), 27)
+            .apply(config, "secret");
+
+        assertEquals(WifiEnterpriseConfig.Eap.TTLS, config.enterpriseConfig.getEapMethod());
+        assertEquals(WifiEnterpriseConfig.Phase2.PAP, config.enterpriseConfig.getPhase2Method());
+    }
+
+    @Test
+    public void eap_createsMissingEnterpriseConfig() {
+        WifiConfiguration config = new WifiConfiguration();
+        config.enterpriseConfig = null;
+
+        WifiConfigTemplate.of(SecurityProfile.of("[WPA2-EAP-CCMP][ESS]"), 27)
+            .apply(config, "secret");
+
+        assertEquals(WifiEnterpriseConfig.Eap.PEAP, config.enterpriseConfig.getEapMethod());
+    }
+
+    @Test
+    public void open() {
+        WifiConfiguration config = apply("[ESS]", 27, null);
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.NONE);
+        assertBits(config.allowedProtocols);
+        assertBits(config.allowedAuthAlgorithms);
+        assertBits(config.allowedPairwiseCiphers);
+        assertBits(config.allowedGroupCiphers);
+        assertNull(config.preSharedKey);
+        assertFalse(WifiConfigTemplate.of(SecurityProfile.of("[ESS]"), 27).hasPassword());
+    }
+
+    @Test
+    public void apply_replacesExistingBits() {
+        WifiConfiguration config = new WifiConfiguration();
+        WifiConfigTemplate.of(SecurityProfile.of("[WEP][ESS]"), 27).apply(config, "abcde");
+        WifiConfigTemplate.of(SecurityProfile.of("[WPA2-PSK-CCMP][ESS]"), 27)
+            .apply(config, "password");
+
+        assertBits(config.allowedKeyManagement, KeyMgmt.WPA_PSK);
+        assertBits(config.allowedAuthAlgorithms);
+        assertBits(config.allowedGroupCiphers, GroupCipher.CCMP, GroupCipher.TKIP);
+    }
+
+    @Test
+    public void templates_areSharedAndNotAliasedIntoConfigs() {
+        SecurityProfile profile = SecurityProfile.of("[WPA2-PSK-CCMP][ESS]");
+        WifiConfigTemplate template = WifiConfigTemplate.of(profile, 27);
+        assertSame(template, WifiConfigTemplate.of(SecurityProfile.of("[WPA2-PSK-CCMP][ESS][WPS]"),
+            27));
+
+        WifiConfiguration config = new WifiConfiguration();
+        template.apply(config, "password");
+        config.allowedKeyManagement.set(KeyMgmt.WPA_EAP);
+        config.allowedProtocols.clear();
+
+        WifiConfiguration another = new WifiConfiguration();
+        template.apply(another, "password");
+        assertBits(another.allowedKeyManagement, KeyMgmt.WPA_PSK);
+        assertBits(another.allowedProtocols, Protocol.RSN);
+        assertTrue(template.matchesKeyManagement(another));
+        assertFalse(template.matchesKeyManagement(config));
+    }
+
+    @Test
+    public void fingerprint_isStable() {
+        WifiConfigTemplate psk = WifiConfigTemplate.of(SecurityProfile.of("[WPA2-PSK-CCMP][ESS]"),
+            27);
+        WifiConfigTemplate mixed = WifiConfigTemplate.of(
+            SecurityProfile.of("[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP][ESS]"), 27);
+
+        // 摘要保存在本地，格式变了已保存的网络会被当成不一致而重新添加
+        byte[] key = new byte[32];
+        String fingerprint = psk.fingerprint(key, "password");
+        assertEquals("7af193945b42e7cd8b879ab1a0b75e7d", fingerprint);
+        assertEquals(fingerprint, psk.fingerprint(key, new String("password")));
+        assertNotEquals(fingerprint, psk.fingerprint(key, "password2"));
+        assertNotEquals(fingerprint, mixed.fingerprint(key, "password"));
+        assertEquals(psk.fingerprint(key, null), psk.fingerprint(key, ""));
+    }
+
+    @Test
+    public void fingerprint_dependsOnKey() {
+        WifiConfigTemplate psk = WifiConfigTemplate.of(SecurityProfile.of("[WPA2-PSK-CCMP][ESS]"),
+            27);
+        byte[] key = new byte[32];
+        byte[] other = new byte[32];
+        other[0] = 1;
+
+        // 不带密钥的SHA-256，说明摘要不是可以直接查表的
+        assertNotEquals("6f32f16b3fc09a72bae002e9e0f6c881", psk.fingerprint(key, "password"));
+        assertNotEquals(psk.fingerprint(key, "password"), psk.fingerprint(other, "password"));
+    }
+
+    private static WifiConfiguration apply(String capabilities, int sdkInt, String password) {
+        WifiConfiguration config = new WifiConfiguration();
+        WifiConfigTemplate.of(SecurityProfile.of(capabilities), sdkInt).apply(config, password);
+        return config;
+    }
+
+    private static void assertBits(BitSet actual, int... expected) {
+        BitSet bits = new BitSet();
+        for (int bit : expected) {
+            bits.set(bit);
+        }
+        assertEquals(bits, actual);
+    }
+}
@@ -0,0 +1,149 @@
+package cn.dlc.dlcwificonnect;
+
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Failure;
+import cn.dlc.dlcwificonnect.ConnectionStateMachine.Phase;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class WifiConnManagerTest {
+
+    private WifiConnManager mConnManager;
+
+    @Before
+    public void setUp() {
+        mConnManager = new WifiConnManager(RuntimeEnvironment.application);
+        mConnManager.setBindingEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mConnManager.abort();
+        TestLoopers.idleWorker();
+    }
+
+    @Test
+    public void sameNetwork_isCoalesced() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+
+        connect("Office", "password", first);
+        connect("Office", "password", second);
+        TestLoopers.idleWorker();
+
+        assertEquals(Phase.SCANNING, mConnManager.getConnectPhase());
+        assertNull(first.mFailure);
+        assertNull(second.mFailure);
+        // 合并的请求也能拿到当前阶段
+        assertTrue(second.mPhases.contains(Phase.SCANNING));
+        assertEquals(1, mConnManager.getHelper().getConfiguredNetworkCache().getAll().size());
+    }
+
+    @Test
+    public void cancel_stopsConnectionOnlyAfterLastRequest() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        WifiConnManager.ConnectHandle firstHandle = connect("Office", "password", first);
+        WifiConnManager.ConnectHandle secondHandle = connect("Office", "password", second);
+        TestLoopers.idleWorker();
+
+        firstHandle.cancel();
+        TestLoopers.idleWorker();
+
+        assertTrue(firstHandle.isDone());
+        assertEquals(Failure.CANCELLED, first.mFailure);
+        assertFalse(secondHandle.isDone());
+        assertEquals(Phase.SCANNING, mConnManager.getConnectPhase());
+
+        secondHandle.cancel();
+        TestLoopers.idleWorker();
+
+        assertEquals(Failure.CANCELLED, second.mFailure);
+        assertEquals(Phase.FAILED, mConnManager.getConnectPhase());
+
+        // 已经结束的请求再取消没有影响
+        firstHandle.cancel();
+        TestLoopers.idleWorker();
+        assertEquals(1, first.mFailureCount);
+        assertEquals(1, second.mFailureCount);
+    }
+
+    @Test
+    public void otherNetwork_cancelsRunningConnection() {
+        RecordingListener office = new RecordingListener();
+        RecordingListener home = new RecordingListener();
+
+        connect("Office", "password", office);
+        TestLoopers.idleWorker();
+        connect("Home", "password", home);
+        TestLoopers.idleWorker();
+
+        assertEquals(Failure.CANCELLED, office.mFailure);
+        assertEquals(Phase.SCANNING, office.mFailedPhase);
+        assertNull(home.mFailure);
+        assertEquals(Phase.SCANNING, mConnManager.getConnectPhase());
+    }
+
+    @Test
+    public void differentPassword_isNotCoalesced() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+
+        connect("Office", "password", first);
+        connect("Office", "another", second);
+        TestLoopers.idleWorker();
+
+        assertEquals(Failure.CANCELLED, first.mFailure);
+        assertNull(second.mFailure);
+    }
+
+    private WifiConnManager.ConnectHandle connect(String SSID, String password,
+        RecordingListener listener) {
+        return mConnManager.connect(WifiEncrypt.WPA, SSID, password, listener,
+            WifiExecutors.direct());
+    }
+
+    private static class RecordingListener implements WifiConnManager.ConnectProgressListener {
+
+        final List<Phase> mPhases = new ArrayList<>();
+        int mConnectedCount;
+        int mFailureCount;
+        Phase mFailedPhase;
+        Failure mFailure;
+
+        @Override
+        public void onPhaseChanged(Phase phase) {
+            mPhases.add(phase);
+        }
+
+        @Override
+        public void onConnectFailure(Phase phase, Failure failure) {
+            mFailureCount++;
+            mFailedPhase = phase;
+            mFailure = failure;
+        }
+
+        @Override
+        public void onConnected() {
+            mConnectedCount++;
+        }
+
+        @Override
+        public void onConnectFailure(boolean passwordError, String reason) {
+            throw new AssertionError("ConnectProgressListener只回调带阶段的失败");
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cn.dlc.dlcwificonnect;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * withTimeout用到后台处理线程的Handler，所以用Robolectric运行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class WifiFutureTest {
+
+    @Test
+    public void complete_onlyOnce() throws Exception {
+        WifiFuture<String> future = new WifiFuture<>();
+
+        assertFalse(future.isDone());
+        assertTrue(future.complete("a"));
+        assertFalse(future.complete("b"));
+        assertFalse(future.fail(new IOException()));
+        assertFalse(future.cancel());
+
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+        assertNull(future.getError());
+        assertEquals("a", future.get());
+    }
+
+    @Test
+    public void fail_getThrowsExecutionException() throws Exception {
+        IOException error = new IOException("boom");
+        WifiFuture<String> future = WifiFuture.failed(error);
+
+        assertSame(error, future.getError());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancel_runsCancelActionsOnce() throws Exception {
+        WifiFuture<String> future = new WifiFuture<>();
+        final AtomicInteger cancelled = new AtomicInteger();
+        Runnable action = new Runnable() {
+            @Override
+            public void run() {
+                cancelled.incrementAndGet();
+            }
+        };
+        future.onCancel(action);
+        Recorder<String> recorder = new Recorder<>();
+        future.addCallback(recorder, WifiExecutors.direct());
+
+        assertTrue(future.cancel());
+        assertFalse(future.cancel());
+        assertEquals(1, cancelled.get());
+        assertTrue(future.isCancelled());
+        assertTrue(recorder.mError.get() instanceof CancellationException);
+
+        // 已经取消时立即执行
+        future.onCancel(action);
+        assertEquals(2, cancelled.get());
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void onCancel_notRunAfterSuccess() {
+        WifiFuture<String> future = WifiFuture.succeeded("a");
+        final AtomicInteger cancelled = new AtomicInteger();
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancelled.incrementAndGet();
+            }
+        });
+
+        assertEquals(0, cancelled.get());
+    }
+
+    @Test
+    public void addCallback_afterCompletionStillRuns() {
+        Recorder<String> recorder = new Recorder<>();
+        WifiFuture.succeeded("a").addCallback(recorder, WifiExecutors.direct());
+
+        assertEquals("a", recorder.mResult.get());
+        assertNull(recorder.mError.get());
+    }
+
+    @Test
+    public void transform_mapsResult() throws Exception {
+        WifiFuture<String> source = new WifiFuture<>();
+        WifiFuture<Integer> length = source.transform(LENGTH, WifiExecutors.direct());
+
+        source.complete("abc");
+        assertEquals(Integer.valueOf(3), length.get());
+    }
+
+    @Test
+    public void transform_propagatesFailureAndFunctionError() {
+        IOException error = new IOException();
+        WifiFuture<Integer> failed = WifiFuture.<String>failed(error).transform(LENGTH,
+            WifiExecutors.direct());
+        assertSame(error, failed.getError());
+
+        WifiFuture<Integer> thrown = WifiFuture.<String>succeeded(null).transform(LENGTH,
+            WifiExecutors.direct());
+        assertTrue(thrown.getError() instanceof NullPointerException);
+    }
+
+    @Test
+    public void transform_cancelCancelsSource() {
+        WifiFuture<String> source = new WifiFuture<>();
+        source.transform(LENGTH, WifiExecutors.direct()).cancel();
+
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void compose_chainsSteps() throws Exception {
+        WifiFuture<String> source = new WifiFuture<>();
+        final WifiFuture<Integer> step = new WifiFuture<>();
+        WifiFuture<Integer> composed = source.compose(
+            new WifiFuture.AsyncFunction<String, Integer>() {
+                @Override
+                public WifiFuture<Integer> apply(String input) {
+                    return step;
+                }
+            }, WifiExecutors.direct());
+
+        source.complete("a");
+        assertFalse(composed.isDone());
+        step.complete(1);
+        assertEquals(Integer.valueOf(1), composed.get());
+    }
+
+    @Test
+    public void compose_cancelStopsRunningStep() {
+        WifiFuture<String> source = new WifiFuture<>();
+        final WifiFuture<Integer> step = new WifiFuture<>();
+        WifiFuture<Integer> composed = source.compose(
+            new WifiFuture.AsyncFunction<String, Integer>() {
+                @Override
+                public WifiFuture<Integer> apply(String input) {
+                    return step;
+                }
+            }, WifiExecutors.direct());
+        source.complete("a");
+
+        composed.cancel();
+
+        assertTrue(step.isCancelled());
+        assertFalse(source.isCancelled());
+    }
+
+    @Test
+    public void get_timesOut() throws Exception {
+        try {
+            new WifiFuture<String>().get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void withTimeout_failsAndCancelsSource() throws Exception {
+        WifiFuture<String> source = new WifiFuture<>();
+        WifiFuture<String> timed = source.withTimeout(0);
+
+        // 超时在后台处理线程里计时
+        TestLoopers.idleWorker();
+
+        assertTrue(timed.isDone());
+        assertTrue(timed.getError() instanceof TimeoutException);
+        try {
+            timed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void withTimeout_passesResultThrough() throws Exception {
+        WifiFuture<String> source = new WifiFuture<>();
+        WifiFuture<String> timed = source.withTimeout(60 * 1000);
+
+        source.complete("a");
+
+        assertEquals("a", timed.get(0, TimeUnit.MILLISECONDS));
+        assertFalse(source.isCancelled());
+    }
+
+    private static final WifiFuture.Function<String, Integer> LENGTH =
+        new WifiFuture.Function<String, Integer>() {
+            @Override
+            public Integer apply(String input) {
+                return input.length();
+            }
+        };
+
+    private static class Recorder<T> implements WifiFuture.Callback<T> {
+
+        final AtomicReference<T> mResult = new AtomicReference<>();
+        final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(T result) {
+            mResult.set(result);
+        }
+
+        @Override
+        public void onFailure(Throwable error) {
+            mError.set(error);
+        }
+    }
+}